@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.jpeg.JpegProcessingException;
+import com.drew.imaging.jpeg.JpegSegmentData;
+import com.drew.imaging.jpeg.JpegSegmentReader;
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.imaging.png.PngChunkReader;
+import com.drew.imaging.png.PngProcessingException;
+import com.drew.lang.ByteArrayReader;
+import com.drew.lang.SequentialByteArrayReader;
+import com.drew.lang.StreamReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.xmp.XmpReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures individual stages of extraction in isolation: JPEG segment scanning with {@link JpegSegmentReader},
+ * TIFF/Exif decoding with {@link ExifReader}, XMP parsing with {@link XmpReader} and PNG chunk scanning with
+ * {@link PngChunkReader}.
+ * <p>
+ * Inputs are taken from the JPEG and PNG files of both the corpus directory and the synthetic corpus. Each
+ * operation processes every input once.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComponentBenchmark
+{
+    @Param("Tests/Data")
+    public String corpus;
+
+    private final List<byte[]> _jpegFiles = new ArrayList<byte[]>();
+    private final List<byte[]> _pngFiles = new ArrayList<byte[]>();
+    private final List<byte[]> _exifSegments = new ArrayList<byte[]>();
+    private final List<byte[]> _xmpSegments = new ArrayList<byte[]>();
+
+    @Setup
+    public void setup() throws IOException, JpegProcessingException
+    {
+        List<byte[]> files = new ArrayList<byte[]>();
+        files.addAll(Corpus.load(corpus, "Jpeg"));
+        files.addAll(Corpus.load(corpus, "Png"));
+        files.addAll(Corpus.load(corpus, Corpus.SYNTHETIC));
+
+        for (byte[] file : files) {
+            FileType fileType = Corpus.detect(file);
+            if (fileType == FileType.Png) {
+                _pngFiles.add(file);
+            } else if (fileType == FileType.Jpeg) {
+                _jpegFiles.add(file);
+                JpegSegmentData segments = JpegSegmentReader.readSegments(new SequentialByteArrayReader(file), Collections.singletonList(JpegSegmentType.APP1));
+                for (byte[] segment : segments.getSegments(JpegSegmentType.APP1)) {
+                    if (ExifReader.startsWithJpegExifPreamble(segment))
+                        _exifSegments.add(segment);
+                    else
+                        _xmpSegments.add(segment);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void jpegSegments(Blackhole blackhole) throws IOException, JpegProcessingException
+    {
+        for (byte[] file : _jpegFiles)
+            blackhole.consume(JpegSegmentReader.readSegments(new SequentialByteArrayReader(file), null));
+    }
+
+    @Benchmark
+    public void jpegSegmentsFromStream(Blackhole blackhole) throws IOException, JpegProcessingException
+    {
+        // Unbuffered, so that the cost of each call to the underlying stream is included
+        for (byte[] file : _jpegFiles)
+            blackhole.consume(JpegSegmentReader.readSegments(new StreamReader(new ByteArrayInputStream(file)), null));
+    }
+
+    @Benchmark
+    public void exif(Blackhole blackhole)
+    {
+        ExifReader reader = new ExifReader();
+        for (byte[] segment : _exifSegments) {
+            Metadata metadata = new Metadata();
+            reader.extract(new ByteArrayReader(segment), metadata, ExifReader.JPEG_SEGMENT_PREAMBLE.length());
+            blackhole.consume(metadata);
+        }
+    }
+
+    @Benchmark
+    public void xmp(Blackhole blackhole)
+    {
+        // XmpReader ignores APP1 segments without the XMP preamble
+        XmpReader reader = new XmpReader();
+        for (byte[] segment : _xmpSegments) {
+            Metadata metadata = new Metadata();
+            reader.readJpegSegments(Collections.singletonList(segment), metadata, JpegSegmentType.APP1);
+            blackhole.consume(metadata);
+        }
+    }
+
+    @Benchmark
+    public void pngChunks(Blackhole blackhole) throws IOException, PngProcessingException
+    {
+        PngChunkReader reader = new PngChunkReader();
+        for (byte[] file : _pngFiles)
+            blackhole.consume(reader.extract(new SequentialByteArrayReader(file), null));
+    }
+}
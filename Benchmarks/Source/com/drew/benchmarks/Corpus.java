@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.FileTypeDetector;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the files that benchmarks run over into memory, so that measurements exclude disk I/O.
+ * <p>
+ * A corpus is either the files of a given {@link FileType} within a directory (by default <code>Tests/Data</code>),
+ * or the files generated by {@link SyntheticCorpus}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class Corpus
+{
+    /** The name of the format that selects the synthetic corpus, rather than files on disk. */
+    public static final String SYNTHETIC = "Synthetic";
+
+    private Corpus() {}
+
+    /**
+     * Loads the files of a format.
+     *
+     * @param directory the directory to search, recursively.
+     * @param format the name of a {@link FileType}, or {@link #SYNTHETIC}.
+     * @throws IllegalStateException if no files of the format were found.
+     */
+    @NotNull
+    public static List<byte[]> load(@NotNull String directory, @NotNull String format) throws IOException
+    {
+        List<byte[]> files = new ArrayList<byte[]>();
+
+        if (format.equals(SYNTHETIC)) {
+            files.addAll(SyntheticCorpus.create());
+        } else {
+            FileType fileType = FileType.valueOf(format);
+            collect(new File(directory), fileType, files);
+        }
+
+        if (files.isEmpty())
+            throw new IllegalStateException("No " + format + " files found in " + new File(directory).getAbsolutePath());
+
+        return files;
+    }
+
+    /**
+     * Loads the files of all recognised formats within a directory, grouped by {@link FileType} in declaration order.
+     *
+     * @param directory the directory to search, recursively.
+     */
+    @NotNull
+    public static Map<FileType, List<byte[]>> loadAll(@NotNull String directory) throws IOException
+    {
+        List<byte[]> files = new ArrayList<byte[]>();
+        collect(new File(directory), null, files);
+        return groupByType(files);
+    }
+
+    /**
+     * Groups files by their detected {@link FileType}, in declaration order, omitting those of unknown type.
+     */
+    @NotNull
+    public static Map<FileType, List<byte[]>> groupByType(@NotNull List<byte[]> files) throws IOException
+    {
+        Map<FileType, List<byte[]>> filesByType = new EnumMap<FileType, List<byte[]>>(FileType.class);
+        for (byte[] file : files) {
+            FileType fileType = detect(file);
+            if (fileType == FileType.Unknown)
+                continue;
+            List<byte[]> group = filesByType.get(fileType);
+            if (group == null) {
+                group = new ArrayList<byte[]>();
+                filesByType.put(fileType, group);
+            }
+            group.add(file);
+        }
+        return filesByType;
+    }
+
+    /**
+     * @param fileType the type of files to collect, or <code>null</code> for all files.
+     */
+    private static void collect(@NotNull File directory, @Nullable FileType fileType, @NotNull List<byte[]> files) throws IOException
+    {
+        File[] children = directory.listFiles();
+        if (children == null)
+            return;
+
+        // Sort so that runs are comparable
+        Arrays.sort(children);
+
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collect(child, fileType, files);
+                continue;
+            }
+
+            byte[] bytes = readAll(child);
+            if (fileType == null || detect(bytes) == fileType)
+                files.add(bytes);
+        }
+    }
+
+    @NotNull
+    static FileType detect(@NotNull byte[] bytes) throws IOException
+    {
+        return FileTypeDetector.detectFileType(new BufferedInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @NotNull
+    private static byte[] readAll(@NotNull File file) throws IOException
+    {
+        byte[] bytes = new byte[(int)file.length()];
+        InputStream stream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = stream.read(bytes, offset, bytes.length - offset);
+                if (read < 0)
+                    break;
+                offset += read;
+            }
+        } finally {
+            stream.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures access to extracted metadata: the typed getters of {@link Directory}, and descriptions produced by
+ * {@link com.drew.metadata.TagDescriptor#getDescription}.
+ * <p>
+ * Metadata is extracted during setup. Each operation visits every tag of every file of the format once.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryBenchmark
+{
+    @Param({ "Jpeg", "Png", "Psd", Corpus.SYNTHETIC })
+    public String format;
+
+    @Param("Tests/Data")
+    public String corpus;
+
+    private List<Metadata> _metadata;
+
+    @Setup
+    public void setup() throws IOException, ImageProcessingException
+    {
+        _metadata = new ArrayList<Metadata>();
+        for (byte[] file : Corpus.load(corpus, format))
+            _metadata.add(ImageMetadataReader.readMetadata(new ByteArrayInputStream(file), file.length));
+    }
+
+    @Benchmark
+    public void getters(Blackhole blackhole)
+    {
+        for (Metadata metadata : _metadata) {
+            for (Directory directory : metadata.getDirectories()) {
+                for (Tag tag : directory.getTags()) {
+                    int tagType = tag.getTagType();
+                    blackhole.consume(directory.getObject(tagType));
+                    blackhole.consume(directory.getString(tagType));
+                    blackhole.consume(directory.getInteger(tagType));
+                    blackhole.consume(directory.getDoubleObject(tagType));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void descriptions(Blackhole blackhole)
+    {
+        for (Metadata metadata : _metadata) {
+            for (Directory directory : metadata.getDirectories()) {
+                for (Tag tag : directory.getTags())
+                    blackhole.consume(tag.getDescription());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.imaging.FileTypeDetector;
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures file type detection and full extraction via {@link ImageMetadataReader}, per format.
+ * <p>
+ * Each operation processes every file of the format in the corpus once.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark
+{
+    @Param({ "Jpeg", "Png", "Gif", "Bmp", "Psd", "Eps", Corpus.SYNTHETIC })
+    public String format;
+
+    @Param("Tests/Data")
+    public String corpus;
+
+    private List<byte[]> _files;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        _files = Corpus.load(corpus, format);
+    }
+
+    @Benchmark
+    public void detectFileType(Blackhole blackhole) throws IOException
+    {
+        for (byte[] file : _files)
+            blackhole.consume(FileTypeDetector.detectFileType(new BufferedInputStream(new ByteArrayInputStream(file))));
+    }
+
+    @Benchmark
+    public void readMetadata(Blackhole blackhole) throws IOException, ImageProcessingException
+    {
+        for (byte[] file : _files)
+            blackhole.consume(ImageMetadataReader.readMetadata(new ByteArrayInputStream(file), file.length));
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal JSON parser, sufficient for reading back the reports written by {@link RegressionGate} without adding a
+ * dependency to the benchmark build.
+ * <p>
+ * Objects are parsed as {@link Map}s preserving key order, arrays as {@link List}s, numbers as {@link Double}s, and
+ * <code>true</code>, <code>false</code> and <code>null</code> as {@link Boolean}s and <code>null</code>.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+final class Json
+{
+    @NotNull
+    private final String _text;
+    private int _pos;
+
+    private Json(@NotNull String text)
+    {
+        _text = text;
+    }
+
+    @Nullable
+    static Object parse(@NotNull String text)
+    {
+        Json json = new Json(text);
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if (json._pos != text.length())
+            throw json.error("Unexpected trailing content");
+        return value;
+    }
+
+    /**
+     * Formats <code>value</code> as a JSON string literal.
+     */
+    @NotNull
+    static String quote(@NotNull String value)
+    {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int)c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    @Nullable
+    private Object readValue()
+    {
+        skipWhitespace();
+        if (_pos == _text.length())
+            throw error("Unexpected end of input");
+
+        char c = _text.charAt(_pos);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                expect("null");
+                return null;
+            default:
+                return readNumber();
+        }
+    }
+
+    @NotNull
+    private Map<String, Object> readObject()
+    {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        _pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            _pos++;
+            return map;
+        }
+        while (true) {
+            skipWhitespace();
+            String key = readString();
+            skipWhitespace();
+            expect(":");
+            map.put(key, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}')
+                return map;
+            if (c != ',')
+                throw error("Expected ',' or '}'");
+        }
+    }
+
+    @NotNull
+    private List<Object> readArray()
+    {
+        List<Object> list = new ArrayList<Object>();
+        _pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            _pos++;
+            return list;
+        }
+        while (true) {
+            list.add(readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == ']')
+                return list;
+            if (c != ',')
+                throw error("Expected ',' or ']'");
+        }
+    }
+
+    @NotNull
+    private String readString()
+    {
+        if (next() != '"')
+            throw error("Expected string");
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            c = next();
+            switch (c) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (_pos + 4 > _text.length())
+                        throw error("Truncated escape");
+                    sb.append((char)Integer.parseInt(_text.substring(_pos, _pos + 4), 16));
+                    _pos += 4;
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    @NotNull
+    private Double readNumber()
+    {
+        int start = _pos;
+        while (_pos < _text.length() && "+-0123456789.eE".indexOf(_text.charAt(_pos)) >= 0)
+            _pos++;
+        if (start == _pos)
+            throw error("Unexpected character");
+        return Double.valueOf(_text.substring(start, _pos));
+    }
+
+    private void expect(@NotNull String literal)
+    {
+        if (!_text.startsWith(literal, _pos))
+            throw error("Expected " + literal);
+        _pos += literal.length();
+    }
+
+    private void skipWhitespace()
+    {
+        while (_pos < _text.length() && Character.isWhitespace(_text.charAt(_pos)))
+            _pos++;
+    }
+
+    private char peek()
+    {
+        if (_pos == _text.length())
+            throw error("Unexpected end of input");
+        return _text.charAt(_pos);
+    }
+
+    private char next()
+    {
+        char c = peek();
+        _pos++;
+        return c;
+    }
+
+    @NotNull
+    private IllegalArgumentException error(@NotNull String message)
+    {
+        return new IllegalArgumentException(message + " at offset " + _pos);
+    }
+}
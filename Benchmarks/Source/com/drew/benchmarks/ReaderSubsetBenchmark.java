@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegProcessingException;
+import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.jpeg.JpegReader;
+import com.drew.metadata.xmp.XmpReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JPEG extraction with a subset of segment readers, as used by applications that only need some metadata.
+ * <p>
+ * Each operation processes every JPEG file in the corpus once.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderSubsetBenchmark
+{
+    @Param({ "Jpeg", Corpus.SYNTHETIC })
+    public String format;
+
+    @Param({ "exif", "exif+xmp", "jpeg+exif+xmp", "all" })
+    public String readers;
+
+    @Param("Tests/Data")
+    public String corpus;
+
+    private List<byte[]> _files;
+    private Iterable<JpegSegmentMetadataReader> _readers;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        _files = new ArrayList<byte[]>();
+        for (byte[] file : Corpus.load(corpus, format)) {
+            if (Corpus.detect(file) == FileType.Jpeg)
+                _files.add(file);
+        }
+
+        if (readers.equals("exif"))
+            _readers = Arrays.<JpegSegmentMetadataReader>asList(new ExifReader());
+        else if (readers.equals("exif+xmp"))
+            _readers = Arrays.<JpegSegmentMetadataReader>asList(new ExifReader(), new XmpReader());
+        else if (readers.equals("jpeg+exif+xmp"))
+            _readers = Arrays.<JpegSegmentMetadataReader>asList(new JpegReader(), new ExifReader(), new XmpReader());
+        else if (readers.equals("all"))
+            _readers = JpegMetadataReader.ALL_READERS;
+        else
+            throw new IllegalArgumentException("Unknown reader subset: " + readers);
+    }
+
+    @Benchmark
+    public void readMetadata(Blackhole blackhole) throws IOException, JpegProcessingException
+    {
+        for (byte[] file : _files)
+            blackhole.consume(JpegMetadataReader.readMetadata(new ByteArrayInputStream(file), _readers));
+    }
+}
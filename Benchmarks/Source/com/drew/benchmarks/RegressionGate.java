@@ -0,0 +1,494 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.lang.Charsets;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures extraction over a fixed corpus and fails if performance has regressed relative to a checked-in baseline.
+ * <p>
+ * The corpus is every recognised file in <code>Tests/Data</code>, plus the files generated by
+ * {@link SyntheticCorpus}. Files are read from memory via {@link ImageMetadataReader}, on a single thread. For each
+ * {@link FileType} (with synthetic files reported separately, prefixed <code>Synthetic/</code>), this records
+ * files/s, MB/s, bytes allocated per file, and the median and 99th percentile latency of a single file. These are
+ * written as a JSON report.
+ * <p>
+ * The report is then compared with the checked-in baseline. Allocation is largely independent of the machine, so the
+ * gate fails if, for any group, allocation per file has risen by more than the configured tolerance, or if a group
+ * in the baseline is missing from the corpus.
+ * <p>
+ * Timings depend upon the machine, so are only compared with the checked-in baseline in an advisory capacity. To gate
+ * on throughput and p99 latency, record a machine-local baseline on the machine that runs the gate by setting
+ * <code>gate.updateLocalBaseline</code>. Whenever a local baseline is present, the gate also fails if throughput has
+ * fallen or p99 latency has risen by more than the configured tolerance relative to it.
+ * <p>
+ * Configuration is via system properties:
+ * <ul>
+ *     <li><code>gate.corpus</code>: the corpus directory, by default <code>Tests/Data</code></li>
+ *     <li><code>gate.baseline</code>: the checked-in baseline, by default
+ *         <code>Benchmarks/regression-baseline.json</code></li>
+ *     <li><code>gate.localBaseline</code>: the machine-local baseline, by default
+ *         <code>Output/benchmarks/local-baseline.json</code></li>
+ *     <li><code>gate.report</code>: where to write the report, by default
+ *         <code>Output/benchmarks/regression-report.json</code></li>
+ *     <li><code>gate.warmupSeconds</code>: the time per group for which the corpus is extracted before measurement,
+ *         by default 1</li>
+ *     <li><code>gate.rounds</code>, <code>gate.roundSeconds</code>: the number and duration of measured rounds per
+ *         group, by default 5 and 0.5</li>
+ *     <li><code>gate.throughputTolerance</code>, <code>gate.latencyTolerance</code>,
+ *         <code>gate.allocationTolerance</code>: the permitted fractional change, by default 0.3, 1.0 and 0.1</li>
+ *     <li><code>gate.updateBaseline</code>, <code>gate.updateLocalBaseline</code>: if <code>true</code>, the report
+ *         replaces the checked-in or machine-local baseline respectively, and no comparison is made</li>
+ * </ul>
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class RegressionGate
+{
+    static final String FILES_PER_SECOND = "filesPerSecond";
+    static final String MEGABYTES_PER_SECOND = "megabytesPerSecond";
+    static final String ALLOCATED_BYTES_PER_FILE = "allocatedBytesPerFile";
+    static final String P50_MICROS = "p50Micros";
+    static final String P99_MICROS = "p99Micros";
+
+    private RegressionGate() {}
+
+    public static void main(@NotNull String[] args) throws Exception
+    {
+        String corpus = System.getProperty("gate.corpus", "Tests/Data");
+        File baselineFile = new File(System.getProperty("gate.baseline", "Benchmarks/regression-baseline.json"));
+        File localBaselineFile = new File(System.getProperty("gate.localBaseline", "Output/benchmarks/local-baseline.json"));
+        File reportFile = new File(System.getProperty("gate.report", "Output/benchmarks/regression-report.json"));
+        double warmupSeconds = getDouble("gate.warmupSeconds", 1.0);
+        int rounds = Integer.getInteger("gate.rounds", 5);
+        double roundSeconds = getDouble("gate.roundSeconds", 0.5);
+        double throughputTolerance = getDouble("gate.throughputTolerance", 0.3);
+        double latencyTolerance = getDouble("gate.latencyTolerance", 1.0);
+        double allocationTolerance = getDouble("gate.allocationTolerance", 0.1);
+        boolean updateBaseline = Boolean.getBoolean("gate.updateBaseline");
+        boolean updateLocalBaseline = Boolean.getBoolean("gate.updateLocalBaseline");
+
+        Map<String, List<byte[]>> groups = loadGroups(corpus);
+
+        System.out.printf("Measuring %d groups, each over %.1fs of warmup and %d rounds of %.1fs%n", groups.size(), warmupSeconds, rounds, roundSeconds);
+        Map<String, Map<String, Double>> results = measure(groups, warmupSeconds, rounds, roundSeconds);
+
+        String report = formatReport(results, rounds);
+        write(reportFile, report);
+        System.out.println("Wrote " + reportFile.getPath());
+
+        if (updateBaseline || updateLocalBaseline) {
+            if (updateBaseline) {
+                write(baselineFile, report);
+                System.out.println("Updated baseline " + baselineFile.getPath());
+            }
+            if (updateLocalBaseline) {
+                write(localBaselineFile, report);
+                System.out.println("Updated local baseline " + localBaselineFile.getPath());
+            }
+            return;
+        }
+
+        if (!baselineFile.isFile()) {
+            System.err.println("No baseline found at " + baselineFile.getPath() + ". Run with -Dgate.updateBaseline=true to create one.");
+            System.exit(1);
+        }
+
+        Map<String, Map<String, Double>> baseline = readGroups(read(baselineFile));
+        List<String> failures = compareAllocation(baseline, results, allocationTolerance);
+
+        if (localBaselineFile.isFile()) {
+            List<String> timingFailures = compareTimings(readGroups(read(localBaselineFile)), results, throughputTolerance, latencyTolerance);
+            for (String failure : timingFailures)
+                failures.add(failure + " relative to " + localBaselineFile.getPath());
+        } else {
+            // Timings recorded on another machine are not comparable, so only report them
+            List<String> advisories = compareTimings(baseline, results, throughputTolerance, latencyTolerance);
+            if (!advisories.isEmpty()) {
+                System.out.println("Timings differ from " + baselineFile.getPath() + ", which may have been recorded on another machine:");
+                for (String advisory : advisories)
+                    System.out.println("  " + advisory);
+                System.out.println("Run with -Dgate.updateLocalBaseline=true on this machine to gate on timings.");
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            System.err.println("Performance regressed:");
+            for (String failure : failures)
+                System.err.println("  " + failure);
+            System.exit(1);
+        }
+
+        System.out.println("No regressions relative to " + baselineFile.getPath() + (localBaselineFile.isFile() ? " and " + localBaselineFile.getPath() : ""));
+    }
+
+    @NotNull
+    static Map<String, List<byte[]>> loadGroups(@NotNull String corpus) throws IOException
+    {
+        Map<String, List<byte[]>> groups = new LinkedHashMap<String, List<byte[]>>();
+        for (Map.Entry<FileType, List<byte[]>> entry : Corpus.loadAll(corpus).entrySet())
+            groups.put(entry.getKey().name(), entry.getValue());
+        for (Map.Entry<FileType, List<byte[]>> entry : Corpus.groupByType(SyntheticCorpus.create()).entrySet())
+            groups.put(Corpus.SYNTHETIC + "/" + entry.getKey().name(), entry.getValue());
+        return groups;
+    }
+
+    /**
+     * Measures each group in turn, returning the metrics of each group keyed by name.
+     * <p>
+     * All groups are first extracted repeatedly, for <code>warmupSeconds</code> per group, so that code shared
+     * between formats is compiled against a realistic profile before anything is measured. Each group is then
+     * measured over a number of rounds. Throughput is that of the fastest round, as interference from other
+     * processes, compilation and garbage collection can only slow a round down. Allocation is the median of the
+     * rounds, and latency percentiles are over every file extracted in all rounds.
+     */
+    @NotNull
+    static Map<String, Map<String, Double>> measure(@NotNull Map<String, List<byte[]>> groups, double warmupSeconds, int rounds, double roundSeconds) throws Exception
+    {
+        AllocationCounter allocationCounter = new AllocationCounter();
+        Map<String, Map<String, Double>> results = new LinkedHashMap<String, Map<String, Double>>();
+
+        long warmupEnd = System.nanoTime() + (long)(warmupSeconds * groups.size() * 1e9);
+        while (System.nanoTime() < warmupEnd) {
+            for (List<byte[]> files : groups.values()) {
+                for (byte[] file : files)
+                    extract(file);
+            }
+        }
+
+        for (Map.Entry<String, List<byte[]>> group : groups.entrySet()) {
+            List<byte[]> files = group.getValue();
+
+            // Start each group with a clean heap, so that it does not pay for collecting another group's garbage
+            System.gc();
+
+            LongList latencies = new LongList();
+            double[] filesPerSecond = new double[rounds];
+            double[] megabytesPerSecond = new double[rounds];
+            double[] allocatedBytesPerFile = new double[rounds];
+
+            for (int round = 0; round < rounds; round++) {
+                long roundNanos = (long)(roundSeconds * 1e9);
+                long totalNanos = 0;
+                long totalBytes = 0;
+                long allocatedBytes = 0;
+                int count = 0;
+
+                while (totalNanos < roundNanos) {
+                    for (byte[] file : files) {
+                        long allocatedBefore = allocationCounter.get();
+                        long start = System.nanoTime();
+                        extract(file);
+                        long nanos = System.nanoTime() - start;
+                        allocatedBytes += allocationCounter.get() - allocatedBefore;
+
+                        latencies.add(nanos);
+                        totalNanos += nanos;
+                        totalBytes += file.length;
+                        count++;
+                    }
+                }
+
+                double seconds = totalNanos / 1e9;
+                filesPerSecond[round] = count / seconds;
+                megabytesPerSecond[round] = totalBytes / (1024d * 1024) / seconds;
+                allocatedBytesPerFile[round] = allocationCounter.isSupported() ? allocatedBytes / (double)count : -1d;
+            }
+
+            long[] sortedLatencies = latencies.toSortedArray();
+
+            Map<String, Double> metrics = new LinkedHashMap<String, Double>();
+            metrics.put("files", (double)files.size());
+            metrics.put(FILES_PER_SECOND, max(filesPerSecond));
+            metrics.put(MEGABYTES_PER_SECOND, max(megabytesPerSecond));
+            metrics.put(ALLOCATED_BYTES_PER_FILE, median(allocatedBytesPerFile));
+            metrics.put(P50_MICROS, percentile(sortedLatencies, 0.50) / 1000d);
+            metrics.put(P99_MICROS, percentile(sortedLatencies, 0.99) / 1000d);
+            results.put(group.getKey(), metrics);
+
+            System.out.printf("  %-16s %10.0f files/s %8.1f MB/s %10.0f B/file  p50 %8.1f us  p99 %8.1f us%n",
+                group.getKey(), metrics.get(FILES_PER_SECOND), metrics.get(MEGABYTES_PER_SECOND),
+                metrics.get(ALLOCATED_BYTES_PER_FILE), metrics.get(P50_MICROS), metrics.get(P99_MICROS));
+        }
+
+        return results;
+    }
+
+    /**
+     * Compares allocation per file against a baseline, returning a description of each regression, including groups
+     * of the baseline that are missing from the results.
+     */
+    @NotNull
+    static List<String> compareAllocation(@NotNull Map<String, Map<String, Double>> baseline,
+                                          @NotNull Map<String, Map<String, Double>> results,
+                                          double allocationTolerance)
+    {
+        List<String> failures = new ArrayList<String>();
+
+        for (Map.Entry<String, Map<String, Double>> entry : baseline.entrySet()) {
+            String group = entry.getKey();
+            Map<String, Double> expected = entry.getValue();
+            Map<String, Double> actual = results.get(group);
+
+            if (actual == null) {
+                failures.add(group + ": present in baseline but not in corpus");
+                continue;
+            }
+
+            // Allocation is not comparable if either JVM could not measure it
+            Double expectedAllocation = expected.get(ALLOCATED_BYTES_PER_FILE);
+            Double actualAllocation = actual.get(ALLOCATED_BYTES_PER_FILE);
+            if (expectedAllocation != null && actualAllocation != null && expectedAllocation >= 0 && actualAllocation >= 0)
+                checkIncrease(failures, group, ALLOCATED_BYTES_PER_FILE, expected, actual, allocationTolerance);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Compares throughput and p99 latency against a baseline, returning a description of each regression. Groups
+     * missing from the results are ignored, as {@link #compareAllocation} reports them.
+     */
+    @NotNull
+    static List<String> compareTimings(@NotNull Map<String, Map<String, Double>> baseline,
+                                       @NotNull Map<String, Map<String, Double>> results,
+                                       double throughputTolerance,
+                                       double latencyTolerance)
+    {
+        List<String> failures = new ArrayList<String>();
+
+        for (Map.Entry<String, Map<String, Double>> entry : baseline.entrySet()) {
+            Map<String, Double> actual = results.get(entry.getKey());
+            if (actual == null)
+                continue;
+
+            checkDecrease(failures, entry.getKey(), FILES_PER_SECOND, entry.getValue(), actual, throughputTolerance);
+            checkIncrease(failures, entry.getKey(), P99_MICROS, entry.getValue(), actual, latencyTolerance);
+        }
+
+        return failures;
+    }
+
+    private static void checkDecrease(@NotNull List<String> failures, @NotNull String group, @NotNull String metric, @NotNull Map<String, Double> expected, @NotNull Map<String, Double> actual, double tolerance)
+    {
+        Double expectedValue = expected.get(metric);
+        Double actualValue = actual.get(metric);
+        if (expectedValue != null && actualValue != null && actualValue < expectedValue * (1 - tolerance))
+            failures.add(String.format("%s: %s fell from %.1f to %.1f (tolerance %.0f%%)", group, metric, expectedValue, actualValue, tolerance * 100));
+    }
+
+    private static void checkIncrease(@NotNull List<String> failures, @NotNull String group, @NotNull String metric, @NotNull Map<String, Double> expected, @NotNull Map<String, Double> actual, double tolerance)
+    {
+        Double expectedValue = expected.get(metric);
+        Double actualValue = actual.get(metric);
+        if (expectedValue != null && actualValue != null && actualValue > expectedValue * (1 + tolerance))
+            failures.add(String.format("%s: %s rose from %.1f to %.1f (tolerance %.0f%%)", group, metric, expectedValue, actualValue, tolerance * 100));
+    }
+
+    @NotNull
+    static String formatReport(@NotNull Map<String, Map<String, Double>> results, int rounds)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"jvm\": ").append(Json.quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))).append(",\n");
+        sb.append("  \"rounds\": ").append(rounds).append(",\n");
+        sb.append("  \"groups\": {");
+        boolean firstGroup = true;
+        for (Map.Entry<String, Map<String, Double>> group : results.entrySet()) {
+            sb.append(firstGroup ? "\n" : ",\n");
+            firstGroup = false;
+            sb.append("    ").append(Json.quote(group.getKey())).append(": {");
+            boolean firstMetric = true;
+            for (Map.Entry<String, Double> metric : group.getValue().entrySet()) {
+                sb.append(firstMetric ? " " : ", ");
+                firstMetric = false;
+                sb.append(Json.quote(metric.getKey())).append(": ").append(String.format("%.1f", metric.getValue()));
+            }
+            sb.append(" }");
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    static Map<String, Map<String, Double>> readGroups(@NotNull String report)
+    {
+        Object root = Json.parse(report);
+        if (!(root instanceof Map) || !(((Map<String, Object>)root).get("groups") instanceof Map))
+            throw new IllegalArgumentException("Report does not contain a \"groups\" object");
+
+        Map<String, Map<String, Double>> groups = new LinkedHashMap<String, Map<String, Double>>();
+        for (Map.Entry<String, Object> group : ((Map<String, Map<String, Object>>)root).get("groups").entrySet()) {
+            Map<String, Double> metrics = new LinkedHashMap<String, Double>();
+            for (Map.Entry<String, Object> metric : ((Map<String, Object>)group.getValue()).entrySet()) {
+                if (metric.getValue() instanceof Double)
+                    metrics.put(metric.getKey(), (Double)metric.getValue());
+            }
+            groups.put(group.getKey(), metrics);
+        }
+        return groups;
+    }
+
+    @Nullable
+    private static Metadata extract(@NotNull byte[] file) throws Exception
+    {
+        return ImageMetadataReader.readMetadata(new ByteArrayInputStream(file), file.length);
+    }
+
+    private static double max(@NotNull double[] values)
+    {
+        double max = values[0];
+        for (double value : values)
+            max = Math.max(max, value);
+        return max;
+    }
+
+    private static double median(@NotNull double[] values)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static long percentile(@NotNull long[] sorted, double fraction)
+    {
+        int index = (int)Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double getDouble(@NotNull String name, double defaultValue)
+    {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @NotNull
+    private static String read(@NotNull File file) throws IOException
+    {
+        InputStream stream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) != -1)
+                bytes.write(buffer, 0, n);
+            return new String(bytes.toByteArray(), Charsets.UTF_8);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void write(@NotNull File file, @NotNull String text) throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Unable to create directory " + parent);
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            Writer writer = new OutputStreamWriter(stream, Charsets.UTF_8);
+            writer.write(text);
+            writer.flush();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * A growable list of primitive longs, so that recording latencies does not itself allocate per file.
+     */
+    private static class LongList
+    {
+        @NotNull
+        private long[] _values = new long[1024];
+        private int _size;
+
+        void add(long value)
+        {
+            if (_size == _values.length)
+                _values = Arrays.copyOf(_values, _size * 2);
+            _values[_size++] = value;
+        }
+
+        @NotNull
+        long[] toSortedArray()
+        {
+            long[] sorted = Arrays.copyOf(_values, _size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Reads the bytes allocated by the current thread, where the JVM supports it.
+     */
+    private static class AllocationCounter
+    {
+        @Nullable
+        private final com.sun.management.ThreadMXBean _bean;
+        private final long _threadId = Thread.currentThread().getId();
+
+        AllocationCounter()
+        {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+                _bean = (com.sun.management.ThreadMXBean)bean;
+                _bean.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                _bean = null;
+            }
+        }
+
+        boolean isSupported()
+        {
+            return _bean != null;
+        }
+
+        long get()
+        {
+            return _bean == null ? 0 : _bean.getThreadAllocatedBytes(_threadId);
+        }
+    }
+}
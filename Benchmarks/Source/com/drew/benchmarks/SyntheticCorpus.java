@@ -0,0 +1,359 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.benchmarks;
+
+import com.drew.lang.Charsets;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Generates files whose metadata is larger than that of the sample images in <code>Tests/Data</code>, so that the
+ * cost of parsing tags dominates the cost of detecting the format and setting up readers.
+ * <p>
+ * The corpus contains a TIFF file with populated IFD0, Exif, GPS and thumbnail IFDs, a JPEG file containing the same
+ * Exif data alongside an XMP packet and a comment, and a PNG file with many text chunks.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class SyntheticCorpus
+{
+    private static final int ASCII = 2;
+    private static final int SHORT = 3;
+    private static final int LONG = 4;
+    private static final int RATIONAL = 5;
+
+    private SyntheticCorpus() {}
+
+    @NotNull
+    public static List<byte[]> create() throws IOException
+    {
+        byte[] tiff = createTiff();
+
+        List<byte[]> files = new ArrayList<byte[]>();
+        files.add(tiff);
+        files.add(createJpeg(tiff));
+        files.add(createPng());
+        return files;
+    }
+
+    @NotNull
+    private static byte[] createTiff()
+    {
+        Ifd ifd0 = new Ifd();
+        ifd0.ascii(0x010F, "Synthetic Camera Company");
+        ifd0.ascii(0x0110, "Model 1234");
+        ifd0.shortValue(0x0112, 1);
+        ifd0.rational(0x011A, 72, 1);
+        ifd0.rational(0x011B, 72, 1);
+        ifd0.shortValue(0x0128, 2);
+        ifd0.ascii(0x0131, "Benchmark Generator 1.0");
+        ifd0.ascii(0x0132, "2020:01:02 03:04:05");
+        ifd0.ascii(0x013B, "Photographer Name");
+        ifd0.ascii(0x8298, "Copyright 2020");
+
+        Ifd exif = new Ifd();
+        exif.rational(0x829A, 1, 250);
+        exif.rational(0x829D, 28, 10);
+        exif.shortValue(0x8822, 2);
+        exif.shortValue(0x8827, 400);
+        exif.ascii(0x9003, "2020:01:02 03:04:05");
+        exif.ascii(0x9004, "2020:01:02 03:04:05");
+        exif.rational(0x9202, 30, 10);
+        exif.rational(0x9204, 0, 3);
+        exif.shortValue(0x9207, 5);
+        exif.shortValue(0x9209, 16);
+        exif.rational(0x920A, 500, 10);
+        exif.shortValue(0xA001, 1);
+        exif.longValue(0xA002, 6000);
+        exif.longValue(0xA003, 4000);
+        exif.shortValue(0xA402, 0);
+        exif.shortValue(0xA403, 0);
+        exif.shortValue(0xA406, 0);
+        exif.ascii(0xA420, "0123456789abcdef0123456789abcdef");
+        exif.ascii(0xA434, "Synthetic Lens 50mm F1.8");
+        ifd0.subIfd(0x8769, exif);
+
+        Ifd gps = new Ifd();
+        gps.bytes(0x0000, new byte[]{ 2, 3, 0, 0 });
+        gps.ascii(0x0001, "N");
+        gps.rationals(0x0002, new long[]{ 51, 1, 30, 1, 1234, 100 });
+        gps.ascii(0x0003, "W");
+        gps.rationals(0x0004, new long[]{ 0, 1, 7, 1, 4000, 100 });
+        gps.rational(0x0006, 1500, 10);
+        gps.ascii(0x001D, "2020:01:02");
+        ifd0.subIfd(0x8825, gps);
+
+        Ifd thumbnail = new Ifd();
+        thumbnail.shortValue(0x0103, 6);
+        thumbnail.rational(0x011A, 72, 1);
+        thumbnail.rational(0x011B, 72, 1);
+        thumbnail.shortValue(0x0128, 2);
+        ifd0._next = thumbnail;
+
+        return ifd0.toTiff();
+    }
+
+    @NotNull
+    private static byte[] createJpeg(@NotNull byte[] tiff) throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(0xFF);
+        stream.write(0xD8);
+
+        writeSegment(stream, 0xE1, concat("Exif\0\0".getBytes(Charsets.ASCII), tiff));
+
+        StringBuilder xmp = new StringBuilder();
+        xmp.append("<?xpacket begin='\uFEFF' id='W5M0MpCehiHzreSzNTczkc9d'?>");
+        xmp.append("<x:xmpmeta xmlns:x='adobe:ns:meta/'><rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>");
+        xmp.append("<rdf:Description rdf:about='' xmlns:dc='http://purl.org/dc/elements/1.1/' xmlns:xmp='http://ns.adobe.com/xap/1.0/'>");
+        xmp.append("<xmp:CreatorTool>Benchmark Generator 1.0</xmp:CreatorTool>");
+        xmp.append("<xmp:CreateDate>2020-01-02T03:04:05</xmp:CreateDate>");
+        xmp.append("<dc:subject><rdf:Bag>");
+        for (int i = 0; i < 50; i++)
+            xmp.append("<rdf:li>keyword").append(i).append("</rdf:li>");
+        xmp.append("</rdf:Bag></dc:subject>");
+        xmp.append("</rdf:Description></rdf:RDF></x:xmpmeta><?xpacket end='w'?>");
+        writeSegment(stream, 0xE1, concat("http://ns.adobe.com/xap/1.0/\0".getBytes(Charsets.ASCII), xmp.toString().getBytes(Charsets.UTF_8)));
+
+        writeSegment(stream, 0xFE, "Synthetic benchmark comment".getBytes(Charsets.ASCII));
+
+        // Baseline frame header for a 6000x4000 YCbCr image with 2x2 chroma subsampling
+        writeSegment(stream, 0xC0, new byte[]{ 8, 0x0F, (byte)0xA0, 0x17, 0x70, 3, 1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1 });
+
+        // Start of scan, followed by a little entropy coded data and the end of image marker
+        writeSegment(stream, 0xDA, new byte[]{ 3, 1, 0, 2, 0x11, 3, 0x11, 0, 0x3F, 0 });
+        stream.write(new byte[]{ 0x12, 0x34, 0x56, 0x78 });
+        stream.write(0xFF);
+        stream.write(0xD9);
+        return stream.toByteArray();
+    }
+
+    @NotNull
+    private static byte[] createPng() throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[]{ (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' });
+
+        // 64x64, 8 bits per channel, RGB
+        writeChunk(stream, "IHDR", new byte[]{ 0, 0, 0, 64, 0, 0, 0, 64, 8, 2, 0, 0, 0 });
+        writeChunk(stream, "gAMA", new byte[]{ 0, 0, (byte)0xB1, (byte)0x8F });
+        for (int i = 0; i < 50; i++)
+            writeChunk(stream, "tEXt", ("Key" + i + "\0Text value number " + i).getBytes(Charsets.ISO_8859_1));
+        writeChunk(stream, "IEND", new byte[0]);
+        return stream.toByteArray();
+    }
+
+    private static void writeSegment(@NotNull ByteArrayOutputStream stream, int marker, @NotNull byte[] bytes)
+    {
+        int length = bytes.length + 2;
+        stream.write(0xFF);
+        stream.write(marker);
+        stream.write(length >> 8);
+        stream.write(length);
+        stream.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeChunk(@NotNull ByteArrayOutputStream stream, @NotNull String type, @NotNull byte[] bytes)
+    {
+        byte[] typeBytes = type.getBytes(Charsets.ASCII);
+        writeInt32BigEndian(stream, bytes.length);
+        stream.write(typeBytes, 0, typeBytes.length);
+        stream.write(bytes, 0, bytes.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(bytes);
+        writeInt32BigEndian(stream, (int)crc.getValue());
+    }
+
+    private static void writeInt32BigEndian(@NotNull ByteArrayOutputStream stream, int value)
+    {
+        stream.write(value >> 24);
+        stream.write(value >> 16);
+        stream.write(value >> 8);
+        stream.write(value);
+    }
+
+    @NotNull
+    private static byte[] concat(@NotNull byte[] a, @NotNull byte[] b)
+    {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * A TIFF IFD under construction. Values are written in Intel (little-endian) byte order.
+     */
+    private static final class Ifd
+    {
+        private final List<int[]> _entries = new ArrayList<int[]>();
+        private final List<byte[]> _values = new ArrayList<byte[]>();
+        private final List<Ifd> _subIfds = new ArrayList<Ifd>();
+        @Nullable private Ifd _next;
+        private int _offset;
+
+        void ascii(int tag, @NotNull String value)
+        {
+            byte[] bytes = (value + "\0").getBytes(Charsets.ASCII);
+            add(tag, ASCII, bytes.length, bytes, null);
+        }
+
+        void bytes(int tag, @NotNull byte[] value)
+        {
+            add(tag, 1, value.length, value, null);
+        }
+
+        void shortValue(int tag, int value)
+        {
+            add(tag, SHORT, 1, new byte[]{ (byte)value, (byte)(value >> 8) }, null);
+        }
+
+        void longValue(int tag, long value)
+        {
+            add(tag, LONG, 1, int32(value), null);
+        }
+
+        void rational(int tag, long numerator, long denominator)
+        {
+            rationals(tag, new long[]{ numerator, denominator });
+        }
+
+        void rationals(int tag, @NotNull long[] values)
+        {
+            byte[] bytes = new byte[values.length * 4];
+            for (int i = 0; i < values.length; i++)
+                System.arraycopy(int32(values[i]), 0, bytes, i * 4, 4);
+            add(tag, RATIONAL, values.length / 2, bytes, null);
+        }
+
+        void subIfd(int tag, @NotNull Ifd ifd)
+        {
+            add(tag, LONG, 1, new byte[4], ifd);
+        }
+
+        private void add(int tag, int type, int count, @NotNull byte[] value, @Nullable Ifd subIfd)
+        {
+            _entries.add(new int[]{ tag, type, count });
+            _values.add(value);
+            _subIfds.add(subIfd);
+        }
+
+        /** The size of this IFD, including values that do not fit within their entries. */
+        int size()
+        {
+            int size = 2 + _entries.size() * 12 + 4;
+            for (byte[] value : _values) {
+                if (value.length > 4)
+                    size += (value.length + 1) & ~1;
+            }
+            return size;
+        }
+
+        /** Lists this IFD and all IFDs reachable from it, in the order they are laid out. */
+        void collect(@NotNull List<Ifd> ifds)
+        {
+            ifds.add(this);
+            for (Ifd subIfd : _subIfds) {
+                if (subIfd != null)
+                    subIfd.collect(ifds);
+            }
+            if (_next != null)
+                _next.collect(ifds);
+        }
+
+        @NotNull
+        byte[] toTiff()
+        {
+            List<Ifd> ifds = new ArrayList<Ifd>();
+            collect(ifds);
+
+            int offset = 8;
+            for (Ifd ifd : ifds) {
+                ifd._offset = offset;
+                offset += ifd.size();
+            }
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            stream.write('I');
+            stream.write('I');
+            stream.write(0x2A);
+            stream.write(0);
+            stream.write(int32(8), 0, 4);
+            for (Ifd ifd : ifds)
+                ifd.write(stream);
+            return stream.toByteArray();
+        }
+
+        private void write(@NotNull ByteArrayOutputStream stream)
+        {
+            stream.write(_entries.size());
+            stream.write(_entries.size() >> 8);
+
+            int valueOffset = _offset + 2 + _entries.size() * 12 + 4;
+            List<byte[]> overflow = new ArrayList<byte[]>();
+            for (int i = 0; i < _entries.size(); i++) {
+                int[] entry = _entries.get(i);
+                byte[] value = _values.get(i);
+                Ifd subIfd = _subIfds.get(i);
+
+                stream.write(entry[0]);
+                stream.write(entry[0] >> 8);
+                stream.write(entry[1]);
+                stream.write(entry[1] >> 8);
+                stream.write(int32(entry[2]), 0, 4);
+
+                if (subIfd != null) {
+                    stream.write(int32(subIfd._offset), 0, 4);
+                } else if (value.length <= 4) {
+                    stream.write(value, 0, value.length);
+                    for (int pad = value.length; pad < 4; pad++)
+                        stream.write(0);
+                } else {
+                    stream.write(int32(valueOffset), 0, 4);
+                    valueOffset += (value.length + 1) & ~1;
+                    overflow.add(value);
+                }
+            }
+
+            stream.write(int32(_next == null ? 0 : _next._offset), 0, 4);
+
+            for (byte[] value : overflow) {
+                stream.write(value, 0, value.length);
+                if ((value.length & 1) != 0)
+                    stream.write(0);
+            }
+        }
+
+        @NotNull
+        private static byte[] int32(long value)
+        {
+            return new byte[]{ (byte)value, (byte)(value >> 8), (byte)(value >> 16), (byte)(value >> 24) };
+        }
+    }
+}
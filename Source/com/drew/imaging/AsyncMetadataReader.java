@@ -0,0 +1,275 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reads metadata from files without blocking the calling thread.
+ * <p>
+ * Each call to {@link #readMetadata(File, Callback)} returns immediately. The leading bytes of the file are read
+ * into a pooled buffer on <code>ioExecutor</code>, after which parsing is scheduled on <code>parseExecutor</code>.
+ * Parsing is served from the buffer, and only goes back to the file if the format needs data beyond it.
+ * <p>
+ * Results are available via the returned {@link Future}, and optionally pushed to a {@link Callback} from the
+ * parsing thread. Buffers are returned to the pool once parsing completes, or once the read is cancelled or cannot
+ * be scheduled, so at most <code>maxPooledBuffers</code> buffers are retained between reads.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class AsyncMetadataReader
+{
+    /**
+     * Receives the outcome of an asynchronous read, on the thread that parsed the file.
+     */
+    public interface Callback
+    {
+        void onSuccess(@NotNull File file, @NotNull Metadata metadata);
+
+        void onFailure(@NotNull File file, @NotNull Throwable throwable);
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 128 * 1024;
+
+    @NotNull
+    private final Executor _ioExecutor;
+    @NotNull
+    private final Executor _parseExecutor;
+    private final int _bufferSize;
+    @NotNull
+    private final BlockingQueue<byte[]> _bufferPool;
+
+    public AsyncMetadataReader(@NotNull Executor ioExecutor, @NotNull Executor parseExecutor)
+    {
+        this(ioExecutor, parseExecutor, DEFAULT_BUFFER_SIZE, 16);
+    }
+
+    /**
+     * @param ioExecutor the executor on which file headers are read.
+     * @param parseExecutor the executor on which metadata is parsed and callbacks invoked.
+     * @param bufferSize the number of bytes read from the start of each file before parsing begins.
+     * @param maxPooledBuffers the maximum number of idle buffers retained for reuse.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public AsyncMetadataReader(@NotNull Executor ioExecutor, @NotNull Executor parseExecutor, int bufferSize, int maxPooledBuffers)
+    {
+        if (ioExecutor == null || parseExecutor == null)
+            throw new NullPointerException();
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be greater than zero");
+        if (maxPooledBuffers <= 0)
+            throw new IllegalArgumentException("maxPooledBuffers must be greater than zero");
+
+        _ioExecutor = ioExecutor;
+        _parseExecutor = parseExecutor;
+        _bufferSize = bufferSize;
+        _bufferPool = new ArrayBlockingQueue<byte[]>(maxPooledBuffers);
+    }
+
+    /**
+     * Starts reading metadata from <code>file</code>.
+     *
+     * @return a future that completes with the file's metadata, or with the exception that prevented extraction.
+     */
+    @NotNull
+    public Future<Metadata> readMetadata(@NotNull File file)
+    {
+        return readMetadata(file, null);
+    }
+
+    /**
+     * Starts reading metadata from <code>file</code>, notifying <code>callback</code> on completion.
+     * <p>
+     * The callback is not invoked if the returned future is cancelled.
+     *
+     * @return a future that completes with the file's metadata, or with the exception that prevented extraction.
+     */
+    @NotNull
+    public Future<Metadata> readMetadata(@NotNull final File file, @Nullable final Callback callback)
+    {
+        final ParseStage parseStage = new ParseStage(file);
+        final ReadOperation operation = new ReadOperation(parseStage, callback);
+
+        _ioExecutor.execute(new Runnable()
+        {
+            public void run()
+            {
+                if (operation.isCancelled())
+                    return;
+
+                byte[] buffer = takeBuffer();
+                try {
+                    parseStage._header = FileHeader.read(file, buffer);
+                } catch (Throwable t) {
+                    returnBuffer(buffer);
+                    parseStage._ioException = t;
+                }
+
+                // A read cancelled while its header was being read is not parsed
+                if (operation.isCancelled()) {
+                    parseStage.release();
+                    return;
+                }
+
+                // Handing the task to the executor publishes the fields set above to the parsing thread
+                try {
+                    _parseExecutor.execute(operation);
+                } catch (RejectedExecutionException e) {
+                    parseStage.release();
+                    operation.fail(e);
+                }
+            }
+        });
+
+        return operation;
+    }
+
+    @NotNull
+    private byte[] takeBuffer()
+    {
+        byte[] buffer = _bufferPool.poll();
+        return buffer != null ? buffer : new byte[_bufferSize];
+    }
+
+    private void returnBuffer(@NotNull byte[] buffer)
+    {
+        _bufferPool.offer(buffer);
+    }
+
+    /**
+     * Parses a file from the header read by the I/O stage, or reports the exception that stage encountered.
+     */
+    private class ParseStage implements Callable<Metadata>
+    {
+        @NotNull
+        final File _file;
+        // Volatile, as a cancelling thread may release the header's buffer
+        @Nullable
+        volatile FileHeader _header;
+        @Nullable
+        Throwable _ioException;
+        // Set by whichever of parsing or release takes ownership of the header's buffer
+        @NotNull
+        private final AtomicBoolean _claimed = new AtomicBoolean();
+
+        ParseStage(@NotNull File file)
+        {
+            _file = file;
+        }
+
+        @NotNull
+        public Metadata call() throws Exception
+        {
+            if (_ioException instanceof Exception)
+                throw (Exception)_ioException;
+            if (_ioException != null)
+                throw (Error)_ioException;
+
+            FileHeader header = _header;
+            assert(header != null);
+            if (!_claimed.compareAndSet(false, true))
+                throw new IllegalStateException("Header buffer was released before parsing");
+            try {
+                return header.readMetadata();
+            } finally {
+                returnBuffer(header.getBuffer());
+            }
+        }
+
+        /**
+         * Returns the header's buffer to the pool, unless parsing has already taken it.
+         */
+        void release()
+        {
+            FileHeader header = _header;
+            if (header != null && _claimed.compareAndSet(false, true))
+                returnBuffer(header.getBuffer());
+        }
+    }
+
+    /**
+     * A read operation, which completes once its {@link ParseStage} has run.
+     */
+    private static class ReadOperation extends FutureTask<Metadata>
+    {
+        @NotNull
+        private final File _file;
+        @NotNull
+        private final ParseStage _parseStage;
+        @Nullable
+        private final Callback _callback;
+
+        ReadOperation(@NotNull ParseStage parseStage, @Nullable Callback callback)
+        {
+            super(parseStage);
+            _file = parseStage._file;
+            _parseStage = parseStage;
+            _callback = callback;
+        }
+
+        /**
+         * Completes this operation with <code>throwable</code>, as when it could not be scheduled for parsing.
+         */
+        void fail(@NotNull Throwable throwable)
+        {
+            setException(throwable);
+        }
+
+        @Override
+        protected void done()
+        {
+            // Once cancelled, the parse stage may never run to return the buffer
+            if (isCancelled())
+                _parseStage.release();
+
+            if (_callback == null || isCancelled())
+                return;
+
+            Metadata metadata;
+            try {
+                metadata = get();
+            } catch (InterruptedException e) {
+                // Cannot happen, as the task is complete
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                _callback.onFailure(_file, e.getCause());
+                return;
+            }
+            _callback.onSuccess(_file, metadata);
+        }
+    }
+}
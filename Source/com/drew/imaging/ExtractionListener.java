@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+
+/**
+ * Receives timing and volume information about each phase of metadata extraction, for profiling.
+ * <p>
+ * A listener is installed globally via {@link ExtractionMonitor#setListener}. Readers report each phase on the
+ * thread that performed it, once that phase completes, whether or not it completed normally. Implementations must
+ * therefore be thread-safe, and should return quickly as they are called from within extraction.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public interface ExtractionListener
+{
+    /**
+     * Called when a phase of extraction completes.
+     *
+     * @param fileType the type of the file being read, or {@link FileType#Unknown} if a reader was used directly
+     *                 and the file type was not known.
+     * @param phase the phase that completed.
+     * @param readerClass the class that performed the phase, such as the format reader, segment reader, TIFF handler
+     *                    or makernote processor.
+     * @param byteCount the number of bytes read or consumed during the phase, or -1 if unknown.
+     * @param nanos the elapsed time of the phase, as measured by {@link System#nanoTime()}.
+     */
+    void phaseCompleted(@NotNull FileType fileType, @NotNull ExtractionPhase phase, @NotNull Class<?> readerClass, long byteCount, long nanos);
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+/**
+ * Holds the {@link ExtractionListener} to which readers report the phases of extraction.
+ * <p>
+ * Readers call {@link #getListener()} once at the start of a phase, and only read the clock and report if it
+ * returned a listener:
+ *
+ * <pre><code>
+ * ExtractionListener listener = ExtractionMonitor.getListener();
+ * long start = listener == null ? 0 : System.nanoTime();
+ * try {
+ *     // ...
+ * } finally {
+ *     if (listener != null)
+ *         ExtractionMonitor.report(listener, ExtractionPhase.TIFF, handler.getClass(), -1, start);
+ * }
+ * </code></pre>
+ *
+ * When no listener is installed, monitoring therefore costs a single volatile read per phase.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ExtractionMonitor
+{
+    @Nullable
+    private static volatile ExtractionListener _listener;
+
+    private static final ThreadLocal<FileType> _fileType = new ThreadLocal<FileType>();
+
+    /**
+     * Installs a listener to receive reports from all threads, replacing any already installed.
+     *
+     * @param listener the listener, or <code>null</code> to stop monitoring.
+     */
+    public static void setListener(@Nullable ExtractionListener listener)
+    {
+        _listener = listener;
+    }
+
+    /**
+     * Gets the installed listener, or <code>null</code> if none is installed.
+     */
+    @Nullable
+    public static ExtractionListener getListener()
+    {
+        return _listener;
+    }
+
+    /**
+     * Gets the type of the file being read on the current thread, as set by {@link #enterFileType}, or
+     * {@link FileType#Unknown} if none is set.
+     */
+    @NotNull
+    public static FileType getFileType()
+    {
+        FileType fileType = _fileType.get();
+        return fileType == null ? FileType.Unknown : fileType;
+    }
+
+    /**
+     * Sets the type of the file being read on the current thread, to be passed with phases reported by readers that
+     * do not know it themselves, such as {@link com.drew.imaging.tiff.TiffReader}.
+     * <p>
+     * This should only be called while a listener is installed, and must be paired with a call to
+     * {@link #exitFileType} in a <code>finally</code> block.
+     *
+     * @return the previous file type, to be passed to {@link #exitFileType}.
+     */
+    @Nullable
+    public static FileType enterFileType(@NotNull FileType fileType)
+    {
+        FileType previous = _fileType.get();
+        _fileType.set(fileType);
+        return previous;
+    }
+
+    /**
+     * Restores the file type that was current before the matching call to {@link #enterFileType}.
+     */
+    public static void exitFileType(@Nullable FileType previous)
+    {
+        if (previous == null)
+            _fileType.remove();
+        else
+            _fileType.set(previous);
+    }
+
+    /**
+     * Reports a completed phase to <code>listener</code>, for the file type current on this thread.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the phase started.
+     */
+    public static void report(@NotNull ExtractionListener listener, @NotNull ExtractionPhase phase, @NotNull Class<?> readerClass, long byteCount, long startNanos)
+    {
+        report(listener, getFileType(), phase, readerClass, byteCount, startNanos);
+    }
+
+    /**
+     * Reports a completed phase to <code>listener</code>, for the specified file type.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the phase started.
+     */
+    public static void report(@NotNull ExtractionListener listener, @NotNull FileType fileType, @NotNull ExtractionPhase phase, @NotNull Class<?> readerClass, long byteCount, long startNanos)
+    {
+        long nanos = System.nanoTime() - startNanos;
+        listener.phaseCompleted(fileType, phase, readerClass, byteCount, nanos);
+    }
+
+    private ExtractionMonitor() throws Exception
+    {
+        throw new Exception("Not intended for instantiation");
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+/**
+ * The stages of metadata extraction reported to an {@link ExtractionListener}.
+ * <p>
+ * Phases nest. A {@link #FILE} phase encloses the {@link #SEGMENT_SCAN} and {@link #SEGMENT} phases of a JPEG, which
+ * in turn may enclose {@link #TIFF} and {@link #MAKERNOTE} phases for its Exif data. Each phase is reported when it
+ * completes, so inner phases are reported before the phases that enclose them.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public enum ExtractionPhase
+{
+    /**
+     * Identification of the file type from the leading bytes of the data.
+     */
+    DETECTION,
+
+    /**
+     * The whole of a format-specific reader's work, such as that of {@code JpegMetadataReader}.
+     */
+    FILE,
+
+    /**
+     * Scanning a JPEG stream to locate and buffer its segments.
+     */
+    SEGMENT_SCAN,
+
+    /**
+     * Decoding the buffered JPEG segments with a single segment reader.
+     */
+    SEGMENT,
+
+    /**
+     * Walking the IFDs of TIFF-formatted data, whether a standalone file or embedded, as with Exif.
+     */
+    TIFF,
+
+    /**
+     * Decoding a camera makernote within Exif data.
+     */
+    MAKERNOTE,
+
+    /**
+     * Walking the boxes, atoms or chunks of an ISO BMFF, QuickTime or RIFF container.
+     */
+    CONTAINER
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.file.FileSystemMetadataReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * The leading bytes of a file, read ahead of parsing.
+ * <p>
+ * Parsing consumes the buffered bytes first, and only opens the file again if it needs data beyond them.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+final class FileHeader
+{
+    @NotNull
+    private final File _file;
+    @NotNull
+    private final byte[] _buffer;
+    private final int _length;
+    private final boolean _isComplete;
+
+    private FileHeader(@NotNull File file, @NotNull byte[] buffer, int length, boolean isComplete)
+    {
+        _file = file;
+        _buffer = buffer;
+        _length = length;
+        _isComplete = isComplete;
+    }
+
+    /**
+     * Reads up to <code>buffer.length</code> bytes from the start of <code>file</code> into <code>buffer</code>.
+     */
+    @NotNull
+    static FileHeader read(@NotNull File file, @NotNull byte[] buffer) throws IOException
+    {
+        int total = 0;
+        boolean isEndOfFile = false;
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            while (total != buffer.length) {
+                int read = stream.read(buffer, total, buffer.length - total);
+                if (read == -1) {
+                    isEndOfFile = true;
+                    break;
+                }
+                total += read;
+            }
+        } finally {
+            stream.close();
+        }
+        return new FileHeader(file, buffer, total, isEndOfFile || total == file.length());
+    }
+
+    @NotNull
+    File getFile()
+    {
+        return _file;
+    }
+
+    @NotNull
+    byte[] getBuffer()
+    {
+        return _buffer;
+    }
+
+    /**
+     * Opens a stream over the whole file, served from the header where possible.
+     */
+    @NotNull
+    InputStream openStream()
+    {
+        InputStream inputStream = new ByteArrayInputStream(_buffer, 0, _length);
+        if (_isComplete)
+            return inputStream;
+        return new SequenceInputStream(inputStream, new RemainderInputStream(_file, _length));
+    }
+
+    /**
+     * Reads metadata as per {@link ImageMetadataReader#readMetadata(File)}.
+     */
+    @NotNull
+    Metadata readMetadata() throws ImageProcessingException, IOException
+    {
+        Metadata metadata;
+        InputStream inputStream = openStream();
+        try {
+            metadata = ImageMetadataReader.readMetadata(inputStream, _file.length());
+        } finally {
+            inputStream.close();
+        }
+        new FileSystemMetadataReader().read(_file, metadata);
+        return metadata;
+    }
+
+    /**
+     * Streams the content of a file from a given offset, only opening the file once data is first requested.
+     */
+    private static class RemainderInputStream extends InputStream
+    {
+        @NotNull
+        private final File _file;
+        private final long _offset;
+        @Nullable
+        private FileInputStream _stream;
+        private boolean _isClosed;
+
+        RemainderInputStream(@NotNull File file, long offset)
+        {
+            _file = file;
+            _offset = offset;
+        }
+
+        @NotNull
+        private InputStream getStream() throws IOException
+        {
+            if (_isClosed)
+                throw new IOException("Stream closed");
+            if (_stream == null) {
+                _stream = new FileInputStream(_file);
+                _stream.getChannel().position(_offset);
+            }
+            return _stream;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            return getStream().read();
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException
+        {
+            return getStream().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            return getStream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            if (_stream != null)
+                return _stream.available();
+            return _isClosed ? 0 : (int)Math.max(0, Math.min(Integer.MAX_VALUE, _file.length() - _offset));
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            _isClosed = true;
+            if (_stream != null)
+                _stream.close();
+        }
+    }
+}
@@ -37,11 +37,18 @@ import com.drew.imaging.raf.RafMetadataReader;
 import com.drew.imaging.tiff.TiffMetadataReader;
 import com.drew.imaging.wav.WavMetadataReader;
 import com.drew.imaging.webp.WebpMetadataReader;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimits;
+import com.drew.lang.IoStats;
 import com.drew.lang.RandomAccessStreamReader;
 import com.drew.lang.StringUtil;
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataEventEmitter;
+import com.drew.metadata.MetadataEventHandler;
+import com.drew.metadata.MetadataJsonWriter;
 import com.drew.metadata.Tag;
 import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.file.FileSystemMetadataReader;
@@ -49,6 +56,7 @@ import com.drew.metadata.file.FileTypeDirectory;
 import com.drew.metadata.xmp.XmpDirectory;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -114,20 +122,176 @@ public class ImageMetadataReader
      */
     @NotNull
     public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength) throws ImageProcessingException, IOException
+    {
+        return readMetadataWithinDefaultLimits(inputStream, streamLength, null);
+    }
+
+    @NotNull
+    private static Metadata readMetadataWithinDefaultLimits(@NotNull final InputStream inputStream, final long streamLength, @Nullable final FileChannel channel) throws ImageProcessingException, IOException
+    {
+        // Extraction within a caller's budget is bound by it, rather than by the default limits
+        ExtractionBudget budget = ExtractionBudget.current();
+        if (budget != null)
+            return readMetadataWithinBudget(inputStream, streamLength, budget, channel);
+
+        // Walkers apply default directory and nesting limits themselves. Not making a budget current otherwise
+        // lets readers skip looking one up while no thread has requested limits.
+        ExtractionLimits limits = ExtractionLimits.getDefault();
+        if (limits.limitsOnlyDirectories())
+            return readMetadataAndFileType(inputStream, streamLength, channel);
+
+        return readMetadataWithinBudget(inputStream, streamLength, new ExtractionBudget(limits), channel);
+    }
+
+    /**
+     * Reads metadata from an {@link InputStream} of known length, within the specified resource limits.
+     * <p>
+     * When a limit is reached while walking TIFF, ISO BMFF, QuickTime or RIFF structures, or while locating JPEG
+     * segments, the metadata read so far is returned with an error. See {@link ExtractionLimits}.
+     *
+     * @param inputStream a stream from which the file data may be read.  The stream must be positioned at the
+     *                    beginning of the file's data.
+     * @param streamLength the length of the stream, if known, otherwise -1.
+     * @param limits the limits on the resources that extraction may consume.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException if the file type is unknown, or for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength, @NotNull final ExtractionLimits limits) throws ImageProcessingException, IOException
+    {
+        return readMetadata(inputStream, streamLength, new ExtractionBudget(limits));
+    }
+
+    /**
+     * Reads metadata from an {@link InputStream} of known length, charging the resources consumed to
+     * <code>budget</code>.
+     * <p>
+     * Extraction stops at the next opportunity once the budget's timeout has elapsed, once {@link ExtractionBudget#cancel}
+     * has been called from another thread, or once this thread has been interrupted. The metadata read so far is then
+     * returned with an error.
+     *
+     * @param inputStream a stream from which the file data may be read.  The stream must be positioned at the
+     *                    beginning of the file's data.
+     * @param streamLength the length of the stream, if known, otherwise -1.
+     * @param budget the budget against which extraction is charged, and through which it may be cancelled.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException if the file type is unknown, or for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength, @NotNull final ExtractionBudget budget) throws ImageProcessingException, IOException
+    {
+        return readMetadataWithinBudget(inputStream, streamLength, budget, null);
+    }
+
+    @NotNull
+    private static Metadata readMetadataWithinBudget(@NotNull final InputStream inputStream, final long streamLength, @NotNull final ExtractionBudget budget, @Nullable final FileChannel channel) throws ImageProcessingException, IOException
+    {
+        ExtractionBudget previousBudget = ExtractionBudget.begin(budget);
+        try {
+            return readMetadataAndFileType(inputStream, streamLength, channel);
+        } finally {
+            ExtractionBudget.end(previousBudget);
+        }
+    }
+
+    /**
+     * @param channel if non-null, the file channel whose data <code>inputStream</code> supplies from its start.
+     *                JPEG files then have their Exif segments read from it in place.
+     */
+    @NotNull
+    private static Metadata readMetadataAndFileType(@NotNull final InputStream inputStream, final long streamLength, @Nullable final FileChannel channel) throws ImageProcessingException, IOException
     {
         BufferedInputStream bufferedInputStream = inputStream instanceof BufferedInputStream
             ? (BufferedInputStream)inputStream
             : new BufferedInputStream(inputStream);
 
-        FileType fileType = FileTypeDetector.detectFileType(bufferedInputStream);
+        FileType fileType = detectFileType(bufferedInputStream);
 
-        Metadata metadata = readMetadata(bufferedInputStream, streamLength, fileType);
+        Metadata metadata = readMetadataOfType(bufferedInputStream, streamLength, fileType, channel);
 
         metadata.addDirectory(new FileTypeDirectory(fileType));
 
         return metadata;
     }
 
+    /**
+     * Reads metadata from an {@link InputStream} of known length, recording the I/O performed to <code>ioStats</code>.
+     * <p>
+     * Only readers used on the calling thread are counted. See {@link IoStats}.
+     *
+     * @param inputStream a stream from which the file data may be read.  The stream must be positioned at the
+     *                    beginning of the file's data.
+     * @param streamLength the length of the stream, if known, otherwise -1.
+     * @param ioStats the statistics to which I/O is added.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException if the file type is unknown, or for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength, @NotNull final IoStats ioStats) throws ImageProcessingException, IOException
+    {
+        IoStats previous = IoStats.begin(ioStats);
+        try {
+            return readMetadata(inputStream, streamLength);
+        } finally {
+            IoStats.end(previous);
+        }
+    }
+
+    /**
+     * Reads metadata from an {@link InputStream}, reporting it to <code>handler</code> as a sequence of events
+     * rather than building a {@link Metadata} object.
+     * <p>
+     * Only Exif data in JPEG, TIFF and TIFF-based raw files is streamed, being reported as it is read without creating
+     * any {@link Directory} objects. Unlike {@link #readMetadata(InputStream, long)}, makernotes and other data
+     * embedded within Exif, such as IPTC, ICC, Photoshop and XMP, are not decoded and are reported as raw tag values.
+     * <p>
+     * All other metadata, including non-Exif JPEG segments and every other file type, is read into directories by the
+     * usual readers, which are then replayed as events. For that data this method allocates at least as much as
+     * {@link #readMetadata(InputStream, long)}. A {@link FileTypeDirectory} is reported last.
+     *
+     * @param inputStream a stream from which the file data may be read.  The stream must be positioned at the
+     *                    beginning of the file's data.
+     * @param streamLength the length of the stream, if known, otherwise -1.
+     * @param handler the handler to receive events.
+     * @throws ImageProcessingException if the file type is unknown, or for general processing errors.
+     */
+    public static void readMetadata(@NotNull final InputStream inputStream, final long streamLength, @NotNull final MetadataEventHandler handler) throws ImageProcessingException, IOException
+    {
+        BufferedInputStream bufferedInputStream = inputStream instanceof BufferedInputStream
+            ? (BufferedInputStream)inputStream
+            : new BufferedInputStream(inputStream);
+
+        FileType fileType = detectFileType(bufferedInputStream);
+
+        MetadataEventEmitter emitter = new MetadataEventEmitter(handler);
+
+        boolean monitored = ExtractionMonitor.getListener() != null;
+        FileType previousFileType = monitored ? ExtractionMonitor.enterFileType(fileType) : null;
+        try {
+            switch (fileType) {
+                case Jpeg:
+                    JpegMetadataReader.process(emitter, bufferedInputStream, null);
+                    break;
+                case Tiff:
+                case Arw:
+                case Cr2:
+                case Nef:
+                case Orf:
+                case Rw2:
+                    TiffMetadataReader.process(new RandomAccessStreamReader(bufferedInputStream, RandomAccessStreamReader.DEFAULT_CHUNK_LENGTH, streamLength), emitter);
+                    break;
+                default:
+                    emitter.replay(readMetadata(bufferedInputStream, streamLength, fileType));
+                    break;
+            }
+        } finally {
+            if (monitored)
+                ExtractionMonitor.exitFileType(previousFileType);
+        }
+
+        emitter.replay(new FileTypeDirectory(fileType), -1);
+    }
+
     /**
      * Reads metadata from an {@link InputStream} of known length and file type.
      *
@@ -140,10 +304,38 @@ public class ImageMetadataReader
      */
     @NotNull
     public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength, final FileType fileType) throws IOException, ImageProcessingException
+    {
+        return readMetadataOfType(inputStream, streamLength, fileType, null);
+    }
+
+    @NotNull
+    private static Metadata readMetadataOfType(@NotNull final InputStream inputStream, final long streamLength, final FileType fileType, @Nullable final FileChannel channel) throws IOException, ImageProcessingException
+    {
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        if (listener == null)
+            return readMetadataOfTypeUnmonitored(inputStream, streamLength, fileType, channel);
+
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        FileType previousFileType = ExtractionMonitor.enterFileType(fileType);
+        long start = System.nanoTime();
+        try {
+            return readMetadataOfTypeUnmonitored(countingInputStream, streamLength, fileType, channel);
+        } finally {
+            ExtractionMonitor.report(listener, ExtractionPhase.FILE, getReaderClass(fileType), countingInputStream.getCount(), start);
+            ExtractionMonitor.exitFileType(previousFileType);
+        }
+    }
+
+    @NotNull
+    private static Metadata readMetadataOfTypeUnmonitored(@NotNull final InputStream inputStream, final long streamLength, final FileType fileType, @Nullable final FileChannel channel) throws IOException, ImageProcessingException
     {
         switch (fileType) {
             case Jpeg:
-                return JpegMetadataReader.readMetadata(inputStream);
+                if (channel == null)
+                    return JpegMetadataReader.readMetadata(inputStream);
+                Metadata metadata = new Metadata();
+                JpegMetadataReader.process(metadata, inputStream, channel, null, null);
+                return metadata;
             case Tiff:
             case Arw:
             case Cr2:
@@ -188,8 +380,121 @@ public class ImageMetadataReader
         }
     }
 
+    @NotNull
+    private static FileType detectFileType(@NotNull final BufferedInputStream inputStream) throws IOException
+    {
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        if (listener == null)
+            return FileTypeDetector.detectFileType(inputStream);
+
+        long start = System.nanoTime();
+        FileType fileType = FileTypeDetector.detectFileType(inputStream);
+        ExtractionMonitor.report(listener, fileType, ExtractionPhase.DETECTION, FileTypeDetector.class, -1, start);
+        return fileType;
+    }
+
+    /**
+     * Gets the class to which {@link #readMetadata(InputStream, long, FileType)} delegates for a file type, for
+     * reporting to an {@link ExtractionListener}.
+     */
+    @NotNull
+    private static Class<?> getReaderClass(final FileType fileType)
+    {
+        switch (fileType) {
+            case Jpeg:
+                return JpegMetadataReader.class;
+            case Tiff:
+            case Arw:
+            case Cr2:
+            case Nef:
+            case Orf:
+            case Rw2:
+                return TiffMetadataReader.class;
+            case Psd:
+                return PsdMetadataReader.class;
+            case Png:
+                return PngMetadataReader.class;
+            case Bmp:
+                return BmpMetadataReader.class;
+            case Gif:
+                return GifMetadataReader.class;
+            case Ico:
+                return IcoMetadataReader.class;
+            case Pcx:
+                return PcxMetadataReader.class;
+            case WebP:
+                return WebpMetadataReader.class;
+            case Raf:
+                return RafMetadataReader.class;
+            case Avi:
+                return AviMetadataReader.class;
+            case Wav:
+                return WavMetadataReader.class;
+            case QuickTime:
+                return QuickTimeMetadataReader.class;
+            case Mp4:
+                return Mp4MetadataReader.class;
+            case Mp3:
+                return Mp3MetadataReader.class;
+            case Eps:
+                return EpsMetadataReader.class;
+            case Heif:
+                return HeifMetadataReader.class;
+            default:
+                return ImageMetadataReader.class;
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, including any read again after a reset, for reporting to an
+     * {@link ExtractionListener}. Only used while a listener is installed.
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        private long _count;
+
+        CountingInputStream(@NotNull InputStream inputStream)
+        {
+            super(inputStream);
+        }
+
+        long getCount()
+        {
+            return _count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b != -1)
+                _count++;
+            return b;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException
+        {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                _count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = in.skip(n);
+            if (skipped > 0)
+                _count += skipped;
+            return skipped;
+        }
+    }
+
     /**
      * Reads {@link Metadata} from a {@link File} object.
+     * <p>
+     * The Exif segments of JPEG files are read from the file in place, as by {@link JpegMetadataReader#readMetadata(File)}.
      *
      * @param file a file from which the image data may be read.
      * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
@@ -198,10 +503,33 @@ public class ImageMetadataReader
     @NotNull
     public static Metadata readMetadata(@NotNull final File file) throws ImageProcessingException, IOException
     {
-        InputStream inputStream = new FileInputStream(file);
+        FileInputStream inputStream = new FileInputStream(file);
+        Metadata metadata;
+        try {
+            metadata = readMetadataWithinDefaultLimits(inputStream, file.length(), inputStream.getChannel());
+        } finally {
+            inputStream.close();
+        }
+        new FileSystemMetadataReader().read(file, metadata);
+        return metadata;
+    }
+
+    /**
+     * Reads {@link Metadata} from a {@link File} object, within the specified resource limits.
+     *
+     * @param file a file from which the image data may be read.
+     * @param limits the limits on the resources that extraction may consume.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException for general processing errors.
+     * @see #readMetadata(InputStream, long, ExtractionLimits)
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final File file, @NotNull final ExtractionLimits limits) throws ImageProcessingException, IOException
+    {
+        FileInputStream inputStream = new FileInputStream(file);
         Metadata metadata;
         try {
-            metadata = readMetadata(inputStream, file.length());
+            metadata = readMetadataWithinBudget(inputStream, file.length(), new ExtractionBudget(limits), inputStream.getChannel());
         } finally {
             inputStream.close();
         }
@@ -209,6 +537,27 @@ public class ImageMetadataReader
         return metadata;
     }
 
+    /**
+     * Reads {@link Metadata} from a {@link File} object, recording the I/O performed to <code>ioStats</code>.
+     * <p>
+     * Only readers used on the calling thread are counted. See {@link IoStats}.
+     *
+     * @param file a file from which the image data may be read.
+     * @param ioStats the statistics to which I/O is added.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final File file, @NotNull final IoStats ioStats) throws ImageProcessingException, IOException
+    {
+        IoStats previous = IoStats.begin(ioStats);
+        try {
+            return readMetadata(file);
+        } finally {
+            IoStats.end(previous);
+        }
+    }
+
     private ImageMetadataReader() throws Exception
     {
         throw new Exception("Not intended for instantiation");
@@ -224,6 +573,10 @@ public class ImageMetadataReader
      * If <code>-markdown</code> is passed, then output will be in markdown format.
      * <p>
      * If <code>-hex</code> is passed, then the ID of each tag will be displayed in hexadecimal.
+     * <p>
+     * If <code>-json</code> is passed, then each file's metadata is written as a line of JSON, including raw tag
+     * values and descriptions. See {@link MetadataJsonWriter}. A file that cannot be read is written as an error
+     * record, and the process exits with a non-zero status once all files have been written.
      *
      * @param args the command line arguments
      */
@@ -232,15 +585,21 @@ public class ImageMetadataReader
         Collection<String> argList = new ArrayList<String>(Arrays.asList(args));
         boolean markdownFormat = argList.remove("-markdown");
         boolean showHex = argList.remove("-hex");
+        boolean jsonFormat = argList.remove("-json");
 
         if (argList.size() < 1) {
             String version = ImageMetadataReader.class.getPackage().getImplementationVersion();
             System.out.println("metadata-extractor version " + version);
             System.out.println();
-            System.out.println(String.format("Usage: java -jar metadata-extractor-%s.jar <filename> [<filename>] [-thumb] [-markdown] [-hex]", version == null ? "a.b.c" : version));
+            System.out.println(String.format("Usage: java -jar metadata-extractor-%s.jar <filename> [<filename>] [-thumb] [-markdown] [-hex] [-json]", version == null ? "a.b.c" : version));
             System.exit(1);
         }
 
+        if (jsonFormat) {
+            writeJson(argList);
+            return;
+        }
+
         for (String filePath : argList) {
             long startTime = System.nanoTime();
             File file = new File(filePath);
@@ -331,4 +690,33 @@ public class ImageMetadataReader
             }
         }
     }
+
+    private static void writeJson(@NotNull Collection<String> filePaths)
+    {
+        MetadataJsonWriter writer = new MetadataJsonWriter(System.out);
+        writer.setJsonLines(true);
+        writer.setIncludeDescriptions(true);
+        boolean anyFailed = false;
+        try {
+            for (String filePath : filePaths) {
+                // A file that cannot be read gets an error record, and does not prevent the rest being written
+                Metadata metadata;
+                try {
+                    metadata = ImageMetadataReader.readMetadata(new File(filePath));
+                } catch (Exception e) {
+                    System.err.println(filePath + ": " + e);
+                    writer.writeError(filePath, e.toString());
+                    anyFailed = true;
+                    continue;
+                }
+                writer.write(metadata, filePath);
+            }
+            writer.finish();
+        } catch (IOException e) {
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+        if (anyFailed)
+            System.exit(1);
+    }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads metadata from many sources concurrently, using a caller-supplied {@link Executor}.
+ * <p>
+ * At most <code>maxInFlight</code> sources are being read, or are waiting to be delivered, at any one time. Sources
+ * are pulled lazily from the input iterator as capacity becomes available, so arbitrarily long (or unbounded)
+ * input sequences may be processed in bounded memory.
+ * <p>
+ * Results are delivered to a {@link ResultHandler} on the thread that called {@link #read}, so handlers need not
+ * be thread-safe. When <code>preserveOrder</code> is set, results are delivered in the order of the input sequence,
+ * otherwise they are delivered in order of completion. Exceptions thrown while reading a source are captured in
+ * its {@link MetadataBatchResult} and do not interrupt the batch.
+ * <p>
+ * A batch may be stopped early via {@link #cancel()}, which may be called from any thread including from within
+ * the result handler. Once cancelled, no further sources are pulled from the input, outstanding reads are
+ * interrupted and no further results are delivered.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataBatchReader
+{
+    /**
+     * Receives the results of a batch as they become available.
+     */
+    public interface ResultHandler
+    {
+        void onResult(@NotNull MetadataBatchResult result);
+    }
+
+    @NotNull
+    private final Executor _executor;
+    private final int _maxInFlight;
+    private final boolean _preserveOrder;
+
+    private volatile boolean _isCancelled;
+
+    // Reads submitted by any call to read, so that cancel can stop them from another thread
+    @NotNull
+    private final Set<Future<MetadataBatchResult>> _outstanding =
+        Collections.newSetFromMap(new ConcurrentHashMap<Future<MetadataBatchResult>, Boolean>());
+
+    /**
+     * @param executor the executor on which sources are read.
+     * @param maxInFlight the maximum number of sources being read or awaiting delivery at any one time.
+     * @param preserveOrder whether results are delivered in input order (<code>true</code>) or completion order.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public MetadataBatchReader(@NotNull Executor executor, int maxInFlight, boolean preserveOrder)
+    {
+        if (executor == null)
+            throw new NullPointerException();
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("maxInFlight must be greater than zero");
+
+        _executor = executor;
+        _maxInFlight = maxInFlight;
+        _preserveOrder = preserveOrder;
+    }
+
+    /**
+     * Stops this batch reader. Outstanding reads are interrupted, and any call to {@link #read} that is in
+     * progress returns without delivering further results. Cancellation is permanent.
+     */
+    public void cancel()
+    {
+        _isCancelled = true;
+
+        // A cancelled future is still queued for completion, which wakes a read blocked waiting for a result
+        for (Future<MetadataBatchResult> future : _outstanding)
+            future.cancel(true);
+    }
+
+    public boolean isCancelled()
+    {
+        return _isCancelled;
+    }
+
+    /**
+     * Reads metadata from each of the given files, delivering results to <code>handler</code>.
+     *
+     * @see #read(Iterator, ResultHandler)
+     */
+    public void readFiles(@NotNull final Iterable<File> files, @NotNull ResultHandler handler) throws InterruptedException
+    {
+        final Iterator<File> iterator = files.iterator();
+        read(new Iterator<MetadataSource>()
+        {
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            public MetadataSource next()
+            {
+                return MetadataSource.forFile(iterator.next());
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        }, handler);
+    }
+
+    /**
+     * Reads metadata from each of the given sources, delivering results to <code>handler</code>. This method
+     * blocks until all sources have been processed and their results delivered, or until the reader is cancelled.
+     *
+     * @param sources the sources to read. This iterator is only accessed from the calling thread.
+     * @param handler receives results on the calling thread.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for results, in which case
+     *                              outstanding reads are cancelled.
+     */
+    public void read(@NotNull Iterator<? extends MetadataSource> sources, @NotNull ResultHandler handler) throws InterruptedException
+    {
+        CompletionService<MetadataBatchResult> completionService = new ExecutorCompletionService<MetadataBatchResult>(_executor);
+        Map<Long, Future<MetadataBatchResult>> outstanding = new HashMap<Long, Future<MetadataBatchResult>>();
+        Map<Long, MetadataBatchResult> completedOutOfOrder = new HashMap<Long, MetadataBatchResult>();
+
+        long submittedCount = 0;
+        long deliveredCount = 0;
+
+        try {
+            while (!_isCancelled) {
+                // Fill the window. In-flight reads and completed-but-undelivered results both count against it.
+                while (submittedCount - deliveredCount < _maxInFlight && sources.hasNext() && !_isCancelled) {
+                    final long index = submittedCount++;
+                    final MetadataSource source = sources.next();
+                    Future<MetadataBatchResult> future = completionService.submit(new Callable<MetadataBatchResult>()
+                    {
+                        public MetadataBatchResult call()
+                        {
+                            return readSource(index, source);
+                        }
+                    });
+                    outstanding.put(index, future);
+                    _outstanding.add(future);
+
+                    // Cancellation may have happened after the check above, but before this read was visible to it
+                    if (_isCancelled)
+                        future.cancel(true);
+                }
+
+                if (outstanding.isEmpty())
+                    break;
+
+                MetadataBatchResult result;
+                try {
+                    result = completionService.take().get();
+                } catch (CancellationException e) {
+                    continue;
+                } catch (ExecutionException e) {
+                    // readSource captures all exceptions, so this is not expected
+                    throw new RuntimeException(e.getCause());
+                }
+
+                _outstanding.remove(outstanding.remove(result.getIndex()));
+
+                if (!_preserveOrder) {
+                    deliveredCount++;
+                    deliver(result, handler);
+                    continue;
+                }
+
+                completedOutOfOrder.put(result.getIndex(), result);
+                MetadataBatchResult next;
+                while (!_isCancelled && (next = completedOutOfOrder.remove(deliveredCount)) != null) {
+                    deliveredCount++;
+                    deliver(next, handler);
+                }
+            }
+        } finally {
+            for (Future<MetadataBatchResult> future : outstanding.values()) {
+                future.cancel(true);
+                _outstanding.remove(future);
+            }
+        }
+    }
+
+    private void deliver(@NotNull MetadataBatchResult result, @NotNull ResultHandler handler)
+    {
+        if (!_isCancelled)
+            handler.onResult(result);
+    }
+
+    /**
+     * Reads a single source, capturing any exception in the returned result.
+     */
+    @NotNull
+    static MetadataBatchResult readSource(long index, @NotNull MetadataSource source)
+    {
+        long start = System.nanoTime();
+        Metadata metadata = null;
+        Throwable exception = null;
+        try {
+            metadata = source.readMetadata();
+        } catch (Throwable t) {
+            exception = t;
+        }
+        return new MetadataBatchResult(index, source, metadata, exception, System.nanoTime() - start);
+    }
+
+    /**
+     * Convenience method that reads the given files and returns all results in input order.
+     */
+    @NotNull
+    public static List<MetadataBatchResult> readAll(@NotNull Executor executor, int maxInFlight, @NotNull Iterable<File> files) throws InterruptedException
+    {
+        final List<MetadataBatchResult> results = new ArrayList<MetadataBatchResult>();
+        new MetadataBatchReader(executor, maxInFlight, true).readFiles(files, new ResultHandler()
+        {
+            public void onResult(@NotNull MetadataBatchResult result)
+            {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+}
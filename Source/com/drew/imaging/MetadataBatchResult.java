@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+
+/**
+ * The outcome of reading a single {@link MetadataSource} as part of a batch. Exactly one of
+ * {@link #getMetadata()} and {@link #getException()} is non-null.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class MetadataBatchResult
+{
+    private final long _index;
+    @NotNull
+    private final MetadataSource _source;
+    @Nullable
+    private final Metadata _metadata;
+    @Nullable
+    private final Throwable _exception;
+    private final long _elapsedNanos;
+
+    public MetadataBatchResult(long index, @NotNull MetadataSource source, @Nullable Metadata metadata, @Nullable Throwable exception, long elapsedNanos)
+    {
+        _index = index;
+        _source = source;
+        _metadata = metadata;
+        _exception = exception;
+        _elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the zero-based position of the source within the batch's input sequence.
+     */
+    public long getIndex()
+    {
+        return _index;
+    }
+
+    @NotNull
+    public MetadataSource getSource()
+    {
+        return _source;
+    }
+
+    /**
+     * Gets the extracted metadata, or <code>null</code> if extraction failed with an exception.
+     */
+    @Nullable
+    public Metadata getMetadata()
+    {
+        return _metadata;
+    }
+
+    /**
+     * Gets the exception raised during extraction, or <code>null</code> if extraction succeeded.
+     */
+    @Nullable
+    public Throwable getException()
+    {
+        return _exception;
+    }
+
+    public boolean isSuccess()
+    {
+        return _exception == null;
+    }
+
+    /**
+     * Gets the time spent extracting metadata from the source, in nanoseconds.
+     */
+    public long getElapsedNanos()
+    {
+        return _elapsedNanos;
+    }
+
+    @Override
+    @NotNull
+    public String toString()
+    {
+        return String.format("%s: %s", _source.getName(), _exception == null ? _metadata : _exception.toString());
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.StringValue;
+import com.drew.metadata.Tag;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the {@link Metadata} read from files, so that files which are read repeatedly are only parsed once.
+ * <p>
+ * By default, entries are keyed by a file's canonical path, length and last-modified time, so that a modified file
+ * is re-read. Alternatively entries may be keyed by a digest of the file's content, so that identical files at
+ * different paths share an entry. Note that computing a digest requires reading the whole file, and that the
+ * file system directory of a shared entry describes whichever file was read first.
+ * <p>
+ * The cache is bounded both by entry count and by an estimate of retained heap, with least-recently-used entries
+ * evicted first. It is split into independently locked stripes so that concurrent readers rarely contend, with
+ * the bounds divided evenly between stripes.
+ * <p>
+ * An optional {@link BackingStore} is consulted on a miss, and receives each newly parsed result, allowing
+ * results to persist across restarts. Results loaded from the store are counted by {@link #getStoreHitCount()}
+ * rather than as hits. A failure to store a result does not fail the read, and is counted by
+ * {@link #getStoreFailureCount()}.
+ * <p>
+ * Cached {@link Metadata} instances are shared between callers and must not be modified.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataCache
+{
+    /**
+     * A secondary store for cached metadata, such as files on disk.
+     */
+    public interface BackingStore
+    {
+        /**
+         * Gets the metadata previously stored under <code>key</code>, or <code>null</code> if none exists.
+         */
+        @Nullable
+        Metadata load(@NotNull String key) throws IOException;
+
+        void store(@NotNull String key, @NotNull Metadata metadata) throws IOException;
+    }
+
+    private static final int DEFAULT_STRIPE_COUNT = 16;
+
+    @NotNull
+    private final Stripe[] _stripes;
+    private final boolean _isKeyedByContent;
+    @Nullable
+    private final BackingStore _backingStore;
+
+    @NotNull
+    private final AtomicLong _hitCount = new AtomicLong();
+    @NotNull
+    private final AtomicLong _storeHitCount = new AtomicLong();
+    @NotNull
+    private final AtomicLong _missCount = new AtomicLong();
+    @NotNull
+    private final AtomicLong _storeFailureCount = new AtomicLong();
+
+    /**
+     * Creates a cache keyed by file identity, with no backing store.
+     *
+     * @param maxEntries the maximum number of entries to retain.
+     * @param maxBytes the maximum estimated heap, in bytes, to retain.
+     */
+    public MetadataCache(int maxEntries, long maxBytes)
+    {
+        this(maxEntries, maxBytes, DEFAULT_STRIPE_COUNT, false, null);
+    }
+
+    /**
+     * @param maxEntries the maximum number of entries to retain.
+     * @param maxBytes the maximum estimated heap, in bytes, to retain.
+     * @param stripeCount the number of independently locked partitions.
+     * @param keyByContent whether to key entries by a digest of file content, rather than by path, length and
+     *                     modification time.
+     * @param backingStore an optional secondary store.
+     */
+    public MetadataCache(int maxEntries, long maxBytes, int stripeCount, boolean keyByContent, @Nullable BackingStore backingStore)
+    {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be greater than zero");
+        if (stripeCount <= 0)
+            throw new IllegalArgumentException("stripeCount must be greater than zero");
+
+        // Each stripe must be allowed at least one entry and one byte, so that the stripes' bounds don't sum to
+        // more than the cache's
+        stripeCount = (int)Math.min(stripeCount, Math.min(maxEntries, maxBytes));
+
+        _stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            _stripes[i] = new Stripe(maxEntries / stripeCount, maxBytes / stripeCount);
+
+        _isKeyedByContent = keyByContent;
+        _backingStore = backingStore;
+    }
+
+    /**
+     * Reads metadata from <code>file</code> as per {@link ImageMetadataReader#readMetadata(File)}, returning a
+     * cached result if one exists.
+     */
+    @NotNull
+    public Metadata readMetadata(@NotNull File file) throws ImageProcessingException, IOException
+    {
+        String key = getKey(file);
+        Stripe stripe = getStripe(key);
+
+        Metadata metadata = stripe.get(key);
+        if (metadata != null) {
+            _hitCount.incrementAndGet();
+            return metadata;
+        }
+
+        if (_backingStore != null) {
+            metadata = _backingStore.load(key);
+            if (metadata != null) {
+                _storeHitCount.incrementAndGet();
+                stripe.put(key, metadata);
+                return metadata;
+            }
+        }
+
+        _missCount.incrementAndGet();
+
+        // Parsing happens outside of any lock. Concurrent misses for the same file may both parse it, which is
+        // preferable to blocking unrelated files in the same stripe.
+        metadata = ImageMetadataReader.readMetadata(file);
+
+        stripe.put(key, metadata);
+        if (_backingStore != null) {
+            try {
+                _backingStore.store(key, metadata);
+            } catch (IOException e) {
+                // The result is valid and cached in memory, so only persisting it has failed
+                _storeFailureCount.incrementAndGet();
+            }
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Removes any cached entry for <code>file</code> from memory. The backing store is unaffected.
+     */
+    public void invalidate(@NotNull File file) throws IOException
+    {
+        String key = getKey(file);
+        getStripe(key).remove(key);
+    }
+
+    /**
+     * Removes all entries from memory. The backing store is unaffected.
+     */
+    public void clear()
+    {
+        for (Stripe stripe : _stripes)
+            stripe.clear();
+    }
+
+    /**
+     * Gets the number of reads served from memory.
+     */
+    public long getHitCount()
+    {
+        return _hitCount.get();
+    }
+
+    /**
+     * Gets the number of reads that missed in memory and were served by the backing store.
+     */
+    public long getStoreHitCount()
+    {
+        return _storeHitCount.get();
+    }
+
+    /**
+     * Gets the number of reads that required the file to be parsed.
+     */
+    public long getMissCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+     * Gets the number of parsed results that the backing store failed to store.
+     */
+    public long getStoreFailureCount()
+    {
+        return _storeFailureCount.get();
+    }
+
+    /**
+     * Gets the number of entries currently held in memory.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Stripe stripe : _stripes)
+            size += stripe.size();
+        return size;
+    }
+
+    /**
+     * Gets the estimated heap, in bytes, retained by entries currently held in memory.
+     */
+    public long getEstimatedBytes()
+    {
+        long bytes = 0;
+        for (Stripe stripe : _stripes)
+            bytes += stripe.getEstimatedBytes();
+        return bytes;
+    }
+
+    @NotNull
+    private Stripe getStripe(@NotNull String key)
+    {
+        int hash = key.hashCode();
+        // Spread the bits, as String hash codes of similar paths differ mostly in their low bits
+        hash ^= (hash >>> 16);
+        return _stripes[(hash & 0x7FFFFFFF) % _stripes.length];
+    }
+
+    @NotNull
+    private String getKey(@NotNull File file) throws IOException
+    {
+        if (_isKeyedByContent)
+            return "sha1:" + digest(file);
+        return file.getCanonicalPath() + '|' + file.length() + '|' + file.lastModified();
+    }
+
+    @NotNull
+    private static String digest(@NotNull File file) throws IOException
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 digest is unavailable");
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        InputStream stream = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+        } finally {
+            stream.close();
+        }
+
+        StringBuilder hex = new StringBuilder(40);
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * Estimates the heap retained by a {@link Metadata} object. This is approximate, and intended only for
+     * bounding the cache.
+     */
+    static long estimateSize(@NotNull Metadata metadata)
+    {
+        long size = 64;
+        for (Directory directory : metadata.getDirectories()) {
+            size += 128;
+            for (Tag tag : directory.getTags()) {
+                size += 64 + estimateSize(directory.getObject(tag.getTagType()));
+            }
+            for (String error : directory.getErrors())
+                size += 48 + error.length() * 2;
+        }
+        return size;
+    }
+
+    private static long estimateSize(@Nullable Object value)
+    {
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return 48 + ((String)value).length() * 2;
+        if (value instanceof StringValue)
+            return 48 + ((StringValue)value).getBytes().length;
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Class<?> componentType = value.getClass().getComponentType();
+            if (componentType == byte.class || componentType == boolean.class)
+                return 16 + length;
+            if (componentType == short.class || componentType == char.class)
+                return 16 + length * 2L;
+            if (componentType == int.class || componentType == float.class)
+                return 16 + length * 4L;
+            if (componentType == long.class || componentType == double.class)
+                return 16 + length * 8L;
+            long size = 16 + length * 4L;
+            for (int i = 0; i < length; i++)
+                size += estimateSize(Array.get(value, i));
+            return size;
+        }
+        return 24;
+    }
+
+    /**
+     * A partition of the cache with its own lock and LRU ordering.
+     */
+    private static class Stripe
+    {
+        private final int _maxEntries;
+        private final long _maxBytes;
+
+        // Access-ordered, so that iteration begins with the least recently used entry
+        private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        private long _bytes;
+
+        Stripe(int maxEntries, long maxBytes)
+        {
+            _maxEntries = maxEntries;
+            _maxBytes = maxBytes;
+        }
+
+        @Nullable
+        synchronized Metadata get(@NotNull String key)
+        {
+            Entry entry = _entries.get(key);
+            return entry == null ? null : entry.metadata;
+        }
+
+        void put(@NotNull String key, @NotNull Metadata metadata)
+        {
+            // Estimate before taking the lock, as it walks every tag
+            long size = estimateSize(metadata);
+
+            synchronized (this) {
+                if (size > _maxBytes)
+                    return;
+
+                Entry previous = _entries.put(key, new Entry(metadata, size));
+                if (previous != null)
+                    _bytes -= previous.size;
+                _bytes += size;
+
+                Iterator<Map.Entry<String, Entry>> iterator = _entries.entrySet().iterator();
+                while ((_entries.size() > _maxEntries || _bytes > _maxBytes) && iterator.hasNext()) {
+                    Entry eldest = iterator.next().getValue();
+                    iterator.remove();
+                    _bytes -= eldest.size;
+                }
+            }
+        }
+
+        synchronized void remove(@NotNull String key)
+        {
+            Entry entry = _entries.remove(key);
+            if (entry != null)
+                _bytes -= entry.size;
+        }
+
+        synchronized void clear()
+        {
+            _entries.clear();
+            _bytes = 0;
+        }
+
+        synchronized int size()
+        {
+            return _entries.size();
+        }
+
+        synchronized long getEstimatedBytes()
+        {
+            return _bytes;
+        }
+    }
+
+    private static class Entry
+    {
+        @NotNull
+        final Metadata metadata;
+        final long size;
+
+        Entry(@NotNull Metadata metadata, long size)
+        {
+            this.metadata = metadata;
+            this.size = size;
+        }
+    }
+}
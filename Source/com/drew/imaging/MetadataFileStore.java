@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A {@link MetadataCache.BackingStore} that persists each entry as a file, encoded via {@link MetadataCodec}.
+ * <p>
+ * Files are named by a digest of their key, and spread across subdirectories to keep directory sizes manageable.
+ * Entries are written to a temporary file and then renamed, so a concurrent or interrupted write never leaves a
+ * partial entry in place. Entries that cannot be decoded, such as those written by an incompatible version, are
+ * treated as absent.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataFileStore implements MetadataCache.BackingStore
+{
+    private static final String EXTENSION = ".mdx";
+
+    @NotNull
+    private final File _directory;
+
+    /**
+     * @param directory the directory in which to store entries. It is created if it does not exist.
+     */
+    public MetadataFileStore(@NotNull File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create directory " + directory);
+        _directory = directory;
+    }
+
+    @Nullable
+    public Metadata load(@NotNull String key) throws IOException
+    {
+        InputStream stream;
+        try {
+            stream = new BufferedInputStream(new FileInputStream(getFile(key)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        try {
+            return MetadataCodec.read(stream);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            stream.close();
+        }
+    }
+
+    public void store(@NotNull String key, @NotNull Metadata metadata) throws IOException
+    {
+        File file = getFile(key);
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+            throw new IOException("Unable to create directory " + parent);
+
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            OutputStream stream = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                MetadataCodec.write(metadata, stream);
+            } finally {
+                stream.close();
+            }
+
+            // On some platforms renaming does not replace an existing file
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+                throw new IOException("Unable to write " + file);
+        } finally {
+            if (temp.exists() && !temp.delete())
+                temp.deleteOnExit();
+        }
+    }
+
+    @NotNull
+    private File getFile(@NotNull String key) throws IOException
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 digest is unavailable");
+        }
+
+        StringBuilder hex = new StringBuilder(40);
+        for (byte b : digest.digest(key.getBytes("UTF-8")))
+            hex.append(String.format("%02x", b));
+
+        return new File(new File(_directory, hex.substring(0, 2)), hex + EXTENSION);
+    }
+}
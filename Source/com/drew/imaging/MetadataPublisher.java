@@ -0,0 +1,270 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the metadata of a sequence of sources to a single subscriber, reading sources only as the subscriber
+ * signals demand.
+ * <p>
+ * The {@link Subscriber} and {@link Subscription} interfaces follow the Reactive Streams contract, method for method,
+ * so bridging to <code>java.util.concurrent.Flow</code>, Reactor or RxJava takes only a thin adapter. Sources are pulled
+ * from the input iterator lazily: at most <code>maxConcurrency</code> are read at once, and never more than have been
+ * requested and not yet delivered, so memory use is bounded however large the input.
+ * <p>
+ * Results are delivered in order of completion; use {@link MetadataBatchResult#getIndex()} to recover the input
+ * position. Extraction failures are delivered as unsuccessful results rather than via
+ * {@link Subscriber#onError(Throwable)}, which is reserved for failures of the input sequence itself.
+ * <p>
+ * A publisher may only be subscribed to once.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataPublisher
+{
+    /**
+     * Receives results from a {@link MetadataPublisher}. Calls to a subscriber are never concurrent.
+     */
+    public interface Subscriber
+    {
+        void onSubscribe(@NotNull Subscription subscription);
+
+        void onNext(@NotNull MetadataBatchResult result);
+
+        void onError(@NotNull Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Allows a {@link Subscriber} to signal demand, or stop the flow of results.
+     */
+    public interface Subscription
+    {
+        /**
+         * Requests that up to <code>n</code> further results be delivered. Must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stops delivery. Reads already in progress run to completion but their results are discarded.
+         */
+        void cancel();
+    }
+
+    @NotNull
+    private final Iterator<? extends MetadataSource> _sources;
+    @NotNull
+    private final Executor _executor;
+    private final int _maxConcurrency;
+    @NotNull
+    private final AtomicBoolean _isSubscribed = new AtomicBoolean();
+
+    /**
+     * @param sources the sources to read. This iterator is only accessed by one thread at a time.
+     * @param executor the executor on which sources are read.
+     * @param maxConcurrency the maximum number of sources read at once.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public MetadataPublisher(@NotNull Iterator<? extends MetadataSource> sources, @NotNull Executor executor, int maxConcurrency)
+    {
+        if (sources == null || executor == null)
+            throw new NullPointerException();
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+
+        _sources = sources;
+        _executor = executor;
+        _maxConcurrency = maxConcurrency;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    public void subscribe(@NotNull Subscriber subscriber)
+    {
+        if (subscriber == null)
+            throw new NullPointerException();
+
+        if (!_isSubscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription()
+            {
+                public void request(long n) {}
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("MetadataPublisher only supports a single subscriber"));
+            return;
+        }
+
+        PublisherSubscription subscription = new PublisherSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private class PublisherSubscription implements Subscription
+    {
+        @NotNull
+        private final Subscriber _subscriber;
+        @NotNull
+        private final AtomicLong _requested = new AtomicLong();
+        @NotNull
+        private final AtomicInteger _inFlight = new AtomicInteger();
+        @NotNull
+        private final AtomicInteger _workInProgress = new AtomicInteger();
+        @NotNull
+        private final Queue<MetadataBatchResult> _completed = new ConcurrentLinkedQueue<MetadataBatchResult>();
+
+        private volatile boolean _isCancelled;
+        private volatile Throwable _pendingError;
+
+        // Only accessed from within drain, which is serialised
+        private long _emitted;
+        private long _sourceIndex;
+        private boolean _isTerminated;
+        private boolean _isExhausted;
+
+        PublisherSubscription(@NotNull Subscriber subscriber)
+        {
+            _subscriber = subscriber;
+        }
+
+        public void request(long n)
+        {
+            if (n <= 0) {
+                _pendingError = new IllegalArgumentException("Requested count must be positive, but was " + n);
+                drain();
+                return;
+            }
+
+            while (true) {
+                long current = _requested.get();
+                long updated = current + n;
+                if (updated < 0)
+                    updated = Long.MAX_VALUE;
+                if (_requested.compareAndSet(current, updated))
+                    break;
+            }
+
+            drain();
+        }
+
+        public void cancel()
+        {
+            _isCancelled = true;
+        }
+
+        /**
+         * Delivers available results, starts reads for unmet demand and signals completion. Concurrent and
+         * re-entrant calls are coalesced so that only one thread runs this loop at a time.
+         */
+        void drain()
+        {
+            if (_workInProgress.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            while (true) {
+                if (!_isTerminated && !_isCancelled)
+                    drainOnce();
+
+                missed = _workInProgress.addAndGet(-missed);
+                if (missed == 0)
+                    break;
+            }
+        }
+
+        private void drainOnce()
+        {
+            Throwable error = _pendingError;
+            if (error != null) {
+                terminate();
+                _subscriber.onError(error);
+                return;
+            }
+
+            MetadataBatchResult result;
+            while (_emitted < _requested.get() && !_isCancelled && (result = _completed.poll()) != null) {
+                _emitted++;
+                _subscriber.onNext(result);
+            }
+
+            if (_isCancelled)
+                return;
+
+            try {
+                // Start reads for outstanding demand that isn't already covered by in-flight or completed reads,
+                // only consulting the sources once there is demand to spend on them
+                while (!_isExhausted
+                        && _inFlight.get() < _maxConcurrency
+                        && _emitted + _inFlight.get() + _completed.size() < _requested.get()) {
+                    if (!_sources.hasNext()) {
+                        _isExhausted = true;
+                        break;
+                    }
+                    start(_sourceIndex++, _sources.next());
+                }
+
+                // With every read delivered and no demand left, the sources must still be checked so that the
+                // subscriber learns of completion without having to request more
+                if (!_isExhausted && _inFlight.get() == 0 && _completed.isEmpty() && !_sources.hasNext())
+                    _isExhausted = true;
+            } catch (Throwable t) {
+                terminate();
+                _subscriber.onError(t);
+                return;
+            }
+
+            if (_isExhausted && _inFlight.get() == 0 && _completed.isEmpty()) {
+                terminate();
+                _subscriber.onComplete();
+            }
+        }
+
+        private void start(final long index, @NotNull final MetadataSource source)
+        {
+            _inFlight.incrementAndGet();
+            _executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    if (!_isCancelled)
+                        _completed.offer(MetadataBatchReader.readSource(index, source));
+                    _inFlight.decrementAndGet();
+                    drain();
+                }
+            });
+        }
+
+        private void terminate()
+        {
+            _isTerminated = true;
+            _isCancelled = true;
+            _completed.clear();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+/**
+ * A unit of input from which a {@link Metadata} object may be read, such as a file on disk or
+ * a stream obtained from some other store.
+ * <p>
+ * Sources are used by the batch and pipelined readers in this package, which may invoke {@link #readMetadata()}
+ * on a thread other than the one that created the source.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public abstract class MetadataSource
+{
+    /**
+     * Gets a name for this source, for use in logging and error reporting.
+     */
+    @NotNull
+    public abstract String getName();
+
+    /**
+     * Gets the length of this source's data in bytes, or -1 if unknown.
+     */
+    public abstract long getLength();
+
+    /**
+     * Reads all available metadata from this source.
+     *
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException if the file type is unknown, or for general processing errors.
+     */
+    @NotNull
+    public abstract Metadata readMetadata() throws ImageProcessingException, IOException;
+
+    @Override
+    @NotNull
+    public String toString()
+    {
+        return getName();
+    }
+
+    /**
+     * Creates a source that reads the given file via {@link ImageMetadataReader#readMetadata(File)}.
+     */
+    @NotNull
+    public static MetadataSource forFile(@NotNull final File file)
+    {
+        return new MetadataSource()
+        {
+            @NotNull
+            @Override
+            public String getName()
+            {
+                return file.getPath();
+            }
+
+            @Override
+            public long getLength()
+            {
+                return file.length();
+            }
+
+            @NotNull
+            @Override
+            public Metadata readMetadata() throws ImageProcessingException, IOException
+            {
+                return ImageMetadataReader.readMetadata(file);
+            }
+        };
+    }
+
+    /**
+     * Creates a source that obtains a fresh stream from <code>opener</code> when read. The stream is closed
+     * once reading completes.
+     *
+     * @param name a name for the source, for use in logging and error reporting.
+     * @param length the length of the stream, if known, otherwise -1.
+     * @param opener a callable that opens a stream positioned at the beginning of the file's data.
+     */
+    @NotNull
+    public static MetadataSource forStream(@NotNull final String name, final long length, @NotNull final Callable<? extends InputStream> opener)
+    {
+        return new MetadataSource()
+        {
+            @NotNull
+            @Override
+            public String getName()
+            {
+                return name;
+            }
+
+            @Override
+            public long getLength()
+            {
+                return length;
+            }
+
+            @NotNull
+            @Override
+            public Metadata readMetadata() throws ImageProcessingException, IOException
+            {
+                InputStream inputStream;
+                try {
+                    inputStream = opener.call();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new ImageProcessingException("Unable to open stream for " + name, e);
+                }
+                try {
+                    return ImageMetadataReader.readMetadata(inputStream, length);
+                } finally {
+                    inputStream.close();
+                }
+            }
+        };
+    }
+}
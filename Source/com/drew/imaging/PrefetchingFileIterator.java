@@ -0,0 +1,193 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Wraps a sequence of files, reading the leading bytes of upcoming files in the background so that disk access
+ * overlaps with the parsing of the current file.
+ * <p>
+ * Each {@link MetadataSource} returned by this iterator parses its prefetched header from memory, and only touches
+ * the file again if the parser needs data beyond the header. Since most formats keep their metadata near the start
+ * of the file, this generally means that parsing never waits on I/O when the prefetch keeps ahead.
+ * <p>
+ * At most <code>prefetchCount</code> headers of <code>headerLength</code> bytes are held at once, beyond the one
+ * returned by the most recent call to {@link #next()}. Prefetch reads are issued on <code>ioExecutor</code>, which
+ * may be small as its threads spend most of their time blocked on I/O.
+ * <p>
+ * This class is not thread-safe, though the sources it returns may be read on any thread. Call {@link #close()} if
+ * the iteration is abandoned early, so that pending prefetches are cancelled.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class PrefetchingFileIterator implements Iterator<MetadataSource>, Closeable
+{
+    public static final int DEFAULT_HEADER_LENGTH = 128 * 1024;
+
+    @NotNull
+    private final Iterator<File> _files;
+    @NotNull
+    private final Executor _ioExecutor;
+    private final int _prefetchCount;
+    private final int _headerLength;
+
+    @NotNull
+    private final LinkedList<PrefetchedFileSource> _queue = new LinkedList<PrefetchedFileSource>();
+
+    public PrefetchingFileIterator(@NotNull Iterator<File> files, @NotNull Executor ioExecutor, int prefetchCount)
+    {
+        this(files, ioExecutor, prefetchCount, DEFAULT_HEADER_LENGTH);
+    }
+
+    /**
+     * @param files the files to read.
+     * @param ioExecutor the executor on which file headers are read.
+     * @param prefetchCount the number of files to read ahead of the current one.
+     * @param headerLength the number of bytes to read from the start of each file.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public PrefetchingFileIterator(@NotNull Iterator<File> files, @NotNull Executor ioExecutor, int prefetchCount, int headerLength)
+    {
+        if (files == null || ioExecutor == null)
+            throw new NullPointerException();
+        if (prefetchCount < 0)
+            throw new IllegalArgumentException("prefetchCount must be zero or greater");
+        if (headerLength <= 0)
+            throw new IllegalArgumentException("headerLength must be greater than zero");
+
+        _files = files;
+        _ioExecutor = ioExecutor;
+        _prefetchCount = prefetchCount;
+        _headerLength = headerLength;
+    }
+
+    public boolean hasNext()
+    {
+        fill();
+        return !_queue.isEmpty();
+    }
+
+    @NotNull
+    public MetadataSource next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        PrefetchedFileSource source = _queue.removeFirst();
+        // Keep the window full while the caller parses this file
+        fill();
+        return source;
+    }
+
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancels any outstanding prefetches. Sources already returned from {@link #next()} remain readable.
+     */
+    public void close()
+    {
+        for (PrefetchedFileSource source : _queue)
+            source._header.cancel(true);
+        _queue.clear();
+    }
+
+    private void fill()
+    {
+        // The head of the queue is the next source to be returned, so allow one more than the prefetch count
+        while (_queue.size() <= _prefetchCount && _files.hasNext()) {
+            PrefetchedFileSource source = new PrefetchedFileSource(_files.next(), _headerLength);
+            _queue.addLast(source);
+            _ioExecutor.execute(source._header);
+        }
+    }
+
+    private static class PrefetchedFileSource extends MetadataSource
+    {
+        @NotNull
+        private final File _file;
+        @NotNull
+        private final FutureTask<FileHeader> _header;
+
+        PrefetchedFileSource(@NotNull final File file, final int headerLength)
+        {
+            _file = file;
+            _header = new FutureTask<FileHeader>(new Callable<FileHeader>()
+            {
+                public FileHeader call() throws IOException
+                {
+                    return FileHeader.read(file, new byte[(int)Math.min(headerLength, file.length())]);
+                }
+            });
+        }
+
+        @NotNull
+        @Override
+        public String getName()
+        {
+            return _file.getPath();
+        }
+
+        @Override
+        public long getLength()
+        {
+            return _file.length();
+        }
+
+        @NotNull
+        @Override
+        public Metadata readMetadata() throws ImageProcessingException, IOException
+        {
+            // If the prefetch hasn't started yet (for example if the I/O pool is saturated), read the header here
+            _header.run();
+
+            FileHeader header;
+            try {
+                header = _header.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while awaiting prefetched header of " + _file);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                    throw (IOException)cause;
+                throw new ImageProcessingException(cause);
+            }
+
+            return header.readMetadata();
+        }
+    }
+}
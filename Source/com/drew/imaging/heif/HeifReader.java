@@ -20,8 +20,14 @@
  */
 package com.drew.imaging.heif;
 
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.StreamReader;
+import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.heif.HeifBoxTypes;
 import com.drew.metadata.heif.HeifContainerTypes;
 import com.drew.metadata.heif.HeifDirectory;
@@ -55,7 +61,27 @@ public class HeifReader
             StreamReader reader = new StreamReader(inputStream);
             reader.setMotorolaByteOrder(true);
 
-            processTopLevelBoxes(inputStream, reader, -1, handler, markSupported);
+            ExtractionListener listener = ExtractionMonitor.getListener();
+            if (listener == null) {
+                processTopLevelBoxes(inputStream, reader, -1, handler, markSupported);
+                return;
+            }
+
+            // The byte count is not reported, as the stream may be reset and read again with another handler
+            long start = System.nanoTime();
+            try {
+                processTopLevelBoxes(inputStream, reader, -1, handler, markSupported);
+            } finally {
+                ExtractionMonitor.report(listener, ExtractionPhase.CONTAINER, handler.getClass(), -1, start);
+            }
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before extraction was stopped
+            HeifDirectory heifDirectory = handler.metadata.getFirstDirectoryOfType(HeifDirectory.class);
+            if (heifDirectory != null) {
+                heifDirectory.addError(e.getMessage());
+            } else {
+                handler.metadata.addDirectory(new ErrorDirectory(e.getMessage()));
+            }
         } catch (IOException e) {
             // Any errors should have been added to the directory
         }
@@ -71,6 +97,7 @@ public class HeifReader
         boolean needToReset = false;
         try {
             while (atomEnd == -1 || reader.getPosition() < atomEnd) {
+                ExtractionBudget.checkpoint();
 
                 Box box = new Box(reader);
 
@@ -86,6 +113,8 @@ public class HeifReader
 
                 handler = processBox(reader, box, handler);
             }
+        } catch (ExtractionLimitException e) {
+            throw e;
         } catch (IOException e) {
             // Currently, reader relies on IOException to end
         }
@@ -102,15 +131,18 @@ public class HeifReader
         }
     }
 
-    private HeifHandler<?> processBoxes(SequentialReader reader, long atomEnd, HeifHandler<?> handler)
+    private HeifHandler<?> processBoxes(SequentialReader reader, long atomEnd, HeifHandler<?> handler) throws ExtractionLimitException
     {
         try {
             while (atomEnd == -1 || reader.getPosition() < atomEnd) {
+                ExtractionBudget.checkpoint();
 
                 Box box = new Box(reader);
 
                 handler = processBox(reader, box, handler);
             }
+        } catch (ExtractionLimitException e) {
+            throw e;
         } catch (IOException e) {
             // Currently, reader relies on IOException to end
         }
@@ -20,10 +20,22 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.imaging.FileType;
+import com.drew.lang.ByteArrayReader;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
+import com.drew.lang.IoStats;
+import com.drew.lang.RandomAccessChannelReader;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataEventEmitter;
 import com.drew.metadata.adobe.AdobeJpegReader;
 import com.drew.metadata.exif.ExifReader;
 import com.drew.metadata.file.FileSystemMetadataReader;
@@ -35,17 +47,30 @@ import com.drew.metadata.jpeg.JpegCommentReader;
 import com.drew.metadata.jpeg.JpegDhtReader;
 import com.drew.metadata.jpeg.JpegDnlReader;
 import com.drew.metadata.jpeg.JpegReader;
+import com.drew.metadata.mpf.MpfImageDirectory;
+import com.drew.metadata.mpf.MpfReader;
 import com.drew.metadata.photoshop.DuckyReader;
 import com.drew.metadata.photoshop.PhotoshopReader;
 import com.drew.metadata.xmp.XmpReader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Obtains all available metadata from JPEG formatted files.
@@ -54,6 +79,9 @@ import java.util.Set;
  */
 public class JpegMetadataReader
 {
+    /**
+     * The default set of segment readers. These instances are stateless and are shared by all callers, on any thread.
+     */
     public static final Iterable<JpegSegmentMetadataReader> ALL_READERS = Arrays.asList(
             new JpegReader(),
             new JpegCommentReader(),
@@ -67,9 +95,15 @@ public class JpegMetadataReader
             new IptcReader(),
             new AdobeJpegReader(),
             new JpegDhtReader(),
-            new JpegDnlReader()
+            new JpegDnlReader(),
+            new MpfReader()
     );
 
+    /**
+     * The start of the APP1 segments that hold Exif data, which are read from the file in place when possible.
+     */
+    private static final byte[] EXIF_PREAMBLE_BYTES = {'E', 'x', 'i', 'f', 0, 0};
+
     @NotNull
     public static Metadata readMetadata(@NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
     {
@@ -78,19 +112,38 @@ public class JpegMetadataReader
         return metadata;
     }
 
+    /**
+     * Reads metadata from a JPEG stream, decoding independent application segments concurrently.
+     *
+     * @see #processJpegSegmentData(Metadata, Iterable, JpegSegmentData, Executor)
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers, @NotNull Executor executor) throws JpegProcessingException, IOException
+    {
+        Metadata metadata = new Metadata();
+        process(metadata, inputStream, readers, executor);
+        return metadata;
+    }
+
     @NotNull
     public static Metadata readMetadata(@NotNull InputStream inputStream) throws JpegProcessingException, IOException
     {
         return readMetadata(inputStream, null);
     }
 
+    /**
+     * Reads metadata from a JPEG file.
+     * <p>
+     * Exif segments are not copied into memory while the file is scanned. Instead, TIFF data is read from the file
+     * in place, so only the parts of the segment referenced by IFDs are read, and any embedded thumbnail is skipped.
+     */
     @NotNull
     public static Metadata readMetadata(@NotNull File file, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
     {
-        InputStream inputStream = new FileInputStream(file);
-        Metadata metadata;
+        FileInputStream inputStream = new FileInputStream(file);
+        Metadata metadata = new Metadata();
         try {
-            metadata = readMetadata(inputStream, readers);
+            process(metadata, inputStream, inputStream.getChannel(), readers, null);
         } finally {
             inputStream.close();
         }
@@ -104,12 +157,149 @@ public class JpegMetadataReader
         return readMetadata(file, null);
     }
 
+    /**
+     * Reads metadata from each image in the MPF (Multi-Picture Format) index of a JPEG file, such as depth maps,
+     * gain maps and secondary images.
+     * <p>
+     * Only the headers of the first image are scanned to find the index. The file is then positioned directly at
+     * each indexed image, so the entropy-coded data that precedes it is not read.
+     *
+     * @param file a JPEG file
+     * @param readers the segment readers to apply to each image, or <code>null</code> for {@link #ALL_READERS}
+     * @return the metadata of each image, in index order, the first being that of the primary image. Images that
+     *         cannot be read have an {@link ErrorDirectory}. Empty if the file has no MPF index.
+     */
+    @NotNull
+    public static List<Metadata> readMpfImageMetadata(@NotNull File file, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
+    {
+        List<Metadata> imageMetadata = new ArrayList<Metadata>();
+
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            JpegSegmentData segmentData = JpegSegmentReader.readSegments(
+                new StreamReader(new BufferedInputStream(inputStream)),
+                Collections.singletonList(JpegSegmentType.APP2));
+
+            // Entry offsets are relative to the MP header, which follows the preamble
+            Metadata index = new Metadata();
+            long headerOffset = -1;
+            int occurrence = 0;
+            for (byte[] segmentBytes : segmentData.getSegments(JpegSegmentType.APP2)) {
+                if (MpfReader.startsWithMpfPreamble(segmentBytes)) {
+                    new MpfReader().readJpegSegments(Collections.singletonList(segmentBytes), index, JpegSegmentType.APP2);
+                    headerOffset = segmentData.getSegmentOffset(JpegSegmentType.APP2, occurrence) + MpfReader.JPEG_SEGMENT_PREAMBLE.length();
+                    break;
+                }
+                occurrence++;
+            }
+
+            if (headerOffset < 0)
+                return imageMetadata;
+
+            for (MpfImageDirectory image : index.getDirectoriesOfType(MpfImageDirectory.class))
+                imageMetadata.add(readMpfImage(inputStream.getChannel(), headerOffset, image, readers));
+        } finally {
+            inputStream.close();
+        }
+
+        return imageMetadata;
+    }
+
+    @NotNull
+    private static Metadata readMpfImage(@NotNull FileChannel channel, long headerOffset, @NotNull MpfImageDirectory image, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws IOException
+    {
+        Metadata metadata = new Metadata();
+
+        Integer format = image.getInteger(MpfImageDirectory.TAG_IMAGE_FORMAT);
+        Long offset = image.getLongObject(MpfImageDirectory.TAG_IMAGE_OFFSET);
+        if (format == null || format != MpfImageDirectory.FORMAT_JPEG || offset == null) {
+            metadata.addDirectory(new ErrorDirectory("Unsupported MPF image format"));
+            return metadata;
+        }
+
+        // The first image precedes the index, and has an offset of zero
+        long position = offset == 0 ? 0 : headerOffset + offset;
+        if (position >= channel.size()) {
+            metadata.addDirectory(new ErrorDirectory("MPF image offset is beyond the end of the file"));
+            return metadata;
+        }
+
+        channel.position(position);
+        try {
+            process(metadata, new BufferedInputStream(Channels.newInputStream(channel)), readers);
+        } catch (JpegProcessingException e) {
+            metadata.addDirectory(new ErrorDirectory("Unable to read MPF image: " + e.getMessage()));
+        }
+        return metadata;
+    }
+
     public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream) throws JpegProcessingException, IOException
     {
         process(metadata, inputStream, null);
     }
 
     public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
+    {
+        process(metadata, inputStream, readers, null);
+    }
+
+    /**
+     * Reads JPEG segments from <code>inputStream</code> and processes them with <code>readers</code>.
+     *
+     * @param executor if non-null, independent application segments are decoded concurrently on this executor.
+     *                 See {@link #processJpegSegmentData(Metadata, Iterable, JpegSegmentData, Executor)}.
+     */
+    public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers, @Nullable Executor executor) throws JpegProcessingException, IOException
+    {
+        process(metadata, inputStream, null, readers, executor);
+    }
+
+    /**
+     * Reads JPEG segments from <code>inputStream</code> and processes them with <code>readers</code>.
+     * <p>
+     * Where <code>channel</code> is given, Exif segments are read from it in place, as for {@link #readMetadata(File)}.
+     * The stream must then supply the channel's data from its start, as a {@link FileInputStream} of the same file does.
+     *
+     * @param channel if non-null, the channel underlying <code>inputStream</code>, from which Exif segments are
+     *                read in place, where all readers of APP1 segments allow it
+     * @param executor if non-null, independent application segments are decoded concurrently on this executor.
+     */
+    public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @Nullable FileChannel channel, @Nullable Iterable<JpegSegmentMetadataReader> readers, @Nullable Executor executor) throws JpegProcessingException, IOException
+    {
+        if (readers == null)
+            readers = ALL_READERS;
+
+        Set<JpegSegmentType> segmentTypes = new HashSet<JpegSegmentType>();
+        for (JpegSegmentMetadataReader reader : readers) {
+            for (JpegSegmentType type : reader.getSegmentTypes()) {
+                segmentTypes.add(type);
+            }
+        }
+
+        if (channel != null && !canReadExifInPlace(readers))
+            channel = null;
+
+        JpegSegmentData segmentData;
+        try {
+            segmentData = readSegments(inputStream, segmentTypes, channel);
+        } catch (ExtractionLimitException e) {
+            metadata.addDirectory(new ErrorDirectory(e.getMessage()));
+            return;
+        }
+
+        if (executor == null)
+            processJpegSegmentData(metadata, readers, segmentData);
+        else
+            processJpegSegmentData(metadata, readers, segmentData, executor);
+    }
+
+    /**
+     * Reads JPEG metadata from <code>inputStream</code>, reporting values as events rather than building a
+     * {@link Metadata} object.
+     *
+     * @see #processJpegSegmentData(MetadataEventEmitter, Iterable, JpegSegmentData)
+     */
+    public static void process(@NotNull MetadataEventEmitter emitter, @NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
     {
         if (readers == null)
             readers = ALL_READERS;
@@ -121,19 +311,363 @@ public class JpegMetadataReader
             }
         }
 
-        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new StreamReader(inputStream), segmentTypes);
+        JpegSegmentData segmentData;
+        try {
+            segmentData = readSegments(inputStream, segmentTypes, null);
+        } catch (ExtractionLimitException e) {
+            Metadata errorMetadata = new Metadata();
+            errorMetadata.addDirectory(new ErrorDirectory(e.getMessage()));
+            emitter.replay(errorMetadata);
+            return;
+        }
+
+        processJpegSegmentData(emitter, readers, segmentData);
+    }
+
+    /**
+     * Passes segments to each reader, reporting values as events in the same order as
+     * {@link #processJpegSegmentData(Metadata, Iterable, JpegSegmentData)} would add directories.
+     * <p>
+     * Only Exif segments are streamed, being reported as they are read without creating {@link Directory} objects.
+     * Makernotes and other data embedded within Exif are reported as raw tag values. All other readers, such as those
+     * for IPTC, Photoshop, XMP and ICC data, populate directories as usual, which are then replayed as events.
+     */
+    public static void processJpegSegmentData(@NotNull MetadataEventEmitter emitter, @NotNull Iterable<JpegSegmentMetadataReader> readers, @NotNull JpegSegmentData segmentData)
+    {
+        for (JpegSegmentMetadataReader reader : readers) {
+            ExtractionListener listener = ExtractionMonitor.getListener();
+            FileType previousFileType = null;
+            long start = 0;
+            if (listener != null) {
+                previousFileType = ExtractionMonitor.enterFileType(getFileType());
+                start = System.nanoTime();
+            }
+            try {
+                if (reader.getClass() == ExifReader.class) {
+                    for (byte[] segmentBytes : segmentData.getSegments(JpegSegmentType.APP1)) {
+                        if (ExifReader.startsWithJpegExifPreamble(segmentBytes))
+                            ((ExifReader)reader).extract(new ByteArrayReader(segmentBytes), emitter, ExifReader.JPEG_SEGMENT_PREAMBLE.length(), -1);
+                    }
+                    continue;
+                }
 
-        processJpegSegmentData(metadata, readers, segmentData);
+                Metadata metadata = new Metadata();
+                for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
+                    reader.readJpegSegments(segmentData.getSegments(segmentType), metadata, segmentType);
+                }
+                emitter.replay(metadata);
+            } finally {
+                if (listener != null) {
+                    ExtractionMonitor.report(listener, ExtractionPhase.SEGMENT, reader.getClass(), getSegmentByteCount(reader, segmentData), start);
+                    ExtractionMonitor.exitFileType(previousFileType);
+                }
+            }
+        }
     }
 
     public static void processJpegSegmentData(Metadata metadata, Iterable<JpegSegmentMetadataReader> readers, JpegSegmentData segmentData)
     {
         // Pass the appropriate byte arrays to each reader.
         for (JpegSegmentMetadataReader reader : readers) {
+            readSegments(reader, segmentData, metadata);
+        }
+    }
+
+    /**
+     * Processes segment data as per {@link #processJpegSegmentData(Metadata, Iterable, JpegSegmentData)}, decoding
+     * application segments (APP0 to APP15) concurrently on <code>executor</code>.
+     * <p>
+     * Readers that only consume APPn segments, such as those for Exif, XMP, ICC, Photoshop/IPTC and Adobe data,
+     * decode payloads that do not depend upon one another. Each such reader runs as a separate task that writes to
+     * its own {@link Metadata}. Readers of other segment types (SOFn, DHT, DNL, COM) are cheap and may depend upon
+     * directories created by earlier readers, so they run on the calling thread.
+     * <p>
+     * Directories are merged into <code>metadata</code> in reader order, so the result is identical to sequential
+     * processing, except that a reader cannot observe directories created by a concurrently-run reader.
+     * This is only useful for images carrying large payloads, where single-file latency matters more than total
+     * throughput.
+     */
+    public static void processJpegSegmentData(@NotNull Metadata metadata, @NotNull Iterable<JpegSegmentMetadataReader> readers, @NotNull final JpegSegmentData segmentData, @NotNull Executor executor)
+    {
+        List<JpegSegmentMetadataReader> readerList = new ArrayList<JpegSegmentMetadataReader>();
+        List<SegmentTask> tasks = new ArrayList<SegmentTask>();
+        int concurrentCount = 0;
+
+        for (JpegSegmentMetadataReader reader : readers) {
+            readerList.add(reader);
+            if (isApplicationSegmentReader(reader) && hasSegments(reader, segmentData)) {
+                tasks.add(SegmentTask.create(reader, segmentData));
+                concurrentCount++;
+            } else {
+                tasks.add(null);
+            }
+        }
+
+        // With fewer than two payloads to decode there is nothing to overlap, so avoid the scheduling overhead
+        if (concurrentCount < 2) {
+            processJpegSegmentData(metadata, readerList, segmentData);
+            return;
+        }
+
+        for (SegmentTask task : tasks) {
+            if (task == null)
+                continue;
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated or shut down, so run the task on this thread
+                task.run();
+            }
+        }
+
+        for (int i = 0; i < readerList.size(); i++) {
+            JpegSegmentMetadataReader reader = readerList.get(i);
+            SegmentTask task = tasks.get(i);
+
+            if (task == null) {
+                readSegments(reader, segmentData, metadata);
+                continue;
+            }
+
+            // If no pool thread has picked this task up yet, run it here. This does nothing if the task has
+            // already started, and avoids deadlock when called from a thread of a saturated executor.
+            task.run();
+
+            Metadata readerMetadata;
+            try {
+                readerMetadata = task.get();
+                task.merge();
+            } catch (InterruptedException e) {
+                // Don't abandon this reader's output. Decode it here instead, and leave the interrupt for the caller.
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                readerMetadata = readIsolated(reader, segmentData);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                if (cause instanceof Error)
+                    throw (Error)cause;
+                throw new RuntimeException(cause);
+            }
+
+            for (Directory directory : readerMetadata.getDirectories())
+                metadata.addDirectory(directory);
+        }
+    }
+
+    /**
+     * Decodes the segments of one reader into a separate {@link Metadata}, possibly on another thread.
+     * <p>
+     * Pool threads have none of the calling thread's thread-locals. The task therefore runs within forks of the
+     * caller's {@link ExtractionBudget} and {@link IoStats}, which {@link #merge} adds back once it completes, and
+     * reports to any {@link ExtractionListener} under the caller's file type.
+     */
+    private static final class SegmentTask extends FutureTask<Metadata>
+    {
+        @Nullable
+        private final ExtractionBudget _budget;
+        @Nullable
+        private final ExtractionBudget _taskBudget;
+        @Nullable
+        private final IoStats _stats;
+        @Nullable
+        private final IoStats _taskStats;
+
+        @NotNull
+        static SegmentTask create(@NotNull final JpegSegmentMetadataReader reader, @NotNull final JpegSegmentData segmentData)
+        {
+            ExtractionBudget budget = ExtractionBudget.current();
+            final ExtractionBudget taskBudget = budget == null ? null : budget.fork();
+            IoStats stats = IoStats.current();
+            final IoStats taskStats = stats == null ? null : new IoStats();
+            final FileType fileType = ExtractionMonitor.getListener() == null ? null : getFileType();
+
+            Callable<Metadata> callable = new Callable<Metadata>()
+            {
+                public Metadata call()
+                {
+                    ExtractionBudget previousBudget = taskBudget == null ? null : ExtractionBudget.begin(taskBudget);
+                    IoStats previousStats = taskStats == null ? null : IoStats.begin(taskStats);
+                    FileType previousFileType = fileType == null ? null : ExtractionMonitor.enterFileType(fileType);
+                    try {
+                        return readIsolated(reader, segmentData);
+                    } finally {
+                        if (fileType != null)
+                            ExtractionMonitor.exitFileType(previousFileType);
+                        if (taskStats != null)
+                            IoStats.end(previousStats);
+                        if (taskBudget != null)
+                            ExtractionBudget.end(previousBudget);
+                    }
+                }
+            };
+            return new SegmentTask(callable, budget, taskBudget, stats, taskStats);
+        }
+
+        private SegmentTask(@NotNull Callable<Metadata> callable, @Nullable ExtractionBudget budget, @Nullable ExtractionBudget taskBudget, @Nullable IoStats stats, @Nullable IoStats taskStats)
+        {
+            super(callable);
+            _budget = budget;
+            _taskBudget = taskBudget;
+            _stats = stats;
+            _taskStats = taskStats;
+        }
+
+        /**
+         * Adds the consumption of the completed task to the caller's budget and statistics.
+         */
+        void merge()
+        {
+            if (_budget != null && _taskBudget != null)
+                _budget.merge(_taskBudget);
+            if (_stats != null && _taskStats != null)
+                _stats.add(_taskStats);
+        }
+    }
+
+    @NotNull
+    private static Metadata readIsolated(@NotNull JpegSegmentMetadataReader reader, @NotNull JpegSegmentData segmentData)
+    {
+        Metadata readerMetadata = new Metadata();
+        readSegments(reader, segmentData, readerMetadata);
+        return readerMetadata;
+    }
+
+    /**
+     * Scans <code>inputStream</code> for segments of the specified types, reporting the scan to any installed
+     * {@link ExtractionListener}.
+     *
+     * @param channel if non-null, the channel underlying <code>inputStream</code>. Exif segments are then skipped,
+     *                and later read from this channel in place.
+     */
+    @NotNull
+    private static JpegSegmentData readSegments(@NotNull InputStream inputStream, @NotNull Set<JpegSegmentType> segmentTypes, @Nullable FileChannel channel) throws JpegProcessingException, IOException
+    {
+        StreamReader reader = new StreamReader(inputStream);
+
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        if (listener == null)
+            return readSegments(reader, segmentTypes, channel);
+
+        long start = System.nanoTime();
+        try {
+            return readSegments(reader, segmentTypes, channel);
+        } finally {
+            ExtractionMonitor.report(listener, getFileType(), ExtractionPhase.SEGMENT_SCAN, JpegSegmentReader.class, reader.getPosition(), start);
+        }
+    }
+
+    @NotNull
+    private static JpegSegmentData readSegments(@NotNull StreamReader reader, @NotNull Set<JpegSegmentType> segmentTypes, @Nullable FileChannel channel) throws JpegProcessingException, IOException
+    {
+        if (channel == null)
+            return JpegSegmentReader.readSegments(reader, segmentTypes);
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(reader, segmentTypes, JpegSegmentType.APP1, EXIF_PREAMBLE_BYTES);
+        segmentData.setReferenceSource(channel);
+        return segmentData;
+    }
+
+    /**
+     * Determines whether Exif segments can be left in the file rather than read during the scan, which is the case
+     * when the only readers of APP1 segments are the standard Exif reader, which can read them in place, and the
+     * XMP reader, which ignores them.
+     */
+    private static boolean canReadExifInPlace(@NotNull Iterable<JpegSegmentMetadataReader> readers)
+    {
+        for (JpegSegmentMetadataReader reader : readers) {
+            if (reader.getClass() == ExifReader.class || reader.getClass() == XmpReader.class)
+                continue;
             for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
-                reader.readJpegSegments(segmentData.getSegments(segmentType), metadata, segmentType);
+                if (segmentType == JpegSegmentType.APP1)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passes the segments consumed by <code>reader</code> to it, reporting the work to any installed
+     * {@link ExtractionListener}.
+     */
+    private static void readSegments(@NotNull JpegSegmentMetadataReader reader, @NotNull JpegSegmentData segmentData, @NotNull Metadata metadata)
+    {
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        if (listener == null) {
+            readSegmentsAndReferences(reader, segmentData, metadata);
+            return;
+        }
+
+        // Segment readers may run on executor threads, so make sure phases nested within this one, such as
+        // those of TiffReader, are attributed to the JPEG
+        FileType previousFileType = ExtractionMonitor.enterFileType(getFileType());
+        long start = System.nanoTime();
+        try {
+            readSegmentsAndReferences(reader, segmentData, metadata);
+        } finally {
+            ExtractionMonitor.report(listener, ExtractionPhase.SEGMENT, reader.getClass(), getSegmentByteCount(reader, segmentData), start);
+            ExtractionMonitor.exitFileType(previousFileType);
+        }
+    }
+
+    private static void readSegmentsAndReferences(@NotNull JpegSegmentMetadataReader reader, @NotNull JpegSegmentData segmentData, @NotNull Metadata metadata)
+    {
+        for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
+            reader.readJpegSegments(segmentData.getSegments(segmentType), metadata, segmentType);
+        }
+
+        // Exif segments left in the file are read in place, after any that were read during the scan
+        FileChannel channel = segmentData.getReferenceSource();
+        if (channel != null && reader.getClass() == ExifReader.class) {
+            for (long[] reference : segmentData.getSegmentReferences(JpegSegmentType.APP1)) {
+                RandomAccessChannelReader segmentReader = new RandomAccessChannelReader(channel, reference[0], (int)reference[1]);
+                ((ExifReader)reader).extract(segmentReader, metadata, ExifReader.JPEG_SEGMENT_PREAMBLE.length());
+            }
+        }
+    }
+
+    private static long getSegmentByteCount(@NotNull JpegSegmentMetadataReader reader, @NotNull JpegSegmentData segmentData)
+    {
+        long byteCount = 0;
+        for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
+            for (byte[] segment : segmentData.getSegments(segmentType))
+                byteCount += segment.length;
+            if (reader.getClass() == ExifReader.class) {
+                for (long[] reference : segmentData.getSegmentReferences(segmentType))
+                    byteCount += reference[1];
             }
         }
+        return byteCount;
+    }
+
+    /**
+     * Gets the file type to report phases against, which is that set by the caller if any, otherwise JPEG.
+     */
+    @NotNull
+    private static FileType getFileType()
+    {
+        FileType fileType = ExtractionMonitor.getFileType();
+        return fileType == FileType.Unknown ? FileType.Jpeg : fileType;
+    }
+
+    private static boolean isApplicationSegmentReader(@NotNull JpegSegmentMetadataReader reader)
+    {
+        for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
+            int marker = segmentType.byteValue & 0xFF;
+            if (marker < (JpegSegmentType.APP0.byteValue & 0xFF) || marker > (JpegSegmentType.APPF.byteValue & 0xFF))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean hasSegments(@NotNull JpegSegmentMetadataReader reader, @NotNull JpegSegmentData segmentData)
+    {
+        for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
+            if (segmentData.containsSegment(segmentType) || !segmentData.getSegmentReferences(segmentType).isEmpty())
+                return true;
+        }
+        return false;
     }
 
     private JpegMetadataReader() throws Exception
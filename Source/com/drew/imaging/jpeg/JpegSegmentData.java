@@ -23,6 +23,7 @@ package com.drew.imaging.jpeg;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 /**
@@ -45,16 +46,102 @@ public class JpegSegmentData
     @NotNull
     private final HashMap<Byte, List<byte[]>> _segmentDataMap = new HashMap<Byte, List<byte[]>>(10);
 
+    // Parallel to the lists of _segmentDataMap, holding -1 where the offset is unknown
+    @NotNull
+    private final HashMap<Byte, List<Long>> _segmentOffsetMap = new HashMap<Byte, List<Long>>(10);
+
+    // Segments whose data was left in the source, as {offset, length} pairs
+    @NotNull
+    private final HashMap<Byte, List<long[]>> _segmentReferenceMap = new HashMap<Byte, List<long[]>>(2);
+
+    @Nullable
+    private FileChannel _referenceSource;
+
     /**
      * Adds segment bytes to the collection.
      *
      * @param segmentType  the type of the segment being added
      * @param segmentBytes the byte array holding data for the segment being added
      */
-    @SuppressWarnings({"MismatchedQueryAndUpdateOfCollection"})
     public void addSegment(byte segmentType, @NotNull byte[] segmentBytes)
+    {
+        addSegment(segmentType, segmentBytes, -1);
+    }
+
+    /**
+     * Adds segment bytes to the collection, along with their position in the JPEG data.
+     *
+     * @param segmentType  the type of the segment being added
+     * @param segmentBytes the byte array holding data for the segment being added
+     * @param offset       the offset of the segment's data from the start of the JPEG data, after the segment's
+     *                     marker and length, or -1 if unknown
+     */
+    @SuppressWarnings({"MismatchedQueryAndUpdateOfCollection"})
+    public void addSegment(byte segmentType, @NotNull byte[] segmentBytes, long offset)
     {
         getOrCreateSegmentList(segmentType).add(segmentBytes);
+
+        List<Long> offsetList = _segmentOffsetMap.get(segmentType);
+        if (offsetList == null) {
+            offsetList = new ArrayList<Long>();
+            _segmentOffsetMap.put(segmentType, offsetList);
+        }
+        offsetList.add(offset);
+    }
+
+    /**
+     * Gets the position of a segment's data within the JPEG data, as recorded by {@link JpegSegmentReader}.
+     *
+     * @param segmentType identifies the required segment
+     * @param occurrence  the zero-based index of the occurrence
+     * @return the offset of the segment's data from the start of the JPEG data, after the segment's marker and
+     *         length, or -1 if no segment exists for the type &amp; occurrence, or its offset is unknown
+     */
+    public long getSegmentOffset(@NotNull JpegSegmentType segmentType, int occurrence)
+    {
+        final List<Long> offsetList = _segmentOffsetMap.get(segmentType.byteValue);
+
+        return offsetList != null && offsetList.size() > occurrence
+                ? offsetList.get(occurrence)
+                : -1;
+    }
+
+    /**
+     * Records the position of a segment whose data was not read, so that it can be read later from the
+     * {@link #getReferenceSource() reference source}.
+     */
+    void addSegmentReference(byte segmentType, long offset, int length)
+    {
+        List<long[]> referenceList = _segmentReferenceMap.get(segmentType);
+        if (referenceList == null) {
+            referenceList = new ArrayList<long[]>();
+            _segmentReferenceMap.put(segmentType, referenceList);
+        }
+        referenceList.add(new long[]{offset, length});
+    }
+
+    /**
+     * Gets the segments of a type whose data was not read, each as an <code>{offset, length}</code> pair.
+     */
+    @NotNull
+    List<long[]> getSegmentReferences(@NotNull JpegSegmentType segmentType)
+    {
+        List<long[]> referenceList = _segmentReferenceMap.get(segmentType.byteValue);
+        return referenceList == null ? Collections.<long[]>emptyList() : referenceList;
+    }
+
+    /**
+     * Gets the channel from which referenced segments may be read, which is only open while the JPEG is processed.
+     */
+    @Nullable
+    FileChannel getReferenceSource()
+    {
+        return _referenceSource;
+    }
+
+    void setReferenceSource(@Nullable FileChannel referenceSource)
+    {
+        _referenceSource = referenceSource;
     }
 
     /**
@@ -224,6 +311,7 @@ public class JpegSegmentData
     {
         final List<byte[]> segmentList = _segmentDataMap.get(segmentType);
         segmentList.remove(occurrence);
+        _segmentOffsetMap.get(segmentType).remove(occurrence);
     }
 
     /**
@@ -244,6 +332,7 @@ public class JpegSegmentData
     public void removeSegment(byte segmentType)
     {
         _segmentDataMap.remove(segmentType);
+        _segmentOffsetMap.remove(segmentType);
     }
 
     /**
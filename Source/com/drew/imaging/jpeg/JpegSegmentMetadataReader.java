@@ -5,6 +5,9 @@ import com.drew.metadata.Metadata;
 
 /**
  * Defines an object that extracts metadata from in JPEG segments.
+ * <p>
+ * Instances of this interface must be thread-safe and reusable. Any state needed during extraction must be held
+ * in local variables or in objects created per call, such as a {@link com.drew.imaging.tiff.TiffHandler}.
  */
 public interface JpegSegmentMetadataReader
 {
@@ -20,11 +20,13 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.lang.ExtractionBudget;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -84,6 +86,9 @@ public class JpegSegmentReader
      * Processes the provided JPEG data, and extracts the specified JPEG segments into a {@link JpegSegmentData} object.
      * <p>
      * Will not return SOS (start of scan) or EOI (end of image) segments.
+     * <p>
+     * Data is read from <code>reader</code> in blocks of 512 bytes, so on return it may be positioned up to 512 bytes
+     * beyond the SOS marker.
      *
      * @param reader a {@link SequentialReader} from which the JPEG data will be read. It must be positioned at the
      *               beginning of the JPEG data stream.
@@ -92,12 +97,28 @@ public class JpegSegmentReader
      */
     @NotNull
     public static JpegSegmentData readSegments(@NotNull final SequentialReader reader, @Nullable Iterable<JpegSegmentType> segmentTypes) throws JpegProcessingException, IOException
+    {
+        return readSegments(reader, segmentTypes, null, null);
+    }
+
+    /**
+     * Processes the provided JPEG data as {@link #readSegments(SequentialReader, Iterable)} does, except that
+     * segments of <code>referenceType</code> whose data begins with <code>referencePreamble</code> are skipped, and
+     * only their position and length recorded, so that their content may later be read from the underlying source.
+     */
+    @NotNull
+    static JpegSegmentData readSegments(@NotNull final SequentialReader reader,
+                                        @Nullable Iterable<JpegSegmentType> segmentTypes,
+                                        @Nullable JpegSegmentType referenceType,
+                                        @Nullable byte[] referencePreamble) throws JpegProcessingException, IOException
     {
         // Must be big-endian
         assert (reader.isMotorolaByteOrder());
 
+        final SegmentScanner scanner = new SegmentScanner(reader);
+
         // first two bytes should be JPEG magic number
-        final int magicNumber = reader.getUInt16();
+        final int magicNumber = scanner.getUInt16();
         if (magicNumber != 0xFFD8) {
             throw new JpegProcessingException("JPEG data is expected to begin with 0xFFD8 (ÿØ) not 0x" + Integer.toHexString(magicNumber));
         }
@@ -113,16 +134,22 @@ public class JpegSegmentReader
         JpegSegmentData segmentData = new JpegSegmentData();
 
         do {
+            ExtractionBudget.checkpoint();
+
             // Find the segment marker. Markers are zero or more 0xFF bytes, followed
             // by a 0xFF and then a byte not equal to 0x00 or 0xFF.
 
-            byte segmentIdentifier = reader.getInt8();
-            byte segmentType = reader.getInt8();
+            byte segmentIdentifier = scanner.getByte();
+            byte segmentType = scanner.getByte();
 
             // Read until we have a 0xFF byte followed by a byte that is not 0xFF or 0x00
+            int scannedCount = 0;
             while (segmentIdentifier != SEGMENT_IDENTIFIER || segmentType == SEGMENT_IDENTIFIER || segmentType == 0) {
             	segmentIdentifier = segmentType;
-            	segmentType = reader.getInt8();
+            	segmentType = scanner.getByte();
+            	// Corrupt data may not contain a marker for a long way
+            	if ((++scannedCount & 0xFFFF) == 0)
+            	    ExtractionBudget.checkpoint();
             }
 
             if (segmentType == SEGMENT_SOS) {
@@ -138,7 +165,7 @@ public class JpegSegmentReader
             }
 
             // next 2-bytes are <segment-size>: [high-byte] [low-byte]
-            int segmentLength = reader.getUInt16();
+            int segmentLength = scanner.getUInt16();
 
             // segment length includes size bytes, so subtract two
             segmentLength -= 2;
@@ -147,13 +174,25 @@ public class JpegSegmentReader
                 throw new JpegProcessingException("JPEG segment size would be less than zero");
 
             // Check whether we are interested in this segment
-            if (segmentTypeBytes == null || segmentTypeBytes.contains(segmentType)) {
-                byte[] segmentBytes = reader.getBytes(segmentLength);
+            if (referenceType != null
+                    && referencePreamble != null
+                    && segmentType == referenceType.byteValue
+                    && segmentLength >= referencePreamble.length
+                    && scanner.startsWith(referencePreamble)) {
+                long segmentOffset = scanner.getPosition();
+                if (!scanner.trySkip(segmentLength)) {
+                    // The segment is truncated, so would not be read in full from the source either
+                    return segmentData;
+                }
+                segmentData.addSegmentReference(segmentType, segmentOffset, segmentLength);
+            } else if (segmentTypeBytes == null || segmentTypeBytes.contains(segmentType)) {
+                long segmentOffset = scanner.getPosition();
+                byte[] segmentBytes = scanner.getBytes(segmentLength);
                 assert (segmentLength == segmentBytes.length);
-                segmentData.addSegment(segmentType, segmentBytes);
+                segmentData.addSegment(segmentType, segmentBytes, segmentOffset);
             } else {
                 // Skip this segment
-                if (!reader.trySkip(segmentLength)) {
+                if (!scanner.trySkip(segmentLength)) {
                     // If skipping failed, just return the segments we found so far
                     return segmentData;
                 }
@@ -162,6 +201,103 @@ public class JpegSegmentReader
         } while (true);
     }
 
+    /**
+     * Reads from a {@link SequentialReader} in small blocks, so that markers can be found without a call to the reader
+     * per byte. Segments that extend beyond the block are completed by reading or skipping the remainder directly,
+     * so their content is only copied once.
+     * <p>
+     * A single block is reused for the whole scan. It need only hold markers and the small table segments between
+     * larger ones, and keeping it small limits how far beyond the SOS marker the reader is left.
+     */
+    private static class SegmentScanner
+    {
+        private static final int BLOCK_SIZE = 512;
+
+        @NotNull
+        private final SequentialReader _reader;
+        @Nullable
+        private final ExtractionBudget _budget = ExtractionBudget.current();
+        @NotNull
+        private final byte[] _block = new byte[BLOCK_SIZE];
+        private int _index;
+        private int _limit;
+
+        SegmentScanner(@NotNull SequentialReader reader)
+        {
+            _reader = reader;
+        }
+
+        long getPosition() throws IOException
+        {
+            return _reader.getPosition() - (_limit - _index);
+        }
+
+        byte getByte() throws IOException
+        {
+            if (_index == _limit && !fill(1))
+                throw new EOFException("End of data reached.");
+            return _block[_index++];
+        }
+
+        int getUInt16() throws IOException
+        {
+            return (getByte() & 0xFF) << 8 | (getByte() & 0xFF);
+        }
+
+        @NotNull
+        byte[] getBytes(int count) throws IOException
+        {
+            // Check before allocating, as the count is read from the data itself
+            if (_budget != null)
+                _budget.chargeAllocation(count);
+
+            byte[] bytes = new byte[count];
+            int buffered = Math.min(count, _limit - _index);
+            if (buffered != 0) {
+                System.arraycopy(_block, _index, bytes, 0, buffered);
+                _index += buffered;
+            }
+            if (buffered != count)
+                _reader.getBytes(bytes, buffered, count - buffered);
+            return bytes;
+        }
+
+        /**
+         * Determines whether the next bytes are equal to <code>prefix</code>, without consuming them.
+         */
+        boolean startsWith(@NotNull byte[] prefix) throws IOException
+        {
+            if (_limit - _index < prefix.length && !fill(prefix.length))
+                return false;
+            for (int i = 0; i < prefix.length; i++) {
+                if (_block[_index + i] != prefix[i])
+                    return false;
+            }
+            return true;
+        }
+
+        boolean trySkip(long count) throws IOException
+        {
+            int buffered = (int)Math.min(count, _limit - _index);
+            _index += buffered;
+            return buffered == count || _reader.trySkip(count - buffered);
+        }
+
+        /**
+         * Moves any unread bytes to the start of the block and reads more after them, returning whether at least
+         * <code>count</code> bytes are then buffered.
+         */
+        private boolean fill(int count) throws IOException
+        {
+            int remaining = _limit - _index;
+            if (remaining != 0)
+                System.arraycopy(_block, _index, _block, 0, remaining);
+            _index = 0;
+            _limit = remaining + _reader.tryGetBytes(_block, remaining, _block.length - remaining);
+            return _limit >= count;
+        }
+    }
+
     private JpegSegmentReader() throws Exception
     {
         throw new Exception("Not intended for instantiation.");
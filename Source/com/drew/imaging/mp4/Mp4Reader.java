@@ -20,6 +20,12 @@
  */
 package com.drew.imaging.mp4;
 
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
+import com.drew.lang.ExtractionLimits;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.mp4.Mp4Context;
@@ -37,18 +43,35 @@ public class Mp4Reader
 
     public static void extract(@NotNull InputStream inputStream, @NotNull Mp4Handler<?> handler)
     {
+        // Limit the containers visited, even when not called within a wider extraction. Such a budget is passed down
+        // the walk rather than made current, as only the walk charges it.
+        ExtractionBudget budget = ExtractionBudget.current();
+        if (budget == null)
+            budget = new ExtractionBudget(ExtractionLimits.getDefault());
+
         StreamReader reader = new StreamReader(inputStream);
         reader.setMotorolaByteOrder(true);
 
         Mp4Context context = new Mp4Context();
 
-        processBoxes(reader, -1, handler, context);
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        try {
+            processBoxes(reader, -1, handler, context, budget);
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before the limit was reached
+            handler.addError(e.getMessage());
+        } finally {
+            if (listener != null)
+                ExtractionMonitor.report(listener, ExtractionPhase.CONTAINER, handler.getClass(), reader.getPosition(), start);
+        }
     }
 
-    private static void processBoxes(StreamReader reader, long atomEnd, Mp4Handler<?> handler, Mp4Context context)
+    private static void processBoxes(StreamReader reader, long atomEnd, Mp4Handler<?> handler, Mp4Context context, ExtractionBudget budget) throws ExtractionLimitException
     {
         try {
             while (atomEnd == -1 || reader.getPosition() < atomEnd) {
+                budget.checkCancellation();
 
                 Box box = new Box(reader);
 
@@ -56,7 +79,12 @@ public class Mp4Reader
                 // Unknown atoms will be skipped
 
                 if (handler.shouldAcceptContainer(box)) {
-                    processBoxes(reader, box.size + reader.getPosition() - 8, handler.processContainer(box, context), context);
+                    budget.enterDirectory();
+                    try {
+                        processBoxes(reader, box.size + reader.getPosition() - 8, handler.processContainer(box, context), context, budget);
+                    } finally {
+                        budget.exitDirectory();
+                    }
                 } else if (handler.shouldAcceptBox(box)) {
                     handler = handler.processBox(box, reader.getBytes((int)box.size - 8), context);
                 } else if (box.usertype != null) {
@@ -71,6 +99,9 @@ public class Mp4Reader
                     break;
                 }
             }
+        } catch (ExtractionLimitException e) {
+            // Report once, from the outermost call
+            throw e;
         } catch (IOException e) {
             handler.addError(e.getMessage());
         }
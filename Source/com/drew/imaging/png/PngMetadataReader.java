@@ -44,7 +44,7 @@ import java.util.zip.InflaterInputStream;
  */
 public class PngMetadataReader
 {
-    private static Set<PngChunkType> _desiredChunkTypes;
+    private static final Set<PngChunkType> _desiredChunkTypes;
 
     /**
      * The PNG spec states that ISO_8859_1 (Latin-1) encoding should be used for:
@@ -57,7 +57,7 @@ public class PngMetadataReader
      * <p/>
      * For more guidance: http://www.w3.org/TR/PNG-Decoders.html#D.Text-chunk-processing
      */
-    private static Charset _latin1Encoding = Charsets.ISO_8859_1;
+    private static final Charset _latin1Encoding = Charsets.ISO_8859_1;
 
     static
     {
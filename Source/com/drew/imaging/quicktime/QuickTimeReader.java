@@ -20,6 +20,12 @@
  */
 package com.drew.imaging.quicktime;
 
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
+import com.drew.lang.ExtractionLimits;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.mov.QuickTimeContext;
@@ -37,18 +43,35 @@ public class QuickTimeReader
 
     public static void extract(@NotNull InputStream inputStream, @NotNull QuickTimeHandler<?> handler)
     {
+        // Limit the containers visited, even when not called within a wider extraction. Such a budget is passed down
+        // the walk rather than made current, as only the walk charges it.
+        ExtractionBudget budget = ExtractionBudget.current();
+        if (budget == null)
+            budget = new ExtractionBudget(ExtractionLimits.getDefault());
+
         StreamReader reader = new StreamReader(inputStream);
         reader.setMotorolaByteOrder(true);
 
         QuickTimeContext context = new QuickTimeContext();
 
-        processAtoms(reader, -1, handler, context);
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        try {
+            processAtoms(reader, -1, handler, context, budget);
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before the limit was reached
+            handler.addError(e.getMessage());
+        } finally {
+            if (listener != null)
+                ExtractionMonitor.report(listener, ExtractionPhase.CONTAINER, handler.getClass(), reader.getPosition(), start);
+        }
     }
 
-    private static void processAtoms(StreamReader reader, long atomEnd, QuickTimeHandler<?> handler, QuickTimeContext context)
+    private static void processAtoms(StreamReader reader, long atomEnd, QuickTimeHandler<?> handler, QuickTimeContext context, ExtractionBudget budget) throws ExtractionLimitException
     {
         try {
             while (atomEnd == -1 || reader.getPosition() < atomEnd) {
+                budget.checkCancellation();
 
                 Atom atom = new Atom(reader);
 
@@ -56,7 +79,12 @@ public class QuickTimeReader
                 // Unknown atoms will be skipped
 
                 if (handler.shouldAcceptContainer(atom)) {
-                    processAtoms(reader, atom.size + reader.getPosition() - 8, handler.processContainer(atom, context), context);
+                    budget.enterDirectory();
+                    try {
+                        processAtoms(reader, atom.size + reader.getPosition() - 8, handler.processContainer(atom, context), context, budget);
+                    } finally {
+                        budget.exitDirectory();
+                    }
                 } else if (handler.shouldAcceptAtom(atom)) {
                     handler = handler.processAtom(atom, reader.getBytes((int)atom.size - 8), context);
                 } else if (atom.size > 1) {
@@ -65,6 +93,9 @@ public class QuickTimeReader
                     break;
                 }
             }
+        } catch (ExtractionLimitException e) {
+            // Report once, from the outermost call
+            throw e;
         } catch (IOException e) {
             handler.addError(e.getMessage());
         }
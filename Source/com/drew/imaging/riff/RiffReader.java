@@ -20,8 +20,15 @@
  */
 package com.drew.imaging.riff;
 
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
+import com.drew.lang.ExtractionLimits;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
 
 import java.io.IOException;
 
@@ -46,6 +53,8 @@ public class RiffReader
      * @param handler the {@link RiffHandler} that will coordinate processing and accept read values
      * @throws RiffProcessingException if an error occurred during the processing of RIFF data that could not be
      *                                 ignored or recovered from
+     * @throws ExtractionLimitException the data exceeded the current {@link ExtractionLimits}, in which case
+     *                                  <code>handler</code> holds the chunks processed before the limit was reached
      * @throws IOException an error occurred while accessing the required data
      */
     public void processRiff(@NotNull final SequentialReader reader,
@@ -72,18 +81,51 @@ public class RiffReader
             return;
 
         // PROCESS CHUNKS
-        processChunks(reader, sizeLeft, handler);
+
+        // Limit the lists visited, even when not called within a wider extraction. Such a budget is passed down the
+        // walk rather than made current, as only the walk charges it.
+        ExtractionBudget budget = ExtractionBudget.current();
+        if (budget == null)
+            budget = new ExtractionBudget(ExtractionLimits.getDefault());
+
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        long startPosition = listener == null ? 0 : reader.getPosition();
+        try {
+            processChunks(reader, sizeLeft, handler, budget);
+        } finally {
+            if (listener != null)
+                ExtractionMonitor.report(listener, ExtractionPhase.CONTAINER, handler.getClass(), reader.getPosition() - startPosition, start);
+        }
     }
 
     public void processChunks(SequentialReader reader, int sectionSize, RiffHandler handler) throws IOException
+    {
+        processChunks(reader, sectionSize, handler, ExtractionBudget.current());
+    }
+
+    private void processChunks(@NotNull SequentialReader reader, int sectionSize, @NotNull RiffHandler handler, @Nullable ExtractionBudget budget) throws IOException
     {
         while (reader.getPosition() < sectionSize) {
+            if (budget != null)
+                budget.checkCancellation();
+            else
+                ExtractionBudget.checkpoint();
             String fourCC = new String(reader.getBytes(4));
             int size = reader.getInt32();
             if (fourCC.equals("LIST") || fourCC.equals("RIFF")) {
                 String listName = new String(reader.getBytes(4));
                 if (handler.shouldAcceptList(listName)) {
-                    processChunks(reader, size - 4, handler);
+                    if (budget == null) {
+                        processChunks(reader, size - 4, handler, null);
+                    } else {
+                        budget.enterDirectory();
+                        try {
+                            processChunks(reader, size - 4, handler, budget);
+                        } finally {
+                            budget.exitDirectory();
+                        }
+                    }
                 } else {
                     reader.skip(size - 4);
                 }
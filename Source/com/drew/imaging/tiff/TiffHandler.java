@@ -32,6 +32,10 @@ import java.util.Set;
 /**
  * Interface of an class capable of handling events raised during the reading of a TIFF file
  * via {@link TiffReader}.
+ * <p>
+ * A handler holds the state of a single extraction, such as the current directory and the stack of enclosing
+ * directories. Implementations are therefore not thread-safe, and a new instance should be created for each
+ * call to {@link TiffReader#processTiff}.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
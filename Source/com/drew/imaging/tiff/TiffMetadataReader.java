@@ -25,6 +25,8 @@ import com.drew.lang.RandomAccessReader;
 import com.drew.lang.RandomAccessStreamReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataEventEmitter;
+import com.drew.metadata.exif.ExifEventTiffHandler;
 import com.drew.metadata.exif.ExifTiffHandler;
 import com.drew.metadata.file.FileSystemMetadataReader;
 
@@ -71,4 +73,18 @@ public class TiffMetadataReader
         new TiffReader().processTiff(reader, handler, 0);
         return metadata;
     }
+
+    /**
+     * Reads TIFF data from <code>reader</code>, reporting values as events rather than building a {@link Metadata}
+     * object. See {@link ExifEventTiffHandler}.
+     */
+    public static void process(@NotNull RandomAccessReader reader, @NotNull MetadataEventEmitter emitter) throws IOException, TiffProcessingException
+    {
+        ExifEventTiffHandler handler = new ExifEventTiffHandler(emitter, -1);
+        try {
+            new TiffReader().processTiff(reader, handler, 0);
+        } finally {
+            handler.endAll();
+        }
+    }
 }
@@ -20,16 +20,27 @@
  */
 package com.drew.imaging.tiff;
 
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
+import com.drew.lang.ExtractionLimits;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.Rational;
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.Stack;
 
 /**
  * Processes TIFF-formatted data, calling into client code via that {@link TiffHandler} interface.
+ * <p>
+ * This class holds no state of its own, and instances may be shared between threads. All per-extraction state
+ * lives in the {@link TiffHandler} and {@link RandomAccessReader} passed to {@link #processTiff}.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
@@ -74,12 +85,35 @@ public class TiffReader
             firstIfdOffset = tiffHeaderOffset + 2 + 2 + 4;
         }
 
-        Set<Integer> processedIfdOffsets = new HashSet<Integer>();
-        processIfd(handler, reader, processedIfdOffsets, firstIfdOffset, tiffHeaderOffset);
+        // Limit the directories visited, even when not called within a wider extraction. Such a budget is passed down
+        // the walk rather than made current, as only the walk charges it.
+        ExtractionBudget budget = ExtractionBudget.current();
+        if (budget == null)
+            budget = new ExtractionBudget(ExtractionLimits.getDefault());
+        Set<Integer> processedIfdOffsets = new VisitedIfdOffsets(budget);
+
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        try {
+            processIfd(handler, reader, processedIfdOffsets, firstIfdOffset, tiffHeaderOffset);
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before the limit was reached
+            handler.error(e.getMessage());
+        } finally {
+            // The byte count is not reported, as the length of the data may not be known without reading all of it
+            if (listener != null)
+                ExtractionMonitor.report(listener, ExtractionPhase.TIFF, handler.getClass(), -1, start);
+        }
     }
 
     /**
-     * Processes a TIFF IFD.
+     * Processes a TIFF IFD, along with its sub-IFDs and any chain of follower IFDs.
+     * <p>
+     * The entries of each IFD are processed in the order they appear, with each sub-IFD entered as soon as its
+     * pointer tag is met. An IFD remains open until its follower has been processed, so the handler sees the same
+     * nesting of directories as it would with a fully recursive traversal. Follower IFDs are held on the heap rather
+     * than the call stack, so long chains cannot overflow it. The nesting of sub-IFDs is bounded by the
+     * {@link ExtractionBudget}.
      *
      * IFD Header:
      * <ul>
@@ -96,9 +130,12 @@ public class TiffReader
      *
      * @param handler the {@link com.drew.imaging.tiff.TiffHandler} that will coordinate processing and accept read values
      * @param reader the {@link com.drew.lang.RandomAccessReader} from which the data should be read
-     * @param processedIfdOffsets the set of visited IFD offsets, to avoid revisiting the same IFD in an endless loop
+     * @param processedIfdOffsets the set of visited IFD offsets, to avoid revisiting the same IFD in an endless loop.
+     *                            Within a walk begun by {@link #processTiff}, this also carries the walk's budget.
      * @param ifdOffset the offset within <code>reader</code> at which the IFD data starts
      * @param tiffHeaderOffset the offset within <code>reader</code> at which the TIFF header starts
+     * @throws ExtractionLimitException the walk's budget, or otherwise the current {@link ExtractionBudget}, does not
+     *                                  permit visiting this IFD
      * @throws IOException an error occurred while accessing the required data
      */
     public static void processIfd(@NotNull final TiffHandler handler,
@@ -107,145 +144,227 @@ public class TiffReader
                                   final int ifdOffset,
                                   final int tiffHeaderOffset) throws IOException
     {
-        Boolean resetByteOrder = null;
+        // IFDs that have been read but not yet ended, innermost last
+        final Stack<IfdFrame> frames = new Stack<IfdFrame>();
         try {
-            // check for directories we've already visited to avoid stack overflows when recursive/cyclic directory structures exist
-            if (processedIfdOffsets.contains(Integer.valueOf(ifdOffset))) {
-                return;
-            }
+            readIfd(frames.push(new IfdFrame()), handler, reader, processedIfdOffsets, ifdOffset, tiffHeaderOffset);
 
-            // remember that we've visited this directory so that we don't visit it again later
-            processedIfdOffsets.add(ifdOffset);
+            while (!frames.empty()) {
+                IfdFrame frame = frames.peek();
 
-            if (ifdOffset >= reader.getLength() || ifdOffset < 0) {
-                handler.error("Ignored IFD marked to start outside data segment");
-                return;
-            }
+                if (frame._followerOffset != -1) {
+                    int followerOffset = frame._followerOffset;
+                    frame._followerOffset = -1;
+                    if (handler.hasFollowerIfd()) {
+                        // A follower is a sibling of this IFD rather than a child, so does not add to the nesting depth
+                        frame.exitBudget();
+                        readIfd(frames.push(new IfdFrame()), handler, reader, processedIfdOffsets, followerOffset, tiffHeaderOffset);
+                    }
+                    continue;
+                }
 
-            // First two bytes in the IFD are the number of tags in this directory
-            int dirTagCount = reader.getUInt16(ifdOffset);
-
-            // Some software modifies the byte order of the file, but misses some IFDs (such as makernotes).
-            // The entire test image repository doesn't contain a single IFD with more than 255 entries.
-            // Here we detect switched bytes that suggest this problem, and temporarily swap the byte order.
-            // This was discussed in GitHub issue #136.
-            if (dirTagCount > 0xFF && (dirTagCount & 0xFF) == 0) {
-                resetByteOrder = reader.isMotorolaByteOrder();
-                dirTagCount >>= 8;
-                reader.setMotorolaByteOrder(!reader.isMotorolaByteOrder());
+                frames.pop().end(handler, reader);
             }
+        } finally {
+            // End any IFDs left open by an exception, innermost first
+            while (!frames.empty())
+                frames.pop().end(handler, reader);
+        }
+    }
 
-            int dirLength = (2 + (12 * dirTagCount) + 4);
-            if (dirLength + ifdOffset > reader.getLength()) {
-                handler.error("Illegally sized IFD");
-                return;
-            }
+    /**
+     * Reads the entries of an IFD, passing values to <code>handler</code> and processing sub-IFDs as they are met.
+     * Any follower IFD is recorded in <code>frame</code>, to be processed afterwards.
+     */
+    private static void readIfd(@NotNull final IfdFrame frame,
+                                @NotNull final TiffHandler handler,
+                                @NotNull final RandomAccessReader reader,
+                                @NotNull final Set<Integer> processedIfdOffsets,
+                                final int ifdOffset,
+                                final int tiffHeaderOffset) throws IOException
+    {
+        // check for directories we've already visited to avoid endless loops when recursive/cyclic directory structures exist
+        if (processedIfdOffsets.contains(Integer.valueOf(ifdOffset))) {
+            return;
+        }
 
-            //
-            // Handle each tag in this directory
-            //
-            int invalidTiffFormatCodeCount = 0;
-            for (int tagNumber = 0; tagNumber < dirTagCount; tagNumber++) {
-                final int tagOffset = calculateTagOffset(ifdOffset, tagNumber);
-
-                // 2 bytes for the tag id
-                final int tagId = reader.getUInt16(tagOffset);
-
-                // 2 bytes for the format code
-                final int formatCode = reader.getUInt16(tagOffset + 2);
-                final TiffDataFormat format = TiffDataFormat.fromTiffFormatCode(formatCode);
-
-                // 4 bytes dictate the number of components in this tag's data
-                final long componentCount = reader.getUInt32(tagOffset + 4);
-
-                final long byteCount;
-                if (format == null) {
-                    Long byteCountOverride = handler.tryCustomProcessFormat(tagId, formatCode, componentCount);
-                    if (byteCountOverride == null) {
-                        // This error suggests that we are processing at an incorrect index and will generate
-                        // rubbish until we go out of bounds (which may be a while).  Exit now.
-                        handler.error(String.format("Invalid TIFF tag format code %d for tag 0x%04X", formatCode, tagId));
-                        // TODO specify threshold as a parameter, or provide some other external control over this behaviour
-                        if (++invalidTiffFormatCodeCount > 5) {
-                            handler.error("Stopping processing as too many errors seen in TIFF IFD");
-                            return;
-                        }
-                        continue;
-                    }
-                    byteCount = byteCountOverride;
-                } else {
-                    byteCount = componentCount * format.getComponentSizeBytes();
-                }
+        // remember that we've visited this directory so that we don't visit it again later
+        processedIfdOffsets.add(ifdOffset);
+
+        ExtractionBudget budget = processedIfdOffsets instanceof VisitedIfdOffsets
+            ? ((VisitedIfdOffsets)processedIfdOffsets)._budget
+            : ExtractionBudget.current();
+        if (budget != null) {
+            budget.checkCancellation();
+            budget.enterDirectory();
+            frame._budget = budget;
+        }
+
+        if (ifdOffset >= reader.getLength() || ifdOffset < 0) {
+            handler.error("Ignored IFD marked to start outside data segment");
+            return;
+        }
+
+        // First two bytes in the IFD are the number of tags in this directory
+        int dirTagCount = reader.getUInt16(ifdOffset);
+
+        // Some software modifies the byte order of the file, but misses some IFDs (such as makernotes).
+        // The entire test image repository doesn't contain a single IFD with more than 255 entries.
+        // Here we detect switched bytes that suggest this problem, and temporarily swap the byte order.
+        // This was discussed in GitHub issue #136.
+        if (dirTagCount > 0xFF && (dirTagCount & 0xFF) == 0) {
+            frame._resetByteOrder = reader.isMotorolaByteOrder();
+            dirTagCount >>= 8;
+            reader.setMotorolaByteOrder(!reader.isMotorolaByteOrder());
+        }
+
+        int dirLength = (2 + (12 * dirTagCount) + 4);
+        if (dirLength + ifdOffset > reader.getLength()) {
+            handler.error("Illegally sized IFD");
+            return;
+        }
+
+        //
+        // Handle each tag in this directory
+        //
+        int invalidTiffFormatCodeCount = 0;
+        for (int tagNumber = 0; tagNumber < dirTagCount; tagNumber++) {
+            final int tagOffset = calculateTagOffset(ifdOffset, tagNumber);
+
+            // 2 bytes for the tag id
+            final int tagId = reader.getUInt16(tagOffset);
+
+            // 2 bytes for the format code
+            final int formatCode = reader.getUInt16(tagOffset + 2);
+            final TiffDataFormat format = TiffDataFormat.fromTiffFormatCode(formatCode);
+
+            // 4 bytes dictate the number of components in this tag's data
+            final long componentCount = reader.getUInt32(tagOffset + 4);
 
-                final long tagValueOffset;
-                if (byteCount > 4) {
-                    // If it's bigger than 4 bytes, the dir entry contains an offset.
-                    final long offsetVal = reader.getUInt32(tagOffset + 8);
-                    if (offsetVal + byteCount > reader.getLength()) {
-                        // Bogus pointer offset and / or byteCount value
-                        handler.error("Illegal TIFF tag pointer offset");
-                        continue;
+            final long byteCount;
+            if (format == null) {
+                Long byteCountOverride = handler.tryCustomProcessFormat(tagId, formatCode, componentCount);
+                if (byteCountOverride == null) {
+                    // This error suggests that we are processing at an incorrect index and will generate
+                    // rubbish until we go out of bounds (which may be a while).  Exit now.
+                    handler.error(String.format("Invalid TIFF tag format code %d for tag 0x%04X", formatCode, tagId));
+                    // TODO specify threshold as a parameter, or provide some other external control over this behaviour
+                    if (++invalidTiffFormatCodeCount > 5) {
+                        handler.error("Stopping processing as too many errors seen in TIFF IFD");
+                        return;
                     }
-                    tagValueOffset = tiffHeaderOffset + offsetVal;
-                } else {
-                    // 4 bytes or less and value is in the dir entry itself.
-                    tagValueOffset = tagOffset + 8;
+                    continue;
                 }
+                byteCount = byteCountOverride;
+            } else {
+                byteCount = componentCount * format.getComponentSizeBytes();
+            }
 
-                if (tagValueOffset < 0 || tagValueOffset > reader.getLength()) {
+            final long tagValueOffset;
+            if (byteCount > 4) {
+                // If it's bigger than 4 bytes, the dir entry contains an offset.
+                final long offsetVal = reader.getUInt32(tagOffset + 8);
+                if (offsetVal + byteCount > reader.getLength()) {
+                    // Bogus pointer offset and / or byteCount value
                     handler.error("Illegal TIFF tag pointer offset");
                     continue;
                 }
+                tagValueOffset = tiffHeaderOffset + offsetVal;
+            } else {
+                // 4 bytes or less and value is in the dir entry itself.
+                tagValueOffset = tagOffset + 8;
+            }
 
-                // Check that this tag isn't going to allocate outside the bounds of the data array.
-                // This addresses an uncommon OutOfMemoryError.
-                if (byteCount < 0 || tagValueOffset + byteCount > reader.getLength()) {
-                    handler.error("Illegal number of bytes for TIFF tag data: " + byteCount);
-                    continue;
-                }
+            if (tagValueOffset < 0 || tagValueOffset > reader.getLength()) {
+                handler.error("Illegal TIFF tag pointer offset");
+                continue;
+            }
+
+            // Check that this tag isn't going to allocate outside the bounds of the data array.
+            // This addresses an uncommon OutOfMemoryError.
+            if (byteCount < 0 || tagValueOffset + byteCount > reader.getLength()) {
+                handler.error("Illegal number of bytes for TIFF tag data: " + byteCount);
+                continue;
+            }
 
-                // Some tags point to one or more additional IFDs to process
-                boolean isIfdPointer = false;
-                if (byteCount == 4 * componentCount) {
-                    for (int i = 0; i < componentCount; i++) {
-                        if (handler.tryEnterSubIfd(tagId)) {
-                            isIfdPointer = true;
-                            int subDirOffset = tiffHeaderOffset + reader.getInt32((int) (tagValueOffset + i * 4));
-                            processIfd(handler, reader, processedIfdOffsets, subDirOffset, tiffHeaderOffset);
-                        }
+            // Some tags point to one or more additional IFDs to process
+            boolean isIfdPointer = false;
+            if (byteCount == 4 * componentCount) {
+                for (int i = 0; i < componentCount; i++) {
+                    if (handler.tryEnterSubIfd(tagId)) {
+                        isIfdPointer = true;
+                        int subDirOffset = tiffHeaderOffset + reader.getInt32((int) (tagValueOffset + i * 4));
+                        processIfd(handler, reader, processedIfdOffsets, subDirOffset, tiffHeaderOffset);
                     }
                 }
+            }
 
-                // If it wasn't an IFD pointer, allow custom tag processing to occur
-                if (!isIfdPointer && !handler.customProcessTag((int) tagValueOffset, processedIfdOffsets, tiffHeaderOffset, reader, tagId, (int) byteCount)) {
-                    // If no custom processing occurred, process the tag in the standard fashion
-                    processTag(handler, tagId, (int) tagValueOffset, (int) componentCount, formatCode, reader);
-                }
+            // If it wasn't an IFD pointer, allow custom tag processing to occur
+            if (!isIfdPointer && !handler.customProcessTag((int) tagValueOffset, processedIfdOffsets, tiffHeaderOffset, reader, tagId, (int) byteCount)) {
+                // If no custom processing occurred, process the tag in the standard fashion
+                processTag(handler, tagId, (int) tagValueOffset, (int) componentCount, formatCode, reader);
             }
+        }
 
-            // at the end of each IFD is an optional link to the next IFD
-            final int finalTagOffset = calculateTagOffset(ifdOffset, dirTagCount);
-            int nextIfdOffset = reader.getInt32(finalTagOffset);
-            if (nextIfdOffset != 0) {
-                nextIfdOffset += tiffHeaderOffset;
-                if (nextIfdOffset >= reader.getLength()) {
-                    // Last 4 bytes of IFD reference another IFD with an address that is out of bounds
-                    // Note this could have been caused by jhead 1.3 cropping too much
-                    return;
-                } else if (nextIfdOffset < ifdOffset) {
-                    // TODO is this a valid restriction?
-                    // Last 4 bytes of IFD reference another IFD with an address that is before the start of this directory
-                    return;
-                }
+        // at the end of each IFD is an optional link to the next IFD
+        final int finalTagOffset = calculateTagOffset(ifdOffset, dirTagCount);
+        int nextIfdOffset = reader.getInt32(finalTagOffset);
+        if (nextIfdOffset != 0) {
+            nextIfdOffset += tiffHeaderOffset;
+            if (nextIfdOffset >= reader.getLength()) {
+                // Last 4 bytes of IFD reference another IFD with an address that is out of bounds
+                // Note this could have been caused by jhead 1.3 cropping too much
+                return;
+            } else if (nextIfdOffset < ifdOffset) {
+                // TODO is this a valid restriction?
+                // Last 4 bytes of IFD reference another IFD with an address that is before the start of this directory
+                return;
+            }
 
-                if (handler.hasFollowerIfd()) {
-                    processIfd(handler, reader, processedIfdOffsets, nextIfdOffset, tiffHeaderOffset);
-                }
+            frame._followerOffset = nextIfdOffset;
+        }
+    }
+
+    /**
+     * The offsets of IFDs visited during a walk begun by {@link #processTiff}, which also carries the walk's budget
+     * to IFDs that handlers process via {@link #processIfd}.
+     */
+    private static final class VisitedIfdOffsets extends HashSet<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        @NotNull
+        final transient ExtractionBudget _budget;
+
+        VisitedIfdOffsets(@NotNull ExtractionBudget budget)
+        {
+            _budget = budget;
+        }
+    }
+
+    /**
+     * An IFD whose entries have been read, but which remains open while its follower is processed.
+     */
+    private static final class IfdFrame
+    {
+        @Nullable Boolean _resetByteOrder;
+        @Nullable ExtractionBudget _budget;
+        int _followerOffset = -1;
+
+        void exitBudget()
+        {
+            if (_budget != null) {
+                _budget.exitDirectory();
+                _budget = null;
             }
-        } finally {
+        }
+
+        void end(@NotNull TiffHandler handler, @NotNull RandomAccessReader reader)
+        {
+            exitBudget();
             handler.endingIFD();
-            if (resetByteOrder != null)
-                reader.setMotorolaByteOrder(resetByteOrder);
+            if (_resetByteOrder != null)
+                reader.setMotorolaByteOrder(_resetByteOrder);
         }
     }
 
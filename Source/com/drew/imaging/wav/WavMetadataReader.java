@@ -22,8 +22,10 @@ package com.drew.imaging.wav;
 
 import com.drew.imaging.riff.RiffProcessingException;
 import com.drew.imaging.riff.RiffReader;
+import com.drew.lang.ExtractionLimitException;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.file.FileSystemMetadataReader;
 import com.drew.metadata.wav.WavRiffHandler;
@@ -58,7 +60,12 @@ public class WavMetadataReader
     public static Metadata readMetadata(@NotNull InputStream inputStream) throws IOException, RiffProcessingException
     {
         Metadata metadata = new Metadata();
-        new RiffReader().processRiff(new StreamReader(inputStream), new WavRiffHandler(metadata));
+        try {
+            new RiffReader().processRiff(new StreamReader(inputStream), new WavRiffHandler(metadata));
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before the limit was reached
+            metadata.addDirectory(new ErrorDirectory(e.getMessage()));
+        }
         return metadata;
     }
 }
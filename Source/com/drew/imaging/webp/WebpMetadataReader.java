@@ -22,8 +22,10 @@ package com.drew.imaging.webp;
 
 import com.drew.imaging.riff.RiffProcessingException;
 import com.drew.imaging.riff.RiffReader;
+import com.drew.lang.ExtractionLimitException;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.file.FileSystemMetadataReader;
 import com.drew.metadata.webp.WebpRiffHandler;
@@ -55,7 +57,12 @@ public class WebpMetadataReader
     public static Metadata readMetadata(@NotNull InputStream inputStream) throws IOException, RiffProcessingException
     {
         Metadata metadata = new Metadata();
-        new RiffReader().processRiff(new StreamReader(inputStream), new WebpRiffHandler(metadata));
+        try {
+            new RiffReader().processRiff(new StreamReader(inputStream), new WebpRiffHandler(metadata));
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before the limit was reached
+            metadata.addDirectory(new ErrorDirectory(e.getMessage()));
+        }
         return metadata;
     }
 }
@@ -58,6 +58,9 @@ public class ByteArrayReader extends RandomAccessReader
 
         _buffer = buffer;
         _baseOffset = baseOffset;
+
+        if (_ioStats != null)
+            _ioStats.updateBufferedBytes(buffer.length);
     }
 
     @Override
@@ -76,9 +79,19 @@ public class ByteArrayReader extends RandomAccessReader
     public byte getByte(int index) throws IOException
     {
         validateIndex(index, 1);
+        if (_ioStats != null)
+            recordRead(index, 1);
+        if (_budget != null)
+            _budget.chargeBytesRead(1);
         return _buffer[index + _baseOffset];
     }
 
+    @Override
+    long getBufferedByteCount()
+    {
+        return _buffer.length;
+    }
+
     @Override
     protected void validateIndex(int index, int bytesRequested) throws IOException
     {
@@ -100,6 +113,13 @@ public class ByteArrayReader extends RandomAccessReader
     {
         validateIndex(index, count);
 
+        if (_ioStats != null)
+            recordRead(index, count);
+        if (_budget != null) {
+            _budget.chargeAllocation(count);
+            _budget.chargeBytesRead(count);
+        }
+
         byte[] bytes = new byte[count];
         System.arraycopy(_buffer, index + _baseOffset, bytes, 0, count);
         return bytes;
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the resources consumed by a single extraction against its {@link ExtractionLimits}.
+ * <p>
+ * A budget is made current on a thread by {@link #begin}. Readers constructed on that thread until the matching call
+ * to {@link #end} charge their reads and allocations to it, and container walkers such as
+ * {@link com.drew.imaging.tiff.TiffReader} charge each directory they descend into. Walkers used without a current
+ * budget apply the default limits to their own walk, passing a budget down it without making that budget current.
+ * <p>
+ * When a limit would be exceeded, an {@link ExtractionLimitException} is thrown. The budget remains exhausted, so
+ * any further charges also fail.
+ * <p>
+ * Walkers also call {@link #checkpoint} as they go, which stops extraction in the same way once the timeout has
+ * elapsed, the budget has been cancelled, or the thread has been interrupted.
+ * <p>
+ * Instances of this class are not thread-safe, except for {@link #cancel}, which may be called from any thread. Work
+ * done on other threads on behalf of an extraction is charged to a {@link #fork} of its budget instead.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ExtractionBudget
+{
+    private static final ThreadLocal<ExtractionBudget> _current = new ThreadLocal<ExtractionBudget>();
+
+    // The number of threads with a current budget, so that readers need not consult the thread-local otherwise
+    private static final AtomicInteger _activeCount = new AtomicInteger();
+
+    @NotNull
+    private final ExtractionLimits _limits;
+    private long _bytesRead;
+    private long _allocation;
+    private int _directoryCount;
+    private int _depth;
+    private final long _deadlineNanos;
+    private volatile boolean _cancelled;
+    // For a fork, the budget it was forked from and the consumption it started from
+    @Nullable
+    private final ExtractionBudget _parent;
+    private final long _baseBytesRead;
+    private final long _baseAllocation;
+    private final int _baseDirectoryCount;
+
+    @SuppressWarnings("ConstantConditions")
+    public ExtractionBudget(@NotNull ExtractionLimits limits)
+    {
+        if (limits == null)
+            throw new NullPointerException();
+
+        _limits = limits;
+        _deadlineNanos = limits.hasTimeout()
+            ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.getTimeoutMillis())
+            : 0;
+        _parent = null;
+        _baseBytesRead = 0;
+        _baseAllocation = 0;
+        _baseDirectoryCount = 0;
+    }
+
+    private ExtractionBudget(@NotNull ExtractionBudget parent)
+    {
+        _limits = parent._limits;
+        _deadlineNanos = parent._deadlineNanos;
+        _parent = parent;
+        _bytesRead = _baseBytesRead = parent._bytesRead;
+        _allocation = _baseAllocation = parent._allocation;
+        _directoryCount = _baseDirectoryCount = parent._directoryCount;
+        _depth = parent._depth;
+    }
+
+    /**
+     * Creates a budget for work done on another thread on behalf of this budget's extraction, such as decoding
+     * a JPEG segment on an executor. The fork shares this budget's limits and deadline, and stops once this budget
+     * is cancelled. It starts from this budget's current consumption, and its own consumption is added back by
+     * {@link #merge}.
+     * <p>
+     * Each fork may consume whatever remained of this budget when it was created, so concurrent forks may together
+     * exceed a limit. Once merged, such excess exhausts this budget.
+     */
+    @NotNull
+    public ExtractionBudget fork()
+    {
+        return new ExtractionBudget(this);
+    }
+
+    /**
+     * Adds the consumption of <code>fork</code>, created by {@link #fork} and since finished with, to this budget.
+     */
+    public void merge(@NotNull ExtractionBudget fork)
+    {
+        if (fork._parent != this)
+            throw new IllegalArgumentException("Budget was not forked from this budget");
+
+        _bytesRead = Math.min(_limits.getMaxBytesRead(), _bytesRead + (fork._bytesRead - fork._baseBytesRead));
+        _allocation = Math.min(_limits.getMaxAllocation(), _allocation + (fork._allocation - fork._baseAllocation));
+        _directoryCount = Math.min(_limits.getMaxDirectories(), _directoryCount + (fork._directoryCount - fork._baseDirectoryCount));
+    }
+
+    /**
+     * Makes <code>budget</code> current on this thread. Must be paired with a call to {@link #end} in a
+     * <code>finally</code> block.
+     *
+     * @return the previously current budget, to be passed to {@link #end}.
+     */
+    @Nullable
+    public static ExtractionBudget begin(@NotNull ExtractionBudget budget)
+    {
+        ExtractionBudget previous = _current.get();
+        _current.set(budget);
+        _activeCount.incrementAndGet();
+        return previous;
+    }
+
+    /**
+     * Restores the budget that was current before the matching call to {@link #begin}.
+     */
+    public static void end(@Nullable ExtractionBudget previous)
+    {
+        _activeCount.decrementAndGet();
+        if (previous == null)
+            _current.remove();
+        else
+            _current.set(previous);
+    }
+
+    /**
+     * Gets the budget current on this thread, or <code>null</code> if none.
+     */
+    @Nullable
+    public static ExtractionBudget current()
+    {
+        return _activeCount.get() == 0 ? null : _current.get();
+    }
+
+    /**
+     * Gets the budget to which a reader constructed now should charge its reads and allocations, or
+     * <code>null</code> if there is none, or it does not limit them.
+     */
+    @Nullable
+    static ExtractionBudget currentForReader()
+    {
+        ExtractionBudget budget = current();
+        return budget != null && budget._limits.limitsIo() ? budget : null;
+    }
+
+    /**
+     * Stops extraction if the current budget has timed out or been cancelled, or if this thread has been interrupted.
+     * The interrupted status of the thread is left set.
+     * <p>
+     * This is cheap enough to call once per iteration of a loop over blocks, boxes or segments.
+     */
+    public static void checkpoint() throws ExtractionLimitException
+    {
+        ExtractionBudget budget = current();
+        if (budget != null)
+            budget.checkCancellation();
+        else if (Thread.currentThread().isInterrupted())
+            throw new ExtractionLimitException("Extraction interrupted");
+    }
+
+    @NotNull
+    public ExtractionLimits getLimits()
+    {
+        return _limits;
+    }
+
+    public long getBytesRead()
+    {
+        return _bytesRead;
+    }
+
+    public long getAllocation()
+    {
+        return _allocation;
+    }
+
+    public int getDirectoryCount()
+    {
+        return _directoryCount;
+    }
+
+    /**
+     * Charges <code>count</code> bytes delivered by a reader.
+     */
+    public void chargeBytesRead(long count) throws ExtractionLimitException
+    {
+        if (count > _limits.getMaxBytesRead() - _bytesRead) {
+            _bytesRead = _limits.getMaxBytesRead();
+            throw new ExtractionLimitException(String.format("Extraction limit of %d bytes read exceeded", _limits.getMaxBytesRead()));
+        }
+        _bytesRead += count;
+    }
+
+    /**
+     * Charges a buffer of <code>count</code> bytes, before it is allocated.
+     */
+    public void chargeAllocation(long count) throws ExtractionLimitException
+    {
+        if (count > _limits.getMaxAllocation() - _allocation) {
+            _allocation = _limits.getMaxAllocation();
+            throw new ExtractionLimitException(String.format("Extraction limit of %d bytes allocated exceeded", _limits.getMaxAllocation()));
+        }
+        _allocation += count;
+    }
+
+    /**
+     * Charges a directory (IFD, box, atom or list) that a walker is about to descend into, checking the nesting
+     * depth. If this returns normally, it must be paired with a call to {@link #exitDirectory} in a
+     * <code>finally</code> block.
+     */
+    public void enterDirectory() throws ExtractionLimitException
+    {
+        if (_directoryCount >= _limits.getMaxDirectories())
+            throw new ExtractionLimitException(String.format("Extraction limit of %d directories exceeded", _limits.getMaxDirectories()));
+        if (_depth >= _limits.getMaxNesting())
+            throw new ExtractionLimitException(String.format("Extraction limit of %d nested directories exceeded", _limits.getMaxNesting()));
+        _directoryCount++;
+        _depth++;
+    }
+
+    /**
+     * Leaves a directory entered via {@link #enterDirectory}.
+     */
+    public void exitDirectory()
+    {
+        _depth--;
+    }
+
+    /**
+     * Requests that the extraction using this budget stop at its next {@link #checkpoint}. May be called from any
+     * thread.
+     */
+    public void cancel()
+    {
+        _cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return _cancelled || (_parent != null && _parent.isCancelled());
+    }
+
+    /**
+     * Stops extraction if this budget has timed out or been cancelled, or if this thread has been interrupted.
+     *
+     * @see #checkpoint
+     */
+    public void checkCancellation() throws ExtractionLimitException
+    {
+        if (isCancelled())
+            throw new ExtractionLimitException("Extraction cancelled");
+        if (Thread.currentThread().isInterrupted())
+            throw new ExtractionLimitException("Extraction interrupted");
+        if (_limits.hasTimeout() && System.nanoTime() - _deadlineNanos >= 0)
+            throw new ExtractionLimitException(String.format("Extraction timed out after %d ms", _limits.getTimeoutMillis()));
+    }
+}
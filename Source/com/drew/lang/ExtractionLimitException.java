@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import java.io.IOException;
+
+/**
+ * Thrown when extraction exceeds one of its {@link ExtractionLimits}.
+ * <p>
+ * As a subclass of {@link IOException}, this is reported by readers in the same way as truncated or unreadable data,
+ * so that the metadata extracted before the limit was reached is returned along with an error.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ExtractionLimitException extends IOException
+{
+    private static final long serialVersionUID = 6428735409245118712L;
+
+    public ExtractionLimitException(final String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+/**
+ * Bounds on the resources that the extraction of metadata from a single file may consume, protecting against
+ * corrupt or hostile inputs that would otherwise exhaust memory or occupy a thread indefinitely.
+ * <p>
+ * The limits are:
+ * <ul>
+ *     <li><b>max bytes read</b>: the total number of bytes delivered by {@link SequentialReader} and
+ *         {@link RandomAccessReader} instances</li>
+ *     <li><b>max allocation</b>: the total size of the buffers those readers allocate, checked before allocating, so
+ *         that a corrupt length field cannot cause a huge allocation</li>
+ *     <li><b>max directories</b>: the total number of IFDs, boxes, atoms and lists that container walkers such as
+ *         {@link com.drew.imaging.tiff.TiffReader} will descend into</li>
+ *     <li><b>max nesting</b>: the depth to which those walkers will descend</li>
+ *     <li><b>timeout</b>: the time after which those walkers, and the loops that scan JPEG, GIF and EPS data, stop</li>
+ * </ul>
+ *
+ * By default, reads and allocation are unlimited, while directories and nesting are limited far beyond the needs of
+ * any valid file. Limits are applied to an extraction via an {@link ExtractionBudget}.
+ * <p>
+ * Instances of this class are immutable.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ExtractionLimits
+{
+    /** Limits that permit any amount of work. */
+    @NotNull
+    public static final ExtractionLimits UNLIMITED = new ExtractionLimits(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    @NotNull
+    private static volatile ExtractionLimits _default = new ExtractionLimits(Long.MAX_VALUE, Long.MAX_VALUE, 10000, 64);
+
+    private final long _maxBytesRead;
+    private final long _maxAllocation;
+    private final int _maxDirectories;
+    private final int _maxNesting;
+    private final long _timeoutMillis;
+
+    public ExtractionLimits(long maxBytesRead, long maxAllocation, int maxDirectories, int maxNesting)
+    {
+        this(maxBytesRead, maxAllocation, maxDirectories, maxNesting, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param timeoutMillis the time in milliseconds after which extraction stops, measured from the creation of the
+     *                      {@link ExtractionBudget}, or {@link Long#MAX_VALUE} for no timeout.
+     */
+    public ExtractionLimits(long maxBytesRead, long maxAllocation, int maxDirectories, int maxNesting, long timeoutMillis)
+    {
+        if (maxBytesRead < 0 || maxAllocation < 0 || maxDirectories < 0 || maxNesting < 0 || timeoutMillis < 0)
+            throw new IllegalArgumentException("Limits must be zero or greater");
+
+        _maxBytesRead = maxBytesRead;
+        _maxAllocation = maxAllocation;
+        _maxDirectories = maxDirectories;
+        _maxNesting = maxNesting;
+        _timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Gets the limits applied when none are specified.
+     */
+    @NotNull
+    public static ExtractionLimits getDefault()
+    {
+        return _default;
+    }
+
+    /**
+     * Sets the limits applied when none are specified.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public static void setDefault(@NotNull ExtractionLimits limits)
+    {
+        if (limits == null)
+            throw new NullPointerException();
+
+        _default = limits;
+    }
+
+    public long getMaxBytesRead()
+    {
+        return _maxBytesRead;
+    }
+
+    public long getMaxAllocation()
+    {
+        return _maxAllocation;
+    }
+
+    public int getMaxDirectories()
+    {
+        return _maxDirectories;
+    }
+
+    public int getMaxNesting()
+    {
+        return _maxNesting;
+    }
+
+    public long getTimeoutMillis()
+    {
+        return _timeoutMillis;
+    }
+
+    /**
+     * Gets whether a timeout applies, so that budgets need to track a deadline.
+     */
+    boolean hasTimeout()
+    {
+        return _timeoutMillis != Long.MAX_VALUE;
+    }
+
+    @NotNull
+    public ExtractionLimits withMaxBytesRead(long maxBytesRead)
+    {
+        return new ExtractionLimits(maxBytesRead, _maxAllocation, _maxDirectories, _maxNesting, _timeoutMillis);
+    }
+
+    @NotNull
+    public ExtractionLimits withMaxAllocation(long maxAllocation)
+    {
+        return new ExtractionLimits(_maxBytesRead, maxAllocation, _maxDirectories, _maxNesting, _timeoutMillis);
+    }
+
+    @NotNull
+    public ExtractionLimits withMaxDirectories(int maxDirectories)
+    {
+        return new ExtractionLimits(_maxBytesRead, _maxAllocation, maxDirectories, _maxNesting, _timeoutMillis);
+    }
+
+    @NotNull
+    public ExtractionLimits withMaxNesting(int maxNesting)
+    {
+        return new ExtractionLimits(_maxBytesRead, _maxAllocation, _maxDirectories, maxNesting, _timeoutMillis);
+    }
+
+    @NotNull
+    public ExtractionLimits withTimeoutMillis(long timeoutMillis)
+    {
+        return new ExtractionLimits(_maxBytesRead, _maxAllocation, _maxDirectories, _maxNesting, timeoutMillis);
+    }
+
+    /**
+     * Gets whether reads or allocation are limited, so that readers need to account for them.
+     */
+    boolean limitsIo()
+    {
+        return _maxBytesRead != Long.MAX_VALUE || _maxAllocation != Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets whether only directories and nesting are limited. Container walkers apply such limits themselves when no
+     * {@link ExtractionBudget} is current, so an extraction need not make one current for the whole of its duration.
+     */
+    public boolean limitsOnlyDirectories()
+    {
+        return !limitsIo() && !hasTimeout();
+    }
+
+    @Override
+    @NotNull
+    public String toString()
+    {
+        return String.format("max %d bytes read, %d allocated, %d directories, nesting %d, timeout %d ms",
+            _maxBytesRead, _maxAllocation, _maxDirectories, _maxNesting, _timeoutMillis);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accumulates counts of the I/O performed by {@link SequentialReader} and {@link RandomAccessReader} instances,
+ * such as during the extraction of metadata from a single file.
+ * <p>
+ * Readers record to the instance passed to {@link #begin} on the thread that constructed them, until the matching
+ * call to {@link #end}. Readers constructed on other threads are not counted, unless the work is recorded to a
+ * separate instance that is then added via {@link #add}, as when decoding JPEG segments on an executor. A reader may
+ * also be attached explicitly via its <code>setIoStats</code> method.
+ * <p>
+ * The counts are:
+ * <ul>
+ *     <li><b>bytes read</b>: bytes delivered to callers of the readers</li>
+ *     <li><b>bytes skipped</b>: bytes passed over, either explicitly by a sequential reader or by a random access
+ *         reader jumping forward between reads</li>
+ *     <li><b>backward seeks</b>: reads made by a random access reader before the end of its previous read</li>
+ *     <li><b>read calls</b>: calls made to the underlying {@link java.io.InputStream} or file</li>
+ *     <li><b>peak buffered bytes</b>: the most bytes held in memory by any one reader, whether a byte array it
+ *         wraps or data it has buffered from a stream</li>
+ * </ul>
+ *
+ * Instances of this class are not thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class IoStats
+{
+    private static final ThreadLocal<IoStats> _current = new ThreadLocal<IoStats>();
+
+    // The number of threads collecting statistics, so that readers need not consult the thread-local otherwise
+    private static final AtomicInteger _activeCount = new AtomicInteger();
+
+    private long _bytesRead;
+    private long _bytesSkipped;
+    private long _backwardSeekCount;
+    private long _readCallCount;
+    private long _peakBufferedBytes;
+
+    /**
+     * Starts recording to <code>stats</code> the I/O of readers subsequently constructed on the current thread.
+     * Must be paired with a call to {@link #end} in a <code>finally</code> block.
+     *
+     * @return the previously current instance, to be passed to {@link #end}.
+     */
+    @Nullable
+    public static IoStats begin(@NotNull IoStats stats)
+    {
+        IoStats previous = _current.get();
+        _current.set(stats);
+        _activeCount.incrementAndGet();
+        return previous;
+    }
+
+    /**
+     * Stops recording to the instance passed to the matching call to {@link #begin}, restoring <code>previous</code>.
+     */
+    public static void end(@Nullable IoStats previous)
+    {
+        _activeCount.decrementAndGet();
+        if (previous == null)
+            _current.remove();
+        else
+            _current.set(previous);
+    }
+
+    /**
+     * Gets the instance to which readers constructed on the current thread should record, or <code>null</code>.
+     */
+    @Nullable
+    public static IoStats current()
+    {
+        return _activeCount.get() == 0 ? null : _current.get();
+    }
+
+    /**
+     * Gets the number of bytes delivered to callers of the readers.
+     */
+    public long getBytesRead()
+    {
+        return _bytesRead;
+    }
+
+    /**
+     * Gets the number of bytes skipped over without being delivered.
+     */
+    public long getBytesSkipped()
+    {
+        return _bytesSkipped;
+    }
+
+    /**
+     * Gets the number of times a random access reader was read at an index before the end of its previous read.
+     */
+    public long getBackwardSeekCount()
+    {
+        return _backwardSeekCount;
+    }
+
+    /**
+     * Gets the number of read calls made to underlying streams and files.
+     */
+    public long getReadCallCount()
+    {
+        return _readCallCount;
+    }
+
+    /**
+     * Gets the largest number of bytes held in memory by any one reader.
+     */
+    public long getPeakBufferedBytes()
+    {
+        return _peakBufferedBytes;
+    }
+
+    /**
+     * Adds the counts of <code>other</code>, such as one recorded on another thread, to this instance. The peak
+     * buffered bytes becomes the larger of the two.
+     */
+    public void add(@NotNull IoStats other)
+    {
+        _bytesRead += other._bytesRead;
+        _bytesSkipped += other._bytesSkipped;
+        _backwardSeekCount += other._backwardSeekCount;
+        _readCallCount += other._readCallCount;
+        updateBufferedBytes(other._peakBufferedBytes);
+    }
+
+    void addBytesRead(long count)
+    {
+        _bytesRead += count;
+    }
+
+    void addBytesSkipped(long count)
+    {
+        _bytesSkipped += count;
+    }
+
+    void addReadCall()
+    {
+        _readCallCount++;
+    }
+
+    void updateBufferedBytes(long count)
+    {
+        if (count > _peakBufferedBytes)
+            _peakBufferedBytes = count;
+    }
+
+    /**
+     * Records a read of <code>count</code> bytes at <code>index</code> by a random access reader whose previous read
+     * ended at <code>previousEnd</code>, classifying the jump between them as a skip or a backward seek.
+     *
+     * @return the index at which this read ends.
+     */
+    long addRandomRead(long previousEnd, long index, int count)
+    {
+        if (index > previousEnd)
+            _bytesSkipped += index - previousEnd;
+        else if (index < previousEnd)
+            _backwardSeekCount++;
+        _bytesRead += count;
+        return index + count;
+    }
+
+    @Override
+    @NotNull
+    public String toString()
+    {
+        return String.format("%d bytes read, %d skipped, %d backward seeks, %d read calls, %d peak buffered",
+            _bytesRead, _bytesSkipped, _backwardSeekCount, _readCallCount, _peakBufferedBytes);
+    }
+}
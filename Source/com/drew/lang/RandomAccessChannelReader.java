@@ -0,0 +1,190 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a window of a {@link FileChannel}, loading fixed-length chunks as they are first accessed, so that only the
+ * parts of the window that are used are read.
+ * <p>
+ * Reads are positional, so they neither depend on nor change the position of the channel, which may be in use
+ * elsewhere at the same time.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class RandomAccessChannelReader extends RandomAccessReader
+{
+    public final static int DEFAULT_CHUNK_LENGTH = 2 * 1024;
+
+    @NotNull
+    private final FileChannel _channel;
+    private final long _offset;
+    private final int _length;
+    private final int _chunkLength;
+
+    @NotNull
+    private final byte[][] _chunks;
+    private int _loadedChunkCount;
+
+    /**
+     * @param channel the channel from which data is read
+     * @param offset the position within <code>channel</code> at which the window starts, and which this reader
+     *               presents as index zero
+     * @param length the length of the window
+     */
+    public RandomAccessChannelReader(@NotNull FileChannel channel, long offset, int length)
+    {
+        this(channel, offset, length, DEFAULT_CHUNK_LENGTH);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    public RandomAccessChannelReader(@NotNull FileChannel channel, long offset, int length, int chunkLength)
+    {
+        if (channel == null)
+            throw new NullPointerException();
+        if (offset < 0 || length < 0)
+            throw new IllegalArgumentException("offset and length must be zero or greater");
+        if (chunkLength <= 0)
+            throw new IllegalArgumentException("chunkLength must be greater than zero");
+
+        _channel = channel;
+        _offset = offset;
+        _length = length;
+        _chunkLength = chunkLength;
+        _chunks = new byte[(int)(((long)length + chunkLength - 1) / chunkLength)][];
+    }
+
+    @Override
+    public int toUnshiftedOffset(int localOffset)
+    {
+        return (int)(_offset + localOffset);
+    }
+
+    @Override
+    public long getLength()
+    {
+        return _length;
+    }
+
+    @Override
+    protected void validateIndex(int index, int bytesRequested) throws IOException
+    {
+        if (!isValidIndex(index, bytesRequested))
+            throw new BufferBoundsException(index, bytesRequested, _length);
+    }
+
+    @Override
+    protected boolean isValidIndex(int index, int bytesRequested) throws IOException
+    {
+        return bytesRequested >= 0
+                && index >= 0
+                && (long)index + (long)bytesRequested - 1L < _length;
+    }
+
+    @Override
+    long getBufferedByteCount()
+    {
+        return (long)_loadedChunkCount * _chunkLength;
+    }
+
+    @Override
+    public byte getByte(int index) throws IOException
+    {
+        validateIndex(index, 1);
+
+        if (_ioStats != null)
+            recordRead(index, 1);
+        if (_budget != null)
+            _budget.chargeBytesRead(1);
+
+        return getChunk(index / _chunkLength)[index % _chunkLength];
+    }
+
+    @NotNull
+    @Override
+    public byte[] getBytes(int index, int count) throws IOException
+    {
+        validateIndex(index, count);
+
+        if (_ioStats != null)
+            recordRead(index, count);
+        if (_budget != null) {
+            _budget.chargeAllocation(count);
+            _budget.chargeBytesRead(count);
+        }
+
+        byte[] bytes = new byte[count];
+
+        int remaining = count;
+        int fromIndex = index;
+        int toIndex = 0;
+
+        while (remaining != 0) {
+            int fromInnerIndex = fromIndex % _chunkLength;
+            int length = Math.min(remaining, _chunkLength - fromInnerIndex);
+
+            byte[] chunk = getChunk(fromIndex / _chunkLength);
+
+            System.arraycopy(chunk, fromInnerIndex, bytes, toIndex, length);
+
+            remaining -= length;
+            fromIndex += length;
+            toIndex += length;
+        }
+
+        return bytes;
+    }
+
+    @NotNull
+    private byte[] getChunk(int chunkIndex) throws IOException
+    {
+        byte[] chunk = _chunks[chunkIndex];
+        if (chunk != null)
+            return chunk;
+
+        int chunkStart = chunkIndex * _chunkLength;
+        int length = Math.min(_chunkLength, _length - chunkStart);
+
+        if (_budget != null)
+            _budget.chargeAllocation(length);
+
+        chunk = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (buffer.hasRemaining()) {
+            int bytesRead = _channel.read(buffer, _offset + chunkStart + buffer.position());
+            if (_ioStats != null)
+                _ioStats.addReadCall();
+            if (bytesRead == -1)
+                throw new BufferBoundsException("Unexpected end of file encountered.");
+        }
+
+        _chunks[chunkIndex] = chunk;
+        _loadedChunkCount++;
+        if (_ioStats != null)
+            _ioStats.updateBufferedBytes(getBufferedByteCount());
+        return chunk;
+    }
+}
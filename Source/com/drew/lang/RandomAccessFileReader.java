@@ -78,6 +78,13 @@ public class RandomAccessFileReader extends RandomAccessReader
         if (index != _currentIndex)
             seek(index);
 
+        if (_ioStats != null) {
+            recordRead(index, 1);
+            _ioStats.addReadCall();
+        }
+        if (_budget != null)
+            _budget.chargeBytesRead(1);
+
         final int b = _file.read();
         if (b < 0)
             throw new BufferBoundsException("Unexpected end of file encountered.");
@@ -95,6 +102,15 @@ public class RandomAccessFileReader extends RandomAccessReader
         if (index != _currentIndex)
             seek(index);
 
+        if (_ioStats != null) {
+            recordRead(index, count);
+            _ioStats.addReadCall();
+        }
+        if (_budget != null) {
+            _budget.chargeAllocation(count);
+            _budget.chargeBytesRead(count);
+        }
+
         byte[] bytes = new byte[count];
         final int bytesRead = _file.read(bytes);
         _currentIndex += bytesRead;
@@ -47,8 +47,56 @@ public abstract class RandomAccessReader
 {
     private boolean _isMotorolaByteOrder = true;
 
+    @Nullable
+    IoStats _ioStats = IoStats.current();
+
+    // Only set if the current budget limits reads or allocation
+    @Nullable
+    final ExtractionBudget _budget = ExtractionBudget.currentForReader();
+
+    // The index at which the last read recorded to _ioStats ended
+    long _ioEnd;
+
     public abstract int toUnshiftedOffset(int localOffset);
 
+    /**
+     * Sets the {@link IoStats} to which this reader's I/O is recorded, replacing that which was current on the
+     * constructing thread, if any.
+     *
+     * @param ioStats the statistics to record to, or <code>null</code> to stop recording.
+     */
+    public void setIoStats(@Nullable IoStats ioStats)
+    {
+        _ioStats = ioStats;
+        if (ioStats != null)
+            ioStats.updateBufferedBytes(getBufferedByteCount());
+    }
+
+    /**
+     * Gets the {@link IoStats} to which this reader's I/O is recorded, or <code>null</code> if none.
+     */
+    @Nullable
+    public IoStats getIoStats()
+    {
+        return _ioStats;
+    }
+
+    /**
+     * Gets the number of bytes this reader currently holds in memory, for {@link IoStats}.
+     */
+    long getBufferedByteCount()
+    {
+        return 0;
+    }
+
+    /**
+     * Records a read to {@link #_ioStats}, which must not be <code>null</code>.
+     */
+    void recordRead(int index, int count)
+    {
+        _ioEnd = _ioStats.addRandomRead(_ioEnd, index, count);
+    }
+
     /**
      * Gets the byte value at the specified byte <code>index</code>.
      * <p>
@@ -136,10 +136,15 @@ public class RandomAccessStreamReader extends RandomAccessReader
         while (chunkIndex >= _chunks.size()) {
             assert (!_isStreamFinished);
 
+            if (_budget != null)
+                _budget.chargeAllocation(_chunkLength);
+
             byte[] chunk = new byte[_chunkLength];
             int totalBytesRead = 0;
             while (!_isStreamFinished && totalBytesRead != _chunkLength) {
                 int bytesRead = _stream.read(chunk, totalBytesRead, _chunkLength - totalBytesRead);
+                if (_ioStats != null)
+                    _ioStats.addReadCall();
                 if (bytesRead == -1) {
                     // the stream has ended, which may be ok
                     _isStreamFinished = true;
@@ -153,6 +158,8 @@ public class RandomAccessStreamReader extends RandomAccessReader
                     // check we have enough bytes for the requested index
                     if (endIndex >= _streamLength) {
                         _chunks.add(chunk);
+                        if (_ioStats != null)
+                            _ioStats.updateBufferedBytes(getBufferedByteCount());
                         return false;
                     }
                 } else {
@@ -161,11 +168,19 @@ public class RandomAccessStreamReader extends RandomAccessReader
             }
 
             _chunks.add(chunk);
+            if (_ioStats != null)
+                _ioStats.updateBufferedBytes(getBufferedByteCount());
         }
 
         return true;
     }
 
+    @Override
+    long getBufferedByteCount()
+    {
+        return (long)_chunks.size() * _chunkLength;
+    }
+
     @Override
     public int toUnshiftedOffset(int localOffset)
     {
@@ -177,6 +192,11 @@ public class RandomAccessStreamReader extends RandomAccessReader
     {
         assert(index >= 0);
 
+        if (_ioStats != null)
+            recordRead(index, 1);
+        if (_budget != null)
+            _budget.chargeBytesRead(1);
+
         final int chunkIndex = index / _chunkLength;
         final int innerIndex = index % _chunkLength;
         final byte[] chunk = _chunks.get(chunkIndex);
@@ -190,6 +210,13 @@ public class RandomAccessStreamReader extends RandomAccessReader
     {
         validateIndex(index, count);
 
+        if (_ioStats != null)
+            recordRead(index, count);
+        if (_budget != null) {
+            _budget.chargeAllocation(count);
+            _budget.chargeBytesRead(count);
+        }
+
         byte[] bytes = new byte[count];
 
         int remaining = count;
@@ -55,6 +55,15 @@ public class SequentialByteArrayReader extends SequentialReader
 
         _bytes = bytes;
         _index = baseIndex;
+
+        if (_ioStats != null)
+            _ioStats.updateBufferedBytes(bytes.length);
+    }
+
+    @Override
+    long getBufferedByteCount()
+    {
+        return _bytes.length;
     }
 
     @Override
@@ -63,6 +72,10 @@ public class SequentialByteArrayReader extends SequentialReader
         if (_index >= _bytes.length) {
             throw new EOFException("End of data reached.");
         }
+        if (_ioStats != null)
+            _ioStats.addBytesRead(1);
+        if (_budget != null)
+            _budget.chargeBytesRead(1);
         return _bytes[_index++];
     }
 
@@ -74,9 +87,16 @@ public class SequentialByteArrayReader extends SequentialReader
             throw new EOFException("End of data reached.");
         }
 
+        if (_budget != null) {
+            _budget.chargeAllocation(count);
+            _budget.chargeBytesRead(count);
+        }
+
         byte[] bytes = new byte[count];
         System.arraycopy(_bytes, _index, bytes, 0, count);
         _index += count;
+        if (_ioStats != null)
+            _ioStats.addBytesRead(count);
 
         return bytes;
     }
@@ -88,8 +108,28 @@ public class SequentialByteArrayReader extends SequentialReader
             throw new EOFException("End of data reached.");
         }
 
+        if (_budget != null)
+            _budget.chargeBytesRead(count);
+
         System.arraycopy(_bytes, _index, buffer, offset, count);
         _index += count;
+        if (_ioStats != null)
+            _ioStats.addBytesRead(count);
+    }
+
+    @Override
+    public int tryGetBytes(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        int bytesRead = Math.max(0, Math.min(count, _bytes.length - _index));
+
+        if (_budget != null)
+            _budget.chargeBytesRead(bytesRead);
+
+        System.arraycopy(_bytes, _index, buffer, offset, bytesRead);
+        _index += bytesRead;
+        if (_ioStats != null)
+            _ioStats.addBytesRead(bytesRead);
+        return bytesRead;
     }
 
     @Override
@@ -104,6 +144,8 @@ public class SequentialByteArrayReader extends SequentialReader
         }
 
         _index += n;
+        if (_ioStats != null)
+            _ioStats.addBytesSkipped(n);
     }
 
     @Override
@@ -113,13 +155,18 @@ public class SequentialByteArrayReader extends SequentialReader
             throw new IllegalArgumentException("n must be zero or greater.");
         }
 
+        int start = _index;
         _index += n;
 
         if (_index > _bytes.length) {
             _index = _bytes.length;
+            if (_ioStats != null)
+                _ioStats.addBytesSkipped(_index - start);
             return false;
         }
 
+        if (_ioStats != null)
+            _ioStats.addBytesSkipped(n);
         return true;
     }
 
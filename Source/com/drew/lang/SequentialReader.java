@@ -40,6 +40,43 @@ public abstract class SequentialReader
 
     private boolean _isMotorolaByteOrder = true;
 
+    @Nullable
+    IoStats _ioStats = IoStats.current();
+
+    // Only set if the current budget limits reads or allocation
+    @Nullable
+    final ExtractionBudget _budget = ExtractionBudget.currentForReader();
+
+    /**
+     * Sets the {@link IoStats} to which this reader's I/O is recorded, replacing that which was current on the
+     * constructing thread, if any.
+     *
+     * @param ioStats the statistics to record to, or <code>null</code> to stop recording.
+     */
+    public void setIoStats(@Nullable IoStats ioStats)
+    {
+        _ioStats = ioStats;
+        if (ioStats != null)
+            ioStats.updateBufferedBytes(getBufferedByteCount());
+    }
+
+    /**
+     * Gets the {@link IoStats} to which this reader's I/O is recorded, or <code>null</code> if none.
+     */
+    @Nullable
+    public IoStats getIoStats()
+    {
+        return _ioStats;
+    }
+
+    /**
+     * Gets the number of bytes this reader currently holds in memory, for {@link IoStats}.
+     */
+    long getBufferedByteCount()
+    {
+        return 0;
+    }
+
     public abstract long getPosition() throws IOException;
 
     /**
@@ -66,6 +103,32 @@ public abstract class SequentialReader
      */
     public abstract void getBytes(@NotNull byte[] buffer, int offset, int count) throws IOException;
 
+    /**
+     * Retrieves up to <code>count</code> bytes, writing them into a caller-provided buffer. Fewer bytes are returned
+     * only if the sequence ends.
+     * <p>
+     * This implementation reads one byte at a time. Subclasses override it to read in bulk.
+     *
+     * @param buffer The array to write bytes to.
+     * @param offset The starting position within buffer to write to.
+     * @param count The maximum number of bytes to be written.
+     * @return The number of bytes written, which is zero if the sequence has ended.
+     * @throws IOException an error occurred reading from the underlying source.
+     */
+    public int tryGetBytes(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        int bytesRead = 0;
+        try {
+            while (bytesRead < count) {
+                buffer[offset + bytesRead] = getByte();
+                bytesRead++;
+            }
+        } catch (EOFException ignored) {
+            // The sequence has ended
+        }
+        return bytesRead;
+    }
+
     /**
      * Skips forward in the sequence. If the sequence ends, an {@link EOFException} is thrown.
      *
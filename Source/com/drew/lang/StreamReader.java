@@ -58,9 +58,15 @@ public class StreamReader extends SequentialReader
     public byte getByte() throws IOException
     {
         int value = _stream.read();
+        if (_ioStats != null)
+            _ioStats.addReadCall();
         if (value == -1)
             throw new EOFException("End of data reached.");
         _pos++;
+        if (_ioStats != null)
+            _ioStats.addBytesRead(1);
+        if (_budget != null)
+            _budget.chargeBytesRead(1);
         return (byte)value;
     }
 
@@ -68,6 +74,10 @@ public class StreamReader extends SequentialReader
     @Override
     public byte[] getBytes(int count) throws IOException
     {
+        // Check before allocating, as the count is often read from the data itself
+        if (_budget != null)
+            _budget.chargeAllocation(count);
+
         byte[] bytes = new byte[count];
         getBytes(bytes, 0, count);
         return bytes;
@@ -80,12 +90,39 @@ public class StreamReader extends SequentialReader
         while (totalBytesRead != count)
         {
             final int bytesRead = _stream.read(buffer, offset + totalBytesRead, count - totalBytesRead);
+            if (_ioStats != null)
+                _ioStats.addReadCall();
             if (bytesRead == -1)
                 throw new EOFException("End of data reached.");
             totalBytesRead += bytesRead;
             assert(totalBytesRead <= count);
         }
         _pos += totalBytesRead;
+        if (_ioStats != null)
+            _ioStats.addBytesRead(totalBytesRead);
+        if (_budget != null)
+            _budget.chargeBytesRead(totalBytesRead);
+    }
+
+    @Override
+    public int tryGetBytes(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        int totalBytesRead = 0;
+        while (totalBytesRead != count)
+        {
+            final int bytesRead = _stream.read(buffer, offset + totalBytesRead, count - totalBytesRead);
+            if (_ioStats != null)
+                _ioStats.addReadCall();
+            if (bytesRead == -1)
+                break;
+            totalBytesRead += bytesRead;
+        }
+        _pos += totalBytesRead;
+        if (_ioStats != null)
+            _ioStats.addBytesRead(totalBytesRead);
+        if (_budget != null)
+            _budget.chargeBytesRead(totalBytesRead);
+        return totalBytesRead;
     }
 
     @Override
@@ -135,6 +172,8 @@ public class StreamReader extends SequentialReader
                 break;
         }
         _pos += skippedTotal;
+        if (_ioStats != null)
+            _ioStats.addBytesSkipped(skippedTotal);
         return skippedTotal;
     }
 }
@@ -0,0 +1,846 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.adobe.internal.xmp.XMPException;
+import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
+import com.drew.imaging.FileType;
+import com.drew.imaging.png.PngChunkType;
+import com.drew.imaging.png.PngProcessingException;
+import com.drew.lang.KeyValuePair;
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.file.FileTypeDirectory;
+import com.drew.metadata.gif.GifCommentDirectory;
+import com.drew.metadata.jpeg.JpegComponent;
+import com.drew.metadata.png.PngDirectory;
+import com.drew.metadata.xmp.XmpDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes {@link Metadata} to a compact binary form, and reads it back as the same {@link Directory} types, tags and
+ * typed values.
+ * <p>
+ * Reading this form is much cheaper than extracting metadata from the original file again, as no file format
+ * parsing is involved. XMP is stored as a serialized packet, which is only parsed again if the XMP data is accessed.
+ * <p>
+ * Each record consists of:
+ * <ul>
+ *     <li>the four byte magic number <code>MDXC</code> and a one byte format version</li>
+ *     <li>the payload length, as a varint</li>
+ *     <li>a table of the distinct strings in the record, including directory class names</li>
+ *     <li>a table of the directory types in the record, as indices into the string table</li>
+ *     <li>each directory's type, parent, tags and errors</li>
+ * </ul>
+ * Integers are written as varints, using zig-zag encoding where they may be negative. Each tag value is preceded
+ * by a one byte type code, so that values such as {@link Rational}, {@link StringValue} and primitive arrays are
+ * restored with their original types.
+ * <p>
+ * Records are self-delimiting, so several may be written to the same stream. Reading a record does not consume any
+ * bytes beyond it.
+ * <p>
+ * The format is versioned. Records written by a later, incompatible version of this class cause {@link #read} to
+ * throw an {@link IOException}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class MetadataCodec
+{
+    private static final byte[] MAGIC = { 'M', 'D', 'X', 'C' };
+    private static final int VERSION = 1;
+
+    // Payloads longer than this are read in chunks of this size, so that a corrupt length cannot cause a huge allocation
+    private static final int PAYLOAD_CHUNK_LENGTH = 64 * 1024;
+
+    // Value type codes. These are part of the format, so must not be changed.
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_FLOAT = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_BOOLEAN = 5;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_STRING_VALUE = 7;
+    private static final int TYPE_RATIONAL = 8;
+    private static final int TYPE_DATE = 9;
+    private static final int TYPE_BYTE_ARRAY = 10;
+    private static final int TYPE_SHORT_ARRAY = 11;
+    private static final int TYPE_INT_ARRAY = 12;
+    private static final int TYPE_LONG_ARRAY = 13;
+    private static final int TYPE_FLOAT_ARRAY = 14;
+    private static final int TYPE_DOUBLE_ARRAY = 15;
+    private static final int TYPE_RATIONAL_ARRAY = 16;
+    private static final int TYPE_STRING_ARRAY = 17;
+    private static final int TYPE_STRING_VALUE_ARRAY = 18;
+    private static final int TYPE_SHORT = 19;
+    private static final int TYPE_BYTE = 20;
+    private static final int TYPE_ENUM = 21;
+    private static final int TYPE_KEY_VALUE_LIST = 22;
+    private static final int TYPE_JPEG_COMPONENT = 23;
+
+    // Directory flags
+    private static final int FLAG_HAS_CONSTRUCTOR_ARGUMENT = 1;
+    private static final int FLAG_HAS_XMP = 2;
+
+    // Resolved directory and enum types, keyed by class name
+    @NotNull
+    private static final ConcurrentHashMap<String, Class<?>> _classCache = new ConcurrentHashMap<String, Class<?>>();
+
+    private MetadataCodec()
+    {
+    }
+
+    /**
+     * Writes <code>metadata</code> to <code>stream</code> as a single record.
+     *
+     * @throws IOException if writing fails, or if a tag holds a value of a type this codec cannot represent.
+     */
+    public static void write(@NotNull Metadata metadata, @NotNull OutputStream stream) throws IOException
+    {
+        Encoder body = new Encoder();
+        StringTable strings = new StringTable();
+
+        List<Directory> directories = new ArrayList<Directory>();
+        Map<Directory, Integer> directoryIndices = new HashMap<Directory, Integer>();
+        for (Directory directory : metadata.getDirectories()) {
+            directoryIndices.put(directory, directories.size());
+            directories.add(directory);
+        }
+
+        Map<Class<?>, Integer> typeIndices = new HashMap<Class<?>, Integer>();
+        List<Integer> types = new ArrayList<Integer>();
+
+        body.writeVarInt(directories.size());
+        for (Directory directory : directories) {
+            Integer typeIndex = typeIndices.get(directory.getClass());
+            if (typeIndex == null) {
+                typeIndex = types.size();
+                typeIndices.put(directory.getClass(), typeIndex);
+                types.add(strings.indexOf(directory.getClass().getName()));
+            }
+            body.writeVarInt(typeIndex);
+
+            // Parents are written as an index into the directory list plus one, or zero if there is none
+            Directory parent = directory.getParent();
+            Integer parentIndex = parent == null ? null : directoryIndices.get(parent);
+            body.writeVarInt(parentIndex == null ? 0 : parentIndex + 1);
+
+            String constructorArgument = getConstructorArgument(directory);
+            byte[] xmp = directory instanceof XmpDirectory ? serializeXmp((XmpDirectory)directory) : null;
+
+            int flags = 0;
+            if (constructorArgument != null)
+                flags |= FLAG_HAS_CONSTRUCTOR_ARGUMENT;
+            if (xmp != null)
+                flags |= FLAG_HAS_XMP;
+            body.write(flags);
+
+            if (constructorArgument != null)
+                body.writeVarInt(strings.indexOf(constructorArgument));
+            if (xmp != null)
+                body.writeLengthPrefixed(xmp);
+
+            body.writeVarInt(directory.getTagCount());
+            for (Tag tag : directory.getTags()) {
+                int tagType = tag.getTagType();
+                Object value = directory.getObject(tagType);
+                if (value == null)
+                    throw new IOException("Tag " + tagType + " in directory " + directory.getName() + " has no value");
+                body.writeVarLong(tagType & 0xFFFFFFFFL);
+                writeValue(body, strings, value, directory, tagType);
+            }
+
+            body.writeVarInt(directory.getErrorCount());
+            for (String error : directory.getErrors())
+                body.writeVarInt(strings.indexOf(error));
+        }
+
+        Encoder payload = new Encoder();
+        payload.writeVarInt(strings.size());
+        for (String string : strings.values())
+            payload.writeLengthPrefixed(string.getBytes("UTF-8"));
+        payload.writeVarInt(types.size());
+        for (Integer type : types)
+            payload.writeVarInt(type);
+        payload.write(body.getBuffer(), 0, body.size());
+
+        Encoder header = new Encoder();
+        header.write(MAGIC);
+        header.write(VERSION);
+        header.writeVarInt(payload.size());
+
+        stream.write(header.getBuffer(), 0, header.size());
+        stream.write(payload.getBuffer(), 0, payload.size());
+    }
+
+    /**
+     * Reads a single record from <code>stream</code>, as written by {@link #write}.
+     *
+     * @throws IOException if the stream ends early, or does not contain a record of a supported version.
+     */
+    @NotNull
+    public static Metadata read(@NotNull InputStream stream) throws IOException
+    {
+        DataInputStream input = new DataInputStream(stream);
+
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i])
+                throw new IOException("Stream does not contain encoded metadata");
+        }
+
+        int version = input.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported encoded metadata version " + version);
+
+        int payloadLength = readVarInt(input);
+        if (payloadLength < 0)
+            throw new IOException("Encoded metadata has invalid length " + payloadLength);
+        byte[] payload = readPayload(input, payloadLength);
+
+        try {
+            return decode(new Decoder(payload));
+        } catch (RuntimeException e) {
+            // Malformed payloads may produce out of range indices or lengths
+            IOException ex = new IOException("Encoded metadata is corrupt: " + e);
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    @NotNull
+    private static Metadata decode(@NotNull Decoder decoder) throws IOException
+    {
+        String[] strings = new String[decoder.readArrayLength()];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = new String(decoder.readBytes(), "UTF-8");
+
+        Class<?>[] types = new Class<?>[decoder.readArrayLength()];
+        for (int i = 0; i < types.length; i++) {
+            String className = strings[decoder.readVarInt()];
+            types[i] = getClass(className);
+            if (!Directory.class.isAssignableFrom(types[i]))
+                throw new IOException("Type " + className + " is not a directory");
+        }
+
+        Directory[] directories = new Directory[decoder.readArrayLength()];
+        int[] parentIndices = new int[directories.length];
+
+        for (int i = 0; i < directories.length; i++) {
+            Class<?> type = types[decoder.readVarInt()];
+            parentIndices[i] = decoder.readVarInt();
+
+            int flags = decoder.readByte();
+            String constructorArgument = (flags & FLAG_HAS_CONSTRUCTOR_ARGUMENT) != 0 ? strings[decoder.readVarInt()] : null;
+            byte[] xmp = (flags & FLAG_HAS_XMP) != 0 ? decoder.readBytes() : null;
+
+            Directory directory = createDirectory(type, constructorArgument);
+
+            int tagCount = decoder.readVarInt();
+            for (int t = 0; t < tagCount; t++) {
+                int tagType = (int)decoder.readVarLong();
+                directory.setObject(tagType, readValue(decoder, strings));
+            }
+
+            int errorCount = decoder.readVarInt();
+            for (int e = 0; e < errorCount; e++)
+                directory.addError(strings[decoder.readVarInt()]);
+
+            if (xmp != null) {
+                if (!(directory instanceof XmpDirectory))
+                    throw new IOException("Directory of type " + type.getName() + " cannot hold XMP");
+                ((XmpDirectory)directory).setXMPPacket(xmp);
+            }
+
+            directories[i] = directory;
+        }
+
+        Metadata metadata = new Metadata();
+        for (int i = 0; i < directories.length; i++) {
+            if (parentIndices[i] != 0)
+                directories[i].setParent(directories[parentIndices[i] - 1]);
+            metadata.addDirectory(directories[i]);
+        }
+        return metadata;
+    }
+
+    private static void writeValue(@NotNull Encoder encoder, @NotNull StringTable strings, @NotNull Object value, @NotNull Directory directory, int tagType) throws IOException
+    {
+        if (value instanceof Integer) {
+            encoder.write(TYPE_INT);
+            encoder.writeVarLong(zigZag((Integer)value));
+        } else if (value instanceof Long) {
+            encoder.write(TYPE_LONG);
+            encoder.writeVarLong(zigZag((Long)value));
+        } else if (value instanceof Short) {
+            encoder.write(TYPE_SHORT);
+            encoder.writeVarLong(zigZag((Short)value));
+        } else if (value instanceof Byte) {
+            encoder.write(TYPE_BYTE);
+            encoder.write((Byte)value);
+        } else if (value instanceof Float) {
+            encoder.write(TYPE_FLOAT);
+            encoder.writeInt(Float.floatToRawIntBits((Float)value));
+        } else if (value instanceof Double) {
+            encoder.write(TYPE_DOUBLE);
+            encoder.writeLong(Double.doubleToRawLongBits((Double)value));
+        } else if (value instanceof Boolean) {
+            encoder.write(TYPE_BOOLEAN);
+            encoder.write((Boolean)value ? 1 : 0);
+        } else if (value instanceof String) {
+            encoder.write(TYPE_STRING);
+            encoder.writeVarInt(strings.indexOf((String)value));
+        } else if (value instanceof StringValue) {
+            encoder.write(TYPE_STRING_VALUE);
+            writeStringValue(encoder, strings, (StringValue)value);
+        } else if (value instanceof Rational) {
+            encoder.write(TYPE_RATIONAL);
+            writeRational(encoder, (Rational)value);
+        } else if (value.getClass() == Date.class) {
+            encoder.write(TYPE_DATE);
+            encoder.writeVarLong(zigZag(((Date)value).getTime()));
+        } else if (value instanceof byte[]) {
+            encoder.write(TYPE_BYTE_ARRAY);
+            encoder.writeLengthPrefixed((byte[])value);
+        } else if (value instanceof short[]) {
+            short[] array = (short[])value;
+            encoder.write(TYPE_SHORT_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (short s : array)
+                encoder.writeVarLong(zigZag(s));
+        } else if (value instanceof int[]) {
+            int[] array = (int[])value;
+            encoder.write(TYPE_INT_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (int n : array)
+                encoder.writeVarLong(zigZag(n));
+        } else if (value instanceof long[]) {
+            long[] array = (long[])value;
+            encoder.write(TYPE_LONG_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (long n : array)
+                encoder.writeVarLong(zigZag(n));
+        } else if (value instanceof float[]) {
+            float[] array = (float[])value;
+            encoder.write(TYPE_FLOAT_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (float f : array)
+                encoder.writeInt(Float.floatToRawIntBits(f));
+        } else if (value instanceof double[]) {
+            double[] array = (double[])value;
+            encoder.write(TYPE_DOUBLE_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (double d : array)
+                encoder.writeLong(Double.doubleToRawLongBits(d));
+        } else if (value instanceof Rational[]) {
+            Rational[] array = (Rational[])value;
+            encoder.write(TYPE_RATIONAL_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (Rational rational : array)
+                writeRational(encoder, rational);
+        } else if (value instanceof String[]) {
+            String[] array = (String[])value;
+            encoder.write(TYPE_STRING_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (String s : array)
+                encoder.writeVarInt(strings.indexOf(s));
+        } else if (value instanceof StringValue[]) {
+            StringValue[] array = (StringValue[])value;
+            encoder.write(TYPE_STRING_VALUE_ARRAY);
+            encoder.writeVarInt(array.length);
+            for (StringValue s : array)
+                writeStringValue(encoder, strings, s);
+        } else if (value instanceof Enum) {
+            Enum<?> e = (Enum<?>)value;
+            encoder.write(TYPE_ENUM);
+            encoder.writeVarInt(strings.indexOf(e.getDeclaringClass().getName()));
+            encoder.writeVarInt(strings.indexOf(e.name()));
+        } else if (isKeyValueList(value)) {
+            List<?> list = (List<?>)value;
+            encoder.write(TYPE_KEY_VALUE_LIST);
+            encoder.writeVarInt(list.size());
+            for (Object item : list) {
+                KeyValuePair pair = (KeyValuePair)item;
+                encoder.writeVarInt(strings.indexOf(pair.getKey()));
+                writeStringValue(encoder, strings, pair.getValue());
+            }
+        } else if (value instanceof JpegComponent) {
+            JpegComponent component = (JpegComponent)value;
+            encoder.write(TYPE_JPEG_COMPONENT);
+            encoder.writeVarInt(component.getComponentId());
+            encoder.write((component.getHorizontalSamplingFactor() << 4) | component.getVerticalSamplingFactor());
+            encoder.writeVarInt(component.getQuantizationTableNumber());
+        } else {
+            throw new IOException(String.format("Cannot encode value of type %s for tag %d in directory %s",
+                value.getClass().getName(), tagType, directory.getName()));
+        }
+    }
+
+    @NotNull
+    private static Object readValue(@NotNull Decoder decoder, @NotNull String[] strings) throws IOException
+    {
+        int type = decoder.readByte();
+        switch (type) {
+            case TYPE_INT:
+                return (int)unZigZag(decoder.readVarLong());
+            case TYPE_LONG:
+                return unZigZag(decoder.readVarLong());
+            case TYPE_SHORT:
+                return (short)unZigZag(decoder.readVarLong());
+            case TYPE_BYTE:
+                return (byte)decoder.readByte();
+            case TYPE_FLOAT:
+                return Float.intBitsToFloat(decoder.readInt());
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(decoder.readLong());
+            case TYPE_BOOLEAN:
+                return decoder.readByte() != 0;
+            case TYPE_STRING:
+                return strings[decoder.readVarInt()];
+            case TYPE_STRING_VALUE:
+                return readStringValue(decoder, strings);
+            case TYPE_RATIONAL:
+                return readRational(decoder);
+            case TYPE_DATE:
+                return new Date(unZigZag(decoder.readVarLong()));
+            case TYPE_BYTE_ARRAY:
+                return decoder.readBytes();
+            case TYPE_SHORT_ARRAY: {
+                short[] array = new short[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = (short)unZigZag(decoder.readVarLong());
+                return array;
+            }
+            case TYPE_INT_ARRAY: {
+                int[] array = new int[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = (int)unZigZag(decoder.readVarLong());
+                return array;
+            }
+            case TYPE_LONG_ARRAY: {
+                long[] array = new long[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = unZigZag(decoder.readVarLong());
+                return array;
+            }
+            case TYPE_FLOAT_ARRAY: {
+                float[] array = new float[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = Float.intBitsToFloat(decoder.readInt());
+                return array;
+            }
+            case TYPE_DOUBLE_ARRAY: {
+                double[] array = new double[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = Double.longBitsToDouble(decoder.readLong());
+                return array;
+            }
+            case TYPE_RATIONAL_ARRAY: {
+                Rational[] array = new Rational[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = readRational(decoder);
+                return array;
+            }
+            case TYPE_STRING_ARRAY: {
+                String[] array = new String[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = strings[decoder.readVarInt()];
+                return array;
+            }
+            case TYPE_STRING_VALUE_ARRAY: {
+                StringValue[] array = new StringValue[decoder.readArrayLength()];
+                for (int i = 0; i < array.length; i++)
+                    array[i] = readStringValue(decoder, strings);
+                return array;
+            }
+            case TYPE_ENUM:
+                return readEnum(strings[decoder.readVarInt()], strings[decoder.readVarInt()]);
+            case TYPE_KEY_VALUE_LIST: {
+                int count = decoder.readArrayLength();
+                List<KeyValuePair> list = new ArrayList<KeyValuePair>(count);
+                for (int i = 0; i < count; i++) {
+                    String key = strings[decoder.readVarInt()];
+                    list.add(new KeyValuePair(key, readStringValue(decoder, strings)));
+                }
+                return list;
+            }
+            case TYPE_JPEG_COMPONENT: {
+                int componentId = decoder.readVarInt();
+                int samplingFactorByte = decoder.readByte();
+                return new JpegComponent(componentId, samplingFactorByte, decoder.readVarInt());
+            }
+            default:
+                throw new IOException("Unknown value type code " + type);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @NotNull
+    private static Object readEnum(@NotNull String className, @NotNull String name) throws IOException
+    {
+        Class<?> type = getClass(className);
+        if (!type.isEnum())
+            throw new IOException("Type " + className + " is not an enum");
+        return Enum.valueOf((Class<? extends Enum>)type, name);
+    }
+
+    @NotNull
+    private static Class<?> getClass(@NotNull String className) throws IOException
+    {
+        Class<?> type = _classCache.get(className);
+        if (type == null) {
+            try {
+                // Classes are not initialised here, as their names come from the input
+                type = Class.forName(className, false, MetadataCodec.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown type " + className);
+            }
+            _classCache.put(className, type);
+        }
+        return type;
+    }
+
+    private static boolean isKeyValueList(@NotNull Object value)
+    {
+        if (!(value instanceof List))
+            return false;
+        for (Object item : (List<?>)value) {
+            if (!(item instanceof KeyValuePair))
+                return false;
+        }
+        return true;
+    }
+
+    private static void writeStringValue(@NotNull Encoder encoder, @NotNull StringTable strings, @NotNull StringValue value)
+    {
+        encoder.writeLengthPrefixed(value.getBytes());
+        Charset charset = value.getCharset();
+        // Charsets are written as an index into the string table plus one, or zero if there is none
+        encoder.writeVarInt(charset == null ? 0 : strings.indexOf(charset.name()) + 1);
+    }
+
+    @NotNull
+    private static StringValue readStringValue(@NotNull Decoder decoder, @NotNull String[] strings) throws IOException
+    {
+        byte[] bytes = decoder.readBytes();
+        int charsetIndex = decoder.readVarInt();
+        return new StringValue(bytes, charsetIndex == 0 ? null : Charset.forName(strings[charsetIndex - 1]));
+    }
+
+    private static void writeRational(@NotNull Encoder encoder, @NotNull Rational rational)
+    {
+        encoder.writeVarLong(zigZag(rational.getNumerator()));
+        encoder.writeVarLong(zigZag(rational.getDenominator()));
+    }
+
+    @NotNull
+    private static Rational readRational(@NotNull Decoder decoder) throws IOException
+    {
+        long numerator = unZigZag(decoder.readVarLong());
+        long denominator = unZigZag(decoder.readVarLong());
+        return new Rational(numerator, denominator);
+    }
+
+    /**
+     * Gets the value needed to construct directories that have no default constructor.
+     */
+    @Nullable
+    private static String getConstructorArgument(@NotNull Directory directory)
+    {
+        if (directory instanceof PngDirectory)
+            return ((PngDirectory)directory).getPngChunkType().getIdentifier();
+
+        if (directory instanceof FileTypeDirectory) {
+            String name = directory.getString(FileTypeDirectory.TAG_DETECTED_FILE_TYPE_NAME);
+            for (FileType fileType : FileType.values()) {
+                if (fileType.getName().equals(name))
+                    return fileType.name();
+            }
+            return FileType.Unknown.name();
+        }
+
+        return null;
+    }
+
+    @NotNull
+    private static Directory createDirectory(@NotNull Class<?> type, @Nullable String constructorArgument) throws IOException
+    {
+        try {
+            if (type == PngDirectory.class) {
+                if (constructorArgument == null)
+                    throw new IOException("PNG directory has no chunk type");
+                return new PngDirectory(new PngChunkType(constructorArgument.getBytes("ASCII")));
+            }
+
+            if (type == FileTypeDirectory.class) {
+                if (constructorArgument == null)
+                    throw new IOException("File type directory has no file type");
+                return new FileTypeDirectory(FileType.valueOf(constructorArgument));
+            }
+
+            if (type == GifCommentDirectory.class) {
+                // The comment is restored along with the other tags
+                return new GifCommentDirectory(new StringValue(new byte[0], null));
+            }
+
+            return (Directory)type.newInstance();
+        } catch (PngProcessingException e) {
+            throw new IOException("Invalid PNG chunk type: " + e.getMessage());
+        } catch (InstantiationException e) {
+            throw new IOException("Unable to create directory of type " + type.getName());
+        } catch (IllegalAccessException e) {
+            throw new IOException("Unable to create directory of type " + type.getName());
+        }
+    }
+
+    @Nullable
+    private static byte[] serializeXmp(@NotNull XmpDirectory directory) throws IOException
+    {
+        // The value count is only present when XMP was parsed successfully. Checking it avoids getXMPMeta()
+        // creating an empty instance on directories that only hold errors.
+        if (!directory.containsTag(XmpDirectory.TAG_XMP_VALUE_COUNT))
+            return null;
+
+        XMPMeta xmpMeta = directory.getXMPMeta();
+        try {
+            return XMPMetaFactory.serializeToBuffer(xmpMeta, null);
+        } catch (XMPException e) {
+            throw new IOException("Unable to serialize XMP: " + e.getMessage());
+        }
+    }
+
+    private static long zigZag(long n)
+    {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unZigZag(long n)
+    {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * Reads <code>length</code> bytes, growing the buffer only as data actually arrives.
+     */
+    @NotNull
+    private static byte[] readPayload(@NotNull DataInputStream input, int length) throws IOException
+    {
+        if (length <= PAYLOAD_CHUNK_LENGTH) {
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+            return payload;
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(PAYLOAD_CHUNK_LENGTH);
+        byte[] chunk = new byte[PAYLOAD_CHUNK_LENGTH];
+        int remaining = length;
+        while (remaining > 0) {
+            int count = Math.min(remaining, chunk.length);
+            input.readFully(chunk, 0, count);
+            payload.write(chunk, 0, count);
+            remaining -= count;
+        }
+        return payload.toByteArray();
+    }
+
+    private static int readVarInt(@NotNull DataInputStream input) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Assigns indices to distinct strings in order of first use.
+     */
+    private static class StringTable
+    {
+        private final Map<String, Integer> _indices = new HashMap<String, Integer>();
+        private final List<String> _values = new ArrayList<String>();
+
+        int indexOf(@NotNull String value)
+        {
+            Integer index = _indices.get(value);
+            if (index == null) {
+                index = _values.size();
+                _indices.put(value, index);
+                _values.add(value);
+            }
+            return index;
+        }
+
+        int size()
+        {
+            return _values.size();
+        }
+
+        @NotNull
+        List<String> values()
+        {
+            return _values;
+        }
+    }
+
+    private static class Encoder extends ByteArrayOutputStream
+    {
+        Encoder()
+        {
+            super(1024);
+        }
+
+        @NotNull
+        byte[] getBuffer()
+        {
+            return buf;
+        }
+
+        @Override
+        public void write(@NotNull byte[] b)
+        {
+            write(b, 0, b.length);
+        }
+
+        void writeVarInt(int value)
+        {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value)
+        {
+            while ((value & ~0x7FL) != 0) {
+                write((int)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int)value);
+        }
+
+        void writeInt(int value)
+        {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLong(long value)
+        {
+            writeInt((int)(value >>> 32));
+            writeInt((int)value);
+        }
+
+        void writeLengthPrefixed(@NotNull byte[] bytes)
+        {
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static class Decoder
+    {
+        @NotNull
+        private final byte[] _buffer;
+        private int _position;
+
+        Decoder(@NotNull byte[] buffer)
+        {
+            _buffer = buffer;
+        }
+
+        int readByte() throws EOFException
+        {
+            if (_position >= _buffer.length)
+                throw new EOFException("Unexpected end of encoded metadata");
+            return _buffer[_position++] & 0xFF;
+        }
+
+        int readVarInt() throws IOException
+        {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE)
+                throw new IOException("Encoded value out of range");
+            return (int)value;
+        }
+
+        long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readInt() throws EOFException
+        {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        long readLong() throws EOFException
+        {
+            return ((long)readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Reads an element count, checking it against the remaining data so that corrupt input cannot cause huge
+         * allocations.
+         */
+        int readArrayLength() throws IOException
+        {
+            int length = readVarInt();
+            if (length > _buffer.length - _position)
+                throw new IOException("Encoded array length exceeds remaining data");
+            return length;
+        }
+
+        @NotNull
+        byte[] readBytes() throws IOException
+        {
+            int length = readArrayLength();
+            byte[] bytes = new byte[length];
+            System.arraycopy(_buffer, _position, bytes, 0, length);
+            _position += length;
+            return bytes;
+        }
+    }
+}
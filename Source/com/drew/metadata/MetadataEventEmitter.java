@@ -0,0 +1,153 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Passes events to a {@link MetadataEventHandler}, numbering directories and checking that each started directory
+ * is ended.
+ * <p>
+ * Readers that produce events directly share an instance of this class with readers whose output is replayed
+ * from {@link Directory} objects via {@link #replay}, so that directory numbers are consistent across both.
+ * <p>
+ * Instances are not thread-safe. Create one per extraction.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class MetadataEventEmitter
+{
+    @NotNull
+    private final MetadataEventHandler _handler;
+    private int _directoryCount;
+    private int _depth;
+
+    @SuppressWarnings("ConstantConditions")
+    public MetadataEventEmitter(@NotNull MetadataEventHandler handler)
+    {
+        if (handler == null)
+            throw new NullPointerException("handler");
+
+        _handler = handler;
+    }
+
+    @NotNull
+    public MetadataEventHandler getHandler()
+    {
+        return _handler;
+    }
+
+    /**
+     * Gets the number of directories started so far.
+     */
+    public int getDirectoryCount()
+    {
+        return _directoryCount;
+    }
+
+    /**
+     * Starts a directory, returning its number.
+     *
+     * @param type the type of directory.
+     * @param parentIndex the number of the directory's parent, or -1 if it has none.
+     */
+    public int startDirectory(@NotNull Class<? extends Directory> type, int parentIndex)
+    {
+        if (parentIndex >= _directoryCount)
+            throw new IllegalArgumentException("Parent directory " + parentIndex + " has not been started");
+
+        int index = _directoryCount++;
+        _depth++;
+        _handler.startDirectory(index, type, parentIndex);
+        return index;
+    }
+
+    public void tag(int tagType, @NotNull Object value)
+    {
+        if (_depth == 0)
+            throw new IllegalStateException("No directory has been started");
+
+        _handler.tag(tagType, value);
+    }
+
+    public void error(@NotNull String message)
+    {
+        _handler.error(message);
+    }
+
+    public void endDirectory()
+    {
+        if (_depth == 0)
+            throw new IllegalStateException("No directory has been started");
+
+        _depth--;
+        _handler.endDirectory();
+    }
+
+    /**
+     * Emits events for all directories of <code>metadata</code>, in order.
+     * <p>
+     * This allows readers that populate {@link Directory} objects to be used alongside those that produce events
+     * directly. Directories whose parent is not within <code>metadata</code> are reported as having the parent
+     * <code>parentIndex</code>.
+     */
+    public void replay(@NotNull Metadata metadata, int parentIndex)
+    {
+        Map<Directory, Integer> indices = new HashMap<Directory, Integer>();
+        for (Directory directory : metadata.getDirectories()) {
+            Directory parent = directory.getParent();
+            int index = -1;
+            if (parent != null) {
+                Integer replayedIndex = indices.get(parent);
+                index = replayedIndex != null ? replayedIndex : parentIndex;
+            }
+            indices.put(directory, replay(directory, index));
+        }
+    }
+
+    /**
+     * Emits events for all directories of <code>metadata</code>, in order.
+     */
+    public void replay(@NotNull Metadata metadata)
+    {
+        replay(metadata, -1);
+    }
+
+    /**
+     * Emits events for a single directory, returning its number.
+     */
+    public int replay(@NotNull Directory directory, int parentIndex)
+    {
+        int index = startDirectory(directory.getClass(), parentIndex);
+        for (Tag tag : directory.getTags()) {
+            Object value = directory.getObject(tag.getTagType());
+            if (value != null)
+                tag(tag.getTagType(), value);
+        }
+        for (String error : directory.getErrors())
+            error(error);
+        endDirectory();
+        return index;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.lang.annotations.NotNull;
+
+/**
+ * Receives metadata as a sequence of events, rather than as a populated {@link Metadata} object.
+ * <p>
+ * Each directory is reported by a call to {@link #startDirectory}, followed by its tags and errors, and then a
+ * matching call to {@link #endDirectory}. Directories are numbered from zero in the order they start. Directories
+ * may nest, in which case tags and errors belong to the innermost directory that has started but not yet ended.
+ * For example, a TIFF IFD0 directory is still open while its Exif sub-IFD is reported, and may receive further
+ * tags once the sub-IFD ends.
+ * <p>
+ * Errors may also be reported while no directory is open, in which case they relate to the data as a whole.
+ * <p>
+ * Tag values have the same types as would be returned by {@link Directory#getObject}.
+ * <p>
+ * Currently only Exif data is read directly into events, via {@link com.drew.metadata.tiff.EventTiffHandler}. Other
+ * readers populate {@link Directory} objects, which {@link MetadataEventEmitter#replay} then reports as events, so
+ * receiving their metadata this way does not avoid allocating directories.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public interface MetadataEventHandler
+{
+    /**
+     * Called at the start of a directory.
+     *
+     * @param index the number of this directory, counting from zero in the order directories start.
+     * @param type the type of directory that would hold these values in a {@link Metadata} object.
+     * @param parentIndex the number of the directory's parent, as per {@link Directory#getParent()}, or -1 if it has
+     *                    none.
+     */
+    void startDirectory(int index, @NotNull Class<? extends Directory> type, int parentIndex);
+
+    /**
+     * Called for each tag of the current directory.
+     *
+     * @param tagType the tag's identifier.
+     * @param value the tag's value.
+     */
+    void tag(int tagType, @NotNull Object value);
+
+    /**
+     * Called for each error encountered while reading the current directory, or the data as a whole if no directory
+     * is open.
+     */
+    void error(@NotNull String message);
+
+    /**
+     * Called at the end of the most recently started directory that has not yet ended.
+     */
+    void endDirectory();
+}
@@ -0,0 +1,646 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.lang.Charsets;
+import com.drew.lang.KeyValuePair;
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.jpeg.JpegComponent;
+import com.drew.metadata.xmp.XmpDirectory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Writes {@link Metadata} as JSON directly to a {@link Writer} or {@link OutputStream}, without building an
+ * intermediate string for each tag.
+ * <p>
+ * Tag values are written in their raw, typed form. Integers and floating point numbers are written as JSON numbers,
+ * arrays as JSON arrays, {@link Rational} values as a <code>[numerator, denominator]</code> pair and dates as
+ * ISO 8601 strings in UTC. Byte arrays are written as base64 strings, or omitted, according to
+ * {@link #setByteArrayMode}. Tag descriptions may optionally be included alongside each value.
+ * <p>
+ * Each {@link Metadata} object is written as one JSON object of the form:
+ * <pre><code>
+ * {"source":"image.jpg","directories":[
+ *   {"name":"Exif IFD0","parent":null,"tags":[{"id":271,"name":"Make","value":"Canon"}]},
+ *   {"name":"Exif SubIFD","parent":0,"tags":[...],"errors":["..."]}
+ * ]}
+ * </code></pre>
+ * where <code>parent</code> is the index of the directory's {@link Directory#getParent() parent} within the
+ * <code>directories</code> array. XMP directories also contain an <code>xmp</code> object of their properties.
+ * Metadata that could not be read at all may be recorded via {@link #writeError}, as a record of the form
+ * <code>{"source":"image.jpg","error":"..."}</code>.
+ * <p>
+ * By default, records are written as the elements of a single JSON array, which is terminated by {@link #close}.
+ * In JSON Lines mode, each record is instead written on its own line, which suits batches of files that are
+ * processed a line at a time.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataJsonWriter implements Closeable, Flushable
+{
+    /**
+     * Controls how byte array tag values are written.
+     */
+    public enum ByteArrayMode
+    {
+        /** Byte arrays are written as base64 encoded strings. */
+        BASE64,
+        /** Byte arrays are omitted. The tag is still written, without a <code>value</code>. */
+        SKIP
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    @NotNull
+    private final Writer _writer;
+    @NotNull
+    private final char[] _buffer = new char[64];
+    @Nullable
+    private SimpleDateFormat _dateFormat;
+
+    private boolean _jsonLines;
+    private boolean _includeDescriptions;
+    @NotNull
+    private ByteArrayMode _byteArrayMode = ByteArrayMode.BASE64;
+
+    private int _recordCount;
+    private boolean _finished;
+    private boolean _closed;
+
+    /**
+     * Creates a writer which writes UTF-8 encoded JSON to <code>stream</code>.
+     */
+    public MetadataJsonWriter(@NotNull OutputStream stream)
+    {
+        this(new BufferedWriter(new OutputStreamWriter(stream, Charsets.UTF_8)));
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    public MetadataJsonWriter(@NotNull Writer writer)
+    {
+        if (writer == null)
+            throw new NullPointerException("writer");
+
+        _writer = writer;
+    }
+
+    public boolean isJsonLines()
+    {
+        return _jsonLines;
+    }
+
+    /**
+     * Sets whether records are written one per line (JSON Lines), rather than as the elements of a JSON array.
+     * This must be set before the first record is written.
+     */
+    public void setJsonLines(boolean jsonLines)
+    {
+        if (_recordCount != 0)
+            throw new IllegalStateException("Cannot change the output mode after records have been written");
+
+        _jsonLines = jsonLines;
+    }
+
+    public boolean isIncludeDescriptions()
+    {
+        return _includeDescriptions;
+    }
+
+    /**
+     * Sets whether each tag's {@link Tag#getDescription() description} is written alongside its raw value.
+     * Descriptions are not written by default.
+     */
+    public void setIncludeDescriptions(boolean includeDescriptions)
+    {
+        _includeDescriptions = includeDescriptions;
+    }
+
+    @NotNull
+    public ByteArrayMode getByteArrayMode()
+    {
+        return _byteArrayMode;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    public void setByteArrayMode(@NotNull ByteArrayMode byteArrayMode)
+    {
+        if (byteArrayMode == null)
+            throw new NullPointerException("byteArrayMode");
+
+        _byteArrayMode = byteArrayMode;
+    }
+
+    /**
+     * Writes <code>metadata</code> as a single record.
+     */
+    public void write(@NotNull Metadata metadata) throws IOException
+    {
+        write(metadata, null);
+    }
+
+    /**
+     * Writes <code>metadata</code> as a single record, labelled with <code>source</code> if it is not null.
+     * Typically <code>source</code> is the path of the file the metadata was read from.
+     */
+    public void write(@NotNull Metadata metadata, @Nullable String source) throws IOException
+    {
+        startRecord(source);
+        writeName("directories");
+        _writer.write('[');
+
+        // Parents are written as an index into the directories array, so record each directory's position
+        Map<Directory, Integer> directoryIndices = new HashMap<Directory, Integer>();
+        int index = 0;
+        for (Directory directory : metadata.getDirectories()) {
+            if (index != 0)
+                _writer.write(',');
+            directoryIndices.put(directory, index++);
+            writeDirectory(directory, directoryIndices);
+        }
+
+        _writer.write(']');
+        endRecord();
+    }
+
+    /**
+     * Writes a record stating that metadata could not be read from <code>source</code>, so that a batch of records
+     * accounts for every input.
+     */
+    public void writeError(@Nullable String source, @NotNull String message) throws IOException
+    {
+        startRecord(source);
+        writeName("error");
+        writeString(message);
+        endRecord();
+    }
+
+    private void startRecord(@Nullable String source) throws IOException
+    {
+        if (_finished)
+            throw new IOException("No further records may be written");
+
+        if (!_jsonLines)
+            _writer.write(_recordCount == 0 ? '[' : ',');
+        _recordCount++;
+
+        _writer.write('{');
+        if (source != null) {
+            writeName("source");
+            writeString(source);
+            _writer.write(',');
+        }
+    }
+
+    private void endRecord() throws IOException
+    {
+        _writer.write('}');
+
+        if (_jsonLines)
+            _writer.write('\n');
+    }
+
+    /**
+     * Flushes any buffered output to the underlying writer or stream.
+     */
+    public void flush() throws IOException
+    {
+        _writer.flush();
+    }
+
+    /**
+     * Terminates the JSON array, if not in JSON Lines mode, and closes the underlying writer or stream.
+     */
+    public void close() throws IOException
+    {
+        if (_closed)
+            return;
+
+        try {
+            finish();
+        } finally {
+            _closed = true;
+            _writer.close();
+        }
+    }
+
+    /**
+     * Terminates the JSON array, if not in JSON Lines mode, and flushes output without closing the underlying
+     * writer or stream. No further records may be written.
+     */
+    public void finish() throws IOException
+    {
+        if (_finished)
+            return;
+
+        _finished = true;
+        if (!_jsonLines)
+            _writer.write(_recordCount == 0 ? "[]" : "]");
+        _writer.flush();
+    }
+
+    private void writeDirectory(@NotNull Directory directory, @NotNull Map<Directory, Integer> directoryIndices) throws IOException
+    {
+        _writer.write('{');
+        writeName("name");
+        writeString(directory.getName());
+
+        _writer.write(',');
+        writeName("parent");
+        Directory parent = directory.getParent();
+        Integer parentIndex = parent == null ? null : directoryIndices.get(parent);
+        if (parentIndex == null)
+            _writer.write("null");
+        else
+            writeLong(parentIndex);
+
+        _writer.write(',');
+        writeName("tags");
+        _writer.write('[');
+        boolean first = true;
+        for (Tag tag : directory.getTags()) {
+            if (!first)
+                _writer.write(',');
+            first = false;
+            writeTag(directory, tag);
+        }
+        _writer.write(']');
+
+        if (directory instanceof XmpDirectory) {
+            _writer.write(',');
+            writeName("xmp");
+            _writer.write('{');
+            first = true;
+            for (Map.Entry<String, String> property : ((XmpDirectory)directory).getXmpProperties().entrySet()) {
+                if (!first)
+                    _writer.write(',');
+                first = false;
+                writeName(property.getKey());
+                writeNullableString(property.getValue());
+            }
+            _writer.write('}');
+        }
+
+        if (directory.hasErrors()) {
+            _writer.write(',');
+            writeName("errors");
+            _writer.write('[');
+            first = true;
+            for (String error : directory.getErrors()) {
+                if (!first)
+                    _writer.write(',');
+                first = false;
+                writeString(error);
+            }
+            _writer.write(']');
+        }
+
+        _writer.write('}');
+    }
+
+    private void writeTag(@NotNull Directory directory, @NotNull Tag tag) throws IOException
+    {
+        int tagType = tag.getTagType();
+
+        _writer.write('{');
+        writeName("id");
+        writeLong(tagType);
+        _writer.write(',');
+        writeName("name");
+        writeString(tag.getTagName());
+
+        Object value = directory.getObject(tagType);
+        if (value != null && !(value instanceof byte[] && _byteArrayMode == ByteArrayMode.SKIP)) {
+            _writer.write(',');
+            writeName("value");
+            writeValue(value);
+        }
+
+        if (_includeDescriptions) {
+            _writer.write(',');
+            writeName("description");
+            writeNullableString(tag.getDescription());
+        }
+
+        _writer.write('}');
+    }
+
+    private void writeValue(@NotNull Object value) throws IOException
+    {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number)value).longValue());
+        } else if (value instanceof Float) {
+            writeFloat((Float)value);
+        } else if (value instanceof Double) {
+            writeDouble((Double)value);
+        } else if (value instanceof Boolean) {
+            _writer.write((Boolean)value ? "true" : "false");
+        } else if (value instanceof String) {
+            writeString((String)value);
+        } else if (value instanceof StringValue) {
+            writeString(value.toString());
+        } else if (value instanceof Rational) {
+            writeRational((Rational)value);
+        } else if (value instanceof byte[]) {
+            writeBase64((byte[])value);
+        } else if (value instanceof short[]) {
+            short[] array = (short[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                writeLong(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof int[]) {
+            int[] array = (int[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                writeLong(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof long[]) {
+            long[] array = (long[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                writeLong(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof float[]) {
+            float[] array = (float[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                writeFloat(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof double[]) {
+            double[] array = (double[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                writeDouble(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof Rational[]) {
+            Rational[] array = (Rational[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                writeRational(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof Object[]) {
+            // String[], StringValue[] and any other object arrays
+            Object[] array = (Object[])value;
+            _writer.write('[');
+            for (int i = 0; i < array.length; i++) {
+                if (i != 0)
+                    _writer.write(',');
+                if (array[i] == null)
+                    _writer.write("null");
+                else
+                    writeValue(array[i]);
+            }
+            _writer.write(']');
+        } else if (value instanceof Date) {
+            writeDate((Date)value);
+        } else if (value instanceof Enum) {
+            writeString(((Enum<?>)value).name());
+        } else if (value instanceof JpegComponent) {
+            JpegComponent component = (JpegComponent)value;
+            _writer.write('{');
+            writeName("id");
+            writeLong(component.getComponentId());
+            _writer.write(',');
+            writeName("horizontalSamplingFactor");
+            writeLong(component.getHorizontalSamplingFactor());
+            _writer.write(',');
+            writeName("verticalSamplingFactor");
+            writeLong(component.getVerticalSamplingFactor());
+            _writer.write(',');
+            writeName("quantizationTableNumber");
+            writeLong(component.getQuantizationTableNumber());
+            _writer.write('}');
+        } else if (value instanceof List) {
+            // Key/value lists, such as PNG text chunks, are written as an array of pairs as keys may repeat
+            List<?> list = (List<?>)value;
+            _writer.write('[');
+            boolean first = true;
+            for (Object item : list) {
+                if (!first)
+                    _writer.write(',');
+                first = false;
+                if (item instanceof KeyValuePair) {
+                    KeyValuePair pair = (KeyValuePair)item;
+                    _writer.write('[');
+                    writeString(pair.getKey());
+                    _writer.write(',');
+                    writeString(pair.getValue().toString());
+                    _writer.write(']');
+                } else if (item == null) {
+                    _writer.write("null");
+                } else {
+                    writeValue(item);
+                }
+            }
+            _writer.write(']');
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeName(@NotNull String name) throws IOException
+    {
+        writeString(name);
+        _writer.write(':');
+    }
+
+    private void writeNullableString(@Nullable String value) throws IOException
+    {
+        if (value == null)
+            _writer.write("null");
+        else
+            writeString(value);
+    }
+
+    private void writeString(@NotNull String value) throws IOException
+    {
+        _writer.write('"');
+
+        // Write unescaped runs of characters in a single call
+        int runStart = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != 0x2028 && c != 0x2029)
+                continue;
+
+            if (i > runStart)
+                _writer.write(value, runStart, i - runStart);
+            runStart = i + 1;
+
+            switch (c) {
+                case '"':  _writer.write("\\\""); break;
+                case '\\': _writer.write("\\\\"); break;
+                case '\n': _writer.write("\\n"); break;
+                case '\r': _writer.write("\\r"); break;
+                case '\t': _writer.write("\\t"); break;
+                case '\b': _writer.write("\\b"); break;
+                case '\f': _writer.write("\\f"); break;
+                default:
+                    _buffer[0] = '\\';
+                    _buffer[1] = 'u';
+                    _buffer[2] = HEX_DIGITS[(c >> 12) & 0xF];
+                    _buffer[3] = HEX_DIGITS[(c >> 8) & 0xF];
+                    _buffer[4] = HEX_DIGITS[(c >> 4) & 0xF];
+                    _buffer[5] = HEX_DIGITS[c & 0xF];
+                    _writer.write(_buffer, 0, 6);
+                    break;
+            }
+        }
+        if (length > runStart)
+            _writer.write(value, runStart, length - runStart);
+
+        _writer.write('"');
+    }
+
+    private void writeLong(long value) throws IOException
+    {
+        if (value == Long.MIN_VALUE) {
+            _writer.write("-9223372036854775808");
+            return;
+        }
+
+        // Format digits into the scratch buffer from the end, avoiding a String allocation per number
+        int pos = _buffer.length;
+        boolean negative = value < 0;
+        if (negative)
+            value = -value;
+        do {
+            _buffer[--pos] = (char)('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        if (negative)
+            _buffer[--pos] = '-';
+
+        _writer.write(_buffer, pos, _buffer.length - pos);
+    }
+
+    private void writeDouble(double value) throws IOException
+    {
+        // JSON has no representation for NaN or infinity
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            _writer.write("null");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            writeLong((long)value);
+        } else {
+            _writer.write(Double.toString(value));
+        }
+    }
+
+    private void writeFloat(float value) throws IOException
+    {
+        // Formatting as a float avoids exposing the imprecision of widening to double, such as 0.1f as 0.10000000149
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            _writer.write("null");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            writeLong((long)value);
+        } else {
+            _writer.write(Float.toString(value));
+        }
+    }
+
+    private void writeRational(@NotNull Rational value) throws IOException
+    {
+        _writer.write('[');
+        writeLong(value.getNumerator());
+        _writer.write(',');
+        writeLong(value.getDenominator());
+        _writer.write(']');
+    }
+
+    private void writeDate(@NotNull Date value) throws IOException
+    {
+        if (_dateFormat == null) {
+            _dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+            _dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        }
+        writeString(_dateFormat.format(value));
+    }
+
+    private void writeBase64(@NotNull byte[] bytes) throws IOException
+    {
+        _writer.write('"');
+
+        int pos = 0;
+        int i = 0;
+        for (; i + 2 < bytes.length; i += 3) {
+            int bits = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8) | (bytes[i + 2] & 0xFF);
+            _buffer[pos++] = BASE64_DIGITS[(bits >> 18) & 0x3F];
+            _buffer[pos++] = BASE64_DIGITS[(bits >> 12) & 0x3F];
+            _buffer[pos++] = BASE64_DIGITS[(bits >> 6) & 0x3F];
+            _buffer[pos++] = BASE64_DIGITS[bits & 0x3F];
+            if (pos == _buffer.length) {
+                _writer.write(_buffer, 0, pos);
+                pos = 0;
+            }
+        }
+
+        int remaining = bytes.length - i;
+        if (remaining != 0) {
+            int bits = (bytes[i] & 0xFF) << 16;
+            if (remaining == 2)
+                bits |= (bytes[i + 1] & 0xFF) << 8;
+            _buffer[pos++] = BASE64_DIGITS[(bits >> 18) & 0x3F];
+            _buffer[pos++] = BASE64_DIGITS[(bits >> 12) & 0x3F];
+            _buffer[pos++] = remaining == 2 ? BASE64_DIGITS[(bits >> 6) & 0x3F] : '=';
+            _buffer[pos++] = '=';
+        }
+
+        _writer.write(_buffer, 0, pos);
+        _writer.write('"');
+    }
+}
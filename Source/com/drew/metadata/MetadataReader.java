@@ -26,7 +26,8 @@ import com.drew.lang.annotations.NotNull;
 /**
  * Defines an object capable of processing a particular type of metadata from a {@link RandomAccessReader}.
  * <p>
- * Instances of this interface must be thread-safe and reusable.
+ * Instances of this interface must be thread-safe and reusable. Any state needed during extraction must be held
+ * in local variables or in objects created per call.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
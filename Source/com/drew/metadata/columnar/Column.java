@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+
+/**
+ * Declares a column of a {@link ColumnarBatch}: the value of one tag, in the first directory of a given type.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class Column
+{
+    @NotNull
+    private final String _name;
+    @NotNull
+    private final Class<? extends Directory> _directoryType;
+    private final int _tagType;
+    @NotNull
+    private final ColumnType _type;
+
+    @SuppressWarnings("ConstantConditions")
+    public Column(@NotNull String name, @NotNull Class<? extends Directory> directoryType, int tagType, @NotNull ColumnType type)
+    {
+        if (name == null)
+            throw new NullPointerException("name");
+        if (directoryType == null)
+            throw new NullPointerException("directoryType");
+        if (type == null)
+            throw new NullPointerException("type");
+
+        _name = name;
+        _directoryType = directoryType;
+        _tagType = tagType;
+        _type = type;
+    }
+
+    @NotNull
+    public String getName()
+    {
+        return _name;
+    }
+
+    @NotNull
+    public Class<? extends Directory> getDirectoryType()
+    {
+        return _directoryType;
+    }
+
+    public int getTagType()
+    {
+        return _tagType;
+    }
+
+    @NotNull
+    public ColumnType getType()
+    {
+        return _type;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o)
+    {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Column column = (Column)o;
+        return _tagType == column._tagType &&
+            _name.equals(column._name) &&
+            _directoryType.equals(column._directoryType) &&
+            _type == column._type;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = _name.hashCode();
+        result = 31 * result + _directoryType.hashCode();
+        result = 31 * result + _tagType;
+        result = 31 * result + _type.hashCode();
+        return result;
+    }
+
+    @Override
+    @NotNull
+    public String toString()
+    {
+        return String.format("%s (%s 0x%04x, %s)", _name, _directoryType.getSimpleName(), _tagType, _type);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+/**
+ * The type of values held by a {@link Column}, which determines how a tag's value is converted and stored.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public enum ColumnType
+{
+    /** 32-bit integer values, as returned by {@link com.drew.metadata.Directory#getInteger}. */
+    INT,
+    /** 64-bit integer values, as returned by {@link com.drew.metadata.Directory#getLongObject}. */
+    LONG,
+    /** Floating point values, as returned by {@link com.drew.metadata.Directory#getDoubleObject}. */
+    DOUBLE,
+    /** Dictionary encoded strings, as returned by {@link com.drew.metadata.Directory#getString(int)}. */
+    STRING,
+    /** Dictionary encoded strings, as returned by {@link com.drew.metadata.Directory#getDescription}. */
+    DESCRIPTION
+}
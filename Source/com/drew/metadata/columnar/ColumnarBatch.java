@@ -0,0 +1,244 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds columnar batches of selected tag values from many {@link Metadata} objects.
+ * <p>
+ * Columns are declared up front, each as a directory type and tag ID. Appending a {@link Metadata} object adds a
+ * row, looking up only the declared tags in the first directory of each declared type rather than walking every
+ * tag. Values are held in primitive arrays and dictionary encoded strings within a {@link RowGroup}, which is
+ * passed to a {@link RowGroupSink} once full, and on {@link #flush} or {@link #close}.
+ * <p>
+ * <pre><code>
+ * List&lt;Column&gt; columns = Arrays.asList(
+ *     new Column("make", ExifIFD0Directory.class, ExifIFD0Directory.TAG_MAKE, ColumnType.STRING),
+ *     new Column("iso", ExifSubIFDDirectory.class, ExifSubIFDDirectory.TAG_ISO_EQUIVALENT, ColumnType.INT));
+ * ColumnarBatch batch = new ColumnarBatch(columns, new CsvRowGroupSink(writer, columns));
+ * for (File file : files)
+ *     batch.append(ImageMetadataReader.readMetadata(file));
+ * batch.close();
+ * </code></pre>
+ * Instances are not thread safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ColumnarBatch implements Closeable
+{
+    public static final int DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+
+    @NotNull
+    private final List<Column> _columns;
+    @NotNull
+    private final RowGroupSink _sink;
+    @NotNull
+    private final RowGroup _rowGroup;
+
+    /** Indices into {@link #_columnsByDirectoryType} of the distinct directory types of the columns. */
+    @NotNull
+    private final Map<Class<? extends Directory>, Integer> _directoryTypeIndices;
+    /** For each distinct directory type, the indices of its columns. */
+    @NotNull
+    private final int[][] _columnsByDirectoryType;
+    /** For each distinct directory type, whether a directory of that type has been seen in the current row. */
+    @NotNull
+    private final boolean[] _seen;
+
+    private long _rowCount;
+    private boolean _closed;
+
+    public ColumnarBatch(@NotNull List<Column> columns, @NotNull RowGroupSink sink)
+    {
+        this(columns, sink, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    public ColumnarBatch(@NotNull List<Column> columns, @NotNull RowGroupSink sink, int rowGroupSize)
+    {
+        if (columns == null)
+            throw new NullPointerException("columns");
+        if (sink == null)
+            throw new NullPointerException("sink");
+        if (columns.isEmpty())
+            throw new IllegalArgumentException("At least one column is required");
+        if (rowGroupSize <= 0)
+            throw new IllegalArgumentException("Row group size must be positive");
+
+        _columns = new ArrayList<Column>(columns);
+        _sink = sink;
+        _rowGroup = new RowGroup(_columns, rowGroupSize);
+
+        _directoryTypeIndices = new HashMap<Class<? extends Directory>, Integer>();
+        List<List<Integer>> columnsByDirectoryType = new ArrayList<List<Integer>>();
+        for (int i = 0; i < _columns.size(); i++) {
+            Class<? extends Directory> type = _columns.get(i).getDirectoryType();
+            Integer typeIndex = _directoryTypeIndices.get(type);
+            if (typeIndex == null) {
+                typeIndex = columnsByDirectoryType.size();
+                _directoryTypeIndices.put(type, typeIndex);
+                columnsByDirectoryType.add(new ArrayList<Integer>());
+            }
+            columnsByDirectoryType.get(typeIndex).add(i);
+        }
+
+        _columnsByDirectoryType = new int[columnsByDirectoryType.size()][];
+        for (int i = 0; i < _columnsByDirectoryType.length; i++) {
+            List<Integer> list = columnsByDirectoryType.get(i);
+            _columnsByDirectoryType[i] = new int[list.size()];
+            for (int j = 0; j < list.size(); j++)
+                _columnsByDirectoryType[i][j] = list.get(j);
+        }
+        _seen = new boolean[_columnsByDirectoryType.length];
+    }
+
+    @NotNull
+    public List<Column> getColumns()
+    {
+        return new ArrayList<Column>(_columns);
+    }
+
+    /**
+     * Gets the total number of rows appended, including those already passed to the sink.
+     */
+    public long getRowCount()
+    {
+        return _rowCount;
+    }
+
+    /**
+     * Appends a row containing the declared tags of <code>metadata</code>. Columns whose directory or tag is
+     * absent, or whose value cannot be converted to the column's type, are null.
+     */
+    public void append(@NotNull Metadata metadata) throws IOException
+    {
+        if (_closed)
+            throw new IOException("Batch has been closed");
+
+        int row = _rowGroup.addRow();
+
+        // A single pass over the directories, using the first of each declared type as
+        // Metadata.getFirstDirectoryOfType would, avoids a search per column type
+        Arrays.fill(_seen, false);
+        int remaining = _seen.length;
+        for (Directory directory : metadata.getDirectories()) {
+            Integer typeIndex = _directoryTypeIndices.get(directory.getClass());
+            if (typeIndex == null || _seen[typeIndex])
+                continue;
+            _seen[typeIndex] = true;
+
+            for (int column : _columnsByDirectoryType[typeIndex])
+                setValue(directory, column, row);
+
+            if (--remaining == 0)
+                break;
+        }
+
+        _rowCount++;
+
+        if (_rowGroup.isFull())
+            flush();
+    }
+
+    /**
+     * Passes any rows not yet written to the sink, as a row group.
+     */
+    public void flush() throws IOException
+    {
+        if (_rowGroup.getRowCount() == 0)
+            return;
+
+        try {
+            _sink.write(_rowGroup);
+        } finally {
+            _rowGroup.clear();
+        }
+    }
+
+    /**
+     * Flushes any remaining rows, and closes the sink.
+     */
+    public void close() throws IOException
+    {
+        if (_closed)
+            return;
+
+        _closed = true;
+        try {
+            flush();
+        } finally {
+            _sink.close();
+        }
+    }
+
+    private void setValue(@NotNull Directory directory, int column, int row)
+    {
+        Column definition = _columns.get(column);
+        int tagType = definition.getTagType();
+
+        if (!directory.containsTag(tagType))
+            return;
+
+        switch (definition.getType()) {
+            case INT: {
+                Integer value = directory.getInteger(tagType);
+                if (value != null)
+                    _rowGroup.setInt(column, row, value);
+                break;
+            }
+            case LONG: {
+                Long value = directory.getLongObject(tagType);
+                if (value != null)
+                    _rowGroup.setLong(column, row, value);
+                break;
+            }
+            case DOUBLE: {
+                Double value = directory.getDoubleObject(tagType);
+                if (value != null)
+                    _rowGroup.setDouble(column, row, value);
+                break;
+            }
+            case STRING: {
+                String value = directory.getString(tagType);
+                if (value != null)
+                    _rowGroup.setString(column, row, value);
+                break;
+            }
+            case DESCRIPTION: {
+                String value = directory.getDescription(tagType);
+                if (value != null)
+                    _rowGroup.setString(column, row, value);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.Charsets;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads files written by {@link ColumnarFileSink}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ColumnarFileReader implements Closeable
+{
+    @NotNull
+    private final DataInputStream _stream;
+    @NotNull
+    private final List<Column> _columns;
+    private boolean _done;
+
+    public ColumnarFileReader(@NotNull InputStream stream) throws IOException
+    {
+        _stream = new DataInputStream(new BufferedInputStream(stream));
+
+        byte[] magic = new byte[ColumnarFileSink.MAGIC.length];
+        _stream.readFully(magic);
+        if (!Arrays.equals(magic, ColumnarFileSink.MAGIC))
+            throw new IOException("Not a columnar metadata file");
+        int version = _stream.readUnsignedByte();
+        if (version != ColumnarFileSink.VERSION)
+            throw new IOException("Unsupported columnar metadata file version " + version);
+
+        int columnCount = _stream.readInt();
+        if (columnCount < 0)
+            throw new IOException("Invalid column count " + columnCount);
+        ColumnType[] types = ColumnType.values();
+        List<Column> columns = new ArrayList<Column>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString();
+            int type = _stream.readUnsignedByte();
+            if (type >= types.length)
+                throw new IOException("Unknown column type " + type);
+            String className = readString();
+            int tagType = _stream.readInt();
+            columns.add(new Column(name, getDirectoryClass(className), tagType, types[type]));
+        }
+        _columns = Collections.unmodifiableList(columns);
+    }
+
+    @NotNull
+    public List<Column> getColumns()
+    {
+        return _columns;
+    }
+
+    /**
+     * Reads the next row group, or returns null once the end of the file has been reached.
+     */
+    @Nullable
+    public RowGroup read() throws IOException
+    {
+        if (_done)
+            return null;
+
+        int rowCount = _stream.readInt();
+        if (rowCount == 0) {
+            _done = true;
+            return null;
+        }
+        if (rowCount < 0)
+            throw new IOException("Invalid row count " + rowCount);
+
+        RowGroup rowGroup = new RowGroup(_columns, rowCount);
+        for (int row = 0; row < rowCount; row++)
+            rowGroup.addRow();
+
+        for (int column = 0; column < _columns.size(); column++) {
+            long[] present = new long[(rowCount + 63) >> 6];
+            for (int word = 0; word < present.length; word++)
+                present[word] = _stream.readLong();
+
+            ColumnType type = _columns.get(column).getType();
+            if (type == ColumnType.STRING || type == ColumnType.DESCRIPTION) {
+                int dictionarySize = _stream.readInt();
+                if (dictionarySize < 0)
+                    throw new IOException("Invalid dictionary size " + dictionarySize);
+                for (int i = 0; i < dictionarySize; i++)
+                    rowGroup.addToDictionary(column, readString());
+            }
+
+            for (int row = 0; row < rowCount; row++) {
+                boolean isPresent = (present[row >> 6] & (1L << row)) != 0;
+                switch (type) {
+                    case INT: {
+                        int value = _stream.readInt();
+                        if (isPresent)
+                            rowGroup.setInt(column, row, value);
+                        break;
+                    }
+                    case LONG: {
+                        long value = _stream.readLong();
+                        if (isPresent)
+                            rowGroup.setLong(column, row, value);
+                        break;
+                    }
+                    case DOUBLE: {
+                        double value = _stream.readDouble();
+                        if (isPresent)
+                            rowGroup.setDouble(column, row, value);
+                        break;
+                    }
+                    case STRING:
+                    case DESCRIPTION: {
+                        int index = _stream.readInt();
+                        if (isPresent) {
+                            if (index < 0 || index >= rowGroup.getDictionary(column).size())
+                                throw new IOException("Invalid dictionary index " + index);
+                            rowGroup.setStringIndex(column, row, index);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        return rowGroup;
+    }
+
+    public void close() throws IOException
+    {
+        _stream.close();
+    }
+
+    @NotNull
+    private String readString() throws IOException
+    {
+        int length = _stream.readInt();
+        if (length < 0)
+            throw new IOException("Invalid string length " + length);
+        byte[] bytes = new byte[length];
+        _stream.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    @NotNull
+    private static Class<? extends Directory> getDirectoryClass(@NotNull String className) throws IOException
+    {
+        try {
+            return Class.forName(className).asSubclass(Directory.class);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown directory type " + className);
+        } catch (ClassCastException e) {
+            throw new IOException("Not a directory type " + className);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.Charsets;
+import com.drew.lang.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes row groups to a simple, self-describing columnar file, which may be read by {@link ColumnarFileReader}.
+ * <p>
+ * All integers are big-endian. The file consists of:
+ * <ul>
+ *     <li>the four byte magic number <code>MDCF</code> and a one byte format version</li>
+ *     <li>the number of columns, then for each its name, type, directory class name and tag ID</li>
+ *     <li>each row group: its row count, then for each column a bitmap of which rows have values (as 64-bit
+ *         words, least significant bit first) followed by the column's values</li>
+ *     <li>a row count of zero, marking the end of the file</li>
+ * </ul>
+ * Integer and floating point columns hold one 32-bit, 64-bit or IEEE 754 double value per row, with null rows
+ * written as zero. String columns hold the row group's dictionary, as a count followed by length prefixed UTF-8
+ * strings, then one 32-bit dictionary index per row. Strings within the header are also length prefixed UTF-8.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ColumnarFileSink implements RowGroupSink
+{
+    static final byte[] MAGIC = { 'M', 'D', 'C', 'F' };
+    static final int VERSION = 1;
+
+    @NotNull
+    private final DataOutputStream _stream;
+    @NotNull
+    private final List<Column> _columns;
+    private boolean _closed;
+
+    public ColumnarFileSink(@NotNull OutputStream stream, @NotNull List<Column> columns) throws IOException
+    {
+        _stream = new DataOutputStream(new BufferedOutputStream(stream));
+        _columns = new ArrayList<Column>(columns);
+
+        _stream.write(MAGIC);
+        _stream.write(VERSION);
+        _stream.writeInt(_columns.size());
+        for (Column column : _columns) {
+            writeString(column.getName());
+            _stream.write(column.getType().ordinal());
+            writeString(column.getDirectoryType().getName());
+            _stream.writeInt(column.getTagType());
+        }
+    }
+
+    public void write(@NotNull RowGroup rowGroup) throws IOException
+    {
+        if (!rowGroup.getColumns().equals(_columns))
+            throw new IllegalArgumentException("Row group columns do not match those of this sink");
+
+        int rowCount = rowGroup.getRowCount();
+        if (rowCount == 0)
+            return;
+
+        _stream.writeInt(rowCount);
+
+        for (int column = 0; column < _columns.size(); column++) {
+            // Build each word of the bitmap from the row group's null flags
+            for (int word = 0; word < (rowCount + 63) >> 6; word++) {
+                long bits = 0;
+                for (int bit = 0; bit < 64; bit++) {
+                    int row = (word << 6) + bit;
+                    if (row < rowCount && !rowGroup.isNull(column, row))
+                        bits |= 1L << bit;
+                }
+                _stream.writeLong(bits);
+            }
+
+            switch (_columns.get(column).getType()) {
+                case INT:
+                    for (int row = 0; row < rowCount; row++)
+                        _stream.writeInt(rowGroup.isNull(column, row) ? 0 : rowGroup.getInt(column, row));
+                    break;
+                case LONG:
+                    for (int row = 0; row < rowCount; row++)
+                        _stream.writeLong(rowGroup.isNull(column, row) ? 0 : rowGroup.getLong(column, row));
+                    break;
+                case DOUBLE:
+                    for (int row = 0; row < rowCount; row++)
+                        _stream.writeDouble(rowGroup.isNull(column, row) ? 0 : rowGroup.getDouble(column, row));
+                    break;
+                case STRING:
+                case DESCRIPTION:
+                    List<String> dictionary = rowGroup.getDictionary(column);
+                    _stream.writeInt(dictionary.size());
+                    for (String value : dictionary)
+                        writeString(value);
+                    for (int row = 0; row < rowCount; row++)
+                        _stream.writeInt(rowGroup.isNull(column, row) ? 0 : rowGroup.getStringIndex(column, row));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the end of file marker, and closes the underlying stream.
+     */
+    public void close() throws IOException
+    {
+        if (_closed)
+            return;
+
+        _closed = true;
+        try {
+            _stream.writeInt(0);
+        } finally {
+            _stream.close();
+        }
+    }
+
+    private void writeString(@NotNull String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        _stream.writeInt(bytes.length);
+        _stream.write(bytes);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes row groups as CSV, with a header row of column names.
+ * <p>
+ * Fields containing commas, quotes or line breaks are quoted as described in RFC 4180. Null values are written as
+ * empty fields. Rows are terminated by a line feed.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class CsvRowGroupSink implements RowGroupSink
+{
+    @NotNull
+    private final Writer _writer;
+    @NotNull
+    private final List<Column> _columns;
+    private boolean _headerWritten;
+
+    @SuppressWarnings("ConstantConditions")
+    public CsvRowGroupSink(@NotNull Writer writer, @NotNull List<Column> columns)
+    {
+        if (writer == null)
+            throw new NullPointerException("writer");
+        if (columns == null)
+            throw new NullPointerException("columns");
+
+        _writer = writer;
+        _columns = new ArrayList<Column>(columns);
+    }
+
+    public void write(@NotNull RowGroup rowGroup) throws IOException
+    {
+        if (!rowGroup.getColumns().equals(_columns))
+            throw new IllegalArgumentException("Row group columns do not match those of this sink");
+
+        writeHeader();
+
+        int columnCount = _columns.size();
+        for (int row = 0; row < rowGroup.getRowCount(); row++) {
+            for (int column = 0; column < columnCount; column++) {
+                if (column != 0)
+                    _writer.write(',');
+                if (rowGroup.isNull(column, row))
+                    continue;
+                switch (_columns.get(column).getType()) {
+                    case INT:
+                        _writer.write(Integer.toString(rowGroup.getInt(column, row)));
+                        break;
+                    case LONG:
+                        _writer.write(Long.toString(rowGroup.getLong(column, row)));
+                        break;
+                    case DOUBLE:
+                        _writer.write(Double.toString(rowGroup.getDouble(column, row)));
+                        break;
+                    case STRING:
+                    case DESCRIPTION:
+                        writeField(rowGroup.getDictionary(column).get(rowGroup.getStringIndex(column, row)));
+                        break;
+                }
+            }
+            _writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes the header row if no rows were written, and closes the underlying writer.
+     */
+    public void close() throws IOException
+    {
+        try {
+            writeHeader();
+        } finally {
+            _writer.close();
+        }
+    }
+
+    private void writeHeader() throws IOException
+    {
+        if (_headerWritten)
+            return;
+
+        _headerWritten = true;
+        for (int column = 0; column < _columns.size(); column++) {
+            if (column != 0)
+                _writer.write(',');
+            writeField(_columns.get(column).getName());
+        }
+        _writer.write('\n');
+    }
+
+    private void writeField(@NotNull String value) throws IOException
+    {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote) {
+            _writer.write(value);
+            return;
+        }
+
+        _writer.write('"');
+        int runStart = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                // Quotes are escaped by doubling them, so write the run up to and including this quote, then another
+                _writer.write(value, runStart, i + 1 - runStart);
+                _writer.write('"');
+                runStart = i + 1;
+            }
+        }
+        _writer.write(value, runStart, value.length() - runStart);
+        _writer.write('"');
+    }
+}
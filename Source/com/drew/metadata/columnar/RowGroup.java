@@ -0,0 +1,283 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A group of rows held column by column, in primitive arrays.
+ * <p>
+ * Each column has a bitmap recording which rows have a value. Integer and floating point columns store values in
+ * <code>int</code>, <code>long</code> or <code>double</code> arrays. String columns store an index into a
+ * dictionary of the distinct strings in the row group, so repeated values such as camera makes are held once.
+ * <p>
+ * Values of null rows are undefined.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class RowGroup
+{
+    @NotNull
+    private final List<Column> _columns;
+    @NotNull
+    private final long[][] _present;
+    @NotNull
+    private final int[][] _ints;
+    @NotNull
+    private final long[][] _longs;
+    @NotNull
+    private final double[][] _doubles;
+    @NotNull
+    private final List<List<String>> _dictionaries;
+    @NotNull
+    private final List<Map<String, Integer>> _dictionaryIndices;
+    private final int _capacity;
+    private int _rowCount;
+
+    RowGroup(@NotNull List<Column> columns, int capacity)
+    {
+        int columnCount = columns.size();
+
+        _columns = Collections.unmodifiableList(new ArrayList<Column>(columns));
+        _capacity = capacity;
+        _present = new long[columnCount][(capacity + 63) >> 6];
+        _ints = new int[columnCount][];
+        _longs = new long[columnCount][];
+        _doubles = new double[columnCount][];
+        _dictionaries = new ArrayList<List<String>>(columnCount);
+        _dictionaryIndices = new ArrayList<Map<String, Integer>>(columnCount);
+
+        for (int i = 0; i < columnCount; i++) {
+            List<String> dictionary = null;
+            Map<String, Integer> dictionaryIndex = null;
+            switch (columns.get(i).getType()) {
+                case INT:
+                    _ints[i] = new int[capacity];
+                    break;
+                case LONG:
+                    _longs[i] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    _doubles[i] = new double[capacity];
+                    break;
+                case STRING:
+                case DESCRIPTION:
+                    _ints[i] = new int[capacity];
+                    dictionary = new ArrayList<String>();
+                    dictionaryIndex = new HashMap<String, Integer>();
+                    break;
+            }
+            _dictionaries.add(dictionary);
+            _dictionaryIndices.add(dictionaryIndex);
+        }
+    }
+
+    @NotNull
+    public List<Column> getColumns()
+    {
+        return _columns;
+    }
+
+    public int getRowCount()
+    {
+        return _rowCount;
+    }
+
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    public boolean isFull()
+    {
+        return _rowCount == _capacity;
+    }
+
+    public boolean isNull(int column, int row)
+    {
+        checkRow(row);
+        return (_present[column][row >> 6] & (1L << row)) == 0;
+    }
+
+    public int getInt(int column, int row)
+    {
+        checkRow(row);
+        checkType(column, ColumnType.INT);
+        return _ints[column][row];
+    }
+
+    public long getLong(int column, int row)
+    {
+        checkRow(row);
+        checkType(column, ColumnType.LONG);
+        return _longs[column][row];
+    }
+
+    public double getDouble(int column, int row)
+    {
+        checkRow(row);
+        checkType(column, ColumnType.DOUBLE);
+        return _doubles[column][row];
+    }
+
+    /**
+     * Gets the index of a string value within {@link #getDictionary}, for a {@link ColumnType#STRING} or
+     * {@link ColumnType#DESCRIPTION} column.
+     */
+    public int getStringIndex(int column, int row)
+    {
+        checkRow(row);
+        checkStringType(column);
+        return _ints[column][row];
+    }
+
+    /**
+     * Gets the value of a {@link ColumnType#STRING} or {@link ColumnType#DESCRIPTION} column, or null if the row
+     * has no value.
+     */
+    @Nullable
+    public String getString(int column, int row)
+    {
+        if (isNull(column, row))
+            return null;
+        return getDictionary(column).get(getStringIndex(column, row));
+    }
+
+    /**
+     * Gets the distinct values of a {@link ColumnType#STRING} or {@link ColumnType#DESCRIPTION} column, in order
+     * of first occurrence.
+     */
+    @NotNull
+    public List<String> getDictionary(int column)
+    {
+        checkStringType(column);
+        return Collections.unmodifiableList(_dictionaries.get(column));
+    }
+
+    /**
+     * Adds a row in which every column is null, returning its index. Values are then set via the set methods.
+     * Bitmaps are cleared by {@link #clear}, so new rows start out null.
+     */
+    int addRow()
+    {
+        if (isFull())
+            throw new IllegalStateException("Row group is full");
+        return _rowCount++;
+    }
+
+    void setInt(int column, int row, int value)
+    {
+        _ints[column][row] = value;
+        setPresent(column, row);
+    }
+
+    void setLong(int column, int row, long value)
+    {
+        _longs[column][row] = value;
+        setPresent(column, row);
+    }
+
+    void setDouble(int column, int row, double value)
+    {
+        _doubles[column][row] = value;
+        setPresent(column, row);
+    }
+
+    void setString(int column, int row, @NotNull String value)
+    {
+        Map<String, Integer> dictionaryIndex = _dictionaryIndices.get(column);
+        Integer index = dictionaryIndex.get(value);
+        if (index == null) {
+            List<String> dictionary = _dictionaries.get(column);
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, index);
+        }
+        _ints[column][row] = index;
+        setPresent(column, row);
+    }
+
+    /**
+     * Sets a string column's value by dictionary index, for use when reading a row group back from a file
+     * alongside {@link #addToDictionary}.
+     */
+    void setStringIndex(int column, int row, int index)
+    {
+        _ints[column][row] = index;
+        setPresent(column, row);
+    }
+
+    void addToDictionary(int column, @NotNull String value)
+    {
+        List<String> dictionary = _dictionaries.get(column);
+        _dictionaryIndices.get(column).put(value, dictionary.size());
+        dictionary.add(value);
+    }
+
+    /**
+     * Removes all rows and dictionary entries, so that the row group's arrays may be reused.
+     */
+    void clear()
+    {
+        _rowCount = 0;
+        for (long[] present : _present)
+            Arrays.fill(present, 0L);
+        for (int i = 0; i < _columns.size(); i++) {
+            if (_dictionaries.get(i) != null) {
+                _dictionaries.get(i).clear();
+                _dictionaryIndices.get(i).clear();
+            }
+        }
+    }
+
+    private void setPresent(int column, int row)
+    {
+        _present[column][row >> 6] |= 1L << row;
+    }
+
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= _rowCount)
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range for row group of " + _rowCount + " rows");
+    }
+
+    private void checkType(int column, @NotNull ColumnType type)
+    {
+        ColumnType actual = _columns.get(column).getType();
+        if (actual != type)
+            throw new IllegalArgumentException("Column " + column + " has type " + actual + ", not " + type);
+    }
+
+    private void checkStringType(int column)
+    {
+        ColumnType actual = _columns.get(column).getType();
+        if (actual != ColumnType.STRING && actual != ColumnType.DESCRIPTION)
+            throw new IllegalArgumentException("Column " + column + " has type " + actual + ", not a string type");
+    }
+}
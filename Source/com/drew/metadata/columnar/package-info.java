@@ -0,0 +1,30 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+/**
+ * Provides classes for exporting selected tags from many {@link com.drew.metadata.Metadata} objects in a columnar
+ * form, suited to loading into analytical databases.
+ * <p />
+ * Columns are declared up front as a directory type and tag ID. {@link com.drew.metadata.columnar.ColumnarBatch}
+ * accumulates rows into primitive arrays and dictionary encoded strings, and passes completed row groups to a
+ * {@link com.drew.metadata.columnar.RowGroupSink} such as a CSV or columnar file writer.
+ */
+package com.drew.metadata.columnar;
@@ -37,12 +37,13 @@ import java.io.InputStream;
  *     <li>If there is more than one header, the 1st is truth</li>
  * </ul>
  *
+ * <p>
+ * Instances of this class hold no state between calls and may be shared between threads.
+ *
  * @author Payton Garland
  */
 public class EpsReader
 {
-    private int _previousTag;
-
     /**
      * Filter method that determines if file will contain an EPS Header.  If it does, it will read the necessary
      * data and then set the position to the beginning of the PostScript data.  If it does not, the position will not
@@ -113,45 +114,56 @@ public class EpsReader
     private void extract(@NotNull final EpsDirectory directory, @NotNull Metadata metadata, @NotNull SequentialReader reader) throws IOException
     {
         StringBuilder line = new StringBuilder();
+        int previousTag = 0;
 
-        while (true) {
-            line.setLength(0);
-
-            // Read the next line, excluding any trailing newline character
-            // Note that for Windows-style line endings ("\r\n") the outer loop will be run a second time with an empty
-            // string, which is fine.
+        try {
             while (true) {
-                char c = (char)reader.getByte();
-                if (c == '\r' || c == '\n')
+                ExtractionBudget.checkpoint();
+
+                line.setLength(0);
+
+                // Read the next line, excluding any trailing newline character
+                // Note that for Windows-style line endings ("\r\n") the outer loop will be run a second time with an empty
+                // string, which is fine.
+                while (true) {
+                    char c = (char)reader.getByte();
+                    if (c == '\r' || c == '\n')
+                        break;
+                    line.append(c);
+                    // Corrupt data may not contain a line break for a long way
+                    if ((line.length() & 0xFFFF) == 0)
+                        ExtractionBudget.checkpoint();
+                }
+
+                // Stop when we hit a line that is not a comment
+                if (line.length() != 0 && line.charAt(0) != '%')
                     break;
-                line.append(c);
-            }
 
-            // Stop when we hit a line that is not a comment
-            if (line.length() != 0 && line.charAt(0) != '%')
-                break;
+                String name;
 
-            String name;
-
-            // ':' signifies there is an associated keyword (should be put in directory)
-            // otherwise, the name could be a marker
-            int colonIndex = line.indexOf(":");
-            if (colonIndex != -1) {
-                name = line.substring(0, colonIndex).trim();
-                String value = line.substring(colonIndex + 1).trim();
-                addToDirectory(directory, name, value);
-            } else {
-                name = line.toString().trim();
-            }
+                // ':' signifies there is an associated keyword (should be put in directory)
+                // otherwise, the name could be a marker
+                int colonIndex = line.indexOf(":");
+                if (colonIndex != -1) {
+                    name = line.substring(0, colonIndex).trim();
+                    String value = line.substring(colonIndex + 1).trim();
+                    previousTag = addToDirectory(directory, name, value, previousTag);
+                } else {
+                    name = line.toString().trim();
+                }
 
-            // Some comments will both have a value and signify a new block to follow
-            if (name.equals("%BeginPhotoshop")) {
-                extractPhotoshopData(metadata, reader);
-            } else if (name.equals("%%BeginICCProfile")) {
-                extractIccData(metadata, reader);
-            } else if (name.equals("%begin_xml_packet")) {
-                extractXmpData(metadata, reader);
+                // Some comments will both have a value and signify a new block to follow
+                if (name.equals("%BeginPhotoshop")) {
+                    extractPhotoshopData(metadata, reader);
+                } else if (name.equals("%%BeginICCProfile")) {
+                    extractIccData(metadata, reader);
+                } else if (name.equals("%begin_xml_packet")) {
+                    extractXmpData(metadata, reader);
+                }
             }
+        } catch (ExtractionLimitException e) {
+            // Keep whatever was read before extraction was stopped
+            directory.addError(e.getMessage());
         }
     }
 
@@ -161,32 +173,30 @@ public class EpsReader
      * @param directory EpsDirectory to add extracted data to
      * @param name String that holds name of current comment
      * @param value String that holds value of current comment
+     * @param previousTag the tag most recently added, to which continuation lines are appended
+     * @return the tag to which any following continuation line applies
      */
-    private void addToDirectory(@NotNull final EpsDirectory directory, String name, String value) throws IOException
+    private static int addToDirectory(@NotNull final EpsDirectory directory, String name, String value, int previousTag) throws IOException
     {
         Integer tag = EpsDirectory._tagIntegerMap.get(name);
 
         if (tag == null)
-            return;
+            return previousTag;
 
         switch (tag) {
             case EpsDirectory.TAG_IMAGE_DATA:
                 extractImageData(directory, value);
                 break;
             case EpsDirectory.TAG_CONTINUE_LINE:
-                directory.setString(_previousTag, directory.getString(_previousTag) + " " + value);
+                directory.setString(previousTag, directory.getString(previousTag) + " " + value);
                 break;
             default:
                 if (EpsDirectory._tagNameMap.containsKey(tag) && !directory.containsTag(tag)) {
                     directory.setString(tag, value);
-                    _previousTag = tag;
-                } else {
-                    // Set previous tag to an Integer that doesn't exist in EpsDirectory
-                    _previousTag = 0;
                 }
                 break;
         }
-        _previousTag = tag;
+        return tag;
     }
 
     /**
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.exif;
+
+import com.drew.imaging.tiff.TiffProcessingException;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+import com.drew.metadata.MetadataEventEmitter;
+import com.drew.metadata.tiff.EventTiffHandler;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Set;
+
+/**
+ * Implementation of {@link com.drew.imaging.tiff.TiffHandler} that reports Exif data as events, following the
+ * same IFD structure as {@link ExifTiffHandler} without creating any {@link Directory} objects.
+ * <p>
+ * IFD0, the Exif sub-IFD, GPS, interoperability and thumbnail IFDs are reported as the directory types that
+ * {@link ExifTiffHandler} would create. Makernotes and embedded IPTC, ICC, Photoshop and XMP data are not decoded,
+ * and are reported as the raw values of the tags that contain them.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ExifEventTiffHandler extends EventTiffHandler
+{
+    /** The numbers of directories known to contain a page number tag, indicating a multi-page TIFF. */
+    private final BitSet _directoriesWithPageNumber = new BitSet();
+
+    public ExifEventTiffHandler(@NotNull MetadataEventEmitter emitter, int parentIndex)
+    {
+        super(emitter, parentIndex);
+    }
+
+    public void setTiffMarker(int marker) throws TiffProcessingException
+    {
+        final int standardTiffMarker = 0x002A;
+        final int olympusRawTiffMarker = 0x4F52; // for ORF files
+        final int olympusRawTiffMarker2 = 0x5352; // for ORF files
+        final int panasonicRawTiffMarker = 0x0055; // for RW2 files
+
+        switch (marker) {
+            case standardTiffMarker:
+            case olympusRawTiffMarker:
+            case olympusRawTiffMarker2:
+                pushDirectory(ExifIFD0Directory.class);
+                break;
+            case panasonicRawTiffMarker:
+                pushDirectory(PanasonicRawIFD0Directory.class);
+                break;
+            default:
+                throw new TiffProcessingException(String.format("Unexpected TIFF marker: 0x%X", marker));
+        }
+    }
+
+    public boolean tryEnterSubIfd(int tagId)
+    {
+        Class<? extends Directory> subIfdType = ExifTiffHandler.getSubIfdType(getCurrentDirectoryType(), tagId);
+        if (subIfdType == null)
+            return false;
+
+        pushDirectory(subIfdType);
+        return true;
+    }
+
+    public boolean hasFollowerIfd()
+    {
+        Class<? extends Directory> current = getCurrentDirectoryType();
+
+        // As in ExifTiffHandler, a page number indicates that the follower is the next image of a multipage TIFF
+        if (current == ExifIFD0Directory.class || current == ExifImageDirectory.class) {
+            if (_directoriesWithPageNumber.get(getCurrentDirectoryIndex()))
+                pushDirectory(ExifImageDirectory.class);
+            else
+                pushDirectory(ExifThumbnailDirectory.class);
+            return true;
+        }
+
+        // The Canon EOS 7D (CR2) has three chained/following thumbnail IFDs
+        if (current == ExifThumbnailDirectory.class) {
+            continueDirectory();
+            return true;
+        }
+
+        return false;
+    }
+
+    @Nullable
+    public Long tryCustomProcessFormat(final int tagId, final int formatCode, final long componentCount)
+    {
+        if (formatCode == 13)
+            return componentCount * 4;
+
+        // an unknown (0) formatCode needs to be potentially handled later as a highly custom directory tag
+        if (formatCode == 0)
+            return 0L;
+
+        return null;
+    }
+
+    public boolean customProcessTag(final int tagOffset,
+                                    final @NotNull Set<Integer> processedIfdOffsets,
+                                    final int tiffHeaderOffset,
+                                    final @NotNull RandomAccessReader reader,
+                                    final int tagId,
+                                    final int byteCount) throws IOException
+    {
+        // Skip over 0x0000 tags that don't have any associated bytes. No idea what it contains in this case, if anything.
+        return tagId == 0 && byteCount == 0;
+    }
+
+    @Override
+    protected void tag(int tagId, @NotNull Object value)
+    {
+        if (tagId == ExifDirectoryBase.TAG_PAGE_NUMBER && getCurrentDirectoryIndex() != -1)
+            _directoriesWithPageNumber.set(getCurrentDirectoryIndex());
+
+        super.tag(tagId, value);
+    }
+}
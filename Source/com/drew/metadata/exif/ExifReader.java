@@ -30,6 +30,7 @@ import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataEventEmitter;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -102,4 +103,25 @@ public class ExifReader implements JpegSegmentMetadataReader
             exifTiffHandler.error("Exception processing TIFF data: " + e.getMessage());
         }
     }
+
+    /**
+     * Reads TIFF formatted Exif data at a specified offset within a {@link RandomAccessReader}, reporting values as
+     * events rather than storing them in {@link Directory} objects.
+     *
+     * @param parentIndex the number of the directory to report as the parent of IFD0, or -1 for none.
+     */
+    public void extract(@NotNull final RandomAccessReader reader, @NotNull final MetadataEventEmitter emitter, int readerOffset, int parentIndex)
+    {
+        ExifEventTiffHandler handler = new ExifEventTiffHandler(emitter, parentIndex);
+
+        try {
+            new TiffReader().processTiff(reader, handler, readerOffset);
+        } catch (TiffProcessingException e) {
+            handler.error("Exception processing TIFF data: " + e.getMessage());
+        } catch (IOException e) {
+            handler.error("Exception processing TIFF data: " + e.getMessage());
+        } finally {
+            handler.endAll();
+        }
+    }
 }
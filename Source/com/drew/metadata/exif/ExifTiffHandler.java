@@ -57,9 +57,21 @@ import com.drew.metadata.xmp.XmpReader;
  */
 public class ExifTiffHandler extends DirectoryTiffHandler
 {
+    @NotNull
+    static final MakernoteRegistry STANDARD_MAKERNOTES = createStandardMakernoteRegistry();
+
+    @NotNull
+    private final MakernoteRegistry _makernoteRegistry;
+
     public ExifTiffHandler(@NotNull Metadata metadata, @Nullable Directory parentDirectory)
+    {
+        this(metadata, parentDirectory, MakernoteRegistry.getDefault());
+    }
+
+    public ExifTiffHandler(@NotNull Metadata metadata, @Nullable Directory parentDirectory, @NotNull MakernoteRegistry makernoteRegistry)
     {
         super(metadata, parentDirectory);
+        _makernoteRegistry = makernoteRegistry;
     }
 
     public void setTiffMarker(int marker) throws TiffProcessingException
@@ -84,63 +96,73 @@ public class ExifTiffHandler extends DirectoryTiffHandler
     }
 
     public boolean tryEnterSubIfd(int tagId)
+    {
+        Class<? extends Directory> subIfdType = getSubIfdType(getCurrentDirectoryType(), tagId);
+        if (subIfdType == null)
+            return false;
+
+        pushDirectory(subIfdType);
+        return true;
+    }
+
+    @Nullable
+    private Class<? extends Directory> getCurrentDirectoryType()
+    {
+        return _currentDirectory == null ? null : _currentDirectory.getClass();
+    }
+
+    /**
+     * Gets the type of directory to which <code>tagId</code>, found in an IFD of type <code>currentType</code>,
+     * points, or null if the tag is not a pointer to a sub-IFD. Shared with {@link ExifEventTiffHandler}, so that
+     * both handlers follow the same IFD structure.
+     */
+    @Nullable
+    static Class<? extends Directory> getSubIfdType(@Nullable Class<? extends Directory> currentType, int tagId)
     {
         if (tagId == ExifDirectoryBase.TAG_SUB_IFD_OFFSET) {
-            pushDirectory(ExifSubIFDDirectory.class);
-            return true;
+            return ExifSubIFDDirectory.class;
         }
 
-        if (_currentDirectory instanceof ExifIFD0Directory || _currentDirectory instanceof PanasonicRawIFD0Directory) {
+        if (currentType == ExifIFD0Directory.class || currentType == PanasonicRawIFD0Directory.class) {
             if (tagId == ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET) {
-                pushDirectory(ExifSubIFDDirectory.class);
-                return true;
+                return ExifSubIFDDirectory.class;
             }
 
             if (tagId == ExifIFD0Directory.TAG_GPS_INFO_OFFSET) {
-                pushDirectory(GpsDirectory.class);
-                return true;
+                return GpsDirectory.class;
             }
         }
 
-        if (_currentDirectory instanceof ExifSubIFDDirectory) {
+        if (currentType == ExifSubIFDDirectory.class) {
             if (tagId == ExifSubIFDDirectory.TAG_INTEROP_OFFSET) {
-                pushDirectory(ExifInteropDirectory.class);
-                return true;
+                return ExifInteropDirectory.class;
             }
         }
 
-        if (_currentDirectory instanceof OlympusMakernoteDirectory) {
+        if (currentType == OlympusMakernoteDirectory.class) {
             // Note: these also appear in customProcessTag because some are IFD pointers while others begin immediately
             // for the same directories
             switch(tagId) {
                 case OlympusMakernoteDirectory.TAG_EQUIPMENT:
-                    pushDirectory(OlympusEquipmentMakernoteDirectory.class);
-                    return true;
+                    return OlympusEquipmentMakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_CAMERA_SETTINGS:
-                    pushDirectory(OlympusCameraSettingsMakernoteDirectory.class);
-                    return true;
+                    return OlympusCameraSettingsMakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_RAW_DEVELOPMENT:
-                    pushDirectory(OlympusRawDevelopmentMakernoteDirectory.class);
-                    return true;
+                    return OlympusRawDevelopmentMakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_RAW_DEVELOPMENT_2:
-                    pushDirectory(OlympusRawDevelopment2MakernoteDirectory.class);
-                    return true;
+                    return OlympusRawDevelopment2MakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_IMAGE_PROCESSING:
-                    pushDirectory(OlympusImageProcessingMakernoteDirectory.class);
-                    return true;
+                    return OlympusImageProcessingMakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_FOCUS_INFO:
-                    pushDirectory(OlympusFocusInfoMakernoteDirectory.class);
-                    return true;
+                    return OlympusFocusInfoMakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_RAW_INFO:
-                    pushDirectory(OlympusRawInfoMakernoteDirectory.class);
-                    return true;
+                    return OlympusRawInfoMakernoteDirectory.class;
                 case OlympusMakernoteDirectory.TAG_MAIN_INFO:
-                    pushDirectory(OlympusMakernoteDirectory.class);
-                    return true;
+                    return OlympusMakernoteDirectory.class;
             }
         }
 
-        return false;
+        return null;
     }
 
     public boolean hasFollowerIfd()
@@ -406,210 +428,330 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
         String cameraMake = ifd0Directory == null ? null : ifd0Directory.getString(ExifIFD0Directory.TAG_MAKE);
 
-        final String firstTwoChars    = getReaderString(reader, makernoteOffset, 2);
-        final String firstThreeChars  = getReaderString(reader, makernoteOffset, 3);
-        final String firstFourChars   = getReaderString(reader, makernoteOffset, 4);
-        final String firstFiveChars   = getReaderString(reader, makernoteOffset, 5);
-        final String firstSixChars    = getReaderString(reader, makernoteOffset, 6);
-        final String firstSevenChars  = getReaderString(reader, makernoteOffset, 7);
-        final String firstEightChars  = getReaderString(reader, makernoteOffset, 8);
-        final String firstNineChars   = getReaderString(reader, makernoteOffset, 9);
-        final String firstTenChars    = getReaderString(reader, makernoteOffset, 10);
-        final String firstTwelveChars = getReaderString(reader, makernoteOffset, 12);
-
         boolean byteOrderBefore = reader.isMotorolaByteOrder();
 
-        if ("OLYMP\0".equals(firstSixChars) || "EPSON".equals(firstFiveChars) || "AGFA".equals(firstFourChars)) {
-            // Olympus Makernote
-            // Epson and Agfa use Olympus makernote standard: http://www.ozhiker.com/electronics/pjmt/jpeg_info/
-            pushDirectory(OlympusMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-        } else if ("OLYMPUS\0II".equals(firstTenChars)) {
-            // Olympus Makernote (alternate)
-            // Note that data is relative to the beginning of the makernote
-            // http://exiv2.org/makernote.html
-            pushDirectory(OlympusMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, makernoteOffset);
-        } else if (cameraMake != null && cameraMake.toUpperCase().startsWith("MINOLTA")) {
-            // Cases seen with the model starting with MINOLTA in capitals seem to have a valid Olympus makernote
-            // area that commences immediately.
-            pushDirectory(OlympusMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else if (cameraMake != null && cameraMake.trim().toUpperCase().startsWith("NIKON")) {
-            if ("Nikon".equals(firstFiveChars)) {
-                /* There are two scenarios here:
-                 * Type 1:                  **
-                 * :0000: 4E 69 6B 6F 6E 00 01 00-05 00 02 00 02 00 06 00 Nikon...........
-                 * :0010: 00 00 EC 02 00 00 03 00-03 00 01 00 00 00 06 00 ................
-                 * Type 3:                  **
-                 * :0000: 4E 69 6B 6F 6E 00 02 00-00 00 4D 4D 00 2A 00 00 Nikon....MM.*...
-                 * :0010: 00 08 00 1E 00 01 00 07-00 00 00 04 30 32 30 30 ............0200
-                 */
-                switch (reader.getUInt8(makernoteOffset + 6)) {
-                    case 1:
-                        pushDirectory(NikonType1MakernoteDirectory.class);
-                        TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-                        break;
-                    case 2:
-                        pushDirectory(NikonType2MakernoteDirectory.class);
-                        TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 18, makernoteOffset + 10);
-                        break;
-                    default:
-                        _currentDirectory.addError("Unsupported Nikon makernote data ignored.");
-                        break;
+        if (!_makernoteRegistry.process(this, cameraMake, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset)) {
+            // The makernote is not comprehended by this library.
+            // If you are reading this and believe a particular camera's image should be processed, get in touch.
+            return false;
+        }
+
+        reader.setMotorolaByteOrder(byteOrderBefore);
+        return true;
+    }
+
+    /**
+     * Adds a directory of type <code>directoryClass</code> as a child of the current directory, and populates it from
+     * the IFD at <code>ifdOffset</code>. For use by {@link MakernoteProcessor} implementations.
+     *
+     * @param tiffHeaderOffset the offset to which offsets within the IFD are relative.
+     */
+    public void processMakernoteIfd(@NotNull Class<? extends Directory> directoryClass,
+                                    @NotNull RandomAccessReader reader,
+                                    @NotNull Set<Integer> processedIfdOffsets,
+                                    int ifdOffset,
+                                    int tiffHeaderOffset) throws IOException
+    {
+        pushDirectory(directoryClass);
+        TiffReader.processIfd(this, reader, processedIfdOffsets, ifdOffset, tiffHeaderOffset);
+    }
+
+    /**
+     * Decodes a makernote stored as an IFD at a fixed position relative to the start of the makernote.
+     */
+    private static class IfdMakernoteProcessor extends MakernoteProcessor
+    {
+        @NotNull
+        private final Class<? extends Directory> _directoryClass;
+        private final int _ifdOffset;
+        private final boolean _isRelativeToMakernote;
+        @Nullable
+        private final Boolean _isMotorolaByteOrder;
+
+        /**
+         * @param ifdOffset the offset of the IFD from the start of the makernote.
+         * @param isRelativeToMakernote whether offsets within the IFD are relative to the start of the makernote,
+         *                              rather than to the TIFF header.
+         * @param isMotorolaByteOrder the byte order in which the makernote is always stored, or <code>null</code> if
+         *                            it uses that of the enclosing TIFF data.
+         */
+        IfdMakernoteProcessor(@NotNull Class<? extends Directory> directoryClass, int ifdOffset, boolean isRelativeToMakernote, @Nullable Boolean isMotorolaByteOrder)
+        {
+            _directoryClass = directoryClass;
+            _ifdOffset = ifdOffset;
+            _isRelativeToMakernote = isRelativeToMakernote;
+            _isMotorolaByteOrder = isMotorolaByteOrder;
+        }
+
+        IfdMakernoteProcessor(@NotNull Class<? extends Directory> directoryClass, int ifdOffset, boolean isRelativeToMakernote)
+        {
+            this(directoryClass, ifdOffset, isRelativeToMakernote, null);
+        }
+
+        @NotNull
+        @Override
+        Class<?> getReportedClass()
+        {
+            return _directoryClass;
+        }
+
+        @Override
+        public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+        {
+            if (_isMotorolaByteOrder != null)
+                reader.setMotorolaByteOrder(_isMotorolaByteOrder);
+            handler.processMakernoteIfd(_directoryClass, reader, processedIfdOffsets, makernoteOffset + _ifdOffset, _isRelativeToMakernote ? makernoteOffset : tiffHeaderOffset);
+            return true;
+        }
+    }
+
+    /**
+     * Creates the registry of makernote formats supported by this library.
+     * <p>
+     * Order is significant, as the first matching signature is used. In particular, signatures matching only on the
+     * camera's Make must follow any more specific signatures that apply to the same cameras.
+     */
+    @NotNull
+    private static MakernoteRegistry createStandardMakernoteRegistry()
+    {
+        MakernoteRegistry registry = new MakernoteRegistry();
+
+        // Olympus Makernote
+        // Epson and Agfa use Olympus makernote standard: http://www.ozhiker.com/electronics/pjmt/jpeg_info/
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(OlympusMakernoteDirectory.class, 8, false), "OLYMP\0", "EPSON", "AGFA"));
+
+        // Olympus Makernote (alternate)
+        // Note that data is relative to the beginning of the makernote
+        // http://exiv2.org/makernote.html
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(OlympusMakernoteDirectory.class, 12, true), "OLYMPUS\0II"));
+
+        // Cases seen with the model starting with MINOLTA in capitals seem to have a valid Olympus makernote
+        // area that commences immediately.
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.STARTS_WITH_IGNORE_CASE, "MINOLTA", new IfdMakernoteProcessor(OlympusMakernoteDirectory.class, 0, false)));
+
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.TRIMMED_STARTS_WITH_IGNORE_CASE, "NIKON", new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                if ("Nikon".equals(getReaderString(reader, makernoteOffset, 5))) {
+                    /* There are two scenarios here:
+                     * Type 1:                  **
+                     * :0000: 4E 69 6B 6F 6E 00 01 00-05 00 02 00 02 00 06 00 Nikon...........
+                     * :0010: 00 00 EC 02 00 00 03 00-03 00 01 00 00 00 06 00 ................
+                     * Type 3:                  **
+                     * :0000: 4E 69 6B 6F 6E 00 02 00-00 00 4D 4D 00 2A 00 00 Nikon....MM.*...
+                     * :0010: 00 08 00 1E 00 01 00 07-00 00 00 04 30 32 30 30 ............0200
+                     */
+                    switch (reader.getUInt8(makernoteOffset + 6)) {
+                        case 1:
+                            handler.processMakernoteIfd(NikonType1MakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                            break;
+                        case 2:
+                            handler.processMakernoteIfd(NikonType2MakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 18, makernoteOffset + 10);
+                            break;
+                        default:
+                            handler.error("Unsupported Nikon makernote data ignored.");
+                            break;
+                    }
+                } else {
+                    // The IFD begins with the first Makernote byte (no ASCII name).  This occurs with CoolPix 775, E990 and D1 models.
+                    handler.processMakernoteIfd(NikonType2MakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
                 }
-            } else {
-                // The IFD begins with the first Makernote byte (no ASCII name).  This occurs with CoolPix 775, E990 and D1 models.
-                pushDirectory(NikonType2MakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                return true;
             }
-        } else if ("SONY CAM".equals(firstEightChars) || "SONY DSC".equals(firstEightChars)) {
-            pushDirectory(SonyType1MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, tiffHeaderOffset);
+        }));
+
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(SonyType1MakernoteDirectory.class, 12, false), "SONY CAM", "SONY DSC"));
+
         // Do this check LAST after most other Sony checks
-        } else if (cameraMake != null && cameraMake.startsWith("SONY") &&
-                !Arrays.equals(reader.getBytes(makernoteOffset, 2), new byte[]{ 0x01, 0x00 }) ) {
-            // The IFD begins with the first Makernote byte (no ASCII name). Used in SR2 and ARW images
-            pushDirectory(SonyType1MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else if ("SEMC MS\u0000\u0000\u0000\u0000\u0000".equals(firstTwelveChars)) {
-            // force MM for this directory
-            reader.setMotorolaByteOrder(true);
-            // skip 12 byte header + 2 for "MM" + 6
-            pushDirectory(SonyType6MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 20, tiffHeaderOffset);
-        } else if ("SIGMA\u0000\u0000\u0000".equals(firstEightChars) || "FOVEON\u0000\u0000".equals(firstEightChars)) {
-            pushDirectory(SigmaMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 10, tiffHeaderOffset);
-        } else if ("KDK".equals(firstThreeChars)) {
-            reader.setMotorolaByteOrder(firstSevenChars.equals("KDK INFO"));
-            KodakMakernoteDirectory directory = new KodakMakernoteDirectory();
-            _metadata.addDirectory(directory);
-            processKodakMakernote(directory, makernoteOffset, reader);
-        } else if ("Canon".equalsIgnoreCase(cameraMake)) {
-            pushDirectory(CanonMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else if (cameraMake != null && cameraMake.toUpperCase().startsWith("CASIO")) {
-            if ("QVC\u0000\u0000\u0000".equals(firstSixChars)) {
-                pushDirectory(CasioType2MakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 6, tiffHeaderOffset);
-            } else {
-                pushDirectory(CasioType1MakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.STARTS_WITH, "SONY", new IfdMakernoteProcessor(SonyType1MakernoteDirectory.class, 0, false)
+        {
+            @Override
+            public boolean accepts(@NotNull RandomAccessReader reader, int makernoteOffset) throws IOException
+            {
+                // The IFD begins with the first Makernote byte (no ASCII name). Used in SR2 and ARW images
+                return !Arrays.equals(reader.getBytes(makernoteOffset, 2), new byte[]{ 0x01, 0x00 });
             }
-        } else if ("FUJIFILM".equals(firstEightChars) || "Fujifilm".equalsIgnoreCase(cameraMake)) {
-            // Note that this also applies to certain Leica cameras, such as the Digilux-4.3
-            reader.setMotorolaByteOrder(false);
-            // the 4 bytes after "FUJIFILM" in the makernote point to the start of the makernote
-            // IFD, though the offset is relative to the start of the makernote, not the TIFF
-            // header (like everywhere else)
-            int ifdStart = makernoteOffset + reader.getInt32(makernoteOffset + 8);
-            pushDirectory(FujifilmMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, ifdStart, makernoteOffset);
-        } else if ("KYOCERA".equals(firstSevenChars)) {
-            // http://www.ozhiker.com/electronics/pjmt/jpeg_info/kyocera_mn.html
-            pushDirectory(KyoceraMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 22, tiffHeaderOffset);
-        } else if ("LEICA".equals(firstFiveChars)) {
-            reader.setMotorolaByteOrder(false);
-
-            // used by the X1/X2/X VARIO/T
-            // (X1 starts with "LEICA\0\x01\0", Make is "LEICA CAMERA AG")
-            // (X2 starts with "LEICA\0\x05\0", Make is "LEICA CAMERA AG")
-            // (X VARIO starts with "LEICA\0\x04\0", Make is "LEICA CAMERA AG")
-            // (T (Typ 701) starts with "LEICA\0\0x6", Make is "LEICA CAMERA AG")
-            // (X (Typ 113) starts with "LEICA\0\0x7", Make is "LEICA CAMERA AG")
-
-            if ("LEICA\0\u0001\0".equals(firstEightChars) ||
-                "LEICA\0\u0004\0".equals(firstEightChars) ||
-                "LEICA\0\u0005\0".equals(firstEightChars) ||
-                "LEICA\0\u0006\0".equals(firstEightChars) ||
-                "LEICA\0\u0007\0".equals(firstEightChars))
+        }));
+
+        // skip 12 byte header + 2 for "MM" + 6
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(SonyType6MakernoteDirectory.class, 20, false, true), "SEMC MS\u0000\u0000\u0000\u0000\u0000"));
+
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(SigmaMakernoteDirectory.class, 10, false), "SIGMA\u0000\u0000\u0000", "FOVEON\u0000\u0000"));
+
+        registry.register(new MakernoteSignature(new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
             {
-                pushDirectory(LeicaType5MakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
-            } else if ("Leica Camera AG".equals(cameraMake)) {
-                pushDirectory(LeicaMakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-            } else if ("LEICA".equals(cameraMake)) {
-                // Some Leica cameras use Panasonic makernote tags
-                pushDirectory(PanasonicMakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-            } else {
-                return false;
+                reader.setMotorolaByteOrder(getReaderString(reader, makernoteOffset, 7).equals("KDK INFO"));
+                KodakMakernoteDirectory directory = new KodakMakernoteDirectory();
+                handler._metadata.addDirectory(directory);
+                processKodakMakernote(directory, makernoteOffset, reader);
+                return true;
             }
-        } else if ("Panasonic\u0000\u0000\u0000".equals(firstTwelveChars)) {
-            // NON-Standard TIFF IFD Data using Panasonic Tags. There is no Next-IFD pointer after the IFD
-            // Offsets are relative to the start of the TIFF header at the beginning of the EXIF segment
-            // more information here: http://www.ozhiker.com/electronics/pjmt/jpeg_info/panasonic_mn.html
-            pushDirectory(PanasonicMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, tiffHeaderOffset);
-        } else if ("AOC\u0000".equals(firstFourChars)) {
-            // NON-Standard TIFF IFD Data using Casio Type 2 Tags
-            // IFD has no Next-IFD pointer at end of IFD, and
-            // Offsets are relative to the start of the current IFD tag, not the TIFF header
-            // Observed for:
-            // - Pentax ist D
-            pushDirectory(CasioType2MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 6, makernoteOffset);
-        } else if (cameraMake != null && (cameraMake.toUpperCase().startsWith("PENTAX") || cameraMake.toUpperCase().startsWith("ASAHI"))) {
-            // NON-Standard TIFF IFD Data using Pentax Tags
-            // IFD has no Next-IFD pointer at end of IFD, and
-            // Offsets are relative to the start of the current IFD tag, not the TIFF header
-            // Observed for:
-            // - PENTAX Optio 330
-            // - PENTAX Optio 430
-            pushDirectory(PentaxMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, makernoteOffset);
-//        } else if ("KC".equals(firstTwoChars) || "MINOL".equals(firstFiveChars) || "MLY".equals(firstThreeChars) || "+M+M+M+M".equals(firstEightChars)) {
-//            // This Konica data is not understood.  Header identified in accordance with information at this site:
-//            // http://www.ozhiker.com/electronics/pjmt/jpeg_info/minolta_mn.html
-//            // TODO add support for minolta/konica cameras
-//            exifDirectory.addError("Unsupported Konica/Minolta data ignored.");
-        } else if ("SANYO\0\1\0".equals(firstEightChars)) {
-            pushDirectory(SanyoMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
-        } else if (cameraMake != null && cameraMake.toLowerCase().startsWith("ricoh")) {
-            if (firstTwoChars.equals("Rv") || firstThreeChars.equals("Rev")) {
-                // This is a textual format, where the makernote bytes look like:
-                //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2E00:������������������������������
-                //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2D05:������������������������������
-                //   Rv0207;Sf6C84;Rg76;Bg60;Gg42;Ll0;Ld0;Aj0004;Bn0B02900;Fp10B8;Md6700;Ln116900086D27;Sv263:0000000000000000000000��
-                // This format is currently unsupported
-                return false;
-            } else if (firstFiveChars.equalsIgnoreCase("Ricoh")) {
-                // Always in Motorola byte order
-                reader.setMotorolaByteOrder(true);
-                pushDirectory(RicohMakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+        }, "KDK"));
+
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.EQUALS_IGNORE_CASE, "Canon", new IfdMakernoteProcessor(CanonMakernoteDirectory.class, 0, false)));
+
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.STARTS_WITH_IGNORE_CASE, "CASIO", new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                if ("QVC\u0000\u0000\u0000".equals(getReaderString(reader, makernoteOffset, 6))) {
+                    handler.processMakernoteIfd(CasioType2MakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 6, tiffHeaderOffset);
+                } else {
+                    handler.processMakernoteIfd(CasioType1MakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                }
+                return true;
             }
-        } else if (firstTenChars.equals("Apple iOS\0")) {
-            // Always in Motorola byte order
-            boolean orderBefore = reader.isMotorolaByteOrder();
-            reader.setMotorolaByteOrder(true);
-            pushDirectory(AppleMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 14, makernoteOffset);
-            reader.setMotorolaByteOrder(orderBefore);
-        } else if (reader.getUInt16(makernoteOffset) == ReconyxHyperFireMakernoteDirectory.MAKERNOTE_VERSION) {
-            ReconyxHyperFireMakernoteDirectory directory = new ReconyxHyperFireMakernoteDirectory();
-            _metadata.addDirectory(directory);
-            processReconyxHyperFireMakernote(directory, makernoteOffset, reader);
-        } else if (firstNineChars.equalsIgnoreCase("RECONYXUF")) {
-            ReconyxUltraFireMakernoteDirectory directory = new ReconyxUltraFireMakernoteDirectory();
-            _metadata.addDirectory(directory);
-            processReconyxUltraFireMakernote(directory, makernoteOffset, reader);
-        } else if ("SAMSUNG".equalsIgnoreCase(cameraMake)) {
-            // Only handles Type2 notes correctly. Others aren't implemented, and it's complex to determine which ones to use
-            pushDirectory(SamsungType2MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else {
-            // The makernote is not comprehended by this library.
-            // If you are reading this and believe a particular camera's image should be processed, get in touch.
-            return false;
-        }
+        }));
 
-        reader.setMotorolaByteOrder(byteOrderBefore);
-        return true;
+        // Note that this also applies to certain Leica cameras, such as the Digilux-4.3
+        MakernoteProcessor fujifilm = new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                reader.setMotorolaByteOrder(false);
+                // the 4 bytes after "FUJIFILM" in the makernote point to the start of the makernote
+                // IFD, though the offset is relative to the start of the makernote, not the TIFF
+                // header (like everywhere else)
+                int ifdStart = makernoteOffset + reader.getInt32(makernoteOffset + 8);
+                handler.processMakernoteIfd(FujifilmMakernoteDirectory.class, reader, processedIfdOffsets, ifdStart, makernoteOffset);
+                return true;
+            }
+        };
+        registry.register(new MakernoteSignature(fujifilm, "FUJIFILM"));
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.EQUALS_IGNORE_CASE, "Fujifilm", fujifilm));
+
+        // http://www.ozhiker.com/electronics/pjmt/jpeg_info/kyocera_mn.html
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(KyoceraMakernoteDirectory.class, 22, false), "KYOCERA"));
+
+        registry.register(new MakernoteSignature(new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                reader.setMotorolaByteOrder(false);
+
+                // used by the X1/X2/X VARIO/T
+                // (X1 starts with "LEICA\0\x01\0", Make is "LEICA CAMERA AG")
+                // (X2 starts with "LEICA\0\x05\0", Make is "LEICA CAMERA AG")
+                // (X VARIO starts with "LEICA\0\x04\0", Make is "LEICA CAMERA AG")
+                // (T (Typ 701) starts with "LEICA\0\0x6", Make is "LEICA CAMERA AG")
+                // (X (Typ 113) starts with "LEICA\0\0x7", Make is "LEICA CAMERA AG")
+
+                String firstEightChars = getReaderString(reader, makernoteOffset, 8);
+
+                if ("LEICA\0\u0001\0".equals(firstEightChars) ||
+                    "LEICA\0\u0004\0".equals(firstEightChars) ||
+                    "LEICA\0\u0005\0".equals(firstEightChars) ||
+                    "LEICA\0\u0006\0".equals(firstEightChars) ||
+                    "LEICA\0\u0007\0".equals(firstEightChars))
+                {
+                    handler.processMakernoteIfd(LeicaType5MakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+                } else if ("Leica Camera AG".equals(cameraMake)) {
+                    handler.processMakernoteIfd(LeicaMakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                } else if ("LEICA".equals(cameraMake)) {
+                    // Some Leica cameras use Panasonic makernote tags
+                    handler.processMakernoteIfd(PanasonicMakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                } else {
+                    return false;
+                }
+                return true;
+            }
+        }, "LEICA"));
+
+        // NON-Standard TIFF IFD Data using Panasonic Tags. There is no Next-IFD pointer after the IFD
+        // Offsets are relative to the start of the TIFF header at the beginning of the EXIF segment
+        // more information here: http://www.ozhiker.com/electronics/pjmt/jpeg_info/panasonic_mn.html
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(PanasonicMakernoteDirectory.class, 12, false), "Panasonic\u0000\u0000\u0000"));
+
+        // NON-Standard TIFF IFD Data using Casio Type 2 Tags
+        // IFD has no Next-IFD pointer at end of IFD, and
+        // Offsets are relative to the start of the current IFD tag, not the TIFF header
+        // Observed for:
+        // - Pentax ist D
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(CasioType2MakernoteDirectory.class, 6, true), "AOC\u0000"));
+
+        // NON-Standard TIFF IFD Data using Pentax Tags
+        // IFD has no Next-IFD pointer at end of IFD, and
+        // Offsets are relative to the start of the current IFD tag, not the TIFF header
+        // Observed for:
+        // - PENTAX Optio 330
+        // - PENTAX Optio 430
+        MakernoteProcessor pentax = new IfdMakernoteProcessor(PentaxMakernoteDirectory.class, 0, true);
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.STARTS_WITH_IGNORE_CASE, "PENTAX", pentax));
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.STARTS_WITH_IGNORE_CASE, "ASAHI", pentax));
+
+        // TODO add support for minolta/konica cameras
+        // This Konica data is not understood.  Header identified in accordance with information at this site:
+        // http://www.ozhiker.com/electronics/pjmt/jpeg_info/minolta_mn.html
+        // Its prefixes are "KC", "MINOL", "MLY" and "+M+M+M+M".
+
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(SanyoMakernoteDirectory.class, 8, true), "SANYO\0\1\0"));
+
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.STARTS_WITH_IGNORE_CASE, "ricoh", new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                if (getReaderString(reader, makernoteOffset, 2).equals("Rv") || getReaderString(reader, makernoteOffset, 3).equals("Rev")) {
+                    // This is a textual format, where the makernote bytes look like:
+                    //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2E00:������������������������������
+                    //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2D05:������������������������������
+                    //   Rv0207;Sf6C84;Rg76;Bg60;Gg42;Ll0;Ld0;Aj0004;Bn0B02900;Fp10B8;Md6700;Ln116900086D27;Sv263:0000000000000000000000��
+                    // This format is currently unsupported
+                    return false;
+                } else if (getReaderString(reader, makernoteOffset, 5).equalsIgnoreCase("Ricoh")) {
+                    // Always in Motorola byte order
+                    reader.setMotorolaByteOrder(true);
+                    handler.processMakernoteIfd(RicohMakernoteDirectory.class, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+                }
+                return true;
+            }
+        }));
+
+        // Always in Motorola byte order
+        registry.register(new MakernoteSignature(new IfdMakernoteProcessor(AppleMakernoteDirectory.class, 14, true, true), "Apple iOS\0"));
+
+        registry.register(new MakernoteSignature(new MakernoteProcessor()
+        {
+            @Override
+            public boolean accepts(@NotNull RandomAccessReader reader, int makernoteOffset) throws IOException
+            {
+                return reader.getUInt16(makernoteOffset) == ReconyxHyperFireMakernoteDirectory.MAKERNOTE_VERSION;
+            }
+
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                ReconyxHyperFireMakernoteDirectory directory = new ReconyxHyperFireMakernoteDirectory();
+                handler._metadata.addDirectory(directory);
+                processReconyxHyperFireMakernote(directory, makernoteOffset, reader);
+                return true;
+            }
+        }));
+
+        registry.register(new MakernoteSignature(new String[]{ "RECONYXUF" }, true, null, null, new MakernoteProcessor()
+        {
+            @Override
+            public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset) throws IOException
+            {
+                ReconyxUltraFireMakernoteDirectory directory = new ReconyxUltraFireMakernoteDirectory();
+                handler._metadata.addDirectory(directory);
+                processReconyxUltraFireMakernote(directory, makernoteOffset, reader);
+                return true;
+            }
+        }));
+
+        // Only handles Type2 notes correctly. Others aren't implemented, and it's complex to determine which ones to use
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.EQUALS_IGNORE_CASE, "SAMSUNG", new IfdMakernoteProcessor(SamsungType2MakernoteDirectory.class, 0, false)));
+
+        return registry;
     }
 
     private static boolean handlePrintIM(@NotNull final Directory directory, final int tagId)
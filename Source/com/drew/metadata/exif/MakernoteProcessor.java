@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.exif;
+
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Decodes one family of camera makernotes, once a {@link MakernoteSignature} has identified it.
+ * <p>
+ * Most makernotes are stored as a TIFF IFD, which implementations can decode via
+ * {@link ExifTiffHandler#processMakernoteIfd}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public abstract class MakernoteProcessor
+{
+    /**
+     * Performs any check on the makernote's content beyond its signature prefix. If this returns <code>false</code>,
+     * later signatures are considered instead.
+     * <p>
+     * The default implementation accepts every makernote.
+     */
+    public boolean accepts(@NotNull RandomAccessReader reader, int makernoteOffset) throws IOException
+    {
+        return true;
+    }
+
+    /**
+     * Decodes the makernote.
+     *
+     * @param handler the handler processing the enclosing Exif data.
+     * @param cameraMake the value of the IFD0 Make tag, if present.
+     * @param reader the reader over the enclosing TIFF data.
+     * @param processedIfdOffsets the IFD offsets already processed, used to avoid cycles.
+     * @param makernoteOffset the offset of the makernote within <code>reader</code>.
+     * @param tiffHeaderOffset the offset of the enclosing TIFF header within <code>reader</code>.
+     * @return <code>false</code> if the makernote could not be decoded, in which case its raw bytes are retained.
+     */
+    public abstract boolean process(@NotNull ExifTiffHandler handler,
+                                    @Nullable String cameraMake,
+                                    @NotNull RandomAccessReader reader,
+                                    @NotNull Set<Integer> processedIfdOffsets,
+                                    int makernoteOffset,
+                                    int tiffHeaderOffset) throws IOException;
+
+    /**
+     * Gets the class reported to an {@link com.drew.imaging.ExtractionListener} for this processor's work.
+     * Processors shared between several makernote formats report the directory they populate instead.
+     */
+    @NotNull
+    Class<?> getReportedClass()
+    {
+        return getClass();
+    }
+}
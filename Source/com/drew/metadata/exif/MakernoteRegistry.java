@@ -0,0 +1,273 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.exif;
+
+import com.drew.imaging.ExtractionListener;
+import com.drew.imaging.ExtractionMonitor;
+import com.drew.imaging.ExtractionPhase;
+import com.drew.lang.BufferBoundsException;
+import com.drew.lang.ByteTrie;
+import com.drew.lang.Charsets;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An ordered table of {@link MakernoteSignature}s, used by {@link ExifTiffHandler} to identify and decode makernotes.
+ * <p>
+ * Signatures are considered in registration order, and the first to match decodes the makernote. Their prefixes are
+ * compiled into a {@link ByteTrie}, so identifying a makernote reads its leading bytes once rather than comparing
+ * them against each signature in turn. Make conditions are evaluated once per distinct Make value and cached.
+ * <p>
+ * Support for further makernote formats may be added by registering signatures with {@link #getDefault()}, or with a
+ * separate registry passed to {@link ExifTiffHandler}.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MakernoteRegistry
+{
+    private static final int MAX_CACHED_MAKES = 256;
+
+    @NotNull
+    private final List<MakernoteSignature> _signatures = new ArrayList<MakernoteSignature>();
+
+    // Rebuilt on first use after any registration
+    @Nullable
+    private volatile Table _table;
+
+    /**
+     * Gets the registry holding the makernote formats supported by this library, which is used by
+     * {@link ExifTiffHandler} unless another is specified.
+     */
+    @NotNull
+    public static MakernoteRegistry getDefault()
+    {
+        return ExifTiffHandler.STANDARD_MAKERNOTES;
+    }
+
+    /**
+     * Adds a signature, to be considered after all those already registered.
+     */
+    public synchronized void register(@NotNull MakernoteSignature signature)
+    {
+        _signatures.add(signature);
+        _table = null;
+    }
+
+    /**
+     * Adds a signature, to be considered before all those already registered.
+     */
+    public synchronized void registerFirst(@NotNull MakernoteSignature signature)
+    {
+        _signatures.add(0, signature);
+        _table = null;
+    }
+
+    /**
+     * Identifies the makernote at <code>makernoteOffset</code> and decodes it with the first matching signature's
+     * processor.
+     *
+     * @return <code>false</code> if no signature matched, or the matching processor could not decode the makernote.
+     */
+    boolean process(@NotNull ExifTiffHandler handler,
+                    @Nullable String cameraMake,
+                    @NotNull RandomAccessReader reader,
+                    @NotNull Set<Integer> processedIfdOffsets,
+                    int makernoteOffset,
+                    int tiffHeaderOffset) throws IOException
+    {
+        Table table = getTable();
+
+        byte[] header = readHeader(reader, makernoteOffset, table.maxPrefixLength);
+
+        BitSet candidates = (BitSet)table.withoutPrefix.clone();
+        candidates.or(table.prefixes.find(header));
+        if (table.hasCaseIgnoringPrefixes) {
+            String lowerHeader = MakernoteSignature.toLowerAscii(new String(header, Charsets.ISO_8859_1));
+            candidates.or(table.caseIgnoringPrefixes.find(lowerHeader.getBytes(Charsets.ISO_8859_1)));
+        }
+        candidates.and(table.getMakeMatches(cameraMake));
+
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            MakernoteProcessor processor = table.signatures[i].getProcessor();
+            if (processor.accepts(reader, makernoteOffset))
+                return process(processor, handler, cameraMake, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+        }
+
+        return false;
+    }
+
+    private static boolean process(@NotNull MakernoteProcessor processor,
+                                   @NotNull ExifTiffHandler handler,
+                                   @Nullable String cameraMake,
+                                   @NotNull RandomAccessReader reader,
+                                   @NotNull Set<Integer> processedIfdOffsets,
+                                   int makernoteOffset,
+                                   int tiffHeaderOffset) throws IOException
+    {
+        ExtractionListener listener = ExtractionMonitor.getListener();
+        if (listener == null)
+            return processor.process(handler, cameraMake, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+
+        long start = System.nanoTime();
+        try {
+            return processor.process(handler, cameraMake, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+        } finally {
+            ExtractionMonitor.report(listener, ExtractionPhase.MAKERNOTE, processor.getReportedClass(), -1, start);
+        }
+    }
+
+    @NotNull
+    private Table getTable()
+    {
+        Table table = _table;
+        if (table == null) {
+            synchronized (this) {
+                table = _table;
+                if (table == null) {
+                    table = new Table(_signatures.toArray(new MakernoteSignature[_signatures.size()]));
+                    _table = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Reads up to <code>length</code> bytes from the start of the makernote, fewer if the data ends sooner.
+     */
+    @NotNull
+    private static byte[] readHeader(@NotNull RandomAccessReader reader, int makernoteOffset, int length) throws IOException
+    {
+        while (length > 0) {
+            try {
+                return reader.getBytes(makernoteOffset, length);
+            } catch (BufferBoundsException e) {
+                length--;
+            }
+        }
+        return new byte[0];
+    }
+
+    /**
+     * An immutable, compiled form of the registered signatures.
+     */
+    private static class Table
+    {
+        @NotNull
+        final MakernoteSignature[] signatures;
+        @NotNull
+        final ByteTrie<BitSet> prefixes = new ByteTrie<BitSet>();
+        @NotNull
+        final ByteTrie<BitSet> caseIgnoringPrefixes = new ByteTrie<BitSet>();
+        final boolean hasCaseIgnoringPrefixes;
+        final int maxPrefixLength;
+        @NotNull
+        final BitSet withoutPrefix = new BitSet();
+        @NotNull
+        final BitSet withoutMakeCondition = new BitSet();
+        @NotNull
+        final ConcurrentHashMap<String, BitSet> makeMatches = new ConcurrentHashMap<String, BitSet>();
+
+        Table(@NotNull MakernoteSignature[] signatures)
+        {
+            this.signatures = signatures;
+
+            Map<String, BitSet> byPrefix = new HashMap<String, BitSet>();
+            Map<String, BitSet> byCaseIgnoringPrefix = new HashMap<String, BitSet>();
+
+            for (int i = 0; i < signatures.length; i++) {
+                MakernoteSignature signature = signatures[i];
+                if (signature.getPrefixes().length == 0)
+                    withoutPrefix.set(i);
+                if (!signature.hasMakeCondition())
+                    withoutMakeCondition.set(i);
+                Map<String, BitSet> map = signature.isPrefixCaseIgnored() ? byCaseIgnoringPrefix : byPrefix;
+                for (byte[] prefix : signature.getPrefixes()) {
+                    String key = new String(prefix, Charsets.ISO_8859_1);
+                    BitSet indices = map.get(key);
+                    if (indices == null) {
+                        indices = new BitSet();
+                        map.put(key, indices);
+                    }
+                    indices.set(i);
+                }
+            }
+
+            compile(byPrefix, prefixes);
+            compile(byCaseIgnoringPrefix, caseIgnoringPrefixes);
+            hasCaseIgnoringPrefixes = !byCaseIgnoringPrefix.isEmpty();
+            maxPrefixLength = Math.max(prefixes.getMaxDepth(), caseIgnoringPrefixes.getMaxDepth());
+        }
+
+        /**
+         * Stores each prefix in the trie along with the signatures of every shorter prefix it begins with, as
+         * {@link ByteTrie#find} returns only the most specific value along a path.
+         */
+        private static void compile(@NotNull Map<String, BitSet> byPrefix, @NotNull ByteTrie<BitSet> trie)
+        {
+            trie.setDefaultValue(new BitSet());
+            for (Map.Entry<String, BitSet> entry : byPrefix.entrySet()) {
+                BitSet indices = new BitSet();
+                for (Map.Entry<String, BitSet> other : byPrefix.entrySet()) {
+                    if (entry.getKey().startsWith(other.getKey()))
+                        indices.or(other.getValue());
+                }
+                trie.addPath(indices, entry.getKey().getBytes(Charsets.ISO_8859_1));
+            }
+        }
+
+        /**
+         * Gets the signatures whose Make condition is satisfied by <code>cameraMake</code>, including those without
+         * a Make condition.
+         */
+        @NotNull
+        BitSet getMakeMatches(@Nullable String cameraMake)
+        {
+            if (cameraMake == null)
+                return withoutMakeCondition;
+
+            BitSet matches = makeMatches.get(cameraMake);
+            if (matches == null) {
+                matches = new BitSet();
+                for (int i = 0; i < signatures.length; i++) {
+                    if (signatures[i].matchesMake(cameraMake))
+                        matches.set(i);
+                }
+                // Bound the cache, as the Make is read from untrusted data
+                if (makeMatches.size() < MAX_CACHED_MAKES)
+                    makeMatches.put(cameraMake, matches);
+            }
+            return matches;
+        }
+    }
+}
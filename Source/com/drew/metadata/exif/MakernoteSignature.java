@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.exif;
+
+import com.drew.lang.Charsets;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+/**
+ * Identifies a family of camera makernotes by the bytes at the start of the makernote, the camera's Make, or both,
+ * and names the {@link MakernoteProcessor} that decodes it.
+ * <p>
+ * A signature matches when the makernote begins with any of its prefixes (if it has any), the Make satisfies its
+ * Make condition (if it has one), and its processor {@link MakernoteProcessor#accepts accepts} the makernote.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class MakernoteSignature
+{
+    /**
+     * The ways in which a signature may compare a camera's Make.
+     */
+    public enum MakeMatch
+    {
+        EQUALS_IGNORE_CASE,
+        STARTS_WITH,
+        STARTS_WITH_IGNORE_CASE,
+        /** As {@link #STARTS_WITH_IGNORE_CASE}, after removing leading and trailing whitespace from the Make. */
+        TRIMMED_STARTS_WITH_IGNORE_CASE
+    }
+
+    @NotNull
+    private final byte[][] _prefixes;
+    private final boolean _isPrefixCaseIgnored;
+    @Nullable
+    private final MakeMatch _makeMatch;
+    @Nullable
+    private final String _make;
+    @NotNull
+    private final MakernoteProcessor _processor;
+
+    /**
+     * Creates a signature that matches makernotes beginning with any of <code>prefixes</code>, regardless of Make.
+     */
+    public MakernoteSignature(@NotNull MakernoteProcessor processor, @NotNull String... prefixes)
+    {
+        this(prefixes, false, null, null, processor);
+    }
+
+    /**
+     * Creates a signature that matches makernotes from cameras whose Make satisfies <code>makeMatch</code>,
+     * regardless of the makernote's prefix.
+     */
+    public MakernoteSignature(@NotNull MakeMatch makeMatch, @NotNull String make, @NotNull MakernoteProcessor processor)
+    {
+        this(new String[0], false, makeMatch, make, processor);
+    }
+
+    /**
+     * @param prefixes ASCII byte sequences, any of which the makernote must begin with. May be empty.
+     * @param isPrefixCaseIgnored whether prefixes are compared without regard to ASCII case.
+     * @param makeMatch how the Make is compared, or <code>null</code> if the Make is not considered.
+     * @param make the value to compare the Make with. Required if <code>makeMatch</code> is specified.
+     * @param processor the processor which decodes matching makernotes.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public MakernoteSignature(@NotNull String[] prefixes, boolean isPrefixCaseIgnored, @Nullable MakeMatch makeMatch, @Nullable String make, @NotNull MakernoteProcessor processor)
+    {
+        if (processor == null)
+            throw new NullPointerException("processor");
+        if (makeMatch != null && make == null)
+            throw new NullPointerException("make");
+
+        _prefixes = new byte[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            if (prefixes[i].length() == 0)
+                throw new IllegalArgumentException("Prefixes must contain at least one byte.");
+            String prefix = isPrefixCaseIgnored ? toLowerAscii(prefixes[i]) : prefixes[i];
+            _prefixes[i] = prefix.getBytes(Charsets.ISO_8859_1);
+        }
+
+        _isPrefixCaseIgnored = isPrefixCaseIgnored;
+        _makeMatch = makeMatch;
+        _make = make;
+        _processor = processor;
+    }
+
+    /**
+     * Gets the prefixes of this signature, lower-cased if case is ignored.
+     */
+    @NotNull
+    byte[][] getPrefixes()
+    {
+        return _prefixes;
+    }
+
+    boolean isPrefixCaseIgnored()
+    {
+        return _isPrefixCaseIgnored;
+    }
+
+    boolean hasMakeCondition()
+    {
+        return _makeMatch != null;
+    }
+
+    @NotNull
+    MakernoteProcessor getProcessor()
+    {
+        return _processor;
+    }
+
+    boolean matchesMake(@Nullable String cameraMake)
+    {
+        if (_makeMatch == null)
+            return true;
+        if (cameraMake == null)
+            return false;
+
+        assert(_make != null);
+        switch (_makeMatch) {
+            case EQUALS_IGNORE_CASE:
+                return _make.equalsIgnoreCase(cameraMake);
+            case STARTS_WITH:
+                return cameraMake.startsWith(_make);
+            case STARTS_WITH_IGNORE_CASE:
+                return cameraMake.toUpperCase().startsWith(_make.toUpperCase());
+            case TRIMMED_STARTS_WITH_IGNORE_CASE:
+                return cameraMake.trim().toUpperCase().startsWith(_make.toUpperCase());
+            default:
+                return false;
+        }
+    }
+
+    @NotNull
+    static String toLowerAscii(@NotNull String s)
+    {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z')
+                chars[i] += 'a' - 'A';
+        }
+        return new String(chars);
+    }
+}
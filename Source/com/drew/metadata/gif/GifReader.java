@@ -22,6 +22,8 @@ package com.drew.metadata.gif;
 
 import com.drew.lang.ByteArrayReader;
 import com.drew.lang.Charsets;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimitException;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
@@ -89,6 +91,8 @@ public class GifReader
             // After the header comes a sequence of blocks
             while (true)
             {
+                ExtractionBudget.checkpoint();
+
                 byte marker;
                 try {
                     marker = reader.getInt8();
@@ -126,6 +130,8 @@ public class GifReader
                     }
                 }
             }
+        } catch (ExtractionLimitException e) {
+            metadata.addDirectory(new ErrorDirectory(e.getMessage()));
         } catch (IOException e) {
             metadata.addDirectory(new ErrorDirectory("IOException processing GIF data"));
         }
@@ -391,6 +397,7 @@ public class GifReader
 
     private static void skipBlocks(SequentialReader reader) throws IOException
     {
+        int blockCount = 0;
         while (true)
         {
             short length = reader.getUInt8();
@@ -399,6 +406,10 @@ public class GifReader
                 return;
 
             reader.skip(length);
+
+            // Image data is split into many small blocks, so only check periodically
+            if ((++blockCount & 0xFF) == 0)
+                ExtractionBudget.checkpoint();
         }
     }
 }
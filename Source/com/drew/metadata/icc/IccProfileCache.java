@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.icc;
+
+import com.drew.lang.ByteArrayReader;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Tag;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Caches decoded ICC profiles, so that images embedding the same profile share its decoded values.
+ * <p>
+ * Images commonly embed one of a small number of identical profiles, such as sRGB IEC61966-2.1 or Adobe RGB (1998).
+ * When {@link IccReader} encounters a profile it has decoded before, the directory it produces refers to the values
+ * of the cached decoding rather than decoding the profile again. Array values are therefore shared between
+ * directories produced from the same profile, and must not be modified.
+ * <p>
+ * A profile is identified by its length, its header and tag table, and a checksum of the first
+ * {@value #SAMPLED_DATA_LENGTH} bytes of tag data that follow the table, so that looking it up reads only a
+ * small part of it. The header includes the profile's creation time and, from version 4, an MD5 digest of the
+ * whole profile. Profiles that agree in all of these but differ in later tag data are not distinguished.
+ * <p>
+ * Caching is disabled by default. It may be enabled for all {@link IccReader} instances created via the default
+ * constructor with {@link #setDefault(IccProfileCache)}, or for a single reader via
+ * {@link IccReader#IccReader(IccProfileCache)}.
+ * <p>
+ * The cache is populated as profiles are encountered, and may also be seeded ahead of time with known profiles via
+ * {@link #seed(byte[])}. Its size is bounded, with least-recently-used profiles evicted first.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class IccProfileCache
+{
+    /**
+     * Profiles larger than this are not cached, as they are unlikely to be shared between images.
+     */
+    public static final int DEFAULT_MAX_PROFILE_LENGTH = 1024 * 1024;
+
+    /**
+     * The number of bytes following the tag table that contribute to a profile's key.
+     */
+    public static final int SAMPLED_DATA_LENGTH = 1024;
+
+    /**
+     * Profiles with more tags than this are not cached, bounding the size of their keys.
+     */
+    private static final int MAX_TAG_COUNT = 256;
+
+    @Nullable
+    private static volatile IccProfileCache _default;
+
+    private final int _maxEntries;
+    private final int _maxProfileLength;
+
+    // Access-ordered, so that iteration begins with the least recently used entry
+    @NotNull
+    private final LinkedHashMap<Key, IccDirectory> _entries;
+
+    @NotNull
+    private final AtomicLong _hitCount = new AtomicLong();
+    @NotNull
+    private final AtomicLong _missCount = new AtomicLong();
+
+    /**
+     * Gets the cache used by {@link IccReader} instances created via its default constructor, or <code>null</code>
+     * if none has been set.
+     */
+    @Nullable
+    public static IccProfileCache getDefault()
+    {
+        return _default;
+    }
+
+    /**
+     * Sets the cache used by {@link IccReader} instances created via its default constructor, including those of
+     * {@link com.drew.imaging.jpeg.JpegMetadataReader#ALL_READERS}. Pass <code>null</code> to disable caching.
+     */
+    public static void setDefault(@Nullable IccProfileCache cache)
+    {
+        _default = cache;
+    }
+
+    /**
+     * @param maxEntries the maximum number of distinct profiles to retain.
+     * @param maxProfileLength the length, in bytes, above which profiles are not cached.
+     */
+    public IccProfileCache(final int maxEntries, int maxProfileLength)
+    {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+
+        _maxEntries = maxEntries;
+        _maxProfileLength = maxProfileLength;
+        _entries = new LinkedHashMap<Key, IccDirectory>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, IccDirectory> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Decodes <code>profileBytes</code> and adds the result to this cache, so that images embedding the same profile
+     * need not decode it.
+     */
+    public void seed(@NotNull byte[] profileBytes) throws IOException
+    {
+        ByteArrayReader reader = new ByteArrayReader(profileBytes);
+        Key key = createKey(reader);
+        if (key == null)
+            return;
+
+        IccDirectory decoded = new IccDirectory();
+        new IccReader(null).decode(reader, decoded);
+        put(key, decoded);
+    }
+
+    public long getHitCount()
+    {
+        return _hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+     * Gets the number of distinct profiles currently cached.
+     */
+    public synchronized int size()
+    {
+        return _entries.size();
+    }
+
+    public synchronized void clear()
+    {
+        _entries.clear();
+    }
+
+    /**
+     * Creates the key for a profile, or <code>null</code> if the profile should not be cached.
+     */
+    @Nullable
+    Key createKey(@NotNull RandomAccessReader reader) throws IOException
+    {
+        long length = reader.getLength();
+        if (length > _maxProfileLength || length < IccDirectory.TAG_TAG_COUNT + 4)
+            return null;
+
+        int tagCount = reader.getInt32(IccDirectory.TAG_TAG_COUNT);
+        if (tagCount < 0 || tagCount > MAX_TAG_COUNT)
+            return null;
+
+        int tableEnd = IccDirectory.TAG_TAG_COUNT + 4 + tagCount * 12;
+        if (tableEnd > length)
+            return null;
+
+        CRC32 checksum = new CRC32();
+        checksum.update(reader.getBytes(tableEnd, (int)Math.min(SAMPLED_DATA_LENGTH, length - tableEnd)));
+        return new Key((int)length, reader.getBytes(0, tableEnd), checksum.getValue());
+    }
+
+    /**
+     * Gets the cached decoding for <code>key</code>, which must not be modified, or <code>null</code> if the
+     * profile has not been seen.
+     */
+    @Nullable
+    IccDirectory get(@NotNull Key key)
+    {
+        IccDirectory decoded;
+        synchronized (this) {
+            decoded = _entries.get(key);
+        }
+        if (decoded == null)
+            _missCount.incrementAndGet();
+        else
+            _hitCount.incrementAndGet();
+        return decoded;
+    }
+
+    synchronized void put(@NotNull Key key, @NotNull IccDirectory decoded)
+    {
+        _entries.put(key, decoded);
+    }
+
+    /**
+     * Sets the tag values and errors of a cached decoding on <code>directory</code>. Values are shared rather than
+     * copied.
+     */
+    static void apply(@NotNull IccDirectory decoded, @NotNull IccDirectory directory)
+    {
+        for (Tag tag : decoded.getTags()) {
+            Object value = decoded.getObject(tag.getTagType());
+            if (value != null)
+                directory.setObject(tag.getTagType(), value);
+        }
+        for (String error : decoded.getErrors())
+            directory.addError(error);
+    }
+
+    static final class Key
+    {
+        private final int _length;
+        @NotNull
+        private final byte[] _headerAndTagTable;
+        private final long _checksum;
+        private final int _hashCode;
+
+        Key(int length, @NotNull byte[] headerAndTagTable, long checksum)
+        {
+            _length = length;
+            _headerAndTagTable = headerAndTagTable;
+            _checksum = checksum;
+            _hashCode = 31 * (31 * length + (int)checksum) + Arrays.hashCode(headerAndTagTable);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Key other = (Key)o;
+            return _length == other._length && _checksum == other._checksum && Arrays.equals(_headerAndTagTable, other._headerAndTagTable);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
+}
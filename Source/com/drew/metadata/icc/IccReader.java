@@ -51,6 +51,28 @@ public class IccReader implements JpegSegmentMetadataReader, MetadataReader
 {
     public static final String JPEG_SEGMENT_PREAMBLE = "ICC_PROFILE";
 
+    @Nullable
+    private final IccProfileCache _cache;
+    private final boolean _usesDefaultCache;
+
+    /**
+     * Creates a reader that uses {@link IccProfileCache#getDefault()}, if one has been set when a profile is read.
+     */
+    public IccReader()
+    {
+        _cache = null;
+        _usesDefaultCache = true;
+    }
+
+    /**
+     * @param cache the cache of decoded profiles to use, or <code>null</code> to decode every profile.
+     */
+    public IccReader(@Nullable IccProfileCache cache)
+    {
+        _cache = cache;
+        _usesDefaultCache = false;
+    }
+
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
     {
@@ -96,13 +118,42 @@ public class IccReader implements JpegSegmentMetadataReader, MetadataReader
 
     public void extract(@NotNull final RandomAccessReader reader, @NotNull final Metadata metadata, @Nullable Directory parentDirectory)
     {
-        // TODO review whether the 'tagPtr' values below really do require RandomAccessReader or whether SequentialReader may be used instead
-
         IccDirectory directory = new IccDirectory();
 
         if (parentDirectory != null)
             directory.setParent(parentDirectory);
 
+        // The default is looked up here rather than on construction, as shared readers are created statically
+        IccProfileCache cache = _usesDefaultCache ? IccProfileCache.getDefault() : _cache;
+
+        IccProfileCache.Key key = null;
+        if (cache != null) {
+            try {
+                key = cache.createKey(reader);
+            } catch (IOException ignored) {
+                // The profile is truncated, so decode it directly to report the error
+            }
+        }
+
+        if (key == null) {
+            decode(reader, directory);
+        } else {
+            IccDirectory decoded = cache.get(key);
+            if (decoded == null) {
+                decoded = new IccDirectory();
+                decode(reader, decoded);
+                cache.put(key, decoded);
+            }
+            IccProfileCache.apply(decoded, directory);
+        }
+
+        metadata.addDirectory(directory);
+    }
+
+    void decode(@NotNull final RandomAccessReader reader, @NotNull final IccDirectory directory)
+    {
+        // TODO review whether the 'tagPtr' values below really do require RandomAccessReader or whether SequentialReader may be used instead
+
         try {
             int profileByteCount = reader.getInt32(IccDirectory.TAG_PROFILE_BYTE_COUNT);
             directory.setInt(IccDirectory.TAG_PROFILE_BYTE_COUNT, profileByteCount);
@@ -153,8 +204,6 @@ public class IccReader implements JpegSegmentMetadataReader, MetadataReader
         } catch (IOException ex) {
             directory.addError("Exception reading ICC profile: " + ex.getMessage());
         }
-
-        metadata.addDirectory(directory);
     }
 
     private void set4ByteString(@NotNull Directory directory, int tagType, @NotNull RandomAccessReader reader) throws IOException
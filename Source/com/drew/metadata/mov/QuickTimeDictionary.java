@@ -31,13 +31,13 @@ import java.util.HashMap;
  */
 public class QuickTimeDictionary
 {
-    private static HashMap<Integer, HashMap<String, String>> _dictionary = new HashMap<Integer, HashMap<String, String>>();
+    private static final HashMap<Integer, HashMap<String, String>> _dictionary = new HashMap<Integer, HashMap<String, String>>();
 
-    private static HashMap<String, String> _majorBrands = new HashMap<String, String>();
+    private static final HashMap<String, String> _majorBrands = new HashMap<String, String>();
 
-    private static HashMap<String, String> _videoCompressionTypes = new HashMap<String, String>();
+    private static final HashMap<String, String> _videoCompressionTypes = new HashMap<String, String>();
 
-    private static HashMap<String, String> _soundAudioFormats = new HashMap<String, String>();
+    private static final HashMap<String, String> _soundAudioFormats = new HashMap<String, String>();
 
     private static final HashMap<String, String> _vendorIds = new HashMap<String, String>();
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.mpf;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+
+import java.util.HashMap;
+
+/**
+ * Describes tags of the MP Index IFD, found in the APP2 segment of JPEG files that store several images, according
+ * to the CIPA DC-007 Multi-Picture Format (MPF) standard.
+ * <p>
+ * Each image in the index is described by an {@link MpfImageDirectory} whose parent is this directory.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@SuppressWarnings("WeakerAccess")
+public class MpfDirectory extends Directory
+{
+    public static final int TAG_VERSION = 0xB000;
+    public static final int TAG_NUMBER_OF_IMAGES = 0xB001;
+    public static final int TAG_MP_ENTRY = 0xB002;
+    public static final int TAG_IMAGE_UID_LIST = 0xB003;
+    public static final int TAG_TOTAL_FRAMES = 0xB004;
+
+    @NotNull
+    private static final HashMap<Integer, String> _tagNameMap = new HashMap<Integer, String>();
+
+    static
+    {
+        _tagNameMap.put(TAG_VERSION, "MPF Version");
+        _tagNameMap.put(TAG_NUMBER_OF_IMAGES, "Number of Images");
+        _tagNameMap.put(TAG_MP_ENTRY, "MP Entry");
+        _tagNameMap.put(TAG_IMAGE_UID_LIST, "Image UID List");
+        _tagNameMap.put(TAG_TOTAL_FRAMES, "Total Frames");
+    }
+
+    public MpfDirectory()
+    {
+        this.setDescriptor(new MpfDescriptor(this));
+    }
+
+    @Override
+    @NotNull
+    public String getName()
+    {
+        return "MPF";
+    }
+
+    @Override
+    @NotNull
+    protected HashMap<Integer, String> getTagNameMap()
+    {
+        return _tagNameMap;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.mpf;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.TagDescriptor;
+
+import static com.drew.metadata.mpf.MpfImageDirectory.*;
+
+/**
+ * Provides human-readable string representations of tag values stored in a {@link MpfImageDirectory}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@SuppressWarnings("WeakerAccess")
+public class MpfImageDescriptor extends TagDescriptor<MpfImageDirectory>
+{
+    public MpfImageDescriptor(@NotNull MpfImageDirectory directory)
+    {
+        super(directory);
+    }
+
+    @Override
+    @Nullable
+    public String getDescription(int tagType)
+    {
+        switch (tagType) {
+            case TAG_FLAGS:
+                return getFlagsDescription();
+            case TAG_IMAGE_FORMAT:
+                return getIndexedDescription(TAG_IMAGE_FORMAT, "JPEG");
+            case TAG_IMAGE_TYPE:
+                return getImageTypeDescription();
+            case TAG_IMAGE_SIZE:
+                return getByteCountDescription();
+            default:
+                return super.getDescription(tagType);
+        }
+    }
+
+    @Nullable
+    public String getFlagsDescription()
+    {
+        Integer value = _directory.getInteger(TAG_FLAGS);
+        if (value == null)
+            return null;
+        if (value == 0)
+            return "None";
+        return getBitFlagDescription(TAG_FLAGS,
+            "Representative Image",
+            "Dependent Child Image",
+            "Dependent Parent Image"
+        );
+    }
+
+    @Nullable
+    public String getImageTypeDescription()
+    {
+        Integer value = _directory.getInteger(TAG_IMAGE_TYPE);
+        if (value == null)
+            return null;
+        switch (value) {
+            case TYPE_UNDEFINED:
+                return "Undefined";
+            case TYPE_LARGE_THUMBNAIL_VGA:
+                return "Large Thumbnail (VGA equivalent)";
+            case TYPE_LARGE_THUMBNAIL_FULL_HD:
+                return "Large Thumbnail (Full HD equivalent)";
+            case TYPE_MULTI_FRAME_PANORAMA:
+                return "Multi-Frame Image (Panorama)";
+            case TYPE_MULTI_FRAME_DISPARITY:
+                return "Multi-Frame Image (Disparity)";
+            case TYPE_MULTI_FRAME_MULTI_ANGLE:
+                return "Multi-Frame Image (Multi-Angle)";
+            case TYPE_BASELINE_PRIMARY:
+                return "Baseline MP Primary Image";
+            default:
+                return String.format("Unknown (0x%06X)", value);
+        }
+    }
+
+    @Nullable
+    public String getByteCountDescription()
+    {
+        Long value = _directory.getLongObject(TAG_IMAGE_SIZE);
+        if (value == null)
+            return null;
+        return value + " bytes";
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.mpf;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+
+import java.util.HashMap;
+
+/**
+ * Describes one image in an MPF (Multi-Picture Format) index, from its MP Entry.
+ * <p>
+ * The image's offset is relative to the start of the MP header in the APP2 segment of the first image, as stored in
+ * the file. It is zero for the first image, which is the one containing the index.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@SuppressWarnings("WeakerAccess")
+public class MpfImageDirectory extends Directory
+{
+    public static final int TAG_FLAGS = 1;
+    public static final int TAG_IMAGE_FORMAT = 2;
+    public static final int TAG_IMAGE_TYPE = 3;
+    public static final int TAG_IMAGE_SIZE = 4;
+    public static final int TAG_IMAGE_OFFSET = 5;
+    public static final int TAG_DEPENDENT_IMAGE_1 = 6;
+    public static final int TAG_DEPENDENT_IMAGE_2 = 7;
+
+    /** The value of {@link #TAG_IMAGE_FORMAT} for JPEG images, the only format defined by the standard. */
+    public static final int FORMAT_JPEG = 0;
+
+    public static final int TYPE_UNDEFINED = 0x000000;
+    public static final int TYPE_LARGE_THUMBNAIL_VGA = 0x010001;
+    public static final int TYPE_LARGE_THUMBNAIL_FULL_HD = 0x010002;
+    public static final int TYPE_MULTI_FRAME_PANORAMA = 0x020001;
+    public static final int TYPE_MULTI_FRAME_DISPARITY = 0x020002;
+    public static final int TYPE_MULTI_FRAME_MULTI_ANGLE = 0x020003;
+    public static final int TYPE_BASELINE_PRIMARY = 0x030000;
+
+    @NotNull
+    private static final HashMap<Integer, String> _tagNameMap = new HashMap<Integer, String>();
+
+    static
+    {
+        _tagNameMap.put(TAG_FLAGS, "Flags");
+        _tagNameMap.put(TAG_IMAGE_FORMAT, "Image Format");
+        _tagNameMap.put(TAG_IMAGE_TYPE, "Image Type");
+        _tagNameMap.put(TAG_IMAGE_SIZE, "Image Size");
+        _tagNameMap.put(TAG_IMAGE_OFFSET, "Image Offset");
+        _tagNameMap.put(TAG_DEPENDENT_IMAGE_1, "Dependent Image 1 Entry Number");
+        _tagNameMap.put(TAG_DEPENDENT_IMAGE_2, "Dependent Image 2 Entry Number");
+    }
+
+    public MpfImageDirectory()
+    {
+        this.setDescriptor(new MpfImageDescriptor(this));
+    }
+
+    @Override
+    @NotNull
+    public String getName()
+    {
+        return "MPF Image";
+    }
+
+    @Override
+    @NotNull
+    protected HashMap<Integer, String> getTagNameMap()
+    {
+        return _tagNameMap;
+    }
+}
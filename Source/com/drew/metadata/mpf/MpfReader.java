@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.mpf;
+
+import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.imaging.tiff.TiffProcessingException;
+import com.drew.imaging.tiff.TiffReader;
+import com.drew.lang.ByteArrayReader;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * Reads the MPF (Multi-Picture Format) index from a JPEG APP2 segment, which lists the images stored in the file
+ * after the primary image, such as depth maps, gain maps and large thumbnails.
+ * <p>
+ * More information about MPF:
+ * <ul>
+ * <li>CIPA DC-007-2009 "Multi-Picture Format"</li>
+ * <li>https://exiftool.org/TagNames/MPF.html</li>
+ * </ul>
+ * To read the metadata of the indexed images, see
+ * {@link com.drew.imaging.jpeg.JpegMetadataReader#readMpfImageMetadata}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MpfReader implements JpegSegmentMetadataReader
+{
+    public static final String JPEG_SEGMENT_PREAMBLE = "MPF\0";
+
+    @NotNull
+    public Iterable<JpegSegmentType> getSegmentTypes()
+    {
+        return Collections.singletonList(JpegSegmentType.APP2);
+    }
+
+    public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
+    {
+        for (byte[] segmentBytes : segments) {
+            // Segment must have the expected preamble
+            if (startsWithMpfPreamble(segmentBytes)) {
+                extract(new ByteArrayReader(segmentBytes), metadata, JPEG_SEGMENT_PREAMBLE.length());
+            }
+        }
+    }
+
+    /** Indicates whether <code>bytes</code> starts with {@link #JPEG_SEGMENT_PREAMBLE}. */
+    public static boolean startsWithMpfPreamble(@NotNull byte[] bytes)
+    {
+        if (bytes.length < JPEG_SEGMENT_PREAMBLE.length())
+            return false;
+        for (int i = 0; i < JPEG_SEGMENT_PREAMBLE.length(); i++) {
+            if (bytes[i] != JPEG_SEGMENT_PREAMBLE.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the MP Index IFD, given <code>readerOffset</code>, the offset of the MP header within
+     * <code>reader</code>.
+     */
+    public void extract(@NotNull final RandomAccessReader reader, @NotNull final Metadata metadata, int readerOffset)
+    {
+        MpfTiffHandler handler = new MpfTiffHandler(metadata, null);
+
+        try {
+            new TiffReader().processTiff(reader, handler, readerOffset);
+        } catch (TiffProcessingException e) {
+            handler.error("Exception processing MPF data: " + e.getMessage());
+        } catch (IOException e) {
+            handler.error("Exception processing MPF data: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.mpf;
+
+import com.drew.imaging.tiff.TiffProcessingException;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.tiff.DirectoryTiffHandler;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Implementation of {@link com.drew.imaging.tiff.TiffHandler} used for handling the TIFF-formatted MP Index IFD of
+ * an MPF APP2 segment, creating an {@link MpfImageDirectory} for each of its MP Entries.
+ * <p>
+ * The MP Attribute IFD that may follow the index is not read.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MpfTiffHandler extends DirectoryTiffHandler
+{
+    private static final int MP_ENTRY_LENGTH = 16;
+
+    public MpfTiffHandler(@NotNull Metadata metadata, @Nullable Directory parentDirectory)
+    {
+        super(metadata, parentDirectory);
+    }
+
+    public void setTiffMarker(int marker) throws TiffProcessingException
+    {
+        final int standardTiffMarker = 0x002A;
+
+        if (marker != standardTiffMarker)
+            throw new TiffProcessingException(String.format("Unexpected MPF marker: 0x%X", marker));
+
+        pushDirectory(MpfDirectory.class);
+    }
+
+    public boolean tryEnterSubIfd(int tagId)
+    {
+        return false;
+    }
+
+    public boolean hasFollowerIfd()
+    {
+        return false;
+    }
+
+    @Nullable
+    public Long tryCustomProcessFormat(int tagId, int formatCode, long componentCount)
+    {
+        return null;
+    }
+
+    public boolean customProcessTag(int tagOffset,
+                                    @NotNull Set<Integer> processedIfdOffsets,
+                                    int tiffHeaderOffset,
+                                    @NotNull RandomAccessReader reader,
+                                    int tagId,
+                                    int byteCount) throws IOException
+    {
+        if (tagId != MpfDirectory.TAG_MP_ENTRY || _currentDirectory == null)
+            return false;
+
+        _currentDirectory.setByteArray(tagId, reader.getBytes(tagOffset, byteCount));
+
+        // Entries use the byte order of the MP header
+        for (int entryOffset = tagOffset; entryOffset + MP_ENTRY_LENGTH <= tagOffset + byteCount; entryOffset += MP_ENTRY_LENGTH) {
+            long attributes = reader.getUInt32(entryOffset);
+
+            MpfImageDirectory image = new MpfImageDirectory();
+            image.setParent(_currentDirectory);
+            image.setInt(MpfImageDirectory.TAG_FLAGS, (int)(attributes >>> 29));
+            image.setInt(MpfImageDirectory.TAG_IMAGE_FORMAT, (int)(attributes >>> 24) & 0x7);
+            image.setInt(MpfImageDirectory.TAG_IMAGE_TYPE, (int)attributes & 0xFFFFFF);
+            image.setLong(MpfImageDirectory.TAG_IMAGE_SIZE, reader.getUInt32(entryOffset + 4));
+            image.setLong(MpfImageDirectory.TAG_IMAGE_OFFSET, reader.getUInt32(entryOffset + 8));
+            image.setInt(MpfImageDirectory.TAG_DEPENDENT_IMAGE_1, reader.getUInt16(entryOffset + 12));
+            image.setInt(MpfImageDirectory.TAG_DEPENDENT_IMAGE_2, reader.getUInt16(entryOffset + 14));
+            _metadata.addDirectory(image);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Contains classes for the extraction and modelling of MPF (Multi-Picture Format) indexes, stored in JPEG APP2
+ * segments.
+ */
+package com.drew.metadata.mpf;
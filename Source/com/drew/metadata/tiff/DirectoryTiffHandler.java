@@ -33,6 +33,8 @@ import java.util.Stack;
 
 /**
  * Adapter between the {@link TiffHandler} interface and the {@link Metadata}/{@link Directory} object model.
+ * <p>
+ * Instances track the directory being populated and are not thread-safe. Create one per extraction.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
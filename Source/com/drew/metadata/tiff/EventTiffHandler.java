@@ -0,0 +1,247 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.tiff;
+
+import com.drew.imaging.tiff.TiffHandler;
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+import com.drew.metadata.MetadataEventEmitter;
+import com.drew.metadata.StringValue;
+
+import java.util.Stack;
+
+/**
+ * Adapter between the {@link TiffHandler} interface and {@link com.drew.metadata.MetadataEventHandler}, passing
+ * values to the handler as they are read rather than storing them in {@link Directory} objects.
+ * <p>
+ * Values are reported with the same types that {@link DirectoryTiffHandler} would store.
+ * <p>
+ * Instances track the directory being reported and are not thread-safe. Create one per extraction.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public abstract class EventTiffHandler implements TiffHandler
+{
+    /**
+     * An IFD being processed. Follower IFDs may continue the directory of the previous IFD, in which case no new
+     * directory is started and none is ended when the IFD ends.
+     */
+    private static final class Frame
+    {
+        @NotNull final Class<? extends Directory> _type;
+        final int _index;
+        final boolean _started;
+
+        Frame(@NotNull Class<? extends Directory> type, int index, boolean started)
+        {
+            _type = type;
+            _index = index;
+            _started = started;
+        }
+    }
+
+    private final Stack<Frame> _frames = new Stack<Frame>();
+    private final int _rootParentIndex;
+
+    @NotNull
+    protected final MetadataEventEmitter _emitter;
+
+    /**
+     * @param emitter the emitter to which events are passed.
+     * @param parentIndex the number of the directory to report as the parent of the first IFD, or -1 for none.
+     */
+    protected EventTiffHandler(@NotNull MetadataEventEmitter emitter, int parentIndex)
+    {
+        _emitter = emitter;
+        _rootParentIndex = parentIndex;
+    }
+
+    public void endingIFD()
+    {
+        if (_frames.empty())
+            return;
+
+        if (_frames.pop()._started)
+            _emitter.endDirectory();
+    }
+
+    /**
+     * Gets the type of the directory currently being reported, or null if there is none.
+     */
+    @Nullable
+    protected Class<? extends Directory> getCurrentDirectoryType()
+    {
+        return _frames.empty() ? null : _frames.peek()._type;
+    }
+
+    /**
+     * Gets the number of the directory currently being reported, or -1 if there is none.
+     */
+    protected int getCurrentDirectoryIndex()
+    {
+        return _frames.empty() ? -1 : _frames.peek()._index;
+    }
+
+    protected void pushDirectory(@NotNull Class<? extends Directory> directoryClass)
+    {
+        int parentIndex = _frames.empty() ? _rootParentIndex : _frames.peek()._index;
+        int index = _emitter.startDirectory(directoryClass, parentIndex);
+        _frames.push(new Frame(directoryClass, index, true));
+    }
+
+    /**
+     * Continues reporting values into the current directory for an additional IFD, such as a chained follower IFD.
+     */
+    protected void continueDirectory()
+    {
+        Frame current = _frames.peek();
+        _frames.push(new Frame(current._type, current._index, false));
+    }
+
+    /**
+     * Ends any directories that are still open, such as when processing stopped due to an exception.
+     */
+    public void endAll()
+    {
+        while (!_frames.empty())
+            endingIFD();
+    }
+
+    public void warn(@NotNull String message)
+    {
+        _emitter.error(message);
+    }
+
+    public void error(@NotNull String message)
+    {
+        _emitter.error(message);
+    }
+
+    protected void tag(int tagId, @NotNull Object value)
+    {
+        // Values found outside any IFD have nowhere to go, as with DirectoryTiffHandler
+        if (!_frames.empty())
+            _emitter.tag(tagId, value);
+    }
+
+    public void setByteArray(int tagId, @NotNull byte[] bytes)
+    {
+        tag(tagId, bytes);
+    }
+
+    public void setString(int tagId, @NotNull StringValue string)
+    {
+        tag(tagId, string);
+    }
+
+    public void setRational(int tagId, @NotNull Rational rational)
+    {
+        tag(tagId, rational);
+    }
+
+    public void setRationalArray(int tagId, @NotNull Rational[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setFloat(int tagId, float float32)
+    {
+        tag(tagId, float32);
+    }
+
+    public void setFloatArray(int tagId, @NotNull float[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setDouble(int tagId, double double64)
+    {
+        tag(tagId, double64);
+    }
+
+    public void setDoubleArray(int tagId, @NotNull double[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setInt8s(int tagId, byte int8s)
+    {
+        // NOTE Directory stores all integral types as int32s, except for int32u and long
+        tag(tagId, (int)int8s);
+    }
+
+    public void setInt8sArray(int tagId, @NotNull byte[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setInt8u(int tagId, short int8u)
+    {
+        tag(tagId, (int)int8u);
+    }
+
+    public void setInt8uArray(int tagId, @NotNull short[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setInt16s(int tagId, int int16s)
+    {
+        tag(tagId, int16s);
+    }
+
+    public void setInt16sArray(int tagId, @NotNull short[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setInt16u(int tagId, int int16u)
+    {
+        tag(tagId, int16u);
+    }
+
+    public void setInt16uArray(int tagId, @NotNull int[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setInt32s(int tagId, int int32s)
+    {
+        tag(tagId, int32s);
+    }
+
+    public void setInt32sArray(int tagId, @NotNull int[] array)
+    {
+        tag(tagId, array);
+    }
+
+    public void setInt32u(int tagId, long int32u)
+    {
+        tag(tagId, int32u);
+    }
+
+    public void setInt32uArray(int tagId, @NotNull long[] array)
+    {
+        tag(tagId, array);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.xmp;
+
+import com.adobe.internal.xmp.XMPMeta;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches parsed XMP packets by their content, so that identical packets found in different files are parsed once.
+ * <p>
+ * Images exported from the same application session, or distributed through the same feed, frequently carry
+ * byte-for-byte identical XMP. On a hit, {@link XmpReader} gives the resulting {@link XmpDirectory} a clone of the
+ * {@link XMPMeta} instance parsed previously. Cloning copies the parsed tree, which is far cheaper than parsing the
+ * packet again, and means that changes a caller makes via {@link XmpDirectory#getXMPMeta()} are not seen by other
+ * callers or by the cache.
+ * <p>
+ * Entries are matched on the full packet content, not just its hash, so distinct packets never share a result.
+ * The cache is bounded by entry count, with least-recently-used packets evicted first. Packets larger than a given
+ * length are not cached.
+ * <p>
+ * Caching is disabled by default. It may be enabled for all {@link XmpReader} instances created via the default
+ * constructor with {@link #setDefault(XmpCache)}, or for a single reader via {@link XmpReader#XmpReader(XmpCache)}.
+ * <p>
+ * Instances of this class are thread-safe.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class XmpCache
+{
+    public static final int DEFAULT_MAX_PACKET_LENGTH = 256 * 1024;
+
+    @Nullable
+    private static volatile XmpCache _default;
+
+    private final int _maxPacketLength;
+
+    // Access-ordered, so that iteration begins with the least recently used entry
+    @NotNull
+    private final LinkedHashMap<Key, Entry> _entries;
+
+    @NotNull
+    private final AtomicLong _hitCount = new AtomicLong();
+    @NotNull
+    private final AtomicLong _missCount = new AtomicLong();
+
+    /**
+     * Gets the cache used by {@link XmpReader} instances created via its default constructor, or <code>null</code>
+     * if none has been set.
+     */
+    @Nullable
+    public static XmpCache getDefault()
+    {
+        return _default;
+    }
+
+    /**
+     * Sets the cache used by {@link XmpReader} instances created via its default constructor. Pass
+     * <code>null</code> to disable caching.
+     */
+    public static void setDefault(@Nullable XmpCache cache)
+    {
+        _default = cache;
+    }
+
+    /**
+     * @param maxEntries the maximum number of distinct packets to retain.
+     */
+    public XmpCache(int maxEntries)
+    {
+        this(maxEntries, DEFAULT_MAX_PACKET_LENGTH);
+    }
+
+    /**
+     * @param maxEntries the maximum number of distinct packets to retain.
+     * @param maxPacketLength the length, in bytes, above which packets are not cached.
+     */
+    public XmpCache(final int maxEntries, int maxPacketLength)
+    {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be greater than zero");
+
+        _maxPacketLength = maxPacketLength;
+        _entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, XmpCache.Entry> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public long getHitCount()
+    {
+        return _hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+     * Gets the number of distinct packets currently cached.
+     */
+    public synchronized int size()
+    {
+        return _entries.size();
+    }
+
+    public synchronized void clear()
+    {
+        _entries.clear();
+    }
+
+    /**
+     * Returns whether a packet of <code>length</code> bytes may be cached.
+     */
+    boolean accepts(int length)
+    {
+        return length <= _maxPacketLength;
+    }
+
+    /**
+     * Gets the result of parsing the specified packet previously, or <code>null</code> if it has not been seen.
+     */
+    @Nullable
+    Entry get(@NotNull byte[] bytes, int offset, int length)
+    {
+        Entry entry;
+        synchronized (this) {
+            entry = _entries.get(new Key(bytes, offset, length));
+        }
+        if (entry == null)
+            _missCount.incrementAndGet();
+        else
+            _hitCount.incrementAndGet();
+        return entry;
+    }
+
+    void put(@NotNull byte[] bytes, int offset, int length, @NotNull Entry entry)
+    {
+        // The key retains its own copy, as callers may reuse their buffers
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, offset, copy, 0, length);
+        Key key = new Key(copy, 0, length);
+
+        synchronized (this) {
+            _entries.put(key, entry);
+        }
+    }
+
+    /**
+     * The outcome of parsing a packet: either the parsed {@link XMPMeta} and its value count, or an error.
+     */
+    static final class Entry
+    {
+        @Nullable
+        final XMPMeta xmpMeta;
+        final int valueCount;
+        @Nullable
+        final String error;
+
+        Entry(@Nullable XMPMeta xmpMeta, int valueCount, @Nullable String error)
+        {
+            this.xmpMeta = xmpMeta;
+            this.valueCount = valueCount;
+            this.error = error;
+        }
+    }
+
+    private static final class Key
+    {
+        @NotNull
+        private final byte[] _bytes;
+        private final int _offset;
+        private final int _length;
+        private final int _hashCode;
+
+        Key(@NotNull byte[] bytes, int offset, int length)
+        {
+            _bytes = bytes;
+            _offset = offset;
+            _length = length;
+
+            int hash = length;
+            for (int i = offset; i < offset + length; i++)
+                hash = 31 * hash + bytes[i];
+            _hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Key other = (Key)o;
+            if (_hashCode != other._hashCode || _length != other._length)
+                return false;
+            for (int i = 0; i < _length; i++) {
+                if (_bytes[_offset + i] != other._bytes[other._offset + i])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
+}
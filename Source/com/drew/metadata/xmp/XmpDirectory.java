@@ -23,6 +23,7 @@ package com.drew.metadata.xmp;
 import com.adobe.internal.xmp.XMPException;
 import com.adobe.internal.xmp.XMPIterator;
 import com.adobe.internal.xmp.XMPMeta;
+import com.adobe.internal.xmp.XMPMetaFactory;
 import com.adobe.internal.xmp.impl.XMPMetaImpl;
 import com.adobe.internal.xmp.options.IteratorOptions;
 import com.adobe.internal.xmp.properties.XMPPropertyInfo;
@@ -59,6 +60,11 @@ public class XmpDirectory extends Directory
     @Nullable
     private XMPMeta _xmpMeta;
 
+    // A serialized packet from which _xmpMeta is parsed on first use. Guarded by this, along with _xmpMeta, so that
+    // the packet is parsed exactly once when the directory is read from several threads.
+    @Nullable
+    private byte[] _pendingXmpPacket;
+
     public XmpDirectory()
     {
         this.setDescriptor(new XmpDescriptor(this));
@@ -89,11 +95,13 @@ public class XmpDirectory extends Directory
     {
         Map<String, String> propertyValueByPath = new HashMap<String, String>();
 
-        if (_xmpMeta != null)
+        XMPMeta xmpMeta = getParsedXmpMeta();
+
+        if (xmpMeta != null)
         {
             try {
                 IteratorOptions options = new IteratorOptions().setJustLeafnodes(true);
-                for (XMPIterator i = _xmpMeta.iterator(options); i.hasNext(); ) {
+                for (XMPIterator i = xmpMeta.iterator(options); i.hasNext(); ) {
                     XMPPropertyInfo prop = (XMPPropertyInfo)i.next();
                     String path = prop.getPath();
                     String value = prop.getValue();
@@ -110,19 +118,47 @@ public class XmpDirectory extends Directory
 
     public void setXMPMeta(@NotNull XMPMeta xmpMeta)
     {
-        _xmpMeta = xmpMeta;
+        synchronized (this) {
+            _xmpMeta = xmpMeta;
+            _pendingXmpPacket = null;
+        }
+
+        int valueCount = countValues(xmpMeta);
+        if (valueCount != -1)
+            setInt(TAG_XMP_VALUE_COUNT, valueCount);
+    }
+
+    /**
+     * Sets the XMPMeta object along with its previously counted values, as when it is cloned from {@link XmpCache}.
+     */
+    void setXMPMeta(@NotNull XMPMeta xmpMeta, int valueCount)
+    {
+        synchronized (this) {
+            _xmpMeta = xmpMeta;
+            _pendingXmpPacket = null;
+        }
 
+        if (valueCount != -1)
+            setInt(TAG_XMP_VALUE_COUNT, valueCount);
+    }
+
+    /**
+     * Counts the leaf values in <code>xmpMeta</code>, returning -1 if they cannot be iterated.
+     */
+    static int countValues(@NotNull XMPMeta xmpMeta)
+    {
         try {
             int valueCount = 0;
             IteratorOptions options = new IteratorOptions().setJustLeafnodes(true);
-            for (XMPIterator i = _xmpMeta.iterator(options); i.hasNext(); ) {
+            for (XMPIterator i = xmpMeta.iterator(options); i.hasNext(); ) {
                 XMPPropertyInfo prop = (XMPPropertyInfo)i.next();
                 if (prop.getPath() != null) {
                     valueCount++;
                 }
             }
-            setInt(TAG_XMP_VALUE_COUNT, valueCount);
+            return valueCount;
         } catch (XMPException ignored) {
+            return -1;
         }
     }
 
@@ -131,10 +167,45 @@ public class XmpDirectory extends Directory
      * If one does not exist it will be created.
      */
     @NotNull
-    public XMPMeta getXMPMeta()
+    public synchronized XMPMeta getXMPMeta()
     {
+        parsePendingXmpPacket();
         if (_xmpMeta == null)
             _xmpMeta = new XMPMetaImpl();
         return _xmpMeta;
     }
+
+    /**
+     * Sets a serialized XMP packet, such as one previously produced from {@link #getXMPMeta()}, to be parsed when
+     * the XMP data is first requested. This avoids the cost of parsing for callers that never access it.
+     * <p>
+     * Unlike {@link #setXMPMeta(XMPMeta)}, this does not set {@link #TAG_XMP_VALUE_COUNT}.
+     */
+    public synchronized void setXMPPacket(@NotNull byte[] xmpPacket)
+    {
+        _xmpMeta = null;
+        _pendingXmpPacket = xmpPacket;
+    }
+
+    @Nullable
+    private synchronized XMPMeta getParsedXmpMeta()
+    {
+        parsePendingXmpPacket();
+        return _xmpMeta;
+    }
+
+    // Must be called while holding the lock on this
+    private void parsePendingXmpPacket()
+    {
+        byte[] packet = _pendingXmpPacket;
+        if (packet == null)
+            return;
+
+        _pendingXmpPacket = null;
+        try {
+            _xmpMeta = XMPMetaFactory.parseFromBuffer(packet);
+        } catch (XMPException e) {
+            addError("Error processing XMP data: " + e.getMessage());
+        }
+    }
 }
@@ -76,6 +76,28 @@ public class XmpReader implements JpegSegmentMetadataReader
     private static final int EXTENDED_XMP_GUID_LENGTH = 32;
     private static final int EXTENDED_XMP_INT_LENGTH = 4;
 
+    @Nullable
+    private final XmpCache _cache;
+    private final boolean _usesDefaultCache;
+
+    /**
+     * Creates a reader that uses {@link XmpCache#getDefault()}, if one has been set when a packet is read.
+     */
+    public XmpReader()
+    {
+        _cache = null;
+        _usesDefaultCache = true;
+    }
+
+    /**
+     * @param cache the cache of parsed packets to use, or <code>null</code> to parse every packet.
+     */
+    public XmpReader(@Nullable XmpCache cache)
+    {
+        _cache = cache;
+        _usesDefaultCache = false;
+    }
+
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
     {
@@ -162,6 +184,34 @@ public class XmpReader implements JpegSegmentMetadataReader
         if (parentDirectory != null)
             directory.setParent(parentDirectory);
 
+        // The default is looked up here rather than on construction, as shared readers are created statically
+        XmpCache cache = _usesDefaultCache ? XmpCache.getDefault() : _cache;
+        if (cache != null && !cache.accepts(length))
+            cache = null;
+
+        XmpCache.Entry entry = cache == null ? null : cache.get(xmpBytes, offset, length);
+
+        if (entry == null) {
+            entry = parse(xmpBytes, offset, length);
+            if (cache != null)
+                cache.put(xmpBytes, offset, length, entry);
+        }
+
+        if (entry.xmpMeta != null) {
+            // A cached instance is retained for later hits, so each directory is given its own copy to modify
+            XMPMeta xmpMeta = cache == null ? entry.xmpMeta : (XMPMeta)entry.xmpMeta.clone();
+            directory.setXMPMeta(xmpMeta, entry.valueCount);
+        }
+        if (entry.error != null)
+            directory.addError(entry.error);
+
+        if (!directory.isEmpty())
+            metadata.addDirectory(directory);
+    }
+
+    @NotNull
+    private static XmpCache.Entry parse(@NotNull final byte[] xmpBytes, int offset, int length)
+    {
         try {
             XMPMeta xmpMeta;
 
@@ -173,13 +223,10 @@ public class XmpReader implements JpegSegmentMetadataReader
                 xmpMeta = XMPMetaFactory.parse(buffer.getByteStream(), PARSE_OPTIONS);
             }
 
-            directory.setXMPMeta(xmpMeta);
+            return new XmpCache.Entry(xmpMeta, XmpDirectory.countValues(xmpMeta), null);
         } catch (XMPException e) {
-            directory.addError("Error processing XMP data: " + e.getMessage());
+            return new XmpCache.Entry(null, -1, "Error processing XMP data: " + e.getMessage());
         }
-
-        if (!directory.isEmpty())
-            metadata.addDirectory(directory);
     }
 
     /**
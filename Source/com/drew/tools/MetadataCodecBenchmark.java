@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.tools;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.MetadataCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time taken to extract metadata from files with the time taken to reload it from the form written by
+ * {@link MetadataCodec}.
+ * <p>
+ * Files are read into memory first, so that both measurements exclude disk I/O.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataCodecBenchmark
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1) {
+            System.out.println("USAGE:\n");
+            System.out.println("\tjava com.drew.tools.MetadataCodecBenchmark <directory> [<iterations>]");
+            System.exit(1);
+        }
+
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<byte[]> files = new ArrayList<byte[]>();
+        List<byte[]> encoded = new ArrayList<byte[]>();
+        collect(new File(args[0]), files, encoded);
+
+        if (files.isEmpty()) {
+            System.err.println("No readable image files found");
+            System.exit(1);
+        }
+
+        long fileBytes = 0;
+        long encodedBytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            fileBytes += files.get(i).length;
+            encodedBytes += encoded.get(i).length;
+        }
+        System.out.printf("%,d files, %,d bytes, encoded to %,d bytes%n", files.size(), fileBytes, encodedBytes);
+
+        // The first iteration of each warms up the JIT, and is not reported
+        for (int iteration = 0; iteration <= iterations; iteration++) {
+            long extractNanos = timeExtraction(files);
+            long decodeNanos = timeDecoding(encoded);
+            if (iteration != 0) {
+                System.out.printf("Extract %,8.2f ms   Decode %,8.2f ms   Speedup %,6.1fx%n",
+                    extractNanos / 1e6, decodeNanos / 1e6, (double)extractNanos / decodeNanos);
+            }
+        }
+    }
+
+    private static void collect(@NotNull File directory, @NotNull List<byte[]> files, @NotNull List<byte[]> encoded) throws IOException
+    {
+        File[] children = directory.listFiles();
+        if (children == null)
+            return;
+
+        for (File file : children) {
+            if (file.isDirectory()) {
+                collect(file, files, encoded);
+                continue;
+            }
+
+            byte[] bytes = FileUtil.readBytes(file);
+            Metadata metadata;
+            try {
+                metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(bytes), bytes.length);
+            } catch (Exception e) {
+                continue;
+            }
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            MetadataCodec.write(metadata, stream);
+            files.add(bytes);
+            encoded.add(stream.toByteArray());
+        }
+    }
+
+    private static long timeExtraction(@NotNull List<byte[]> files)
+    {
+        long start = System.nanoTime();
+        for (byte[] bytes : files) {
+            try {
+                ImageMetadataReader.readMetadata(new ByteArrayInputStream(bytes), bytes.length);
+            } catch (Exception ignored) {
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeDecoding(@NotNull List<byte[]> encoded) throws IOException
+    {
+        long start = System.nanoTime();
+        for (byte[] bytes : encoded)
+            MetadataCodec.read(new ByteArrayInputStream(bytes));
+        return System.nanoTime() - start;
+    }
+}
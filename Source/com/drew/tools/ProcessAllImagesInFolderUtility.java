@@ -29,6 +29,10 @@ import com.adobe.internal.xmp.properties.XMPPropertyInfo;
 import com.drew.imaging.FileType;
 import com.drew.imaging.FileTypeDetector;
 import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.MetadataBatchReader;
+import com.drew.imaging.MetadataBatchResult;
+import com.drew.imaging.MetadataSource;
 import com.drew.lang.StringUtil;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
@@ -39,22 +43,26 @@ import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 import com.drew.metadata.exif.ExifThumbnailDirectory;
 import com.drew.metadata.file.FileSystemDirectory;
+import com.drew.metadata.file.FileTypeDirectory;
 import com.drew.metadata.xmp.XmpDirectory;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Drew Noakes https://drewnoakes.com
  */
 public class ProcessAllImagesInFolderUtility
 {
-    public static void main(String[] args) throws IOException
+    public static void main(String[] args) throws IOException, InterruptedException
     {
         List<String> directories = new ArrayList<String>();
 
-        FileHandler handler = null;
+        FileHandlerBase handler = null;
         PrintStream log = System.out;
+        int threadCount = Runtime.getRuntime().availableProcessors();
 
         for (int i = 0; i < args.length; i++) {
             String arg = args[i];
@@ -72,7 +80,18 @@ public class ProcessAllImagesInFolderUtility
                     printUsage();
                     System.exit(1);
                 }
-                log = new PrintStream(new FileOutputStream(args[++i], false), true);
+                log = new PrintStream(new BufferedOutputStream(new FileOutputStream(args[++i], false), 64 * 1024), false);
+            } else if (arg.equalsIgnoreCase("--threads")) {
+                if (i == args.length - 1) {
+                    printUsage();
+                    System.exit(1);
+                }
+                threadCount = parseThreadCount(args[++i]);
+                if (threadCount <= 0) {
+                    System.err.println("Thread count must be a whole number greater than zero.");
+                    printUsage();
+                    System.exit(1);
+                }
             } else {
                 // Treat this argument as a directory
                 directories.add(arg);
@@ -91,16 +110,41 @@ public class ProcessAllImagesInFolderUtility
 
         long start = System.nanoTime();
 
-        for (String directory : directories) {
-            processDirectory(new File(directory), handler, "", log);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (String directory : directories) {
+                processDirectory(new File(directory), handler, executor, threadCount * 4, log);
+            }
+        } finally {
+            executor.shutdownNow();
         }
 
         handler.onScanCompleted(log);
 
-        System.out.println(String.format("Completed in %d ms", (System.nanoTime() - start) / 1000000));
+        long elapsedNanos = System.nanoTime() - start;
+        double elapsedSeconds = elapsedNanos / 1000000000d;
+        System.out.println(String.format("Completed in %d ms using %d threads (%,.1f files/s, %,.2f MB/s)",
+            elapsedNanos / 1000000,
+            threadCount,
+            elapsedSeconds == 0 ? 0 : handler.getProcessedFileCount() / elapsedSeconds,
+            elapsedSeconds == 0 ? 0 : handler.getProcessedByteCount() / (1024d * 1024) / elapsedSeconds));
 
         if (log != System.out) {
             log.close();
+        } else {
+            log.flush();
+        }
+    }
+
+    /**
+     * Parses a <code>--threads</code> value, returning zero if it is not a number.
+     */
+    private static int parseThreadCount(@NotNull String value)
+    {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
@@ -108,45 +152,195 @@ public class ProcessAllImagesInFolderUtility
     {
         System.out.println("Usage:");
         System.out.println();
-        System.out.println("  java com.drew.tools.ProcessAllImagesInFolderUtility [--text|--markdown|--unknown] [--log-file <file-name>]");
+        System.out.println("  java com.drew.tools.ProcessAllImagesInFolderUtility [--text|--markdown|--unknown] [--log-file <file-name>] [--threads <count>]");
+    }
+
+    /**
+     * Extracts metadata from all files beneath <code>path</code> on the worker pool. Results are handed to
+     * <code>handler</code> on the calling thread in the same order as a sequential walk would produce them, so
+     * handlers need not be thread-safe and their output is stable across invocations. Directory notifications are
+     * delivered in that same order, interleaved with the results.
+     */
+    private static void processDirectory(@NotNull File path, @NotNull FileHandler handler, @NotNull ExecutorService executor, int maxInFlight, @NotNull PrintStream log) throws InterruptedException
+    {
+        DirectoryWalker walker = new DirectoryWalker(path, handler);
+        new MetadataBatchReader(executor, maxInFlight, true).read(walker, new ResultDispatcher(handler, log));
+
+        // Report any directories entered after the last file, such as trailing empty directories
+        for (File directory : walker.takeStartedDirectories())
+            handler.onStartingDirectory(directory);
+    }
+
+    /**
+     * A file queued for extraction, along with its path relative to the root of the scan and the directories the
+     * walk entered since the previous file.
+     */
+    private static class FileSource extends MetadataSource
+    {
+        @NotNull final File file;
+        @NotNull final String relativePath;
+        @NotNull final List<File> startedDirectories;
+        private final long _length;
+
+        FileSource(@NotNull File file, @NotNull String relativePath, @NotNull List<File> startedDirectories)
+        {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.startedDirectories = startedDirectories;
+            _length = file.length();
+        }
+
+        @NotNull
+        @Override
+        public String getName()
+        {
+            return file.getPath();
+        }
+
+        @Override
+        public long getLength()
+        {
+            return _length;
+        }
+
+        @NotNull
+        @Override
+        public Metadata readMetadata() throws ImageProcessingException, IOException
+        {
+            return ImageMetadataReader.readMetadata(file);
+        }
     }
 
-    private static void processDirectory(@NotNull File path, @NotNull FileHandler handler, @NotNull String relativePath, PrintStream log)
+    /**
+     * Lazily walks a directory tree depth-first in alphabetical order, yielding those files which the handler
+     * wishes to process. Uses an explicit stack so that very deep trees cannot overflow the call stack.
+     * <p>
+     * The walk runs ahead of extraction, so directories are not reported to the handler here. Instead each source
+     * carries the directories entered before it, to be reported when its result is dispatched.
+     */
+    private static class DirectoryWalker implements Iterator<MetadataSource>
     {
-        handler.onStartingDirectory(path);
+        private static class Frame
+        {
+            final File directory;
+            final String relativePath;
+            final String[] items;
+            int index;
 
-        String[] pathItems = path.list();
+            Frame(File directory, String relativePath, String[] items)
+            {
+                this.directory = directory;
+                this.relativePath = relativePath;
+                this.items = items;
+            }
+        }
+
+        @NotNull private final FileHandler _handler;
+        @NotNull private final LinkedList<Frame> _stack = new LinkedList<Frame>();
+        @Nullable private FileSource _next;
+        @NotNull private List<File> _startedDirectories = new ArrayList<File>();
 
-        if (pathItems == null) {
-            return;
+        DirectoryWalker(@NotNull File root, @NotNull FileHandler handler)
+        {
+            _handler = handler;
+            enter(root, "");
         }
 
-        // Order alphabetically so that output is stable across invocations
-        Arrays.sort(pathItems);
+        private void enter(@NotNull File directory, @NotNull String relativePath)
+        {
+            _startedDirectories.add(directory);
 
-        for (String pathItem : pathItems) {
-            File file = new File(path, pathItem);
+            String[] items = directory.list();
 
-            if (file.isDirectory()) {
-                processDirectory(file, handler, relativePath.length() == 0 ? pathItem : relativePath + "/" + pathItem, log);
-            } else if (handler.shouldProcess(file)) {
+            if (items == null)
+                return;
 
-                handler.onBeforeExtraction(file, log, relativePath);
+            // Order alphabetically so that output is stable across invocations
+            Arrays.sort(items);
 
-                // Read metadata
-                final Metadata metadata;
-                try {
-                    metadata = ImageMetadataReader.readMetadata(file);
-                } catch (Throwable t) {
-                    handler.onExtractionError(file, t, log);
+            _stack.addFirst(new Frame(directory, relativePath, items));
+        }
+
+        public boolean hasNext()
+        {
+            while (_next == null && !_stack.isEmpty()) {
+                Frame frame = _stack.getFirst();
+                if (frame.index == frame.items.length) {
+                    _stack.removeFirst();
                     continue;
                 }
+                String item = frame.items[frame.index++];
+                File file = new File(frame.directory, item);
+                if (file.isDirectory()) {
+                    enter(file, frame.relativePath.length() == 0 ? item : frame.relativePath + "/" + item);
+                } else if (_handler.shouldProcess(file)) {
+                    _next = new FileSource(file, frame.relativePath, takeStartedDirectories());
+                }
+            }
+            return _next != null;
+        }
+
+        /** Returns the directories entered since the last call, in walk order. */
+        @NotNull
+        List<File> takeStartedDirectories()
+        {
+            List<File> directories = _startedDirectories;
+            _startedDirectories = new ArrayList<File>();
+            return directories;
+        }
+
+        public MetadataSource next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            FileSource next = _next;
+            _next = null;
+            return next;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Passes batch results to a {@link FileHandler}, first reporting any directories entered before each file.
+     */
+    private static class ResultDispatcher implements MetadataBatchReader.ResultHandler
+    {
+        @NotNull private final FileHandler _handler;
+        @NotNull private final PrintStream _log;
+
+        ResultDispatcher(@NotNull FileHandler handler, @NotNull PrintStream log)
+        {
+            _handler = handler;
+            _log = log;
+        }
+
+        public void onResult(@NotNull MetadataBatchResult result)
+        {
+            FileSource source = (FileSource)result.getSource();
+
+            for (File directory : source.startedDirectories)
+                _handler.onStartingDirectory(directory);
 
-                handler.onExtractionSuccess(file, metadata, relativePath, log);
+            _handler.onExtractionCompleted(source.file, _log, source.relativePath);
+
+            Metadata metadata = result.getMetadata();
+            if (metadata != null) {
+                _handler.onExtractionSuccess(source.file, metadata, source.relativePath, _log);
+            } else {
+                Throwable exception = result.getException();
+                assert(exception != null);
+                _handler.onExtractionError(source.file, exception, _log);
             }
         }
     }
 
+    /**
+     * Receives notifications as a scan progresses. All methods are invoked on the thread that started the scan.
+     */
     interface FileHandler
     {
         /** Called when the scan is about to start processing files in directory <code>path</code>. */
@@ -155,8 +349,12 @@ public class ProcessAllImagesInFolderUtility
         /** Called to determine whether the implementation should process <code>filePath</code>. */
         boolean shouldProcess(@NotNull File file);
 
-        /** Called before extraction is performed on <code>filePath</code>. */
-        void onBeforeExtraction(@NotNull File file, @NotNull PrintStream log, @NotNull String relativePath);
+        /**
+         * Called once extraction on <code>filePath</code> has finished, before its outcome is reported to
+         * {@link #onExtractionSuccess} or {@link #onExtractionError}. Extraction runs on worker threads, so this is
+         * not a hook into the start of extraction.
+         */
+        void onExtractionCompleted(@NotNull File file, @NotNull PrintStream log, @NotNull String relativePath);
 
         /** Called when extraction on <code>filePath</code> completed without an exception. */
         void onExtractionSuccess(@NotNull File file, @NotNull Metadata metadata, @NotNull String relativePath, @NotNull PrintStream log);
@@ -196,7 +394,7 @@ public class ProcessAllImagesInFolderUtility
             return extension != null && _supportedExtensions.contains(extension.toLowerCase());
         }
 
-        public void onBeforeExtraction(@NotNull File file, @NotNull PrintStream log, @NotNull String relativePath)
+        public void onExtractionCompleted(@NotNull File file, @NotNull PrintStream log, @NotNull String relativePath)
         {
             _processedFileCount++;
             _processedByteCount += file.length();
@@ -224,6 +422,16 @@ public class ProcessAllImagesInFolderUtility
             }
         }
 
+        int getProcessedFileCount()
+        {
+            return _processedFileCount;
+        }
+
+        long getProcessedByteCount()
+        {
+            return _processedByteCount;
+        }
+
         public void onScanCompleted(@NotNull PrintStream log)
         {
             if (_processedFileCount > 0) {
@@ -255,6 +463,9 @@ public class ProcessAllImagesInFolderUtility
         /** Standardise line ending so that generated files can be more easily diffed. */
         private static final String NEW_LINE = "\n";
 
+        /** Output is buffered so that each metadata file is written with few system calls. */
+        private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
         @Override
         public void onStartingDirectory(@NotNull File directoryPath)
         {
@@ -288,9 +499,9 @@ public class ProcessAllImagesInFolderUtility
         }
 
         @Override
-        public void onBeforeExtraction(@NotNull File file, @NotNull PrintStream log, @NotNull String relativePath)
+        public void onExtractionCompleted(@NotNull File file, @NotNull PrintStream log, @NotNull String relativePath)
         {
-            super.onBeforeExtraction(file, log, relativePath);
+            super.onExtractionCompleted(file, log, relativePath);
             log.print(file.getAbsoluteFile());
             log.print(NEW_LINE);
         }
@@ -304,7 +515,7 @@ public class ProcessAllImagesInFolderUtility
                 PrintWriter writer = null;
                 try
                 {
-                    writer = openWriter(file);
+                    writer = openWriter(file, metadata);
 
                     // Write any errors
                     if (metadata.hasErrors()) {
@@ -416,7 +627,7 @@ public class ProcessAllImagesInFolderUtility
             try {
                 PrintWriter writer = null;
                 try {
-                    writer = openWriter(file);
+                    writer = openWriter(file, null);
                     writer.write("EXCEPTION: " + throwable.getMessage() + NEW_LINE);
                     writer.write(NEW_LINE);
                 } finally {
@@ -428,7 +639,7 @@ public class ProcessAllImagesInFolderUtility
         }
 
         @NotNull
-        private static PrintWriter openWriter(@NotNull File file) throws IOException
+        private static PrintWriter openWriter(@NotNull File file, @Nullable Metadata metadata) throws IOException
         {
             // Create the output directory if it doesn't exist
             File metadataDir = new File(String.format("%s/metadata", file.getParent()));
@@ -440,28 +651,50 @@ public class ProcessAllImagesInFolderUtility
                 javaDir.mkdir();
 
             String outputPath = String.format("%s/metadata/java/%s.txt", file.getParent(), file.getName());
-            Writer writer = new OutputStreamWriter(
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
                 new FileOutputStream(outputPath),
                 "UTF-8"
-            );
+            ), OUTPUT_BUFFER_SIZE);
             writer.write("FILE: " + file.getName() + NEW_LINE);
 
-            // Detect file type
-            BufferedInputStream stream = null;
-            try {
-                stream = new BufferedInputStream(new FileInputStream(file));
-                FileType fileType = FileTypeDetector.detectFileType(stream);
-                writer.write(String.format("TYPE: %s" + NEW_LINE, fileType.toString().toUpperCase()));
-                writer.write(NEW_LINE);
-            } finally {
-                if (stream != null) {
-                    stream.close();
+            FileType fileType = metadata == null ? null : getDetectedFileType(metadata);
+
+            if (fileType == null) {
+                // Detect file type
+                BufferedInputStream stream = null;
+                try {
+                    stream = new BufferedInputStream(new FileInputStream(file));
+                    fileType = FileTypeDetector.detectFileType(stream);
+                } finally {
+                    if (stream != null) {
+                        stream.close();
+                    }
                 }
             }
 
+            writer.write(String.format("TYPE: %s" + NEW_LINE, fileType.toString().toUpperCase()));
+            writer.write(NEW_LINE);
+
             return new PrintWriter(writer);
         }
 
+        /**
+         * Recovers the file type recorded during extraction, avoiding the need to re-open the file to detect it.
+         */
+        @Nullable
+        private static FileType getDetectedFileType(@NotNull Metadata metadata)
+        {
+            FileTypeDirectory directory = metadata.getFirstDirectoryOfType(FileTypeDirectory.class);
+            if (directory == null)
+                return null;
+            String name = directory.getString(FileTypeDirectory.TAG_DETECTED_FILE_TYPE_NAME);
+            for (FileType fileType : FileType.values()) {
+                if (fileType.getName().equals(name))
+                    return fileType;
+            }
+            return null;
+        }
+
         private static void closeWriter(@Nullable Writer writer) throws IOException
         {
             if (writer != null) {
@@ -484,7 +717,7 @@ public class ProcessAllImagesInFolderUtility
         static class Row
         {
             final File file;
-            final Metadata metadata;
+            final int directoryCount;
             @NotNull final String relativePath;
             @Nullable private String manufacturer;
             @Nullable private String model;
@@ -495,7 +728,7 @@ public class ProcessAllImagesInFolderUtility
             Row(@NotNull File file, @NotNull Metadata metadata, @NotNull String relativePath)
             {
                 this.file = file;
-                this.metadata = metadata;
+                this.directoryCount = metadata.getDirectoryCount();
                 this.relativePath = relativePath;
 
                 ExifIFD0Directory ifd0Dir = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
@@ -614,7 +847,7 @@ public class ProcessAllImagesInFolderUtility
                             StringUtil.urlEncode(row.file.getName()),
                             row.manufacturer == null ? "" : row.manufacturer,
                             row.model == null ? "" : row.model,
-                            row.metadata.getDirectoryCount(),
+                            row.directoryCount,
                             row.exifVersion == null ? "" : row.exifVersion,
                             row.makernote == null ? "" : row.makernote,
                             row.thumbnail == null ? "" : row.thumbnail,
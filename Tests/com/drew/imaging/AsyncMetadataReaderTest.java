@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class AsyncMetadataReaderTest
+{
+    private ExecutorService _ioExecutor;
+    private ExecutorService _parseExecutor;
+
+    @Before
+    public void setUp()
+    {
+        _ioExecutor = Executors.newFixedThreadPool(2);
+        _parseExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        _ioExecutor.shutdownNow();
+        _parseExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testResultsMatchSynchronousExtraction() throws Exception
+    {
+        // A small buffer forces some formats to continue reading from the file
+        AsyncMetadataReader reader = new AsyncMetadataReader(_ioExecutor, _parseExecutor, 512, 2);
+
+        String[] paths = { "Tests/Data/withExif.jpg", "Tests/Data/withXmp.jpg", "Tests/Data/mspaint-8x10.png", "Tests/Data/adobeJpeg1.eps", "Tests/Data/8x4x8bit-Grayscale.psd" };
+        List<Future<Metadata>> futures = new ArrayList<Future<Metadata>>();
+        for (String path : paths)
+            futures.add(reader.readMetadata(new File(path)));
+
+        for (int i = 0; i < paths.length; i++) {
+            Metadata expected = ImageMetadataReader.readMetadata(new File(paths[i]));
+            Metadata actual = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(expected.getDirectoryCount(), actual.getDirectoryCount());
+        }
+    }
+
+    @Test
+    public void testCallbacks() throws Exception
+    {
+        AsyncMetadataReader reader = new AsyncMetadataReader(_ioExecutor, _parseExecutor);
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicInteger successCount = new AtomicInteger();
+        final AtomicInteger failureCount = new AtomicInteger();
+
+        AsyncMetadataReader.Callback callback = new AsyncMetadataReader.Callback()
+        {
+            public void onSuccess(@NotNull File file, @NotNull Metadata metadata)
+            {
+                successCount.incrementAndGet();
+                latch.countDown();
+            }
+
+            public void onFailure(@NotNull File file, @NotNull Throwable throwable)
+            {
+                failureCount.incrementAndGet();
+                latch.countDown();
+            }
+        };
+
+        reader.readMetadata(new File("Tests/Data/withExif.jpg"), callback);
+        Future<Metadata> missing = reader.readMetadata(new File("Tests/Data/does-not-exist.jpg"), callback);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, successCount.get());
+        assertEquals(1, failureCount.get());
+
+        try {
+            missing.get();
+            fail("Expected an exception");
+        } catch (ExecutionException e) {
+            assertNotNull(e.getCause());
+        }
+    }
+
+    @Test
+    public void testRejectedParseCompletesExceptionally() throws Exception
+    {
+        AsyncMetadataReader reader = new AsyncMetadataReader(_ioExecutor, _parseExecutor);
+        _parseExecutor.shutdown();
+
+        Future<Metadata> future = reader.readMetadata(new File("Tests/Data/withExif.jpg"));
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected an exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
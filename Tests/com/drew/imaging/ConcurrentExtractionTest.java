@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Extracts every sample file in <code>Tests/Data</code> from many threads at once, all sharing the library's static
+ * reader instances, and checks that each result matches a single-threaded extraction of the same file.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ConcurrentExtractionTest
+{
+    private static final int THREAD_COUNT = 16;
+    private static final int ROUNDS_PER_THREAD = 3;
+
+    @Test
+    public void testConcurrentExtractionMatchesSequential() throws Exception
+    {
+        File[] files = new File("Tests/Data").listFiles(new FilenameFilter()
+        {
+            private final List<String> _extensions = Arrays.asList("jpg", "png", "gif", "bmp", "psd", "eps");
+
+            public boolean accept(File dir, String name)
+            {
+                int i = name.lastIndexOf('.');
+                return i != -1 && _extensions.contains(name.substring(i + 1).toLowerCase());
+            }
+        });
+
+        assert(files != null);
+        assertFalse(files.length == 0);
+
+        final Map<File, String> expected = new HashMap<File, String>();
+        for (File file : files)
+            expected.put(file, describe(file));
+
+        final List<File> fileList = Arrays.asList(files);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+        try {
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < THREAD_COUNT; t++) {
+                final long seed = t;
+                futures.add(executor.submit(new Callable<List<String>>()
+                {
+                    public List<String> call() throws Exception
+                    {
+                        List<String> mismatches = new ArrayList<String>();
+                        List<File> order = new ArrayList<File>(fileList);
+                        Random random = new Random(seed);
+                        startSignal.await();
+                        for (int round = 0; round < ROUNDS_PER_THREAD; round++) {
+                            // Each thread visits the files in a different order, so that different formats overlap
+                            Collections.shuffle(order, random);
+                            for (File file : order) {
+                                if (!expected.get(file).equals(describe(file)))
+                                    mismatches.add(file.getName());
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+
+            startSignal.countDown();
+
+            for (Future<List<String>> future : futures)
+                assertEquals(Collections.<String>emptyList(), future.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Produces a textual rendering of everything extracted from <code>file</code>, including descriptions and errors.
+     */
+    @NotNull
+    private static String describe(@NotNull File file)
+    {
+        StringBuilder builder = new StringBuilder();
+        Metadata metadata;
+        try {
+            metadata = ImageMetadataReader.readMetadata(file);
+        } catch (Exception e) {
+            return "EXCEPTION: " + e.getClass().getName() + ": " + e.getMessage();
+        }
+        for (Directory directory : metadata.getDirectories()) {
+            builder.append('[').append(directory.getName()).append(']').append('\n');
+            if (directory.getParent() != null)
+                builder.append("parent=").append(directory.getParent().getName()).append('\n');
+            for (Tag tag : directory.getTags()) {
+                String description;
+                try {
+                    description = tag.getDescription();
+                } catch (Exception e) {
+                    description = "EXCEPTION: " + e.getMessage();
+                }
+                builder.append(tag.getTagTypeHex()).append('=').append(description).append('\n');
+            }
+            for (String error : directory.getErrors())
+                builder.append("ERROR: ").append(error).append('\n');
+        }
+        return builder.toString();
+    }
+}
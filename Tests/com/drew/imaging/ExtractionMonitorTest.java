@@ -0,0 +1,168 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifTiffHandler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ExtractionMonitorTest
+{
+    private static class Report
+    {
+        final FileType fileType;
+        final ExtractionPhase phase;
+        final Class<?> readerClass;
+        final long byteCount;
+        final long nanos;
+
+        Report(FileType fileType, ExtractionPhase phase, Class<?> readerClass, long byteCount, long nanos)
+        {
+            this.fileType = fileType;
+            this.phase = phase;
+            this.readerClass = readerClass;
+            this.byteCount = byteCount;
+            this.nanos = nanos;
+        }
+    }
+
+    private static class RecordingListener implements ExtractionListener
+    {
+        final List<Report> reports = new ArrayList<Report>();
+
+        public synchronized void phaseCompleted(@NotNull FileType fileType, @NotNull ExtractionPhase phase, @NotNull Class<?> readerClass, long byteCount, long nanos)
+        {
+            reports.add(new Report(fileType, phase, readerClass, byteCount, nanos));
+        }
+
+        Report find(ExtractionPhase phase)
+        {
+            for (Report report : reports) {
+                if (report.phase == phase)
+                    return report;
+            }
+            fail("No report of " + phase);
+            return null;
+        }
+
+        Report find(ExtractionPhase phase, Class<?> readerClass)
+        {
+            for (Report report : reports) {
+                if (report.phase == phase && report.readerClass == readerClass)
+                    return report;
+            }
+            fail("No report of " + phase + " by " + readerClass.getSimpleName());
+            return null;
+        }
+    }
+
+    @After
+    public void removeListener()
+    {
+        ExtractionMonitor.setListener(null);
+    }
+
+    @Test
+    public void testReportsPhasesOfJpegExtraction() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        ExtractionMonitor.setListener(listener);
+
+        File file = new File("Tests/Data/nikonMakernoteType2b.jpg");
+        ImageMetadataReader.readMetadata(file);
+
+        assertEquals(FileType.Jpeg, listener.find(ExtractionPhase.DETECTION, FileTypeDetector.class).fileType);
+
+        Report fileReport = listener.find(ExtractionPhase.FILE, JpegMetadataReader.class);
+        assertEquals(FileType.Jpeg, fileReport.fileType);
+
+        // Segment scanning stops at the start of the image data
+        Report scan = listener.find(ExtractionPhase.SEGMENT_SCAN, JpegSegmentReader.class);
+        assertTrue(scan.byteCount > 0);
+        assertTrue(scan.byteCount < file.length());
+        assertEquals(scan.byteCount, fileReport.byteCount);
+
+        Report exif = listener.find(ExtractionPhase.SEGMENT, ExifReader.class);
+        assertTrue(exif.byteCount > 0);
+
+        Report tiff = listener.find(ExtractionPhase.TIFF, ExifTiffHandler.class);
+        assertEquals(FileType.Jpeg, tiff.fileType);
+        assertEquals(-1, tiff.byteCount);
+
+        Report makernote = listener.find(ExtractionPhase.MAKERNOTE);
+        assertEquals(FileType.Jpeg, makernote.fileType);
+        assertTrue(listener.reports.indexOf(makernote) < listener.reports.indexOf(tiff));
+
+        // Phases are reported as they complete, so nested phases precede those enclosing them
+        assertTrue(listener.reports.indexOf(tiff) < listener.reports.indexOf(exif));
+        assertSame(fileReport, listener.reports.get(listener.reports.size() - 1));
+
+        for (Report report : listener.reports)
+            assertTrue(report.nanos >= 0);
+    }
+
+    @Test
+    public void testSegmentReadersUsedDirectlyReportJpeg() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        ExtractionMonitor.setListener(listener);
+
+        InputStream inputStream = new FileInputStream("Tests/Data/withIptcExifGps.jpg");
+        try {
+            JpegMetadataReader.readMetadata(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        assertFalse(listener.reports.isEmpty());
+        for (Report report : listener.reports)
+            assertEquals(FileType.Jpeg, report.fileType);
+        assertEquals(FileType.Unknown, ExtractionMonitor.getFileType());
+    }
+
+    @Test
+    public void testNothingReportedOnceListenerRemoved() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        ExtractionMonitor.setListener(listener);
+        ExtractionMonitor.setListener(null);
+
+        ImageMetadataReader.readMetadata(new File("Tests/Data/withIptcExifGps.jpg"));
+
+        assertTrue(listener.reports.isEmpty());
+        assertNull(ExtractionMonitor.getListener());
+    }
+}
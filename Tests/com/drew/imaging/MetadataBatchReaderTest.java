@@ -0,0 +1,213 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataBatchReaderTest
+{
+    private ExecutorService _executor;
+
+    @Before
+    public void setUp()
+    {
+        _executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        _executor.shutdownNow();
+    }
+
+    @NotNull
+    private static List<File> getTestFiles()
+    {
+        return Arrays.asList(
+            new File("Tests/Data/withExif.jpg"),
+            new File("Tests/Data/withXmp.jpg"),
+            new File("Tests/Data/withIptcExifGps.jpg"),
+            new File("Tests/Data/mspaint-8x10.png"),
+            new File("Tests/Data/mspaint-10x10.gif"),
+            new File("Tests/Data/24bpp-10x10.bmp"),
+            new File("Tests/Data/8x4x8bit-Grayscale.psd"),
+            new File("Tests/Data/adobeJpeg1.eps"),
+            new File("Tests/Data/nikonMakernoteType1.jpg"),
+            new File("Tests/Data/withPanasonicFaces.jpg")
+        );
+    }
+
+    @Test
+    public void testOrderedResultsMatchSequentialExtraction() throws Exception
+    {
+        List<File> files = getTestFiles();
+
+        List<MetadataBatchResult> results = MetadataBatchReader.readAll(_executor, 3, files);
+
+        assertEquals(files.size(), results.size());
+        for (int i = 0; i < files.size(); i++) {
+            MetadataBatchResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertTrue(result.isSuccess());
+            assertNotNull(result.getMetadata());
+            assertEquals(ImageMetadataReader.readMetadata(files.get(i)).getDirectoryCount(), result.getMetadata().getDirectoryCount());
+        }
+    }
+
+    @Test
+    public void testUnorderedDeliversEveryResult() throws Exception
+    {
+        List<File> files = getTestFiles();
+        final boolean[] seen = new boolean[files.size()];
+
+        new MetadataBatchReader(_executor, 2, false).readFiles(files, new MetadataBatchReader.ResultHandler()
+        {
+            public void onResult(@NotNull MetadataBatchResult result)
+            {
+                assertFalse(seen[(int)result.getIndex()]);
+                seen[(int)result.getIndex()] = true;
+            }
+        });
+
+        for (boolean b : seen)
+            assertTrue(b);
+    }
+
+    @Test
+    public void testCapturesPerFileErrors() throws Exception
+    {
+        List<File> files = new ArrayList<File>(getTestFiles());
+        files.add(2, new File("Tests/Data/does-not-exist.jpg"));
+
+        List<MetadataBatchResult> results = MetadataBatchReader.readAll(_executor, 4, files);
+
+        assertEquals(files.size(), results.size());
+        assertFalse(results.get(2).isSuccess());
+        assertNull(results.get(2).getMetadata());
+        assertNotNull(results.get(2).getException());
+        assertTrue(results.get(3).isSuccess());
+    }
+
+    @Test
+    public void testCancelStopsDelivery() throws Exception
+    {
+        final List<MetadataBatchResult> results = new ArrayList<MetadataBatchResult>();
+        final MetadataBatchReader reader = new MetadataBatchReader(_executor, 2, true);
+
+        reader.readFiles(getTestFiles(), new MetadataBatchReader.ResultHandler()
+        {
+            public void onResult(@NotNull MetadataBatchResult result)
+            {
+                results.add(result);
+                reader.cancel();
+            }
+        });
+
+        assertTrue(reader.isCancelled());
+        assertEquals(1, results.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelWakesBlockedRead() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch neverReleased = new CountDownLatch(1);
+
+        MetadataSource blockingSource = new MetadataSource()
+        {
+            @NotNull
+            public String getName()
+            {
+                return "blocking";
+            }
+
+            public long getLength()
+            {
+                return -1;
+            }
+
+            @NotNull
+            public Metadata readMetadata() throws IOException
+            {
+                started.countDown();
+                try {
+                    neverReleased.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted");
+                }
+                return new Metadata();
+            }
+        };
+
+        final MetadataBatchReader reader = new MetadataBatchReader(_executor, 1, true);
+        final List<MetadataBatchResult> results = new ArrayList<MetadataBatchResult>();
+
+        _executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                try {
+                    started.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                reader.cancel();
+            }
+        });
+
+        // Returns once cancelled, although the source never completes of its own accord
+        reader.read(Collections.singletonList(blockingSource).iterator(), new MetadataBatchReader.ResultHandler()
+        {
+            public void onResult(@NotNull MetadataBatchResult result)
+            {
+                results.add(result);
+            }
+        });
+
+        assertTrue(reader.isCancelled());
+        assertTrue(results.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyWindow()
+    {
+        new MetadataBatchReader(_executor, 0, true);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataCacheTest
+{
+    private static final File WITH_EXIF = new File("Tests/Data/withExif.jpg");
+    private static final File WITH_XMP = new File("Tests/Data/withXmp.jpg");
+    private static final File WITH_GPS = new File("Tests/Data/withIptcExifGps.jpg");
+
+    @Test
+    public void testRepeatedReadIsServedFromCache() throws Exception
+    {
+        MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024);
+
+        Metadata first = cache.readMetadata(WITH_EXIF);
+        Metadata second = cache.readMetadata(WITH_EXIF);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+        assertTrue(cache.getEstimatedBytes() > 0);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception
+    {
+        MetadataCache cache = new MetadataCache(2, 10 * 1024 * 1024, 1, false, null);
+
+        cache.readMetadata(WITH_EXIF);
+        cache.readMetadata(WITH_XMP);
+        cache.readMetadata(WITH_EXIF);
+        cache.readMetadata(WITH_GPS);
+
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getMissCount());
+
+        cache.readMetadata(WITH_EXIF);
+        assertEquals(2, cache.getHitCount());
+
+        cache.readMetadata(WITH_XMP);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testEntryCountIsBoundedWhenSmallerThanStripeCount() throws Exception
+    {
+        MetadataCache cache = new MetadataCache(2, 10 * 1024 * 1024, 16, false, null);
+
+        cache.readMetadata(WITH_EXIF);
+        cache.readMetadata(WITH_XMP);
+        cache.readMetadata(WITH_GPS);
+
+        // Which stripes the files land in depends on their paths, so only the bound itself is fixed
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    public void testEntriesLargerThanByteBudgetAreNotRetained() throws Exception
+    {
+        MetadataCache cache = new MetadataCache(10, 16, 1, false, null);
+
+        cache.readMetadata(WITH_EXIF);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void testModifiedFileIsReread() throws Exception
+    {
+        File copy = copyToTempFile(WITH_EXIF);
+        try {
+            MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024);
+
+            Metadata first = cache.readMetadata(copy);
+            assertTrue(copy.setLastModified(copy.lastModified() - 60000));
+            Metadata second = cache.readMetadata(copy);
+
+            assertNotSame(first, second);
+            assertEquals(2, cache.getMissCount());
+        } finally {
+            assertTrue(copy.delete());
+        }
+    }
+
+    @Test
+    public void testInvalidateAndClear() throws Exception
+    {
+        MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024);
+
+        cache.readMetadata(WITH_EXIF);
+        cache.readMetadata(WITH_XMP);
+        cache.invalidate(WITH_EXIF);
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void testContentKeySharesEntryBetweenIdenticalFiles() throws Exception
+    {
+        File copy = copyToTempFile(WITH_EXIF);
+        try {
+            MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024, 4, true, null);
+
+            Metadata first = cache.readMetadata(WITH_EXIF);
+            Metadata second = cache.readMetadata(copy);
+
+            assertSame(first, second);
+            assertEquals(1, cache.getHitCount());
+        } finally {
+            assertTrue(copy.delete());
+        }
+    }
+
+    @Test
+    public void testBackingStoreIsConsultedOnMiss() throws Exception
+    {
+        MapBackingStore store = new MapBackingStore();
+
+        Metadata original = new MetadataCache(10, 10 * 1024 * 1024, 4, false, store).readMetadata(WITH_EXIF);
+        assertEquals(1, store.entries.size());
+
+        MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024, 4, false, store);
+        assertSame(original, cache.readMetadata(WITH_EXIF));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getStoreHitCount());
+        assertEquals(0, cache.getMissCount());
+
+        // The loaded result is now held in memory
+        assertSame(original, cache.readMetadata(WITH_EXIF));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getStoreHitCount());
+    }
+
+    @Test
+    public void testBackingStoreFailureDoesNotFailRead() throws Exception
+    {
+        MetadataCache.BackingStore store = new MapBackingStore()
+        {
+            @Override
+            public void store(@NotNull String key, @NotNull Metadata metadata) throws IOException
+            {
+                throw new IOException("Disk full");
+            }
+        };
+
+        MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024, 4, false, store);
+        Metadata metadata = cache.readMetadata(WITH_EXIF);
+
+        assertNotNull(metadata);
+        assertEquals(1, cache.getStoreFailureCount());
+        assertSame(metadata, cache.readMetadata(WITH_EXIF));
+    }
+
+    @Test
+    public void testFileStorePersistsAcrossInstances() throws Exception
+    {
+        File directory = File.createTempFile("metadata-store", "");
+        assertTrue(directory.delete());
+        try {
+            MetadataFileStore store = new MetadataFileStore(directory);
+
+            Metadata original = new MetadataCache(10, 10 * 1024 * 1024, 4, false, store).readMetadata(WITH_EXIF);
+
+            MetadataCache cache = new MetadataCache(10, 10 * 1024 * 1024, 4, false, new MetadataFileStore(directory));
+            Metadata reloaded = cache.readMetadata(WITH_EXIF);
+
+            assertNotSame(original, reloaded);
+            assertEquals(original.getDirectoryCount(), reloaded.getDirectoryCount());
+            assertEquals(1, cache.getStoreHitCount());
+            assertEquals(0, cache.getMissCount());
+
+            assertNull(store.load("absent"));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void deleteRecursively(@NotNull File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                deleteRecursively(child);
+        }
+        assertTrue(file.delete());
+    }
+
+    @NotNull
+    private static File copyToTempFile(@NotNull File source) throws IOException
+    {
+        File copy = File.createTempFile("metadata-cache", ".jpg");
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(copy);
+            try {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return copy;
+    }
+
+    private static class MapBackingStore implements MetadataCache.BackingStore
+    {
+        final Map<String, Metadata> entries = new HashMap<String, Metadata>();
+
+        @Nullable
+        public Metadata load(@NotNull String key)
+        {
+            return entries.get(key);
+        }
+
+        public void store(@NotNull String key, @NotNull Metadata metadata) throws IOException
+        {
+            entries.put(key, metadata);
+        }
+    }
+}
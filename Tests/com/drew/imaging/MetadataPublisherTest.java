@@ -0,0 +1,266 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataPublisherTest
+{
+    private ExecutorService _executor;
+
+    @Before
+    public void setUp()
+    {
+        _executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        _executor.shutdownNow();
+    }
+
+    @NotNull
+    private static List<MetadataSource> getSources(int count)
+    {
+        String[] paths = { "Tests/Data/withExif.jpg", "Tests/Data/mspaint-8x10.png", "Tests/Data/mspaint-10x10.gif", "Tests/Data/does-not-exist.jpg" };
+        List<MetadataSource> sources = new ArrayList<MetadataSource>();
+        for (int i = 0; i < count; i++)
+            sources.add(MetadataSource.forFile(new File(paths[i % paths.length])));
+        return sources;
+    }
+
+    @Test
+    public void testDeliversAllResultsOneRequestAtATime() throws Exception
+    {
+        final List<MetadataSource> sources = getSources(20);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final List<MetadataBatchResult> results = Collections.synchronizedList(new ArrayList<MetadataBatchResult>());
+        final AtomicInteger outstanding = new AtomicInteger();
+        final List<String> violations = Collections.synchronizedList(new ArrayList<String>());
+
+        new MetadataPublisher(sources.iterator(), _executor, 3).subscribe(new MetadataPublisher.Subscriber()
+        {
+            private MetadataPublisher.Subscription _subscription;
+
+            public void onSubscribe(@NotNull MetadataPublisher.Subscription subscription)
+            {
+                _subscription = subscription;
+                outstanding.incrementAndGet();
+                subscription.request(1);
+            }
+
+            public void onNext(@NotNull MetadataBatchResult result)
+            {
+                if (outstanding.decrementAndGet() < 0)
+                    violations.add("Received more results than requested");
+                results.add(result);
+                outstanding.incrementAndGet();
+                _subscription.request(1);
+            }
+
+            public void onError(@NotNull Throwable throwable)
+            {
+                violations.add("Unexpected error: " + throwable);
+                completed.countDown();
+            }
+
+            public void onComplete()
+            {
+                completed.countDown();
+            }
+        });
+
+        assertTrue(completed.await(30, TimeUnit.SECONDS));
+        assertEquals(Collections.<String>emptyList(), violations);
+        assertEquals(sources.size(), results.size());
+
+        boolean[] seen = new boolean[sources.size()];
+        int failures = 0;
+        for (MetadataBatchResult result : results) {
+            seen[(int)result.getIndex()] = true;
+            if (!result.isSuccess())
+                failures++;
+        }
+        for (boolean b : seen)
+            assertTrue(b);
+        assertEquals(5, failures);
+    }
+
+    @Test
+    public void testDoesNotReadBeyondDemand() throws Exception
+    {
+        final AtomicInteger pulled = new AtomicInteger();
+        final List<MetadataSource> sources = getSources(10);
+        final CountDownLatch received = new CountDownLatch(2);
+
+        Iterator<MetadataSource> iterator = new Iterator<MetadataSource>()
+        {
+            private final Iterator<MetadataSource> _inner = sources.iterator();
+
+            public boolean hasNext()
+            {
+                return _inner.hasNext();
+            }
+
+            public MetadataSource next()
+            {
+                pulled.incrementAndGet();
+                return _inner.next();
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        new MetadataPublisher(iterator, _executor, 4).subscribe(new MetadataPublisher.Subscriber()
+        {
+            public void onSubscribe(@NotNull MetadataPublisher.Subscription subscription)
+            {
+                subscription.request(2);
+            }
+
+            public void onNext(@NotNull MetadataBatchResult result)
+            {
+                received.countDown();
+            }
+
+            public void onError(@NotNull Throwable throwable) {}
+
+            public void onComplete() {}
+        });
+
+        assertTrue(received.await(30, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(2, pulled.get());
+    }
+
+    @Test
+    public void testDoesNotConsultSourcesWithoutDemand() throws Exception
+    {
+        final AtomicInteger hasNextCalls = new AtomicInteger();
+        final List<MetadataSource> sources = getSources(10);
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        final AtomicInteger received = new AtomicInteger();
+
+        Iterator<MetadataSource> iterator = new Iterator<MetadataSource>()
+        {
+            private final Iterator<MetadataSource> _inner = sources.iterator();
+
+            public boolean hasNext()
+            {
+                hasNextCalls.incrementAndGet();
+                return _inner.hasNext();
+            }
+
+            public MetadataSource next()
+            {
+                return _inner.next();
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        Executor executor = new Executor()
+        {
+            public void execute(@NotNull Runnable command)
+            {
+                queued.add(command);
+            }
+        };
+
+        new MetadataPublisher(iterator, executor, 4).subscribe(new MetadataPublisher.Subscriber()
+        {
+            public void onSubscribe(@NotNull MetadataPublisher.Subscription subscription)
+            {
+                subscription.request(1);
+            }
+
+            public void onNext(@NotNull MetadataBatchResult result)
+            {
+                received.incrementAndGet();
+            }
+
+            public void onError(@NotNull Throwable throwable) {}
+
+            public void onComplete() {}
+        });
+
+        // The single unit of demand is covered by the read in flight, so the sources are not asked for another
+        assertEquals(1, queued.size());
+        assertEquals(1, hasNextCalls.get());
+
+        queued.remove(0).run();
+
+        assertEquals(1, received.get());
+        assertEquals(0, queued.size());
+    }
+
+    @Test
+    public void testInvalidRequestSignalsError() throws Exception
+    {
+        final Throwable[] error = new Throwable[1];
+
+        new MetadataPublisher(getSources(3).iterator(), _executor, 1).subscribe(new MetadataPublisher.Subscriber()
+        {
+            public void onSubscribe(@NotNull MetadataPublisher.Subscription subscription)
+            {
+                subscription.request(0);
+            }
+
+            public void onNext(@NotNull MetadataBatchResult result) {}
+
+            public void onError(@NotNull Throwable throwable)
+            {
+                error[0] = throwable;
+            }
+
+            public void onComplete() {}
+        });
+
+        assertTrue(error[0] instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class PrefetchingFileIteratorTest
+{
+    private final List<File> _files = Arrays.asList(
+        new File("Tests/Data/withExif.jpg"),
+        new File("Tests/Data/withXmp.jpg"),
+        new File("Tests/Data/withIptcExifGps.jpg"),
+        new File("Tests/Data/photoshop-8x12-rgb24-all-metadata.png"),
+        new File("Tests/Data/mspaint-10x10.gif"),
+        new File("Tests/Data/8x4x8bit-Grayscale.psd"),
+        new File("Tests/Data/adobeJpeg1.eps")
+    );
+
+    private ExecutorService _executor;
+
+    @Before
+    public void setUp()
+    {
+        _executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    public void testMatchesDirectExtractionWhenHeaderCoversFile() throws Exception
+    {
+        assertMatchesDirectExtraction(new PrefetchingFileIterator(_files.iterator(), _executor, 3));
+    }
+
+    @Test
+    public void testMatchesDirectExtractionWhenParserReadsBeyondHeader() throws Exception
+    {
+        assertMatchesDirectExtraction(new PrefetchingFileIterator(_files.iterator(), _executor, 3, 100));
+    }
+
+    @Test
+    public void testWithoutReadAhead() throws Exception
+    {
+        assertMatchesDirectExtraction(new PrefetchingFileIterator(_files.iterator(), _executor, 0, 1024));
+    }
+
+    @Test
+    public void testMissingFileRaisesOnRead() throws Exception
+    {
+        PrefetchingFileIterator iterator = new PrefetchingFileIterator(Arrays.asList(new File("Tests/Data/does-not-exist.jpg")).iterator(), _executor, 1);
+        MetadataSource source = iterator.next();
+        try {
+            source.readMetadata();
+            fail("Expected an exception");
+        } catch (Exception expected) {
+            // expected
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    private void assertMatchesDirectExtraction(PrefetchingFileIterator iterator) throws Exception
+    {
+        Iterator<File> files = _files.iterator();
+        while (iterator.hasNext()) {
+            MetadataSource source = iterator.next();
+            File file = files.next();
+            assertEquals(file.getPath(), source.getName());
+
+            Metadata expected = ImageMetadataReader.readMetadata(file);
+            Metadata actual = source.readMetadata();
+
+            assertEquals(expected.getDirectoryCount(), actual.getDirectoryCount());
+            Iterator<Directory> expectedDirectories = expected.getDirectories().iterator();
+            for (Directory directory : actual.getDirectories()) {
+                Directory expectedDirectory = expectedDirectories.next();
+                assertEquals(expectedDirectory.getClass(), directory.getClass());
+                assertEquals(expectedDirectory.getTagCount(), directory.getTagCount());
+            }
+        }
+        assertFalse(files.hasNext());
+        iterator.close();
+    }
+}
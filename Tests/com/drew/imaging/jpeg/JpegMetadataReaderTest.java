@@ -20,16 +20,27 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimits;
+import com.drew.lang.IoStats;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.file.FileTypeDirectory;
 import com.drew.metadata.jpeg.HuffmanTablesDirectory;
 import com.drew.metadata.jpeg.HuffmanTablesDirectory.HuffmanTable;
 import com.drew.metadata.xmp.XmpDirectory;
+import com.drew.tools.FileUtil;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -85,6 +96,161 @@ public class JpegMetadataReaderTest
         }
     }
 
+    @Test
+    public void testConcurrentSegmentDecodingMatchesSequential() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String path : new String[] { "Tests/Data/withIptcExifGps.jpg", "Tests/Data/withXmp.jpg", "Tests/Data/adobeJpeg1.jpg", "Tests/Data/withExif.jpg" }) {
+                Metadata sequential = JpegMetadataReader.readMetadata(new File(path));
+                Metadata concurrent;
+                FileInputStream stream = new FileInputStream(path);
+                try {
+                    concurrent = JpegMetadataReader.readMetadata(stream, null, executor);
+                } finally {
+                    stream.close();
+                }
+
+                // The File overload also adds a file system directory
+                assertEquals(sequential.getDirectoryCount() - 1, concurrent.getDirectoryCount());
+
+                Iterator<Directory> expected = sequential.getDirectories().iterator();
+                for (Directory actual : concurrent.getDirectories()) {
+                    Directory directory = expected.next();
+                    assertEquals(directory.getClass(), actual.getClass());
+                    assertEquals(directory.getTagCount(), actual.getTagCount());
+                    assertEquals(directory.getParent() == null ? null : directory.getParent().getClass(),
+                                 actual.getParent() == null ? null : actual.getParent().getClass());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFileReadsExifInPlaceMatchingStream() throws Exception
+    {
+        for (String path : new String[] { "Tests/Data/withExif.jpg", "Tests/Data/nikonMakernoteType2b.jpg", "Tests/Data/withIptcExifGps.jpg", "Tests/Data/withUncompressedRGBThumbnail.jpg" }) {
+            Metadata fromFile = JpegMetadataReader.readMetadata(new File(path));
+            Metadata fromStream;
+            FileInputStream stream = new FileInputStream(path);
+            try {
+                fromStream = JpegMetadataReader.readMetadata(stream);
+            } finally {
+                stream.close();
+            }
+
+            // The File overload also adds a file system directory
+            assertEquals(fromFile.getDirectoryCount() - 1, fromStream.getDirectoryCount());
+
+            Iterator<Directory> expected = fromStream.getDirectories().iterator();
+            for (Directory actual : fromFile.getDirectories()) {
+                if (!expected.hasNext())
+                    break;
+                Directory directory = expected.next();
+                assertEquals(directory.getClass(), actual.getClass());
+                assertEquals(directory.getErrorCount(), actual.getErrorCount());
+                Iterator<Tag> expectedTags = directory.getTags().iterator();
+                for (Tag tag : actual.getTags())
+                    assertEquals(path, expectedTags.next().toString(), tag.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentSegmentDecodingChargesCallersBudgetAndStats() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withIptcExifGps.jpg");
+        ExtractionLimits limits = new ExtractionLimits(Long.MAX_VALUE, Long.MAX_VALUE, 1000, 16);
+
+        ExtractionBudget sequentialBudget = new ExtractionBudget(limits);
+        IoStats sequentialStats = new IoStats();
+        ExtractionBudget previousBudget = ExtractionBudget.begin(sequentialBudget);
+        IoStats previousStats = IoStats.begin(sequentialStats);
+        try {
+            JpegMetadataReader.readMetadata(new ByteArrayInputStream(bytes));
+        } finally {
+            IoStats.end(previousStats);
+            ExtractionBudget.end(previousBudget);
+        }
+
+        ExtractionBudget concurrentBudget = new ExtractionBudget(limits);
+        IoStats concurrentStats = new IoStats();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        previousBudget = ExtractionBudget.begin(concurrentBudget);
+        previousStats = IoStats.begin(concurrentStats);
+        try {
+            JpegMetadataReader.readMetadata(new ByteArrayInputStream(bytes), null, executor);
+        } finally {
+            IoStats.end(previousStats);
+            ExtractionBudget.end(previousBudget);
+            executor.shutdownNow();
+        }
+
+        // Work done on pool threads is charged to the caller's budget and statistics, as when done sequentially
+        assertTrue(sequentialBudget.getDirectoryCount() > 0);
+        assertEquals(sequentialBudget.getDirectoryCount(), concurrentBudget.getDirectoryCount());
+        assertEquals(sequentialBudget.getBytesRead(), concurrentBudget.getBytesRead());
+        assertEquals(sequentialStats.getBytesRead(), concurrentStats.getBytesRead());
+    }
+
+    @Test
+    public void testRejectedSegmentTasksRunOnCallingThread() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withIptcExifGps.jpg");
+        Metadata sequential = JpegMetadataReader.readMetadata(new ByteArrayInputStream(bytes));
+        Metadata concurrent = JpegMetadataReader.readMetadata(new ByteArrayInputStream(bytes), null, executor);
+
+        assertEquals(sequential.getDirectoryCount(), concurrent.getDirectoryCount());
+    }
+
+    @Test
+    public void testFileDoesNotReadExifThumbnail() throws Exception
+    {
+        File file = new File("Tests/Data/withUncompressedRGBThumbnail.jpg");
+
+        IoStats fileStats = new IoStats();
+        IoStats previous = IoStats.begin(fileStats);
+        try {
+            JpegMetadataReader.readMetadata(file);
+        } finally {
+            IoStats.end(previous);
+        }
+
+        IoStats streamStats = new IoStats();
+        previous = IoStats.begin(streamStats);
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            JpegMetadataReader.readMetadata(stream);
+        } finally {
+            stream.close();
+            IoStats.end(previous);
+        }
+
+        // The thumbnail is most of the 21 KB Exif segment, and is skipped rather than read
+        assertTrue(fileStats.getBytesRead() < streamStats.getBytesRead() - 10000);
+        assertTrue(fileStats.getBytesSkipped() > 15000);
+        assertTrue(fileStats.getPeakBufferedBytes() < 4096);
+    }
+
+    @Test
+    public void testImageMetadataReaderFileDoesNotReadExifThumbnail() throws Exception
+    {
+        File file = new File("Tests/Data/withUncompressedRGBThumbnail.jpg");
+
+        IoStats stats = new IoStats();
+        Metadata metadata = ImageMetadataReader.readMetadata(file, stats);
+
+        assertNotNull(metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class));
+        assertNotNull(metadata.getFirstDirectoryOfType(FileTypeDirectory.class));
+        assertTrue(stats.getBytesSkipped() > 15000);
+        assertTrue(stats.getPeakBufferedBytes() < 4096);
+    }
+
     private void validate(Metadata metadata)
     {
         Directory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
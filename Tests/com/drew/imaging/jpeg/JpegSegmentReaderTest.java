@@ -20,6 +20,8 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.lang.IoStats;
+import com.drew.lang.SequentialByteArrayReader;
 import com.drew.tools.FileUtil;
 import org.junit.Test;
 
@@ -127,6 +129,54 @@ public class JpegSegmentReaderTest
         assertArrayEquals(
                 FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app2"),
                 segmentData.getSegment(JpegSegmentType.APP2));
+
+        // Offsets follow each segment's marker and length
+        assertEquals(6, segmentData.getSegmentOffset(JpegSegmentType.APP0, 0));
+        assertEquals(-1, segmentData.getSegmentOffset(JpegSegmentType.APP0, 1));
+        assertEquals(-1, segmentData.getSegmentOffset(JpegSegmentType.APP1, 0));
+    }
+
+    @Test
+    public void testReadsInBlocks() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        SequentialByteArrayReader reader = new SequentialByteArrayReader(bytes);
+        IoStats stats = new IoStats();
+        reader.setIoStats(stats);
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(reader, null);
+
+        // Segments spanning blocks are intact, and their offsets are those of their data
+        byte[] appd = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.appd");
+        assertArrayEquals(appd, segmentData.getSegment(JpegSegmentType.APPD));
+        assertEquals(indexOf(bytes, appd), segmentData.getSegmentOffset(JpegSegmentType.APPD, 0));
+
+        // Reading stops within a block of the SOS marker
+        int sosOffset = findSosOffset(bytes);
+        assertTrue(reader.getPosition() > sosOffset);
+        assertTrue(reader.getPosition() <= sosOffset + 2 + 512);
+        assertTrue(stats.getBytesRead() < bytes.length);
+    }
+
+    private static int findSosOffset(byte[] bytes)
+    {
+        int offset = 2;
+        while ((bytes[offset + 1] & 0xFF) != 0xDA)
+            offset += 2 + ((bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF));
+        return offset;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target)
+    {
+        outer:
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
     }
 
     @Test
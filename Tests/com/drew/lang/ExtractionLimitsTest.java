@@ -0,0 +1,258 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.tiff.TiffReader;
+import com.drew.metadata.Directory;
+import com.drew.metadata.ErrorDirectory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifTiffHandler;
+import com.drew.tools.FileUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ExtractionLimitsTest
+{
+    @Test
+    public void testBytesReadLimit() throws Exception
+    {
+        ExtractionBudget previous = ExtractionBudget.begin(new ExtractionBudget(ExtractionLimits.UNLIMITED.withMaxBytesRead(6)));
+        StreamReader reader;
+        try {
+            reader = new StreamReader(new ByteArrayInputStream(new byte[16]));
+        } finally {
+            ExtractionBudget.end(previous);
+        }
+
+        reader.getInt32();
+        reader.getInt16();
+
+        try {
+            reader.getByte();
+            fail("Expecting exception");
+        } catch (ExtractionLimitException ignored) {
+        }
+    }
+
+    @Test
+    public void testAllocationCheckedBeforeAllocating() throws Exception
+    {
+        ExtractionBudget previous = ExtractionBudget.begin(new ExtractionBudget(ExtractionLimits.UNLIMITED.withMaxAllocation(1024)));
+        StreamReader reader;
+        try {
+            reader = new StreamReader(new ByteArrayInputStream(new byte[16]));
+        } finally {
+            ExtractionBudget.end(previous);
+        }
+
+        try {
+            // Would fail with OutOfMemoryError were the buffer allocated first
+            reader.getBytes(Integer.MAX_VALUE);
+            fail("Expecting exception");
+        } catch (ExtractionLimitException ignored) {
+        }
+    }
+
+    @Test
+    public void testReadersOutsideScopeAreUnlimited() throws Exception
+    {
+        assertNull(ExtractionBudget.current());
+        StreamReader reader = new StreamReader(new ByteArrayInputStream(new byte[16]));
+        reader.getBytes(16);
+    }
+
+    @Test
+    public void testDirectoryLimitReturnsPartialMetadata() throws Exception
+    {
+        Metadata metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"), ExtractionLimits.UNLIMITED.withMaxDirectories(1));
+
+        assertNotNull(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
+        assertTrue(hasError(metadata, "directories exceeded"));
+    }
+
+    @Test
+    public void testNestingLimitReturnsPartialMetadata() throws Exception
+    {
+        Metadata metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"), ExtractionLimits.UNLIMITED.withMaxNesting(1));
+
+        assertNotNull(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
+        assertTrue(hasError(metadata, "nested directories exceeded"));
+    }
+
+    @Test
+    public void testBytesReadLimitReportsError() throws Exception
+    {
+        Metadata metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"), ExtractionLimits.UNLIMITED.withMaxBytesRead(100));
+
+        Directory error = metadata.getFirstDirectoryOfType(ErrorDirectory.class);
+        assertNotNull(error);
+        assertTrue(error.getErrors().iterator().next().contains("bytes read"));
+    }
+
+    @Test
+    public void testLimitsOnlyDirectories() throws Exception
+    {
+        assertTrue(ExtractionLimits.getDefault().limitsOnlyDirectories());
+        assertTrue(ExtractionLimits.UNLIMITED.withMaxDirectories(1).withMaxNesting(1).limitsOnlyDirectories());
+        assertFalse(ExtractionLimits.UNLIMITED.withMaxBytesRead(100).limitsOnlyDirectories());
+        assertFalse(ExtractionLimits.UNLIMITED.withMaxAllocation(100).limitsOnlyDirectories());
+        assertFalse(ExtractionLimits.UNLIMITED.withTimeoutMillis(100).limitsOnlyDirectories());
+    }
+
+    @Test
+    public void testDefaultLimitsApplyWithoutCallersBudget() throws Exception
+    {
+        ExtractionLimits original = ExtractionLimits.getDefault();
+        try {
+            // Applied by the TIFF walker, as no budget is made current for the extraction as a whole
+            ExtractionLimits.setDefault(original.withMaxDirectories(1));
+            Metadata metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"));
+            assertNotNull(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
+            assertTrue(hasError(metadata, "directories exceeded"));
+
+            // Applied via a budget made current for the extraction as a whole
+            ExtractionLimits.setDefault(original.withMaxBytesRead(100));
+            metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"));
+            assertTrue(hasError(metadata, "bytes read"));
+        } finally {
+            ExtractionLimits.setDefault(original);
+        }
+        assertNull(ExtractionBudget.current());
+    }
+
+    @Test
+    public void testWalkerDoesNotMakeDefaultBudgetCurrent() throws Exception
+    {
+        byte[] exif = FileUtil.readBytes("Tests/Data/withExif.jpg.app1");
+        final boolean[] sawCurrentBudget = new boolean[1];
+
+        ExifTiffHandler handler = new ExifTiffHandler(new Metadata(), null)
+        {
+            @Override
+            public void endingIFD()
+            {
+                sawCurrentBudget[0] |= ExtractionBudget.current() != null;
+                super.endingIFD();
+            }
+        };
+        new TiffReader().processTiff(new ByteArrayReader(exif), handler, ExifReader.JPEG_SEGMENT_PREAMBLE.length());
+
+        // The default limits are applied by the walk itself
+        assertFalse(sawCurrentBudget[0]);
+    }
+
+    @Test
+    public void testTimeoutReturnsPartialMetadata() throws Exception
+    {
+        Metadata metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"), ExtractionLimits.UNLIMITED.withTimeoutMillis(0));
+
+        assertTrue(hasError(metadata, "timed out after 0 ms"));
+    }
+
+    @Test
+    public void testCancelledBudget() throws Exception
+    {
+        ExtractionBudget budget = new ExtractionBudget(ExtractionLimits.getDefault());
+        budget.cancel();
+        assertTrue(budget.isCancelled());
+
+        File file = new File("Tests/Data/withExif.jpg");
+        FileInputStream stream = new FileInputStream(file);
+        Metadata metadata;
+        try {
+            metadata = ImageMetadataReader.readMetadata(stream, file.length(), budget);
+        } finally {
+            stream.close();
+        }
+
+        assertTrue(hasError(metadata, "Extraction cancelled"));
+    }
+
+    @Test
+    public void testCallersBudgetIsUsed() throws Exception
+    {
+        ExtractionBudget budget = new ExtractionBudget(ExtractionLimits.getDefault());
+        budget.cancel();
+
+        Metadata metadata;
+        ExtractionBudget previous = ExtractionBudget.begin(budget);
+        try {
+            metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"));
+        } finally {
+            ExtractionBudget.end(previous);
+        }
+
+        assertTrue(hasError(metadata, "Extraction cancelled"));
+    }
+
+    @Test
+    public void testInterruptStopsExtraction() throws Exception
+    {
+        Metadata metadata;
+        Thread.currentThread().interrupt();
+        try {
+            metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"));
+        } finally {
+            // The interrupted status is left for the caller
+            assertTrue(Thread.interrupted());
+        }
+
+        assertTrue(hasError(metadata, "Extraction interrupted"));
+    }
+
+    @Test
+    public void testCheckpointWithoutBudgetHonoursInterrupt() throws Exception
+    {
+        assertNull(ExtractionBudget.current());
+        ExtractionBudget.checkpoint();
+
+        Thread.currentThread().interrupt();
+        try {
+            ExtractionBudget.checkpoint();
+            fail("Expecting exception");
+        } catch (ExtractionLimitException ignored) {
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    private static boolean hasError(Metadata metadata, String text)
+    {
+        for (Directory directory : metadata.getDirectories()) {
+            for (String error : directory.getErrors()) {
+                if (error.contains(text))
+                    return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.imaging.ImageMetadataReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class IoStatsTest
+{
+    @Test
+    public void testReadersConstructedWithinScopeRecord() throws Exception
+    {
+        IoStats stats = new IoStats();
+        StreamReader inside;
+
+        IoStats previous = IoStats.begin(stats);
+        try {
+            inside = new StreamReader(new ByteArrayInputStream(new byte[8]));
+        } finally {
+            IoStats.end(previous);
+        }
+        StreamReader outside = new StreamReader(new ByteArrayInputStream(new byte[8]));
+
+        assertSame(stats, inside.getIoStats());
+        assertNull(outside.getIoStats());
+        assertNull(IoStats.current());
+
+        inside.getInt32();
+        outside.getInt32();
+
+        // Each byte of the value is read from the stream individually
+        assertEquals(4, stats.getBytesRead());
+        assertEquals(4, stats.getReadCallCount());
+    }
+
+    @Test
+    public void testScopesNest() throws Exception
+    {
+        IoStats outer = new IoStats();
+        IoStats inner = new IoStats();
+
+        IoStats previousOuter = IoStats.begin(outer);
+        try {
+            IoStats previousInner = IoStats.begin(inner);
+            try {
+                assertSame(inner, new ByteArrayReader(new byte[4]).getIoStats());
+            } finally {
+                IoStats.end(previousInner);
+            }
+            assertSame(outer, new ByteArrayReader(new byte[4]).getIoStats());
+        } finally {
+            IoStats.end(previousOuter);
+        }
+
+        assertEquals(4, outer.getPeakBufferedBytes());
+        assertEquals(4, inner.getPeakBufferedBytes());
+    }
+
+    @Test
+    public void testStreamLengthQueryBuffersWholeStream() throws Exception
+    {
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(new ByteArrayInputStream(new byte[10000]), 1024);
+        IoStats stats = new IoStats();
+        reader.setIoStats(stats);
+
+        reader.getInt32(0);
+        assertEquals(1024, stats.getPeakBufferedBytes());
+
+        assertEquals(10000, reader.getLength());
+        assertTrue(stats.getPeakBufferedBytes() >= 10000);
+        assertEquals(4, stats.getBytesRead());
+    }
+
+    @Test
+    public void testImageMetadataReader() throws Exception
+    {
+        File file = new File("Tests/Data/withIptcExifGps.jpg");
+        IoStats stats = new IoStats();
+
+        ImageMetadataReader.readMetadata(file, stats);
+
+        assertTrue(stats.getBytesRead() > 0);
+        assertTrue(stats.getBytesRead() < file.length());
+        assertTrue(stats.getReadCallCount() > 0);
+        assertTrue(stats.getBackwardSeekCount() > 0);
+        assertTrue(stats.getPeakBufferedBytes() > 0);
+        assertNull(IoStats.current());
+    }
+}
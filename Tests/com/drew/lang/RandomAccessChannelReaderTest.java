@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import com.drew.tools.FileUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class RandomAccessChannelReaderTest extends RandomAccessTestBase
+{
+    // Bytes preceding the window, which the reader must not expose
+    private static final int WINDOW_OFFSET = 5;
+
+    private File _tempFile;
+    private FileInputStream _stream;
+
+    @Override
+    protected RandomAccessReader createReader(byte[] bytes)
+    {
+        try {
+            // Unit tests can create multiple readers in the same test, as long as they're used one after the other
+            deleteTempFile();
+
+            byte[] fileBytes = new byte[WINDOW_OFFSET + bytes.length + 3];
+            System.arraycopy(bytes, 0, fileBytes, WINDOW_OFFSET, bytes.length);
+            _tempFile = File.createTempFile("metadata-extractor-test-", ".tmp");
+            FileUtil.saveBytes(_tempFile, fileBytes);
+            _stream = new FileInputStream(_tempFile);
+
+            // A small chunk length, so that values span chunks
+            return new RandomAccessChannelReader(_stream.getChannel(), WINDOW_OFFSET, bytes.length, 3);
+        } catch (IOException e) {
+            fail("Unable to create temp file");
+            return null;
+        }
+    }
+
+    @After
+    public void deleteTempFile() throws IOException
+    {
+        if (_stream == null)
+            return;
+
+        _stream.close();
+
+        assertTrue(
+                "Unable to delete temp file used during unit test: " + _tempFile.getAbsolutePath(),
+                _tempFile.delete());
+
+        _tempFile = null;
+        _stream = null;
+    }
+
+    @SuppressWarnings({ "ConstantConditions" })
+    @Test(expected = NullPointerException.class)
+    public void testConstructWithNullChannelThrows() throws IOException
+    {
+        new RandomAccessChannelReader(null, 0, 0);
+    }
+
+    @Test
+    public void testDoesNotChangeChannelPosition() throws IOException
+    {
+        RandomAccessReader reader = createReader(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        _stream.getChannel().position(WINDOW_OFFSET + 2);
+
+        assertArrayEquals(new byte[]{3, 4, 5, 6}, reader.getBytes(2, 4));
+        assertEquals(WINDOW_OFFSET + 2, _stream.getChannel().position());
+        assertEquals(3, _stream.read());
+    }
+
+    @Test
+    public void testOnlyReadsAccessedChunks() throws IOException
+    {
+        createReader(new byte[]{1, 2, 3, 4});
+
+        // The window extends beyond the end of the file, which is only an error once that part is accessed
+        RandomAccessReader reader = new RandomAccessChannelReader(_stream.getChannel(), WINDOW_OFFSET, 100, 4);
+
+        assertEquals(4, reader.getInt8(3));
+        assertEquals(100, reader.getLength());
+
+        try {
+            reader.getInt8(50);
+            fail("Exception expected");
+        } catch (BufferBoundsException ignored) {
+        }
+    }
+}
@@ -336,4 +336,25 @@ public abstract class RandomAccessTestBase
             fail("Expecting exception");
         } catch (IOException ignored) {}
     }
+
+    @Test
+    public void testIoStats() throws Exception
+    {
+        RandomAccessReader reader = createReader(new byte[16]);
+        IoStats stats = new IoStats();
+        reader.setIoStats(stats);
+
+        reader.getInt32(0);
+        reader.getBytes(8, 4);
+        reader.getUInt16(2);
+
+        assertEquals(10, stats.getBytesRead());
+        assertEquals(4, stats.getBytesSkipped());
+        assertEquals(1, stats.getBackwardSeekCount());
+
+        reader.setIoStats(null);
+        reader.getInt32(0);
+
+        assertEquals(10, stats.getBytesRead());
+    }
 }
@@ -266,6 +266,25 @@ public abstract class SequentialAccessTestBase
         }
     }
 
+    @Test
+    public void testTryGetBytes() throws IOException
+    {
+        byte[] bytes = {0, 1, 2, 3, 4, 5};
+        SequentialReader reader = createReader(bytes);
+        byte[] buffer = new byte[8];
+
+        assertEquals(4, reader.tryGetBytes(buffer, 1, 4));
+        assertArrayEquals(new byte[]{0, 0, 1, 2, 3, 0, 0, 0}, buffer);
+        assertEquals(4, reader.getPosition());
+
+        // Fewer bytes are returned at the end of the sequence
+        assertEquals(2, reader.tryGetBytes(buffer, 0, 8));
+        assertEquals(4, buffer[0]);
+        assertEquals(5, buffer[1]);
+        assertEquals(0, reader.tryGetBytes(buffer, 0, 8));
+        assertEquals(6, reader.getPosition());
+    }
+
     @Test
     public void testOverflowBoundsCalculation()
     {
@@ -337,4 +356,26 @@ public abstract class SequentialAccessTestBase
         assertTrue(reader.trySkip(1));
         assertFalse(reader.trySkip(1));
     }
+
+    @Test
+    public void testIoStats() throws Exception
+    {
+        SequentialReader reader = createReader(new byte[16]);
+        IoStats stats = new IoStats();
+        reader.setIoStats(stats);
+
+        reader.getInt32();
+        reader.skip(4);
+        reader.getBytes(2);
+        assertTrue(reader.trySkip(2));
+
+        assertEquals(6, stats.getBytesRead());
+        assertEquals(6, stats.getBytesSkipped());
+        assertEquals(0, stats.getBackwardSeekCount());
+
+        reader.setIoStats(null);
+        reader.getInt32();
+
+        assertEquals(6, stats.getBytesRead());
+    }
 }
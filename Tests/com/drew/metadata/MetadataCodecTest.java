@@ -0,0 +1,286 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.lang.KeyValuePair;
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.xmp.XmpDirectory;
+import com.drew.metadata.xmp.XmpReader;
+import com.drew.tools.FileUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataCodecTest
+{
+    @Test
+    public void testRoundTripsSampleFiles() throws Exception
+    {
+        File[] files = new File("Tests/Data").listFiles();
+        assertNotNull(files);
+        Arrays.sort(files);
+
+        int roundTripped = 0;
+        for (File file : files) {
+            if (!file.isFile() || file.getName().contains(".jpg.app") || file.getName().endsWith(".txt"))
+                continue;
+
+            Metadata original;
+            try {
+                original = ImageMetadataReader.readMetadata(file);
+            } catch (Exception ignored) {
+                continue;
+            }
+
+            assertEquivalent(file.getName(), original, roundTrip(original));
+            roundTripped++;
+        }
+
+        assertTrue(roundTripped > 20);
+    }
+
+    @Test
+    public void testRoundTripsValueTypes() throws Exception
+    {
+        MockDirectory parent = new MockDirectory();
+        MockDirectory directory = new MockDirectory();
+        directory.setParent(parent);
+
+        directory.setInt(1, -5);
+        directory.setLong(2, Long.MIN_VALUE);
+        directory.setFloat(3, 1.5f);
+        directory.setDouble(4, -2.25);
+        directory.setBoolean(5, true);
+        directory.setString(6, "text é");
+        directory.setStringValue(7, new StringValue(new byte[]{ 'a', 'b' }, Charset.forName("UTF-8")));
+        directory.setStringValue(8, new StringValue(new byte[]{ 'c' }, null));
+        directory.setRational(9, new Rational(-1, 3));
+        directory.setDate(10, new java.util.Date(1234567890123L));
+        directory.setByteArray(11, new byte[]{ 0, -1, 127 });
+        directory.setObjectArray(12, new short[]{ -1, 255 });
+        directory.setIntArray(13, new int[]{ Integer.MIN_VALUE, 0, Integer.MAX_VALUE });
+        directory.setObjectArray(14, new long[]{ 4294967295L });
+        directory.setFloatArray(15, new float[]{ Float.NaN, 0.5f });
+        directory.setDoubleArray(16, new double[]{ Double.MAX_VALUE });
+        directory.setRationalArray(17, new Rational[]{ new Rational(1, 2), new Rational(3, 4) });
+        directory.setStringArray(18, new String[]{ "x", "y", "x" });
+        directory.setStringValueArray(19, new StringValue[]{ new StringValue(new byte[]{ 'z' }, null) });
+        directory.setObject(20, (short)-7);
+        directory.setObject(21, Thread.State.BLOCKED);
+        List<KeyValuePair> pairs = new ArrayList<KeyValuePair>();
+        pairs.add(new KeyValuePair("key", new StringValue(new byte[]{ 'v' }, null)));
+        directory.setObject(22, pairs);
+        directory.setObject(0xFFFFFFFF, 1);
+        directory.addError("an error");
+
+        Metadata metadata = new Metadata();
+        metadata.addDirectory(parent);
+        metadata.addDirectory(directory);
+
+        Metadata decoded = roundTrip(metadata);
+        assertEquivalent("mock", metadata, decoded);
+
+        Iterator<Directory> directories = decoded.getDirectories().iterator();
+        Directory decodedParent = directories.next();
+        Directory decodedDirectory = directories.next();
+        assertSame(decodedParent, decodedDirectory.getParent());
+        assertEquals(Thread.State.BLOCKED, decodedDirectory.getObject(21));
+        assertEquals("key", ((KeyValuePair)((List<?>)decodedDirectory.getObject(22)).get(0)).getKey());
+    }
+
+    @Test
+    public void testRecordsAreSelfDelimiting() throws Exception
+    {
+        Metadata first = ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"));
+        Metadata second = ImageMetadataReader.readMetadata(new File("Tests/Data/mspaint-10x10.gif"));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        MetadataCodec.write(first, stream);
+        MetadataCodec.write(second, stream);
+        stream.write(42);
+
+        ByteArrayInputStream input = new ByteArrayInputStream(stream.toByteArray());
+        assertEquivalent("first", first, MetadataCodec.read(input));
+        assertEquivalent("second", second, MetadataCodec.read(input));
+        assertEquals(42, input.read());
+    }
+
+    @Test
+    public void testRejectsInvalidInput() throws Exception
+    {
+        byte[] encoded = encode(ImageMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg")));
+
+        byte[] wrongVersion = encoded.clone();
+        wrongVersion[4] = 99;
+        assertReadFails(wrongVersion);
+
+        assertReadFails(Arrays.copyOf(encoded, encoded.length - 1));
+        assertReadFails(new byte[]{ 'N', 'O', 'P', 'E', 1, 0 });
+
+        byte[] corrupt = encoded.clone();
+        for (int i = 6; i < corrupt.length; i += 7)
+            corrupt[i] = (byte)0xFF;
+        assertReadFails(corrupt);
+
+        // Lengths that are negative, or far longer than the data present, fail without being allocated up front
+        assertReadFails(new byte[]{ 'M', 'D', 'X', 'C', 1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F });
+        assertReadFails(new byte[]{ 'M', 'D', 'X', 'C', 1, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07, 0 });
+        assertReadFails(new byte[]{ 'M', 'D', 'X', 'C', 1, 6, (byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x07, 0 });
+    }
+
+    @Test
+    public void testDecodedXmpIsParsedOnceAcrossThreads() throws Exception
+    {
+        Metadata original = new Metadata();
+        byte[] segment = FileUtil.readBytes("Tests/Data/withXmpAndIptc.jpg.app1.1");
+        new XmpReader().readJpegSegments(Collections.singletonList(segment), original, JpegSegmentType.APP1);
+        final XmpDirectory directory = roundTrip(original).getFirstDirectoryOfType(XmpDirectory.class);
+        assertNotNull(directory);
+
+        final Map<?, ?>[] properties = new Map<?, ?>[8];
+        Thread[] threads = new Thread[properties.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    properties[index] = directory.getXmpProperties();
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertFalse(directory.hasErrors());
+        for (Map<?, ?> map : properties) {
+            assertNotNull(map);
+            assertFalse(map.isEmpty());
+            assertEquals(properties[0], map);
+        }
+    }
+
+    private static void assertReadFails(@NotNull byte[] bytes)
+    {
+        try {
+            MetadataCodec.read(new ByteArrayInputStream(bytes));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @NotNull
+    private static byte[] encode(@NotNull Metadata metadata) throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        MetadataCodec.write(metadata, stream);
+        return stream.toByteArray();
+    }
+
+    @NotNull
+    private static Metadata roundTrip(@NotNull Metadata metadata) throws IOException
+    {
+        return MetadataCodec.read(new ByteArrayInputStream(encode(metadata)));
+    }
+
+    private static void assertEquivalent(@NotNull String name, @NotNull Metadata expected, @NotNull Metadata actual)
+    {
+        assertEquals(name, expected.getDirectoryCount(), actual.getDirectoryCount());
+
+        List<Directory> expectedDirectories = new ArrayList<Directory>();
+        for (Directory directory : expected.getDirectories())
+            expectedDirectories.add(directory);
+        List<Directory> actualDirectories = new ArrayList<Directory>();
+        for (Directory directory : actual.getDirectories())
+            actualDirectories.add(directory);
+
+        for (int i = 0; i < expectedDirectories.size(); i++) {
+            Directory e = expectedDirectories.get(i);
+            Directory a = actualDirectories.get(i);
+            String context = name + " " + e.getName();
+
+            assertSame(context, e.getClass(), a.getClass());
+            assertEquals(context, e.getName(), a.getName());
+            assertEquals(context, expectedDirectories.indexOf(e.getParent()), actualDirectories.indexOf(a.getParent()));
+            assertEquals(context, e.getTagCount(), a.getTagCount());
+
+            // Descriptors are created by directory constructors, so this confirms the right type was recreated
+            boolean hasDescriptor = !(a instanceof MockDirectory);
+
+            Iterator<Tag> actualTags = a.getTags().iterator();
+            for (Tag tag : e.getTags()) {
+                Tag actualTag = actualTags.next();
+                assertEquals(context, tag.getTagType(), actualTag.getTagType());
+                assertValueEquals(context + " " + tag.getTagName(), e.getObject(tag.getTagType()), a.getObject(tag.getTagType()));
+                if (hasDescriptor)
+                    assertEquals(context + " " + tag.getTagName(), tag.getDescription(), actualTag.getDescription());
+            }
+
+            assertEquals(context, new ArrayList<String>((java.util.Collection<String>)e.getErrors()), new ArrayList<String>((java.util.Collection<String>)a.getErrors()));
+
+            if (e instanceof XmpDirectory)
+                assertEquals(context, ((XmpDirectory)e).getXmpProperties(), ((XmpDirectory)a).getXmpProperties());
+        }
+    }
+
+    private static void assertValueEquals(@NotNull String context, Object expected, Object actual)
+    {
+        assertNotNull(context, actual);
+        assertSame(context, expected.getClass(), actual.getClass());
+
+        if (expected.getClass().isArray()) {
+            assertEquals(context, Array.getLength(expected), Array.getLength(actual));
+            for (int i = 0; i < Array.getLength(expected); i++)
+                assertValueEquals(context, Array.get(expected, i), Array.get(actual, i));
+        } else if (expected instanceof StringValue) {
+            assertArrayEquals(context, ((StringValue)expected).getBytes(), ((StringValue)actual).getBytes());
+            assertEquals(context, ((StringValue)expected).getCharset(), ((StringValue)actual).getCharset());
+        } else if (expected instanceof Rational) {
+            assertEquals(context, ((Rational)expected).getNumerator(), ((Rational)actual).getNumerator());
+            assertEquals(context, ((Rational)expected).getDenominator(), ((Rational)actual).getDenominator());
+        } else if (expected instanceof List || expected instanceof com.drew.metadata.jpeg.JpegComponent) {
+            assertEquals(context, expected.toString(), actual.toString());
+        } else {
+            assertEquals(context, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifImageDirectory;
+import com.drew.metadata.exif.ExifInteropDirectory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.file.FileTypeDirectory;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Stack;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataEventEmitterTest
+{
+    private static final List<Class<? extends Directory>> EXIF_TYPES = new ArrayList<Class<? extends Directory>>();
+
+    static {
+        EXIF_TYPES.add(ExifIFD0Directory.class);
+        EXIF_TYPES.add(ExifSubIFDDirectory.class);
+        EXIF_TYPES.add(ExifInteropDirectory.class);
+        EXIF_TYPES.add(GpsDirectory.class);
+        EXIF_TYPES.add(ExifThumbnailDirectory.class);
+        EXIF_TYPES.add(ExifImageDirectory.class);
+    }
+
+    @Test
+    public void testReplayNumbersDirectoriesAndParents() throws Exception
+    {
+        Metadata metadata = new Metadata();
+        MockDirectory root = new MockDirectory();
+        root.setInt(1, 10);
+        MockDirectory child = new MockDirectory();
+        child.setParent(root);
+        child.setString(2, "two");
+        child.addError("an error");
+        MockDirectory orphan = new MockDirectory();
+        orphan.setParent(new MockDirectory());
+        metadata.addDirectory(root);
+        metadata.addDirectory(child);
+        metadata.addDirectory(orphan);
+
+        RecordingHandler handler = new RecordingHandler();
+        MetadataEventEmitter emitter = new MetadataEventEmitter(handler);
+        emitter.startDirectory(MockDirectory.class, -1);
+        emitter.endDirectory();
+        emitter.replay(metadata, 0);
+
+        assertEquals(Arrays.asList(
+            "start 0 MockDirectory -1", "end",
+            "start 1 MockDirectory -1", "tag 1 10", "end",
+            "start 2 MockDirectory 1", "tag 2 two", "error an error", "end",
+            "start 3 MockDirectory 0", "end"), handler.events);
+        assertEquals(4, emitter.getDirectoryCount());
+    }
+
+    @Test
+    public void testRejectsUnbalancedEvents() throws Exception
+    {
+        MetadataEventEmitter emitter = new MetadataEventEmitter(new RecordingHandler());
+
+        try {
+            emitter.tag(1, 1);
+            fail("Expected an exception");
+        } catch (IllegalStateException ignored) {
+        }
+
+        try {
+            emitter.endDirectory();
+            fail("Expected an exception");
+        } catch (IllegalStateException ignored) {
+        }
+
+        try {
+            emitter.startDirectory(MockDirectory.class, 0);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testExifEventsMatchDirectories() throws Exception
+    {
+        int compared = 0;
+        for (String name : Arrays.asList("withIptcExifGps.jpg", "withExif.jpg", "nikonMakernoteType2b.jpg",
+                                         "withUncompressedRGBThumbnail.jpg", "windowsXpFields.jpg", "simple.jpg")) {
+            File file = new File("Tests/Data/" + name);
+            Metadata expected = ImageMetadataReader.readMetadata(file);
+            Metadata actual = readEvents(file, new ArrayList<Class<? extends Directory>>());
+
+            assertEquals(name, 1, actual.getDirectoriesOfType(FileTypeDirectory.class).size());
+
+            for (Class<? extends Directory> type : EXIF_TYPES) {
+                List<? extends Directory> expectedDirectories = new ArrayList<Directory>(expected.getDirectoriesOfType(type));
+                List<? extends Directory> actualDirectories = new ArrayList<Directory>(actual.getDirectoriesOfType(type));
+                assertEquals(name + " " + type.getSimpleName(), expectedDirectories.size(), actualDirectories.size());
+
+                for (int i = 0; i < expectedDirectories.size(); i++) {
+                    Directory expectedDirectory = expectedDirectories.get(i);
+                    Directory actualDirectory = actualDirectories.get(i);
+                    assertParentTypesEqual(expectedDirectory, actualDirectory);
+
+                    // Tags decoded by custom processing, such as makernotes, are reported raw, so only check that
+                    // every tag from the directory model is reported with an equal value
+                    for (Tag tag : expectedDirectory.getTags()) {
+                        Object expectedValue = expectedDirectory.getObject(tag.getTagType());
+                        Object actualValue = actualDirectory.getObject(tag.getTagType());
+                        assertNotNull(name + " " + tag, actualValue);
+                        assertEquals(name + " " + tag, expectedValue.getClass(), actualValue.getClass());
+                        assertEquals(name + " " + tag, expectedDirectory.getDescription(tag.getTagType()), actualDirectory.getDescription(tag.getTagType()));
+                    }
+                    compared++;
+                }
+            }
+
+            // Non-Exif directories are replayed, so should be identical
+            assertEquals(name, countOthers(expected), countOthers(actual));
+        }
+
+        assertTrue(compared > 10);
+    }
+
+    @Test
+    public void testReplaysNonExifFormats() throws Exception
+    {
+        for (String name : Arrays.asList("photoshop-8x12-rgb24-all-metadata.png", "mspaint-10x10.gif", "24bpp-10x10.bmp")) {
+            File file = new File("Tests/Data/" + name);
+            Metadata expected = ImageMetadataReader.readMetadata(file);
+            List<Class<? extends Directory>> actualTypes = new ArrayList<Class<? extends Directory>>();
+            Metadata actual = readEvents(file, actualTypes);
+
+            // The File System directory is only added when reading from a File
+            assertEquals(name, expected.getDirectoryCount() - 1, actual.getDirectoryCount());
+            Iterator<Directory> actualDirectories = actual.getDirectories().iterator();
+            Iterator<Class<? extends Directory>> actualTypeIterator = actualTypes.iterator();
+            for (Directory expectedDirectory : expected.getDirectories()) {
+                if (expectedDirectory.getName().equals("File"))
+                    continue;
+                assertEquals(expectedDirectory.getClass(), actualTypeIterator.next());
+                assertEquals(expectedDirectory.getTagCount(), actualDirectories.next().getTagCount());
+            }
+        }
+    }
+
+    private static void assertParentTypesEqual(@NotNull Directory expected, @NotNull Directory actual)
+    {
+        Directory expectedParent = expected.getParent();
+        Directory actualParent = actual.getParent();
+        if (expectedParent == null)
+            assertNull(actualParent);
+        else
+            assertEquals(expectedParent.getClass(), actualParent == null ? null : actualParent.getClass());
+    }
+
+    /**
+     * Counts directories that are neither Exif directories nor derived from them, such as makernotes.
+     */
+    private static int countOthers(@NotNull Metadata metadata)
+    {
+        int count = 0;
+        for (Directory directory : metadata.getDirectories()) {
+            boolean isExif = false;
+            for (Directory d = directory; d != null && !isExif; d = d.getParent())
+                isExif = EXIF_TYPES.contains(d.getClass());
+            if (!isExif && !directory.getName().equals("File") && !directory.getClass().getName().contains("Makernote"))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads events for a file, building directories from them so they may be compared.
+     */
+    @NotNull
+    private static Metadata readEvents(@NotNull File file, @NotNull final List<Class<? extends Directory>> types) throws Exception
+    {
+        final Metadata metadata = new Metadata();
+        final List<Directory> directories = new ArrayList<Directory>();
+        final Stack<Directory> open = new Stack<Directory>();
+
+        InputStream stream = new FileInputStream(file);
+        try {
+            ImageMetadataReader.readMetadata(stream, file.length(), new MetadataEventHandler()
+            {
+                public void startDirectory(int index, @NotNull Class<? extends Directory> type, int parentIndex)
+                {
+                    assertEquals(directories.size(), index);
+                    Directory directory;
+                    if (type == FileTypeDirectory.class) {
+                        // Values are replaced by the tags that follow
+                        directory = new FileTypeDirectory(FileType.Unknown);
+                    } else {
+                        try {
+                            directory = type.newInstance();
+                        } catch (Exception e) {
+                            // Some directory types have no default constructor
+                            directory = new MockDirectory();
+                        }
+                    }
+                    types.add(type);
+                    if (parentIndex != -1)
+                        directory.setParent(directories.get(parentIndex));
+                    directories.add(directory);
+                    open.push(directory);
+                    metadata.addDirectory(directory);
+                }
+
+                public void tag(int tagType, @NotNull Object value)
+                {
+                    open.peek().setObject(tagType, value);
+                }
+
+                public void error(@NotNull String message)
+                {
+                    if (!open.empty())
+                        open.peek().addError(message);
+                }
+
+                public void endDirectory()
+                {
+                    open.pop();
+                }
+            });
+        } finally {
+            stream.close();
+        }
+
+        assertTrue(open.empty());
+        return metadata;
+    }
+
+    private static class RecordingHandler implements MetadataEventHandler
+    {
+        final List<String> events = new ArrayList<String>();
+
+        public void startDirectory(int index, @NotNull Class<? extends Directory> type, int parentIndex)
+        {
+            events.add("start " + index + " " + type.getSimpleName() + " " + parentIndex);
+        }
+
+        public void tag(int tagType, @NotNull Object value)
+        {
+            events.add("tag " + tagType + " " + value);
+        }
+
+        public void error(@NotNull String message)
+        {
+            events.add("error " + message);
+        }
+
+        public void endDirectory()
+        {
+            events.add("end");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.lang.KeyValuePair;
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MetadataJsonWriterTest
+{
+    @Test
+    public void testWritesTypedValues() throws Exception
+    {
+        MockDirectory directory = new MockDirectory();
+        directory.setInt(1, -5);
+        directory.setLong(2, Long.MIN_VALUE);
+        directory.setFloat(3, 0.1f);
+        directory.setDouble(4, 2.0);
+        directory.setBoolean(5, true);
+        directory.setRational(6, new Rational(-1, 3));
+        directory.setIntArray(7, new int[]{ 1, 2 });
+        directory.setFloatArray(8, new float[]{ Float.NaN, 0.5f });
+        directory.setRationalArray(9, new Rational[]{ new Rational(1, 2), new Rational(3, 4) });
+        directory.setStringArray(10, new String[]{ "x", "y" });
+        directory.setDate(11, new java.util.Date(1234567890123L));
+        directory.setObject(12, Thread.State.BLOCKED);
+        List<KeyValuePair> pairs = new ArrayList<KeyValuePair>();
+        pairs.add(new KeyValuePair("key", new StringValue(new byte[]{ 'v' }, null)));
+        directory.setObject(13, pairs);
+
+        String json = write(directory, false);
+
+        assertEquals("[{\"directories\":[{\"name\":\"\",\"parent\":null,\"tags\":[" +
+            "{\"id\":1,\"name\":\"Unknown tag (0x0001)\",\"value\":-5}," +
+            "{\"id\":2,\"name\":\"Unknown tag (0x0002)\",\"value\":-9223372036854775808}," +
+            "{\"id\":3,\"name\":\"Unknown tag (0x0003)\",\"value\":0.1}," +
+            "{\"id\":4,\"name\":\"Unknown tag (0x0004)\",\"value\":2}," +
+            "{\"id\":5,\"name\":\"Unknown tag (0x0005)\",\"value\":true}," +
+            "{\"id\":6,\"name\":\"Unknown tag (0x0006)\",\"value\":[-1,3]}," +
+            "{\"id\":7,\"name\":\"Unknown tag (0x0007)\",\"value\":[1,2]}," +
+            "{\"id\":8,\"name\":\"Unknown tag (0x0008)\",\"value\":[null,0.5]}," +
+            "{\"id\":9,\"name\":\"Unknown tag (0x0009)\",\"value\":[[1,2],[3,4]]}," +
+            "{\"id\":10,\"name\":\"Unknown tag (0x000a)\",\"value\":[\"x\",\"y\"]}," +
+            "{\"id\":11,\"name\":\"Unknown tag (0x000b)\",\"value\":\"2009-02-13T23:31:30.123Z\"}," +
+            "{\"id\":12,\"name\":\"Unknown tag (0x000c)\",\"value\":\"BLOCKED\"}," +
+            "{\"id\":13,\"name\":\"Unknown tag (0x000d)\",\"value\":[[\"key\",\"v\"]]}" +
+            "]}]}]", json);
+    }
+
+    @Test
+    public void testEscapesStrings() throws Exception
+    {
+        MockDirectory directory = new MockDirectory();
+        directory.setString(1, "a\"b\\c\nd\u0001e\u2028é");
+
+        String json = write(directory, false);
+
+        assertTrue(json, json.contains("\"value\":\"a\\\"b\\\\c\\nd\\u0001e\\u2028é\""));
+    }
+
+    @Test
+    public void testByteArrayModes() throws Exception
+    {
+        MockDirectory directory = new MockDirectory();
+        directory.setByteArray(1, new byte[]{ 'M', 'a' });
+        directory.setByteArray(2, new byte[]{ 'M', 'a', 'n' });
+        directory.setByteArray(3, new byte[]{ 0, -1, 127, 1 });
+
+        String json = write(directory, false);
+        assertTrue(json, json.contains("\"value\":\"TWE=\""));
+        assertTrue(json, json.contains("\"value\":\"TWFu\""));
+        assertTrue(json, json.contains("\"value\":\"AP9/AQ==\""));
+
+        StringWriter stringWriter = new StringWriter();
+        MetadataJsonWriter writer = new MetadataJsonWriter(stringWriter);
+        writer.setByteArrayMode(MetadataJsonWriter.ByteArrayMode.SKIP);
+        writer.write(toMetadata(directory));
+        writer.close();
+
+        assertFalse(stringWriter.toString().contains("\"value\""));
+        assertTrue(stringWriter.toString().contains("\"id\":3"));
+    }
+
+    @Test
+    public void testWritesParentIndexAndErrors() throws Exception
+    {
+        MockDirectory parent = new MockDirectory();
+        MockDirectory child = new MockDirectory();
+        child.setParent(parent);
+        child.addError("an error");
+
+        Metadata metadata = new Metadata();
+        metadata.addDirectory(parent);
+        metadata.addDirectory(child);
+
+        StringWriter stringWriter = new StringWriter();
+        MetadataJsonWriter writer = new MetadataJsonWriter(stringWriter);
+        writer.write(metadata, "file.jpg");
+        writer.close();
+
+        assertEquals("[{\"source\":\"file.jpg\",\"directories\":[" +
+            "{\"name\":\"\",\"parent\":null,\"tags\":[]}," +
+            "{\"name\":\"\",\"parent\":0,\"tags\":[],\"errors\":[\"an error\"]}" +
+            "]}]", stringWriter.toString());
+    }
+
+    @Test
+    public void testArrayAndJsonLinesModes() throws Exception
+    {
+        Metadata metadata = new Metadata();
+
+        StringWriter stringWriter = new StringWriter();
+        MetadataJsonWriter writer = new MetadataJsonWriter(stringWriter);
+        writer.close();
+        assertEquals("[]", stringWriter.toString());
+
+        stringWriter = new StringWriter();
+        writer = new MetadataJsonWriter(stringWriter);
+        writer.write(metadata);
+        writer.write(metadata);
+        writer.close();
+        assertEquals("[{\"directories\":[]},{\"directories\":[]}]", stringWriter.toString());
+
+        stringWriter = new StringWriter();
+        writer = new MetadataJsonWriter(stringWriter);
+        writer.setJsonLines(true);
+        writer.write(metadata);
+        writer.write(metadata);
+        writer.close();
+        assertEquals("{\"directories\":[]}\n{\"directories\":[]}\n", stringWriter.toString());
+
+        try {
+            writer.setJsonLines(false);
+            fail("Expected an exception");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testWritesErrorRecords() throws Exception
+    {
+        StringWriter stringWriter = new StringWriter();
+        MetadataJsonWriter writer = new MetadataJsonWriter(stringWriter);
+        writer.writeError("missing.jpg", "File not found: \"missing.jpg\"");
+        writer.write(new Metadata(), "empty.jpg");
+        writer.close();
+
+        assertEquals("[{\"source\":\"missing.jpg\",\"error\":\"File not found: \\\"missing.jpg\\\"\"},{\"source\":\"empty.jpg\",\"directories\":[]}]", stringWriter.toString());
+    }
+
+    @Test
+    public void testWritesSampleFileWithDescriptions() throws Exception
+    {
+        Metadata metadata = ImageMetadataReader.readMetadata(new File("Tests/Data/withIptcExifGps.jpg"));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        MetadataJsonWriter writer = new MetadataJsonWriter(stream);
+        writer.setJsonLines(true);
+        writer.setIncludeDescriptions(true);
+        writer.write(metadata, "withIptcExifGps.jpg");
+        writer.finish();
+
+        String json = stream.toString("UTF-8");
+        assertTrue(json.endsWith("}\n"));
+        assertEquals(1, json.split("\n").length);
+        assertTrue(json, json.contains("{\"id\":271,\"name\":\"Make\",\"value\":\"FUJIFILM\",\"description\":\"FUJIFILM\"}"));
+        assertTrue(json, json.contains("{\"name\":\"Exif IFD0\",\"parent\":null,"));
+        assertTrue(json, json.contains("{\"name\":\"GPS\",\"parent\":2,"));
+    }
+
+    @NotNull
+    private static String write(@NotNull Directory directory, boolean jsonLines) throws Exception
+    {
+        StringWriter stringWriter = new StringWriter();
+        MetadataJsonWriter writer = new MetadataJsonWriter(stringWriter);
+        writer.setJsonLines(jsonLines);
+        writer.write(toMetadata(directory));
+        writer.close();
+        return stringWriter.toString();
+    }
+
+    @NotNull
+    private static Metadata toMetadata(@NotNull Directory directory)
+    {
+        Metadata metadata = new Metadata();
+        metadata.addDirectory(directory);
+        return metadata;
+    }
+}
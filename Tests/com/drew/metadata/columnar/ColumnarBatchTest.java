@@ -0,0 +1,205 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.columnar;
+
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ColumnarBatchTest
+{
+    private static final List<Column> COLUMNS = Arrays.asList(
+        new Column("make", ExifIFD0Directory.class, ExifIFD0Directory.TAG_MAKE, ColumnType.STRING),
+        new Column("iso", ExifSubIFDDirectory.class, ExifSubIFDDirectory.TAG_ISO_EQUIVALENT, ColumnType.INT),
+        new Column("fnumber", ExifSubIFDDirectory.class, ExifSubIFDDirectory.TAG_FNUMBER, ColumnType.DOUBLE),
+        new Column("exposure", ExifSubIFDDirectory.class, ExifSubIFDDirectory.TAG_EXPOSURE_TIME, ColumnType.LONG),
+        new Column("fnumberText", ExifSubIFDDirectory.class, ExifSubIFDDirectory.TAG_FNUMBER, ColumnType.DESCRIPTION)
+    );
+
+    @Test
+    public void testAppendsRowsToRowGroups() throws Exception
+    {
+        RecordingSink sink = new RecordingSink();
+        ColumnarBatch batch = new ColumnarBatch(COLUMNS, sink, 2);
+
+        batch.append(createMetadata("Canon", 100, new Rational(28, 10)));
+        batch.append(createMetadata("Canon", null, null));
+        assertEquals(1, sink.rowGroups.size());
+
+        batch.append(new Metadata());
+        batch.close();
+
+        assertEquals(3, batch.getRowCount());
+        assertEquals(3, sink.rows.size());
+        assertEquals(Arrays.<Object>asList("Canon", 100, 2.8, 1L, "f/2.8"), sink.rows.get(0));
+        assertEquals(Arrays.<Object>asList("Canon", null, null, 1L, null), sink.rows.get(1));
+        assertEquals(Arrays.<Object>asList(null, null, null, null, null), sink.rows.get(2));
+        assertEquals(Arrays.asList(2, 1), sink.rowGroups);
+        assertEquals(Arrays.asList("Canon"), sink.dictionaries.get(0));
+        assertTrue(sink.closed);
+    }
+
+    @Test
+    public void testUsesFirstDirectoryOfType() throws Exception
+    {
+        Metadata metadata = createMetadata("First", 100, null);
+        ExifIFD0Directory second = new ExifIFD0Directory();
+        second.setString(ExifIFD0Directory.TAG_MAKE, "Second");
+        metadata.addDirectory(second);
+
+        RecordingSink sink = new RecordingSink();
+        ColumnarBatch batch = new ColumnarBatch(COLUMNS, sink);
+        batch.append(metadata);
+        batch.close();
+
+        assertEquals("First", sink.rows.get(0).get(0));
+    }
+
+    @Test
+    public void testWritesCsv() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        ColumnarBatch batch = new ColumnarBatch(COLUMNS, new CsvRowGroupSink(writer, COLUMNS));
+        batch.append(createMetadata("Canon, Inc. \"EOS\"", 100, new Rational(28, 10)));
+        batch.append(new Metadata());
+        batch.close();
+
+        assertEquals("make,iso,fnumber,exposure,fnumberText\n" +
+            "\"Canon, Inc. \"\"EOS\"\"\",100,2.8,1,f/2.8\n" +
+            ",,,,\n", writer.toString());
+    }
+
+    @Test
+    public void testWritesCsvHeaderWhenEmpty() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        new ColumnarBatch(COLUMNS, new CsvRowGroupSink(writer, COLUMNS)).close();
+
+        assertEquals("make,iso,fnumber,exposure,fnumberText\n", writer.toString());
+    }
+
+    @Test
+    public void testColumnarFileRoundTrip() throws Exception
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ColumnarBatch batch = new ColumnarBatch(COLUMNS, new ColumnarFileSink(stream, COLUMNS), 64);
+        for (int i = 0; i < 100; i++)
+            batch.append(i % 3 == 0 ? new Metadata() : createMetadata(i % 2 == 0 ? "Canon" : "Nikon", i, new Rational(i, 10)));
+        batch.close();
+
+        RecordingSink sink = new RecordingSink();
+        ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(stream.toByteArray()));
+        assertEquals(COLUMNS, reader.getColumns());
+        RowGroup rowGroup;
+        while ((rowGroup = reader.read()) != null)
+            sink.write(rowGroup);
+        assertNull(reader.read());
+        reader.close();
+
+        assertEquals(Arrays.asList(64, 36), sink.rowGroups);
+        assertEquals(100, sink.rows.size());
+        for (int i = 0; i < 100; i++) {
+            List<Object> row = sink.rows.get(i);
+            if (i % 3 == 0) {
+                assertEquals(Arrays.<Object>asList(null, null, null, null, null), row);
+            } else {
+                assertEquals(i % 2 == 0 ? "Canon" : "Nikon", row.get(0));
+                assertEquals(i, row.get(1));
+                assertEquals(i / 10.0, (Double)row.get(2), 0.0001);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsInvalidFile() throws Exception
+    {
+        new ColumnarFileReader(new ByteArrayInputStream(new byte[]{ 'M', 'D', 'X', 'C', 1 }));
+    }
+
+    @NotNull
+    private static Metadata createMetadata(@NotNull String make, Integer iso, Rational fNumber)
+    {
+        Metadata metadata = new Metadata();
+        ExifIFD0Directory ifd0 = new ExifIFD0Directory();
+        ifd0.setString(ExifIFD0Directory.TAG_MAKE, make);
+        metadata.addDirectory(ifd0);
+
+        ExifSubIFDDirectory subIfd = new ExifSubIFDDirectory();
+        if (iso != null)
+            subIfd.setInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT, iso);
+        if (fNumber != null)
+            subIfd.setRational(ExifSubIFDDirectory.TAG_FNUMBER, fNumber);
+        subIfd.setRational(ExifSubIFDDirectory.TAG_EXPOSURE_TIME, new Rational(1, 1));
+        metadata.addDirectory(subIfd);
+        return metadata;
+    }
+
+    private static class RecordingSink implements RowGroupSink
+    {
+        final List<List<Object>> rows = new ArrayList<List<Object>>();
+        final List<Integer> rowGroups = new ArrayList<Integer>();
+        final List<List<String>> dictionaries = new ArrayList<List<String>>();
+        boolean closed;
+
+        public void write(@NotNull RowGroup rowGroup)
+        {
+            rowGroups.add(rowGroup.getRowCount());
+            dictionaries.add(new ArrayList<String>(rowGroup.getDictionary(0)));
+            for (int row = 0; row < rowGroup.getRowCount(); row++) {
+                List<Object> values = new ArrayList<Object>();
+                for (int column = 0; column < rowGroup.getColumns().size(); column++) {
+                    if (rowGroup.isNull(column, row)) {
+                        values.add(null);
+                        continue;
+                    }
+                    switch (rowGroup.getColumns().get(column).getType()) {
+                        case INT: values.add(rowGroup.getInt(column, row)); break;
+                        case LONG: values.add(rowGroup.getLong(column, row)); break;
+                        case DOUBLE: values.add(rowGroup.getDouble(column, row)); break;
+                        default: values.add(rowGroup.getString(column, row)); break;
+                    }
+                }
+                rows.add(values);
+            }
+        }
+
+        public void close()
+        {
+            closed = true;
+        }
+    }
+}
@@ -22,15 +22,22 @@ package com.drew.metadata.exif;
 
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.ByteArrayReader;
+import com.drew.lang.ExtractionBudget;
+import com.drew.lang.ExtractionLimits;
 import com.drew.lang.Rational;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Directory;
+import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.makernotes.SonyType1MakernoteDirectory;
 import com.drew.tools.FileUtil;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 import static org.junit.Assert.*;
 
@@ -191,6 +198,106 @@ public class ExifReaderTest
         assertEquals(8, thumbnailDirectory.getInt(ExifThumbnailDirectory.TAG_ORIENTATION));
     }
 
+    @Test
+    public void testSubIfdsProcessedInTagOrder() throws Exception
+    {
+        // IFD0 points to the Exif sub-IFD before the GPS IFD, though the GPS IFD comes first in the data
+        ByteBuffer buffer = ByteBuffer.allocate(104).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{'I', 'I', 0x2A, 0}).putInt(8);
+        buffer.putShort((short)3);
+        putEntry(buffer, ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET, 4, 68);
+        putEntry(buffer, ExifIFD0Directory.TAG_GPS_INFO_OFFSET, 4, 50);
+        putEntry(buffer, ExifIFD0Directory.TAG_ORIENTATION, 3, 6);
+        buffer.putInt(86);
+        // GPS IFD at 50
+        buffer.putShort((short)1);
+        putEntry(buffer, GpsDirectory.TAG_ALTITUDE_REF, 1, 1);
+        buffer.putInt(0);
+        // Exif sub-IFD at 68
+        buffer.putShort((short)1);
+        putEntry(buffer, ExifSubIFDDirectory.TAG_ISO_EQUIVALENT, 3, 100);
+        buffer.putInt(0);
+        // Thumbnail IFD at 86, following IFD0
+        buffer.putShort((short)1);
+        putEntry(buffer, ExifThumbnailDirectory.TAG_COMPRESSION, 3, 6);
+        buffer.putInt(0);
+
+        Metadata metadata = new Metadata();
+        new ExifReader().extract(new ByteArrayReader(buffer.array()), metadata);
+
+        Iterator<Directory> directories = metadata.getDirectories().iterator();
+        Directory ifd0 = directories.next();
+        Directory subIfd = directories.next();
+        Directory gps = directories.next();
+        Directory thumbnail = directories.next();
+        assertFalse(directories.hasNext());
+
+        assertEquals(ExifIFD0Directory.class, ifd0.getClass());
+        assertEquals(ExifSubIFDDirectory.class, subIfd.getClass());
+        assertEquals(GpsDirectory.class, gps.getClass());
+        assertEquals(ExifThumbnailDirectory.class, thumbnail.getClass());
+
+        assertSame(ifd0, gps.getParent());
+        assertSame(ifd0, subIfd.getParent());
+        assertSame(ifd0, thumbnail.getParent());
+
+        // The tag that follows the pointers in IFD0 is not taken by a sub-IFD
+        assertEquals(6, ifd0.getInt(ExifIFD0Directory.TAG_ORIENTATION));
+        assertEquals(1, gps.getInt(GpsDirectory.TAG_ALTITUDE_REF));
+        assertEquals(100, subIfd.getInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT));
+        assertEquals(6, thumbnail.getInt(ExifThumbnailDirectory.TAG_COMPRESSION));
+        assertEquals(1, subIfd.getTagCount());
+        assertEquals(1, thumbnail.getTagCount());
+    }
+
+    @Test
+    public void testDirectoryOrderFollowsTagOrder() throws Exception
+    {
+        Metadata metadata = processBytes("Tests/Data/sonyType1.jpg.app1");
+
+        // The Exif sub-IFD pointer precedes the PrintIM tag in IFD0, so the sub-IFD and its descendants come first
+        Iterator<Directory> directories = metadata.getDirectories().iterator();
+        assertEquals(ExifIFD0Directory.class, directories.next().getClass());
+        assertEquals(ExifSubIFDDirectory.class, directories.next().getClass());
+        assertEquals(SonyType1MakernoteDirectory.class, directories.next().getClass());
+        assertEquals(ExifInteropDirectory.class, directories.next().getClass());
+        assertEquals(PrintIMDirectory.class, directories.next().getClass());
+        assertEquals(ExifThumbnailDirectory.class, directories.next().getClass());
+        assertFalse(directories.hasNext());
+    }
+
+    @Test
+    public void testLongFollowerIfdChainDoesNotOverflowStack() throws Exception
+    {
+        // A chain of empty IFDs, each linking to the next
+        final int ifdCount = 100000;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 6 * ifdCount).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{'I', 'I', 0x2A, 0}).putInt(8);
+        for (int i = 0; i < ifdCount; i++) {
+            buffer.putShort((short)0);
+            buffer.putInt(i == ifdCount - 1 ? 0 : buffer.position() + 4);
+        }
+
+        Metadata metadata = new Metadata();
+        ExtractionBudget previous = ExtractionBudget.begin(new ExtractionBudget(new ExtractionLimits(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 16)));
+        try {
+            new ExifReader().extract(new ByteArrayReader(buffer.array()), metadata);
+        } finally {
+            ExtractionBudget.end(previous);
+        }
+
+        assertNotNull(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
+        assertNotNull(metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class));
+        assertNull(metadata.getFirstDirectoryOfType(ErrorDirectory.class));
+        assertFalse(metadata.hasErrors());
+    }
+
+    private static void putEntry(@NotNull ByteBuffer buffer, int tagId, int formatCode, int value)
+    {
+        // Values of four bytes or fewer are held in the entry, little-endian
+        buffer.putShort((short)tagId).putShort((short)formatCode).putInt(1).putInt(value);
+    }
+
 /*
     public void testUncompressedYCbCrThumbnail() throws Exception
     {
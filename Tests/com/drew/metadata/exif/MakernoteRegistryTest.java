@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.exif;
+
+import com.drew.lang.ByteArrayReader;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.makernotes.SonyType6MakernoteDirectory;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MakernoteRegistryTest
+{
+    private final List<String> _invoked = new ArrayList<String>();
+
+    @Test
+    public void testFirstRegisteredMatchWins() throws Exception
+    {
+        MakernoteRegistry registry = new MakernoteRegistry();
+        registry.register(new MakernoteSignature(new RecordingProcessor("long"), "ABCD"));
+        registry.register(new MakernoteSignature(new RecordingProcessor("short"), "AB"));
+        registry.register(new MakernoteSignature(MakernoteSignature.MakeMatch.EQUALS_IGNORE_CASE, "acme", new RecordingProcessor("make")));
+
+        assertTrue(process(registry, "ABCDEF", "ACME"));
+        assertTrue(process(registry, "ABXY", "ACME"));
+        assertTrue(process(registry, "XYZ", "Acme"));
+        assertFalse(process(registry, "XYZ", "Other"));
+        assertFalse(process(registry, "XYZ", null));
+
+        assertEquals(3, _invoked.size());
+        assertEquals("long", _invoked.get(0));
+        assertEquals("short", _invoked.get(1));
+        assertEquals("make", _invoked.get(2));
+    }
+
+    @Test
+    public void testRegisterFirstTakesPrecedence() throws Exception
+    {
+        MakernoteRegistry registry = new MakernoteRegistry();
+        registry.register(new MakernoteSignature(new RecordingProcessor("original"), "AB"));
+        assertTrue(process(registry, "ABC", null));
+
+        registry.registerFirst(new MakernoteSignature(new RecordingProcessor("override"), "AB"));
+        assertTrue(process(registry, "ABC", null));
+
+        assertEquals("original", _invoked.get(0));
+        assertEquals("override", _invoked.get(1));
+    }
+
+    @Test
+    public void testPrefixAndMakeMustBothMatch() throws Exception
+    {
+        MakernoteRegistry registry = new MakernoteRegistry();
+        registry.register(new MakernoteSignature(new String[]{ "AB" }, false, MakernoteSignature.MakeMatch.TRIMMED_STARTS_WITH_IGNORE_CASE, "ACME", new RecordingProcessor("both")));
+
+        assertFalse(process(registry, "AB", null));
+        assertFalse(process(registry, "XY", "Acme"));
+        assertTrue(process(registry, "AB", "  acme corp"));
+    }
+
+    @Test
+    public void testCaseIgnoringPrefix() throws Exception
+    {
+        MakernoteRegistry registry = new MakernoteRegistry();
+        registry.register(new MakernoteSignature(new String[]{ "AbCd" }, true, null, null, new RecordingProcessor("ci")));
+
+        assertTrue(process(registry, "abcd", null));
+        assertTrue(process(registry, "ABCD", null));
+        assertFalse(process(registry, "ABC", null));
+    }
+
+    @Test
+    public void testDeclinedMatchFallsThrough() throws Exception
+    {
+        MakernoteRegistry registry = new MakernoteRegistry();
+        registry.register(new MakernoteSignature(new RecordingProcessor("declines")
+        {
+            @Override
+            public boolean accepts(@NotNull RandomAccessReader reader, int makernoteOffset)
+            {
+                return false;
+            }
+        }, "AB"));
+        registry.register(new MakernoteSignature(new RecordingProcessor("fallback"), "A"));
+
+        assertTrue(process(registry, "AB", null));
+        assertEquals(1, _invoked.size());
+        assertEquals("fallback", _invoked.get(0));
+    }
+
+    @Test
+    public void testDefaultRegistryDecodesStandardMakernote() throws Exception
+    {
+        assertNotNull(ExifReaderTest.processBytes("Tests/Data/sonyType6.jpg.app1.0", SonyType6MakernoteDirectory.class));
+        assertSame(MakernoteRegistry.getDefault(), MakernoteRegistry.getDefault());
+    }
+
+    private static boolean process(@NotNull MakernoteRegistry registry, @NotNull String header, @Nullable String make) throws IOException
+    {
+        ExifTiffHandler handler = new ExifTiffHandler(new Metadata(), null, registry);
+        return registry.process(handler, make, new ByteArrayReader(header.getBytes("ISO-8859-1")), new HashSet<Integer>(), 0, 0);
+    }
+
+    private class RecordingProcessor extends MakernoteProcessor
+    {
+        private final String _name;
+
+        RecordingProcessor(String name)
+        {
+            _name = name;
+        }
+
+        @Override
+        public boolean process(@NotNull ExifTiffHandler handler, @Nullable String cameraMake, @NotNull RandomAccessReader reader, @NotNull Set<Integer> processedIfdOffsets, int makernoteOffset, int tiffHeaderOffset)
+        {
+            _invoked.add(_name);
+            return true;
+        }
+    }
+}
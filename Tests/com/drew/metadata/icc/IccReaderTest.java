@@ -30,8 +30,12 @@ import org.junit.Test;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("ConstantConditions")
@@ -84,4 +88,99 @@ public class IccReaderTest
         assertEquals("1998:02:09 06:49:00", directory.getString(IccDirectory.TAG_PROFILE_DATETIME));
         assertEquals(887006940000L, directory.getDate(IccDirectory.TAG_PROFILE_DATETIME).getTime());
     }
+
+    @Test
+    public void testExtract_RepeatedProfileReusesDecodedValues() throws Exception
+    {
+        byte[] icc = TestHelper.skipBytes(FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app2"), 14);
+
+        IccProfileCache cache = new IccProfileCache(4, IccProfileCache.DEFAULT_MAX_PROFILE_LENGTH);
+        IccReader reader = new IccReader(cache);
+
+        Metadata first = new Metadata();
+        reader.extract(new ByteArrayReader(icc), first);
+        Metadata second = new Metadata();
+        reader.extract(new ByteArrayReader(icc.clone()), second);
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        Metadata uncached = new Metadata();
+        new IccReader(null).extract(new ByteArrayReader(icc), uncached);
+
+        IccDirectory expected = uncached.getFirstDirectoryOfType(IccDirectory.class);
+        IccDirectory firstDirectory = first.getFirstDirectoryOfType(IccDirectory.class);
+        IccDirectory secondDirectory = second.getFirstDirectoryOfType(IccDirectory.class);
+
+        assertNotSame(firstDirectory, secondDirectory);
+        assertEquals(expected.getTagCount(), secondDirectory.getTagCount());
+        assertEquals(expected.getString(IccDirectory.TAG_PROFILE_DATETIME), secondDirectory.getString(IccDirectory.TAG_PROFILE_DATETIME));
+        assertEquals(expected.getDescription(IccDirectory.TAG_COLOR_SPACE), secondDirectory.getDescription(IccDirectory.TAG_COLOR_SPACE));
+        assertArrayEquals(expected.getByteArray(IccDirectory.TAG_TAG_wtpt), secondDirectory.getByteArray(IccDirectory.TAG_TAG_wtpt));
+        assertNotNull(firstDirectory.getByteArray(IccDirectory.TAG_TAG_wtpt));
+
+        // Decoded values are shared rather than copied
+        assertSame(firstDirectory.getByteArray(IccDirectory.TAG_TAG_wtpt), secondDirectory.getByteArray(IccDirectory.TAG_TAG_wtpt));
+    }
+
+    @Test
+    public void testExtract_ProfilesWithDifferentHeadersAreNotShared() throws Exception
+    {
+        byte[] icc = TestHelper.skipBytes(FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app2"), 14);
+
+        // A different creation year
+        byte[] modified = icc.clone();
+        modified[IccDirectory.TAG_PROFILE_DATETIME + 1]++;
+
+        IccProfileCache cache = new IccProfileCache(4, IccProfileCache.DEFAULT_MAX_PROFILE_LENGTH);
+        IccReader reader = new IccReader(cache);
+
+        reader.extract(new ByteArrayReader(icc), new Metadata());
+        Metadata metadata = new Metadata();
+        reader.extract(new ByteArrayReader(modified), metadata);
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.size());
+        assertEquals("1999:02:09 06:49:00", metadata.getFirstDirectoryOfType(IccDirectory.class).getString(IccDirectory.TAG_PROFILE_DATETIME));
+    }
+
+    @Test
+    public void testDefaultCacheIsOptIn() throws Exception
+    {
+        byte[] icc = TestHelper.skipBytes(FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app2"), 14);
+
+        assertNull(IccProfileCache.getDefault());
+
+        // A reader created before the default is set still uses it
+        IccReader reader = new IccReader();
+        IccProfileCache cache = new IccProfileCache(4, IccProfileCache.DEFAULT_MAX_PROFILE_LENGTH);
+        IccProfileCache.setDefault(cache);
+        try {
+            reader.extract(new ByteArrayReader(icc), new Metadata());
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            IccProfileCache.setDefault(null);
+        }
+
+        reader.extract(new ByteArrayReader(icc), new Metadata());
+        assertEquals(1, cache.getMissCount() + cache.getHitCount());
+    }
+
+    @Test
+    public void testSeededProfileIsNotDecodedAgain() throws Exception
+    {
+        byte[] icc = TestHelper.skipBytes(FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app2"), 14);
+
+        IccProfileCache cache = new IccProfileCache(4, IccProfileCache.DEFAULT_MAX_PROFILE_LENGTH);
+        cache.seed(icc);
+
+        Metadata metadata = new Metadata();
+        new IccReader(cache).extract(new ByteArrayReader(icc), metadata);
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals("1998:02:09 06:49:00", metadata.getFirstDirectoryOfType(IccDirectory.class).getString(IccDirectory.TAG_PROFILE_DATETIME));
+    }
 }
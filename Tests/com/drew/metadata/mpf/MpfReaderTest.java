@@ -0,0 +1,180 @@
+/*
+ * Copyright 2002-2019 Drew Noakes and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.mpf;
+
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.jpeg.JpegCommentDirectory;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class MpfReaderTest
+{
+    // SOI, then an APP2 segment of 86 bytes, whose MP header starts after the marker, length and preamble
+    private static final int HEADER_OFFSET = 2 + 4 + 4;
+    // SOI, APP2, COM, SOS with 1000 bytes of scan data, EOI
+    private static final int PRIMARY_LENGTH = 2 + 4 + 86 + 4 + "primary".length() + 4 + 1000 + 2;
+
+    @Test
+    public void testReadIndex() throws Exception
+    {
+        File file = createMpfJpeg();
+        try {
+            Metadata metadata = JpegMetadataReader.readMetadata(file);
+
+            MpfDirectory directory = metadata.getFirstDirectoryOfType(MpfDirectory.class);
+            assertNotNull(directory);
+            assertEquals(2, directory.getInt(MpfDirectory.TAG_NUMBER_OF_IMAGES));
+            assertEquals("1.00", directory.getDescription(MpfDirectory.TAG_VERSION));
+
+            Collection<MpfImageDirectory> images = metadata.getDirectoriesOfType(MpfImageDirectory.class);
+            assertEquals(2, images.size());
+
+            MpfImageDirectory primary = images.iterator().next();
+            assertSame(directory, primary.getParent());
+            assertEquals("Representative Image", primary.getDescription(MpfImageDirectory.TAG_FLAGS));
+            assertEquals("JPEG", primary.getDescription(MpfImageDirectory.TAG_IMAGE_FORMAT));
+            assertEquals("Baseline MP Primary Image", primary.getDescription(MpfImageDirectory.TAG_IMAGE_TYPE));
+            assertEquals(PRIMARY_LENGTH, primary.getLong(MpfImageDirectory.TAG_IMAGE_SIZE));
+            assertEquals(0, primary.getLong(MpfImageDirectory.TAG_IMAGE_OFFSET));
+
+            MpfImageDirectory secondary = (MpfImageDirectory)images.toArray()[1];
+            assertEquals("None", secondary.getDescription(MpfImageDirectory.TAG_FLAGS));
+            assertEquals("Large Thumbnail (VGA equivalent)", secondary.getDescription(MpfImageDirectory.TAG_IMAGE_TYPE));
+            assertEquals(PRIMARY_LENGTH - HEADER_OFFSET, secondary.getLong(MpfImageDirectory.TAG_IMAGE_OFFSET));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testReadImageMetadata() throws Exception
+    {
+        File file = createMpfJpeg();
+        try {
+            List<Metadata> images = JpegMetadataReader.readMpfImageMetadata(file, null);
+
+            assertEquals(2, images.size());
+            assertEquals("primary", getComment(images.get(0)));
+            assertEquals("secondary", getComment(images.get(1)));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testReadImageMetadataWithoutIndex() throws Exception
+    {
+        assertTrue(JpegMetadataReader.readMpfImageMetadata(new File("Tests/Data/withExif.jpg"), null).isEmpty());
+    }
+
+    private static String getComment(@NotNull Metadata metadata)
+    {
+        JpegCommentDirectory directory = metadata.getFirstDirectoryOfType(JpegCommentDirectory.class);
+        assertNotNull(directory);
+        return directory.getString(JpegCommentDirectory.TAG_COMMENT);
+    }
+
+    private static File createMpfJpeg() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeShort(0xFFD8);
+
+        // APP2 holding the MP header, an MP Index IFD of three entries, and two MP Entries
+        out.writeShort(0xFFE2);
+        out.writeShort(2 + 86);
+        out.writeBytes("MPF\0");
+        out.writeBytes("MM");
+        out.writeShort(0x002A);
+        out.writeInt(8);
+        out.writeShort(3);
+        writeIfdEntry(out, MpfDirectory.TAG_VERSION, 7, 4, 0x30313030);
+        writeIfdEntry(out, MpfDirectory.TAG_NUMBER_OF_IMAGES, 4, 1, 2);
+        writeIfdEntry(out, MpfDirectory.TAG_MP_ENTRY, 7, 32, 8 + 2 + 3 * 12 + 4);
+        out.writeInt(0);
+        writeMpEntry(out, 0x20000000 | MpfImageDirectory.TYPE_BASELINE_PRIMARY, PRIMARY_LENGTH, 0);
+        writeMpEntry(out, MpfImageDirectory.TYPE_LARGE_THUMBNAIL_VGA, 0, PRIMARY_LENGTH - HEADER_OFFSET);
+        writeComment(out, "primary");
+        writeScan(out);
+        assertEquals(PRIMARY_LENGTH, out.size());
+
+        out.writeShort(0xFFD8);
+        writeComment(out, "secondary");
+        writeScan(out);
+
+        File file = File.createTempFile("mpf", ".jpg");
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(bytes.toByteArray());
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    private static void writeIfdEntry(@NotNull DataOutputStream out, int tagId, int formatCode, int componentCount, int value) throws IOException
+    {
+        out.writeShort(tagId);
+        out.writeShort(formatCode);
+        out.writeInt(componentCount);
+        out.writeInt(value);
+    }
+
+    private static void writeMpEntry(@NotNull DataOutputStream out, int attributes, int size, int offset) throws IOException
+    {
+        out.writeInt(attributes);
+        out.writeInt(size);
+        out.writeInt(offset);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    private static void writeComment(@NotNull DataOutputStream out, @NotNull String comment) throws IOException
+    {
+        out.writeShort(0xFFFE);
+        out.writeShort(2 + comment.length());
+        out.writeBytes(comment);
+    }
+
+    private static void writeScan(@NotNull DataOutputStream out) throws IOException
+    {
+        out.writeShort(0xFFDA);
+        out.writeShort(2);
+        for (int i = 0; i < 1000; i++)
+            out.writeByte(0x11);
+        out.writeShort(0xFFD9);
+    }
+}
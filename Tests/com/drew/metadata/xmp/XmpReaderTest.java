@@ -22,6 +22,7 @@ package com.drew.metadata.xmp;
 
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.Schema;
 import com.drew.tools.FileUtil;
 import org.junit.Before;
 import org.junit.Test;
@@ -80,4 +81,103 @@ public class XmpReaderTest
         assertTrue(propertyMap.containsKey("tiff:ImageLength"));
         assertEquals("900", propertyMap.get("tiff:ImageLength"));
     }
+
+    @Test
+    public void testCacheSharesParsedPacket() throws Exception
+    {
+        byte[] segment = FileUtil.readBytes("Tests/Data/withXmpAndIptc.jpg.app1.1");
+
+        XmpCache cache = new XmpCache(4);
+        XmpReader reader = new XmpReader(cache);
+
+        Metadata first = new Metadata();
+        reader.readJpegSegments(Collections.singletonList(segment), first, JpegSegmentType.APP1);
+        Metadata second = new Metadata();
+        reader.readJpegSegments(Collections.singletonList(segment.clone()), second, JpegSegmentType.APP1);
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        XmpDirectory firstDirectory = first.getFirstDirectoryOfType(XmpDirectory.class);
+        XmpDirectory secondDirectory = second.getFirstDirectoryOfType(XmpDirectory.class);
+
+        assertNotSame(firstDirectory, secondDirectory);
+        assertEquals(167, secondDirectory.getInt(XmpDirectory.TAG_XMP_VALUE_COUNT));
+        assertEquals(_directory.getXmpProperties(), secondDirectory.getXmpProperties());
+    }
+
+    @Test
+    public void testCachedPacketIsNotSharedMutably() throws Exception
+    {
+        byte[] segment = FileUtil.readBytes("Tests/Data/withXmpAndIptc.jpg.app1.1");
+
+        XmpReader reader = new XmpReader(new XmpCache(4));
+
+        Metadata first = new Metadata();
+        reader.readJpegSegments(Collections.singletonList(segment), first, JpegSegmentType.APP1);
+        XmpDirectory firstDirectory = first.getFirstDirectoryOfType(XmpDirectory.class);
+        firstDirectory.getXMPMeta().setProperty(Schema.DUBLIN_CORE_SPECIFIC_PROPERTIES, "format", "modified");
+
+        Metadata second = new Metadata();
+        reader.readJpegSegments(Collections.singletonList(segment), second, JpegSegmentType.APP1);
+        XmpDirectory secondDirectory = second.getFirstDirectoryOfType(XmpDirectory.class);
+
+        assertNotSame(firstDirectory.getXMPMeta(), secondDirectory.getXMPMeta());
+        assertEquals(_directory.getXmpProperties(), secondDirectory.getXmpProperties());
+    }
+
+    @Test
+    public void testCacheRetainsParseErrors() throws Exception
+    {
+        byte[] packet = "<x:xmpmeta xmlns:x='adobe:ns:meta/'><unterminated".getBytes("UTF-8");
+
+        XmpCache cache = new XmpCache(4);
+        XmpReader reader = new XmpReader(cache);
+
+        Metadata first = new Metadata();
+        reader.extract(packet, first);
+        Metadata second = new Metadata();
+        reader.extract(packet, second);
+
+        assertEquals(1, cache.getHitCount());
+        assertTrue(first.getFirstDirectoryOfType(XmpDirectory.class).hasErrors());
+        assertEquals(
+            first.getFirstDirectoryOfType(XmpDirectory.class).getErrors().iterator().next(),
+            second.getFirstDirectoryOfType(XmpDirectory.class).getErrors().iterator().next());
+    }
+
+    @Test
+    public void testCacheSkipsPacketsOverLengthLimit() throws Exception
+    {
+        byte[] segment = FileUtil.readBytes("Tests/Data/withXmpAndIptc.jpg.app1.1");
+
+        XmpCache cache = new XmpCache(4, 16);
+        new XmpReader(cache).readJpegSegments(Collections.singletonList(segment), new Metadata(), JpegSegmentType.APP1);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testDefaultCacheIsLookedUpWhenPacketIsRead() throws Exception
+    {
+        byte[] segment = FileUtil.readBytes("Tests/Data/withXmpAndIptc.jpg.app1.1");
+
+        assertNull(XmpCache.getDefault());
+
+        // A reader created before the default is set still uses it
+        XmpReader reader = new XmpReader();
+        XmpCache cache = new XmpCache(4);
+        XmpCache.setDefault(cache);
+        try {
+            reader.readJpegSegments(Collections.singletonList(segment), new Metadata(), JpegSegmentType.APP1);
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            XmpCache.setDefault(null);
+        }
+
+        reader.readJpegSegments(Collections.singletonList(segment), new Metadata(), JpegSegmentType.APP1);
+        assertEquals(1, cache.getMissCount() + cache.getHitCount());
+    }
 }